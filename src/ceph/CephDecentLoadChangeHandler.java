@@ -10,14 +10,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class CephDecentLoadChangeHandler extends CephLoadChangeHandler {
-    public CephDecentLoadChangeHandler(ClusterMap map) {
-        super(map);
-    }
-
     @Override
     public List<Request> generateRequestBasedOnLoad(List<LoadInfo> loadInfoList, LoadInfo loadInfo, long lowerBound, long upperBound) {
         if (loadInfoList == null || loadInfoList.size() < 1) return null;
 
+        ClusterMap map = ClusterMap.getInstance();
         PhysicalNode node = new PhysicalNode(loadInfo.getNodeId());
         node = map.getPhysicalNodeMap().get(node.getId());
         Clusterable parent = map.findParentOf(node);
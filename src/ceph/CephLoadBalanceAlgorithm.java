@@ -208,6 +208,7 @@ public class CephLoadBalanceAlgorithm {
 
         map.getWeightDistributeStrategy().onWeightChanged(map, clusterable, deltaWeight);
         pnode.setWeight(clusterable.getWeight());
+        map.onWeightsChanged();
         loadBalancing(map, map.getRoot());
         SimpleLog.i("Weight updated. deltaWeight="  + deltaWeight + ", new weight=" + pnode.getWeight());
 
@@ -8,20 +8,17 @@ import commonmodels.transport.Request;
 import loadmanagement.LoadInfo;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 public class CephLoadChangeHandler implements LoadChangeHandler {
 
-    protected final ClusterMap map;
-
-    public CephLoadChangeHandler(ClusterMap map) {
-        this.map = map;
-    }
-
     @Override
     public List<Request> generateRequestBasedOnLoad(List<LoadInfo> globalLoad, LoadInfo loadInfo, long lowerBound, long upperBound) {
+        // the published map is never modified, the new weights are committed to a copy
+        ClusterMap map = ClusterMap.getInstance();
         PhysicalNode node = new PhysicalNode(loadInfo.getNodeId());
         node = map.getPhysicalNodeMap().get(node.getId());
         Clusterable parent = map.findParentOf(node);
@@ -50,6 +47,7 @@ public class CephLoadChangeHandler implements LoadChangeHandler {
         if (numberOfLightNodes < 1) return null;
 
         float distributeWeight = halfWeight / numberOfLightNodes;
+        Map<String, Float> weights = new HashMap<>();
         for (int i = 0; i < parent.getSubClusters().length; i++) {
             Clusterable child = parent.getSubClusters()[i];
             if (child == null) continue;
@@ -59,15 +57,15 @@ public class CephLoadChangeHandler implements LoadChangeHandler {
                 if (info == null) continue;
 
                 if (pchild.getId().equals(node.getId())) {
-                    pchild.setWeight(halfWeight);
+                    weights.put(pchild.getId(), halfWeight);
                 }
                 else if(info.getLoad() < lowerBound) {
-                    pchild.setWeight(pchild.getWeight() + distributeWeight);
+                    weights.put(pchild.getId(), pchild.getWeight() + distributeWeight);
                 }
             }
         }
 
-        map.update();
+        map = map.setWeights(weights);
         List<Request> requests = new ArrayList<>();
         requests.add(new Request()
                 .withHeader(CephCommand.UPDATEMAP.name())
@@ -62,15 +62,14 @@ public class CephMembershipAlgorithm {
                 avgPhysicalNodesPerCluster,
                 (int)Math.pow(clusterCapacity, numberOfRushLevel - 1));
 
+        map.onClustersChanged();
+
         SimpleLog.i("Allocating placement groups...");
         allocatePlacementGroups(map);
         SimpleLog.i("Placement groups allocated...");
 
         map.setEpoch(System.currentTimeMillis());
         SimpleLog.i("Map initialized...");
-
-        if (map.getMembershipCallBack() != null)
-            map.getMembershipCallBack().onInitialized();
     }
 
     private void generateMap(ClusterMap map, Clusterable cluster,
@@ -165,7 +164,9 @@ public class CephMembershipAlgorithm {
         }
 
         map.getPhysicalNodeMap().put(node.getId(), node);
+        map.onClusterAdded(cluster, node);
         map.getWeightDistributeStrategy().onNodeAddition(map, cluster, node);
+        map.onWeightsChanged();
         //map.loadBalancing(cluster);
         map.loadBalancing(map.getRoot());
 
@@ -18,7 +18,14 @@ import static util.Config.STATUS_ACTIVE;
 
 public class CephReadWriteAlgorithm {
     public List<PhysicalNode> lookup(ClusterMap clusterMap, String filename) {
-        String pgid = clusterMap.getPlacementGroupId(filename);
+        return clusterMap.getPlacementCache().get(clusterMap.getPlacementGroup(filename));
+    }
+
+    /**
+     * @return replicas of the given placement group, uncached
+     */
+    public List<PhysicalNode> place(ClusterMap clusterMap, int placementGroup) {
+        String pgid = clusterMap.getPlacementGroupId(placementGroup);
         int r = 0;
 
         List<PhysicalNode> pnodes = new ArrayList<>();
@@ -55,6 +62,6 @@ public class CephReadWriteAlgorithm {
 
     public FileBucket writeOnly(ClusterMap map, DummyFile file) {
         return LocalFileManager.getInstance().write(file,
-                (String str) -> MathX.positiveHash(str.hashCode()) % Config.getInstance().getNumberOfPlacementGroups());
+                (String str) -> MathX.keyHash(str) % Config.getInstance().getNumberOfPlacementGroups());
     }
 }
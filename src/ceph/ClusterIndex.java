@@ -0,0 +1,75 @@
+package ceph;
+
+import commonmodels.Clusterable;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Clusters and physical nodes of the hierarchy by id, with the parent of each.
+ * Built from the root on first use, which also covers maps that were just
+ * decoded, then kept up to date as nodes are added.
+ */
+final class ClusterIndex {
+
+    private final Clusterable root;
+
+    private final Map<String, Clusterable> clusters;
+
+    private final Map<String, Clusterable> parents;
+
+    private ClusterIndex(Clusterable root) {
+        this.root = root;
+        this.clusters = new HashMap<>();
+        this.parents = new HashMap<>();
+
+        clusters.put(root.getId(), root);
+        addChildren(root);
+    }
+
+    static ClusterIndex build(Clusterable root) {
+        return new ClusterIndex(root);
+    }
+
+    Clusterable getRoot() {
+        return root;
+    }
+
+    Clusterable find(String id) {
+        return clusters.get(id);
+    }
+
+    Clusterable parentOf(String id) {
+        return parents.get(id);
+    }
+
+    /**
+     * Index a node, and everything below it, that was added to the given cluster
+     */
+    void add(Clusterable parent, Clusterable child) {
+        clusters.put(child.getId(), child);
+        parents.put(child.getId(), parent);
+        addChildren(child);
+    }
+
+    private void addChildren(Clusterable cluster) {
+        Queue<Clusterable> frontier = new LinkedList<>();
+        frontier.add(cluster);
+
+        while (!frontier.isEmpty()) {
+            Clusterable parent = frontier.poll();
+            if (parent.getSubClusters() == null) continue;
+
+            for (Clusterable child : parent.getSubClusters()) {
+                if (child == null) continue;
+
+                // the first one found is kept, same as a search from the root
+                clusters.putIfAbsent(child.getId(), child);
+                parents.putIfAbsent(child.getId(), parent);
+                frontier.add(child);
+            }
+        }
+    }
+}
@@ -6,13 +6,20 @@ import ceph.strategies.WeightDistributeStrategy;
 import commonmodels.*;
 import filemanagement.DummyFile;
 import filemanagement.FileBucket;
+import org.apache.commons.lang3.SerializationUtils;
 import util.Config;
 import util.MathX;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+/**
+ * The published map is never modified. Changes are applied to a private copy,
+ * which then replaces the instance, so a reader holding the instance it got from
+ * getInstance() sees one consistent map for the whole request.
+ */
 public class ClusterMap extends Transportable implements Serializable {
 
     private Clusterable root;
@@ -37,6 +44,15 @@ public class ClusterMap extends Transportable implements Serializable {
 
     private transient PhysicalNode self;
 
+    private transient volatile PlacementCache placementCache;
+
+    private transient volatile RushTree rushTree;
+
+    private transient volatile ClusterIndex clusterIndex;
+
+    // copy a change is being applied to, not published yet
+    private transient boolean draft;
+
     private static volatile ClusterMap instance = null;
 
     public static final String UPDATE_STATUS_DONE = "Map updated";
@@ -81,7 +97,11 @@ public class ClusterMap extends Transportable implements Serializable {
             setSelf(selfAddress);
         }
 
-        membershipAlgorithm.initialize(this);
+        apply(map -> membershipAlgorithm.initialize(map), true, false);
+
+        // after publishing, the callback reads the new map back
+        if (membershipCallBack != null)
+            membershipCallBack.onInitialized();
     }
 
     public long getEpoch() {
@@ -92,6 +112,13 @@ public class ClusterMap extends Transportable implements Serializable {
         this.epoch = epoch;
     }
 
+    /**
+     * Publish the current map under the given epoch
+     */
+    public void commitEpoch(long epoch) {
+        apply(map -> map.setEpoch(epoch), false, false);
+    }
+
     public Clusterable getRoot() {
         return root;
     }
@@ -141,92 +168,91 @@ public class ClusterMap extends Transportable implements Serializable {
     }
 
     public Clusterable findCluster(String id) {
-        Queue<Clusterable> frontier = new LinkedList<>();
-        frontier.add(root);
-
-        while (!frontier.isEmpty()) {
-            Clusterable cluster = frontier.poll();
-            if (cluster.getId().equals(id)) return cluster;
-            if (cluster.getSubClusters() == null) continue;
-
-            for (Clusterable child : cluster.getSubClusters()) {
-                if (child != null)
-                    frontier.add(child);
-            }
-        }
-
-        return null;
+        return getClusterIndex().find(id);
     }
 
     public Clusterable findParentOf(Clusterable clusterable) {
-        Stack<Clusterable> frontier = new Stack<>();
-        frontier.push(root);
-
-        while (!frontier.isEmpty()) {
-            Clusterable cluster = frontier.pop();
-            if (cluster.getSubClusters() == null) continue;
+        return getClusterIndex().parentOf(clusterable.getId());
+    }
 
-            for (Clusterable child : cluster.getSubClusters()) {
-                if (child != null) {
-                    if (child.getId().equals(clusterable.getId())) return cluster;
-                    else frontier.push(child);
-                }
-            }
+    private ClusterIndex getClusterIndex() {
+        ClusterIndex index = clusterIndex;
+        if (index == null || index.getRoot() != root) {
+            index = ClusterIndex.build(root);
+            clusterIndex = index;
         }
 
-        return null;
+        return index;
     }
 
     public Clusterable rush(String pgid, int r) {
-        Queue<Clusterable> frontier = new LinkedList<>();
-        frontier.add(root);
+        return getRushTree().rush(pgid, r);
+    }
 
-        while (!frontier.isEmpty()) {
-            Clusterable cluster = frontier.poll();
+    /**
+     * The hierarchy was rebuilt in place
+     */
+    public void onClustersChanged() {
+        clusterIndex = null;
+        rushTree = null;
+    }
 
-            for (int i = 0; i < cluster.getSubClusters().length; i++) {
-                Clusterable subCluster = cluster.getSubClusters()[i];
-                if (subCluster == null) continue;
-
-                double rushHash = MathX.rushHash(pgid, r, subCluster.getId());
-                double ratio = subtotalWeightRatio(i, cluster.getSubClusters());
-                if (rushHash < ratio) {
-                    if (subCluster instanceof PhysicalNode) {
-                        // SimpleLog.i(pgid + ", r=" + r + ", rush: " + rushHash + ", ratio: " + ratio + ", node: " + subCluster.getId());
-                        return subCluster;
-                    }
-                    else {
-                        frontier.add(subCluster);
-                        break;
-                    }
-                }
-            }
+    /**
+     * A node was added to the given cluster
+     */
+    public void onClusterAdded(Clusterable parent, Clusterable child) {
+        ClusterIndex index = clusterIndex;
+        if (index != null && index.getRoot() == root)
+            index.add(parent, child);
+        rushTree = null;
+    }
+
+    /**
+     * Weights of the hierarchy changed, placements have to be worked out anew
+     */
+    public void onWeightsChanged() {
+        rushTree = null;
+    }
+
+    private RushTree getRushTree() {
+        RushTree tree = rushTree;
+        if (tree == null || tree.getRoot() != root) {
+            tree = RushTree.compile(root);
+            rushTree = tree;
         }
 
-        return null;
+        return tree;
     }
 
     public String getPlacementGroupId(String name) {
-        int pgid = MathX.positiveHash(name.hashCode()) % Config.getInstance().getNumberOfPlacementGroups();
-        return "PG" + pgid;
+        return getPlacementGroupId(getPlacementGroup(name));
+    }
+
+    public int getPlacementGroup(String name) {
+        return MathX.keyHash(name) % Config.getInstance().getNumberOfPlacementGroups();
     }
 
     public String getPlacementGroupId(int pgid) {
         return "PG" + pgid;
     }
 
-    private float subtotalWeightRatio(int index, Clusterable[] clusters) {
-        float subtotal = 0;
-
-        for (int i = index; i < clusters.length; i++) {
-            subtotal += clusters[i].getWeight();
+    /**
+     * @return replicas of each placement group at the current epoch
+     */
+    PlacementCache getPlacementCache() {
+        int size = Config.getInstance().getNumberOfPlacementGroups();
+        PlacementCache cache = placementCache;
+        if (cache == null || !cache.matches(epoch, size)) {
+            cache = new PlacementCache(epoch, size, pg -> readWriteAlgorithm.place(this, pg));
+            placementCache = cache;
         }
 
-        return subtotal == 0 ? 1 : clusters[index].getWeight() / subtotal;
+        return cache;
     }
 
     public void update() {
-        epoch = System.currentTimeMillis();
+        // strictly increasing, so two updates within the same millisecond are told apart
+        epoch = Math.max(System.currentTimeMillis(), epoch + 1);
     }
 
     public void onNodeFailureOrRemoval(Clusterable failedNode) {
@@ -234,8 +260,9 @@ public class ClusterMap extends Transportable implements Serializable {
     }
 
     public void loadBalancing(Clusterable clusterable) {
-        loadBalanceAlgorithm.loadBalancing(this, clusterable);
-        update();
+        commit(map -> loadBalanceAlgorithm.loadBalancing(map,
+                // the copy has its own clusters
+                map == this ? clusterable : map.findCluster(clusterable.getId())));
     }
 
     public void scheduleLoadBalancing() {
@@ -243,18 +270,97 @@ public class ClusterMap extends Transportable implements Serializable {
     }
 
     public void addNode(String clusterId, PhysicalNode node) {
-        membershipAlgorithm.addPhysicalNode(this, clusterId, node);
-        update(); // commit the change, gossip to other nodes
+        commit(map -> membershipAlgorithm.addPhysicalNode(map, clusterId, node)); // gossip to other nodes
     }
 
     public void removeNode(PhysicalNode node) {
-        membershipAlgorithm.removePhysicalNode(this, node);
-        update(); // commit the change, gossip to other nodes
+        commit(map -> membershipAlgorithm.removePhysicalNode(map, node)); // gossip to other nodes
     }
 
     public void changeWeight(PhysicalNode node, float deltaWeight) {
-        loadBalanceAlgorithm.changeWeight(this, node, deltaWeight);
-        update(); // commit the change, gossip to other nodes
+        commit(map -> loadBalanceAlgorithm.changeWeight(map, node, deltaWeight)); // gossip to other nodes
+    }
+
+    /**
+     * Set the weights of physical nodes, as worked out by a load change handler
+     *
+     * @param weights new weight by node id
+     * @return map published with the new weights
+     */
+    public ClusterMap setWeights(Map<String, Float> weights) {
+        ClusterMap[] published = new ClusterMap[1];
+        commit(map -> {
+            for (Map.Entry<String, Float> entry : weights.entrySet()) {
+                PhysicalNode pnode = map.getPhysicalNodeMap().get(entry.getKey());
+                if (pnode != null)
+                    pnode.setWeight(entry.getValue());
+            }
+            map.onWeightsChanged();
+            published[0] = map;
+        });
+
+        return published[0];
+    }
+
+    /**
+     * Apply a change to a copy of the current map and publish the copy under a new epoch
+     */
+    private void commit(Consumer<ClusterMap> change) {
+        apply(change, true, true);
+    }
+
+    /**
+     * @param deep copy the clusters as well, if the change modifies them
+     */
+    private void apply(Consumer<ClusterMap> change, boolean deep, boolean newEpoch) {
+        if (draft) {
+            // nested in a change that is being applied
+            change.accept(this);
+            if (newEpoch) update();
+            return;
+        }
+
+        synchronized (ClusterMap.class) {
+            ClusterMap next = getInstance().copy(deep);
+            change.accept(next);
+            if (newEpoch) next.update();
+            next.draft = false;
+            instance = next;
+        }
+    }
+
+    private void install(ClusterMap remoteMap) {
+        apply(map -> {
+            map.setRoot(remoteMap.getRoot());
+            map.setEpoch(remoteMap.getEpoch());
+            map.setPhysicalNodeMap(remoteMap.getPhysicalNodeMap());
+        }, false, false);
+    }
+
+    private ClusterMap copy(boolean deep) {
+        ClusterMap copy;
+        if (deep) {
+            // clusters and physicalNodeMap share the physical nodes, cloned as one graph
+            copy = SerializationUtils.clone(this);
+        }
+        else {
+            // published maps are never modified, unchanged parts are shared
+            copy = new ClusterMap();
+            copy.epoch = epoch;
+            copy.root = root;
+            copy.physicalNodeMap = physicalNodeMap;
+        }
+
+        copy.loadBalanceAlgorithm = loadBalanceAlgorithm;
+        copy.membershipAlgorithm = membershipAlgorithm;
+        copy.readWriteAlgorithm = readWriteAlgorithm;
+        copy.weightDistributeStrategy = weightDistributeStrategy;
+        copy.membershipCallBack = membershipCallBack;
+        copy.readWriteCallBack = readWriteCallBack;
+        copy.deltaSupplier = deltaSupplier;
+        copy.self = self;
+        copy.draft = true;
+        return copy;
     }
 
     public List<PhysicalNode> lookup(String filename) {
@@ -285,10 +391,7 @@ public class ClusterMap extends Transportable implements Serializable {
 
     public String createTable(Object o) {
         if (o instanceof ClusterMap) {
-            ClusterMap remoteMap = (ClusterMap)o;
-            this.setRoot(remoteMap.getRoot());
-            this.setEpoch(remoteMap.getEpoch());
-            this.setPhysicalNodeMap(remoteMap.getPhysicalNodeMap());
+            install((ClusterMap)o);
 
             return UPDATE_STATUS_DONE;
         }
@@ -301,15 +404,16 @@ public class ClusterMap extends Transportable implements Serializable {
         if (o instanceof ClusterMap) {
             ClusterMap remoteMap = (ClusterMap)o;
 
-            if (this.getRoot() == null || this.getRoot().getSubClusters() == null || remoteMap.getEpoch() > this.getEpoch()) {
-                this.setRoot(remoteMap.getRoot());
-                this.setEpoch(remoteMap.getEpoch());
-                this.setPhysicalNodeMap(remoteMap.getPhysicalNodeMap());
+            synchronized (ClusterMap.class) {
+                ClusterMap current = getInstance();
+                if (current.getRoot() == null || current.getRoot().getSubClusters() == null || remoteMap.getEpoch() > current.getEpoch()) {
+                    install(remoteMap);
 
-                return UPDATE_STATUS_DONE;
-            }
-            else {
-                return UPDATE_STATUS_CANCEL;
+                    return UPDATE_STATUS_DONE;
+                }
+                else {
+                    return UPDATE_STATUS_CANCEL;
+                }
             }
         }
         else {
@@ -0,0 +1,122 @@
+package ceph;
+
+import commonmodels.Clusterable;
+import commonmodels.PhysicalNode;
+import util.MathX;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cluster hierarchy flattened for RUSH.
+ * Children of every cluster are laid out in arrays, with the weight ratio of each
+ * child to itself and its remaining siblings and the hash of its id worked out
+ * in advance. A placement walks down the arrays, one level at a time, without
+ * summing weights, hashing ids or allocating.
+ *
+ * A tree is compiled for the weights and members of the hierarchy at one time,
+ * ClusterMap compiles a new one once they change.
+ */
+final class RushTree {
+
+    private final Clusterable root;
+
+    private final Clusterable[] nodes;
+
+    // nodes are numbered level by level, children of node n are firstChild[n] to firstChild[n] + childCount[n] - 1
+    private final int[] firstChild;
+
+    private final int[] childCount;
+
+    // weight of each node over the weight of itself and its remaining siblings
+    private final float[] ratios;
+
+    private final int[] idHashes;
+
+    private RushTree(Clusterable root) {
+        this.root = root;
+
+        List<Clusterable> nodeList = new ArrayList<>();
+        nodeList.add(root);
+        for (int n = 0; n < nodeList.size(); n++) {
+            Clusterable[] subClusters = nodeList.get(n).getSubClusters();
+            if (subClusters == null) continue;
+
+            for (Clusterable subCluster : subClusters) {
+                if (subCluster != null)
+                    nodeList.add(subCluster);
+            }
+        }
+
+        this.nodes = nodeList.toArray(new Clusterable[0]);
+        this.firstChild = new int[nodes.length];
+        this.childCount = new int[nodes.length];
+        this.ratios = new float[nodes.length];
+        this.idHashes = new int[nodes.length];
+
+        // same order as nodes were numbered in
+        int next = 1;
+        for (int n = 0; n < nodes.length; n++) {
+            idHashes[n] = MathX.getKeyHasher().hash(nodes[n].getId());
+            firstChild[n] = next;
+
+            Clusterable[] subClusters = nodes[n].getSubClusters();
+            if (subClusters == null) continue;
+
+            for (int i = 0; i < subClusters.length; i++) {
+                if (subClusters[i] == null) continue;
+
+                ratios[next++] = subtotalWeightRatio(i, subClusters);
+                childCount[n]++;
+            }
+        }
+    }
+
+    static RushTree compile(Clusterable root) {
+        return new RushTree(root);
+    }
+
+    Clusterable getRoot() {
+        return root;
+    }
+
+    /**
+     * @return same node as a walk over the hierarchy, null if there is none
+     *
+     *          Time Complexity O(depth * fan-out)
+     */
+    Clusterable rush(String pgid, int r) {
+        int pgidHash = MathX.getKeyHasher().hash(pgid);
+        int node = 0;
+
+        descend:
+        while (true) {
+            int first = firstChild[node];
+            int last = first + childCount[node];
+
+            for (int child = first; child < last; child++) {
+                if (MathX.rushHash(pgidHash, r, idHashes[child]) < ratios[child]) {
+                    if (nodes[child] instanceof PhysicalNode)
+                        return nodes[child];
+
+                    node = child;
+                    continue descend;
+                }
+            }
+
+            return null;
+        }
+    }
+
+    private static float subtotalWeightRatio(int index, Clusterable[] clusters) {
+        float subtotal = 0;
+
+        // summed in the same order as before, so the ratios come out the same to the last bit
+        for (int i = index; i < clusters.length; i++) {
+            if (clusters[i] != null)
+                subtotal += clusters[i].getWeight();
+        }
+
+        return subtotal == 0 ? 1 : clusters[index].getWeight() / subtotal;
+    }
+}
@@ -83,8 +83,9 @@ public enum CephCommand implements Command {
 
         @Override
         public Response execute(Request request) {
+            ClusterMap map = ClusterMap.getInstance();
             String[] file = request.getAttachment().split(" ");
-            int hash = MathX.positiveHash(file[0].hashCode()) % Config.getInstance().getNumberOfPlacementGroups();
+            int hash = MathX.keyHash(file[0]) % Config.getInstance().getNumberOfPlacementGroups();
             long filesize = file.length == 2 ? Long.valueOf(file[1]) : -1;
             FileBucket fileBucket = LocalFileManager.getInstance().read(hash, filesize);
 
@@ -99,12 +100,12 @@ public enum CephCommand implements Command {
                         .withMessage(fileBucket.toString());
             }
 
-            if (request.getEpoch() < ClusterMap.getInstance().getEpoch()){
+            if (request.getEpoch() < map.getEpoch()){
                 @SuppressWarnings("unchecked")
-                List<Request> delta = (List<Request>)ClusterMap.getInstance().getDeltaSupplier().get();
+                List<Request> delta = (List<Request>)map.getDeltaSupplier().get();
                 delta.sort(Comparator.comparingLong(Request::getTimestamp));
                 if (delta.size() < 1 || request.getEpoch() < delta.get(0).getTimestamp()) {
-                    response.setAttachment(ClusterMap.getInstance());
+                    response.setAttachment(map);
                 }
                 else {
                     List attachment = delta.stream()
@@ -148,9 +149,10 @@ public enum CephCommand implements Command {
 
         @Override
         public Response execute(Request request) {
+            ClusterMap map = ClusterMap.getInstance();
             boolean shouldReplicate = request.getEpoch() >= 0;
             DummyFile file = new DummyFile(request.getAttachment());
-            FileBucket fileBucket = ClusterMap.getInstance().write(
+            FileBucket fileBucket = map.write(
                     file,
                     shouldReplicate);
 
@@ -164,12 +166,12 @@ public enum CephCommand implements Command {
                         .withMessage(fileBucket.toString());
             }
 
-            if (shouldReplicate && request.getEpoch() < ClusterMap.getInstance().getEpoch()) {
+            if (shouldReplicate && request.getEpoch() < map.getEpoch()) {
                 @SuppressWarnings("unchecked")
-                List<Request> delta = (List<Request>)ClusterMap.getInstance().getDeltaSupplier().get();
+                List<Request> delta = (List<Request>)map.getDeltaSupplier().get();
                 delta.sort(Comparator.comparingLong(Request::getTimestamp));
                 if (delta.size() < 1 || request.getEpoch() < delta.get(0).getTimestamp()) {
-                    response.setAttachment(ClusterMap.getInstance());
+                    response.setAttachment(map);
                 }
                 else {
                     List attachment = delta.stream()
@@ -453,12 +455,14 @@ public enum CephCommand implements Command {
                 if (attachment instanceof List) {
                     @SuppressWarnings("unchecked")
                     List<Request> delta = (List<Request>) attachment;
+                    long epoch = ClusterMap.getInstance().getEpoch();
                     for (Request r : delta) {
                         // SimpleLog.i("Apply delta: " + r);
-                        if (r.getTimestamp() >= ClusterMap.getInstance().getEpoch()) {
+                        if (r.getTimestamp() >= epoch) {
                             CephCommand cmd = CephCommand.valueOf(r.getHeader());
                             response = cmd.execute(r);
-                            ClusterMap.getInstance().setEpoch(r.getTimestamp());
+                            ClusterMap.getInstance().commitEpoch(r.getTimestamp());
+                            epoch = r.getTimestamp();
                         }
                     }
                 } else if (attachment instanceof Request) {
@@ -467,7 +471,7 @@ public enum CephCommand implements Command {
                     if (r.getTimestamp() >= ClusterMap.getInstance().getEpoch()) {
                         CephCommand cmd = CephCommand.valueOf(r.getHeader());
                         response = cmd.execute(r);
-                        ClusterMap.getInstance().setEpoch(r.getTimestamp());
+                        ClusterMap.getInstance().commitEpoch(r.getTimestamp());
                     }
                 } else {
                     String result = ClusterMap.getInstance().updateTable(request.getLargeAttachment());
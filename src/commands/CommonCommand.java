@@ -2,6 +2,7 @@ package commands;
 
 import commonmodels.Command;
 import commonmodels.PhysicalNode;
+import commonmodels.TokenRange;
 import commonmodels.transport.InvalidRequestException;
 import commonmodels.transport.Request;
 import commonmodels.transport.Response;
@@ -11,8 +12,11 @@ import filemanagement.FileTransferManager;
 import loadmanagement.DecentralizedLoadInfoBroker;
 import loadmanagement.GlobalLoadInfoBroker;
 import loadmanagement.LoadInfo;
+import statmanagement.StatInfoManager;
+import util.Config;
 import util.SimpleLog;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -179,16 +183,26 @@ public enum CommonCommand implements Command {
                 return new Response(request).withStatus(Response.STATUS_FAILED).withMessage(result);
             }
             else {
-                Pattern pattern = Pattern.compile(",");
-                List<Integer> buckets = pattern.splitAsStream(request.getAttachment())
-                        .map(Integer::valueOf)
-                        .collect(Collectors.toList());
+                long sizeOfFilesTransferred;
+                if (TokenRange.isRange(request.getAttachment())) {
+                    sizeOfFilesTransferred = FileTransferManager.getInstance().transfer(
+                            TokenRange.parse(request.getAttachment()),
+                            new PhysicalNode(request.getSender()),
+                            new PhysicalNode(request.getReceiver())
+                    );
+                }
+                else {
+                    Pattern pattern = Pattern.compile(",");
+                    List<Integer> buckets = pattern.splitAsStream(request.getAttachment())
+                            .map(Integer::valueOf)
+                            .collect(Collectors.toList());
 
-                long sizeOfFilesTransferred = FileTransferManager.getInstance().transfer(
+                    sizeOfFilesTransferred = FileTransferManager.getInstance().transfer(
                             buckets,
                             new PhysicalNode(request.getSender()),
                             new PhysicalNode(request.getReceiver())
-                        );
+                    );
+                }
                 request.setAttachment(String.valueOf(sizeOfFilesTransferred));
                 result = "Message from : " + request.getSender()
                         + ":\n         Transferring to " + request.getReceiver()
@@ -238,16 +252,26 @@ public enum CommonCommand implements Command {
                 return new Response(request).withStatus(Response.STATUS_FAILED).withMessage(result);
             }
             else {
-                Pattern pattern = Pattern.compile(",");
-                List<Integer> buckets = pattern.splitAsStream(request.getAttachment())
-                        .map(Integer::valueOf)
-                        .collect(Collectors.toList());
+                long sizeOfFilesReplicated;
+                if (TokenRange.isRange(request.getAttachment())) {
+                    sizeOfFilesReplicated = FileTransferManager.getInstance().copy(
+                            TokenRange.parse(request.getAttachment()),
+                            new PhysicalNode(request.getSender()),
+                            new PhysicalNode(request.getReceiver())
+                    );
+                }
+                else {
+                    Pattern pattern = Pattern.compile(",");
+                    List<Integer> buckets = pattern.splitAsStream(request.getAttachment())
+                            .map(Integer::valueOf)
+                            .collect(Collectors.toList());
 
-                long sizeOfFilesReplicated = FileTransferManager.getInstance().copy(
-                        buckets,
-                        new PhysicalNode(request.getSender()),
-                        new PhysicalNode(request.getReceiver())
-                );
+                    sizeOfFilesReplicated = FileTransferManager.getInstance().copy(
+                            buckets,
+                            new PhysicalNode(request.getSender()),
+                            new PhysicalNode(request.getReceiver())
+                    );
+                }
                 request.setAttachment(String.valueOf(sizeOfFilesReplicated));
 
                 result = "Message from : " + request.getSender()
@@ -562,5 +586,86 @@ public enum CommonCommand implements Command {
         public String getHelpString() {
             return getParameterizedString();
         }
+    },
+
+    BATCH{
+        @Override
+        public Request convertToRequest(String[] args) throws InvalidRequestException {
+            return new Request().withHeader(CommonCommand.BATCH.name());
+        }
+
+        @Override
+        public Response execute(Request request) {
+            String result;
+            if (DataNodeDaemon.getInstance() == null) {
+                result = "Daemon not started";
+                return new Response(request).withStatus(Response.STATUS_FAILED).withMessage(result);
+            }
+            else if (!(request.getLargeAttachment() instanceof List)) {
+                result = "Batch carries no requests";
+                return new Response(request).withStatus(Response.STATUS_INVALID_REQUEST).withMessage(result);
+            }
+
+            else if (((List<?>) request.getLargeAttachment()).size() > Config.getInstance().getBatchMaxRequests()) {
+                // the server admitted the batch as that many requests, see weightOf
+                result = "Batch larger than " + Config.getInstance().getBatchMaxRequests() + " requests";
+                return new Response(request).withStatus(Response.STATUS_INVALID_REQUEST).withMessage(result);
+            }
+
+            // run every request in place, responses keep the order of the requests
+            @SuppressWarnings("unchecked")
+            List<Request> requests = (List<Request>) request.getLargeAttachment();
+            List<Response> responses = new ArrayList<>(requests.size());
+            for (Request r : requests) {
+                if (r.getSender() == null)
+                    r.setSender(request.getSender());
+
+                // each request came in with the batch and is counted from then on
+                r.setReceived(request.getReceived());
+                if (r.isExpired()) {
+                    responses.add(new Response(r)
+                            .withStatus(Response.STATUS_FAILED)
+                            .withMessage(Response.MESSAGE_EXPIRED));
+                    continue;
+                }
+
+                long stamp = StatInfoManager.getInstance().getStamp();
+                StatInfoManager.getInstance().statRequest(r, stamp, 0);
+                responses.add(DataNodeDaemon.getInstance().onReceived(r));
+                StatInfoManager.getInstance().statExecution(r, stamp);
+            }
+
+            return new Response(request)
+                    .withStatus(Response.STATUS_SUCCESS)
+                    .withAttachment(responses);
+        }
+
+        @Override
+        public String getParameterizedString() {
+            return CommonCommand.BATCH.name();
+        }
+
+        @Override
+        public String getHelpString() {
+            return getParameterizedString();
+        }
+    };
+
+    /**
+     * @return number of requests the request stands for, those of a batch or 1,
+     *          admission counts a batch as that many
+     */
+    public static int weightOf(Request request) {
+        if (BATCH.name().equals(request.getHeader()) && request.getLargeAttachment() instanceof List)
+            return Math.max(((List<?>) request.getLargeAttachment()).size(), 1);
+        return 1;
+    }
+
+    /**
+     * Requests that only touch data and are cheap to run, so they can share a batch
+     */
+    public static boolean isBatchable(Request request) {
+        String header = request.getHeader();
+        return RingCommand.READ.name().equals(header) || RingCommand.WRITE.name().equals(header);
     }
 }
@@ -87,8 +87,9 @@ public enum ElasticCommand implements Command {
 
         @Override
         public Response execute(Request request) {
+            LookupTable table = LookupTable.getInstance();
             String[] file = request.getAttachment().split(" ");
-            int hash = MathX.positiveHash(file[0].hashCode()) % LookupTable.getInstance().getTable().length;
+            int hash = MathX.keyHash(file[0]) % table.getTable().length;
             long filesize = file.length == 2 ? Long.valueOf(file[1]) : -1;
             FileBucket fileBucket = LocalFileManager.getInstance().read(hash, filesize);
 
@@ -103,12 +104,12 @@ public enum ElasticCommand implements Command {
                         .withMessage(fileBucket.toString());
             }
 
-            if (request.getEpoch() < LookupTable.getInstance().getEpoch()) {
+            if (request.getEpoch() < table.getEpoch()) {
                 @SuppressWarnings("unchecked")
-                List<Request> delta = (List<Request>)LookupTable.getInstance().getDeltaSupplier().get();
+                List<Request> delta = (List<Request>)table.getDeltaSupplier().get();
                 delta.sort(Comparator.comparingLong(Request::getTimestamp));
                 if (delta.size() < 1 || request.getEpoch() < delta.get(0).getTimestamp()) {
-                    response.setAttachment(LookupTable.getInstance());
+                    response.setAttachment(table);
                 }
                 else {
                     List attachment = delta.stream()
@@ -152,9 +153,10 @@ public enum ElasticCommand implements Command {
 
         @Override
         public Response execute(Request request) {
+            LookupTable table = LookupTable.getInstance();
             boolean shouldReplicate = request.getEpoch() >= 0;
             DummyFile file = new DummyFile(request.getAttachment());
-            FileBucket fileBucket = LookupTable.getInstance().write(
+            FileBucket fileBucket = table.write(
                     file,
                     shouldReplicate);
 
@@ -168,12 +170,12 @@ public enum ElasticCommand implements Command {
                         .withMessage(fileBucket.toString());
             }
 
-            if (shouldReplicate && request.getEpoch() < LookupTable.getInstance().getEpoch()) {
+            if (shouldReplicate && request.getEpoch() < table.getEpoch()) {
                 @SuppressWarnings("unchecked")
-                List<Request> delta = (List<Request>)LookupTable.getInstance().getDeltaSupplier().get();
+                List<Request> delta = (List<Request>)table.getDeltaSupplier().get();
                 delta.sort(Comparator.comparingLong(Request::getTimestamp));
                 if (delta.size() < 1 || request.getEpoch() < delta.get(0).getTimestamp()) {
-                    response.setAttachment(LookupTable.getInstance());
+                    response.setAttachment(table);
                 }
                 else {
                     List attachment = delta.stream()
@@ -523,12 +525,14 @@ public enum ElasticCommand implements Command {
                 if (attachment instanceof List) {
                     @SuppressWarnings("unchecked")
                     List<Request> delta = (List<Request>) attachment;
+                    long epoch = LookupTable.getInstance().getEpoch();
                     for (Request r : delta) {
                         // SimpleLog.i("Apply delta: " + r);
-                        if (r.getTimestamp() >= LookupTable.getInstance().getEpoch()) {
+                        if (r.getTimestamp() >= epoch) {
                             ElasticCommand cmd = ElasticCommand.valueOf(r.getHeader());
                             response = cmd.execute(r);
-                            LookupTable.getInstance().setEpoch(r.getTimestamp());
+                            LookupTable.getInstance().commitEpoch(r.getTimestamp());
+                            epoch = r.getTimestamp();
                         }
                     }
                 } else if (attachment instanceof Request) {
@@ -537,7 +541,7 @@ public enum ElasticCommand implements Command {
                     if (r.getTimestamp() >= LookupTable.getInstance().getEpoch()) {
                         ElasticCommand cmd = ElasticCommand.valueOf(r.getHeader());
                         response = cmd.execute(r);
-                        LookupTable.getInstance().setEpoch(r.getTimestamp());
+                        LookupTable.getInstance().commitEpoch(r.getTimestamp());
                     }
                 } else {
                     String result = LookupTable.getInstance().updateTable(request.getLargeAttachment());
@@ -0,0 +1,467 @@
+package commands;
+
+import commonmodels.Command;
+import commonmodels.PhysicalNode;
+import commonmodels.transport.InvalidRequestException;
+import commonmodels.transport.Request;
+import commonmodels.transport.Response;
+import filemanagement.DummyFile;
+import filemanagement.FileBucket;
+import filemanagement.LocalFileManager;
+import jump.LookupTable;
+import util.Config;
+import util.MathX;
+import util.SimpleLog;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public enum JumpCommand implements Command {
+
+    INITIALIZE {
+        @Override
+        public Request convertToRequest(String[] args) {
+            return new Request().withHeader(JumpCommand.INITIALIZE.name());
+        }
+
+        @Override
+        public Response execute(Request request) {
+            LookupTable.getInstance().initialize();
+            return new Response(request).withStatus(Response.STATUS_SUCCESS).withMessage("Initialized");
+        }
+
+        @Override
+        public String getParameterizedString() {
+            return JumpCommand.INITIALIZE.name();
+        }
+
+        @Override
+        public String getHelpString() {
+            return getParameterizedString();
+        }
+    },
+
+    DESTROY {
+        @Override
+        public Request convertToRequest(String[] args) {
+            return new Request().withHeader(JumpCommand.DESTROY.name());
+        }
+
+        @Override
+        public Response execute(Request request) {
+            LookupTable.deleteInstance();
+            return new Response(request).withStatus(Response.STATUS_SUCCESS).withMessage("Finished deconstruction");
+        }
+
+        @Override
+        public String getParameterizedString() {
+            return JumpCommand.DESTROY.name();
+        }
+
+        @Override
+        public String getHelpString() {
+            return getParameterizedString();
+        }
+    },
+
+    READ {
+        @Override
+        public Request convertToRequest(String[] args) throws InvalidRequestException {
+            if (args.length > 3) {
+                throw new InvalidRequestException("Wrong arguments. Try: " + getHelpString());
+            }
+
+            String attachment = args[1];
+            if (args.length == 3)
+                attachment = attachment + " " + args[2];
+
+            return new Request().withHeader(JumpCommand.READ.name())
+                    .withEpoch(LookupTable.getInstance().getEpoch())
+                    .withAttachment(attachment);
+        }
+
+        @Override
+        public Response execute(Request request) {
+            LookupTable table = LookupTable.getInstance();
+            String[] file = request.getAttachment().split(" ");
+            int hash = MathX.keyHash(file[0]) % Config.getInstance().getNumberOfHashSlots();
+            long filesize = file.length == 2 ? Long.valueOf(file[1]) : -1;
+            FileBucket fileBucket = LocalFileManager.getInstance().read(hash, filesize);
+
+            Response response = new Response(request);
+
+            if (fileBucket == null) {
+                response.withStatus(Response.STATUS_FAILED)
+                        .withMessage("Bucket not found in this node.");
+            }
+            else {
+                response.withStatus(Response.STATUS_SUCCESS)
+                        .withMessage(fileBucket.toString());
+            }
+
+            if (request.getEpoch() < table.getEpoch()) {
+                List<Request> delta = table.getDeltaSupplier().get();
+                delta.sort(Comparator.comparingLong(Request::getTimestamp));
+                if (delta.size() < 1 || request.getEpoch() < delta.get(0).getTimestamp()) {
+                    response.setAttachment(table);
+                }
+                else {
+                    List<Request> attachment = delta.stream()
+                            .filter(d -> d.getTimestamp() > request.getEpoch())
+                            .collect(Collectors.toList());
+                    if (attachment.size() > 0)
+                        response.setAttachment(attachment);
+                }
+            }
+
+            return response;
+        }
+
+        @Override
+        public String getParameterizedString() {
+            return JumpCommand.READ.name() + " %s %s";
+        }
+
+        @Override
+        public String getHelpString() {
+            return String.format(getParameterizedString(), "<filename> [filesize]");
+        }
+
+    },
+
+    WRITE{
+        @Override
+        public Request convertToRequest(String[] args) throws InvalidRequestException {
+            if (args.length != 2 && args.length != 3) {
+                throw new InvalidRequestException("Wrong arguments. Try: " + getHelpString());
+            }
+
+            String attachment = args[1];
+            if (args.length == 3)
+                attachment += " " + args[2];
+
+            return new Request().withHeader(JumpCommand.WRITE.name())
+                    .withEpoch(LookupTable.getInstance().getEpoch())
+                    .withAttachment(attachment);
+        }
+
+        @Override
+        public Response execute(Request request) {
+            LookupTable table = LookupTable.getInstance();
+            boolean shouldReplicate = request.getEpoch() >= 0;
+            DummyFile file = new DummyFile(request.getAttachment());
+            FileBucket fileBucket = table.write(
+                    file,
+                    shouldReplicate);
+
+            Response response = new Response(request);
+            if (fileBucket.isLocked()) {
+                response.withStatus(Response.STATUS_FAILED)
+                        .withMessage("Bucket is locked.");
+            }
+            else {
+                response.withStatus(Response.STATUS_SUCCESS)
+                        .withMessage(fileBucket.toString());
+            }
+
+            if (shouldReplicate && request.getEpoch() < table.getEpoch()) {
+                List<Request> delta = table.getDeltaSupplier().get();
+                delta.sort(Comparator.comparingLong(Request::getTimestamp));
+                if (delta.size() < 1 || request.getEpoch() < delta.get(0).getTimestamp()) {
+                    response.setAttachment(table);
+                }
+                else {
+                    List<Request> attachment = delta.stream()
+                            .filter(d -> d.getTimestamp() > request.getEpoch())
+                            .collect(Collectors.toList());
+                    if (attachment.size() > 0)
+                        response.setAttachment(attachment);
+                }
+            }
+
+            return response;
+        }
+
+        @Override
+        public String getParameterizedString() {
+            return JumpCommand.WRITE.name() + " %s %s";
+        }
+
+        @Override
+        public String getHelpString() {
+            return String.format(getParameterizedString(), "<filename>", "[size]");
+        }
+
+    },
+
+    LOOKUP {
+        @Override
+        public Request convertToRequest(String[] args) throws InvalidRequestException {
+            if (args.length != 2) {
+                throw new InvalidRequestException("Wrong arguments. Try: " + getHelpString());
+            }
+
+            return new Request().withHeader(JumpCommand.LOOKUP.name())
+                    .withAttachment(args[1]);
+        }
+
+        @Override
+        public Response execute(Request request) {
+            List<PhysicalNode> pnodes = LookupTable.getInstance().lookup(request.getAttachment());
+            return new Response(request).withStatus(Response.STATUS_SUCCESS).withAttachment(pnodes);
+        }
+
+        @Override
+        public String getParameterizedString() {
+            return JumpCommand.LOOKUP.name() + " %s";
+        }
+
+        @Override
+        public String getHelpString() {
+            return String.format(getParameterizedString(), "<filename>");
+        }
+
+    },
+
+    ADDNODE{
+        @Override
+        public Request convertToRequest(String[] args) throws InvalidRequestException {
+            if (args.length != 2) {
+                throw new InvalidRequestException("Wrong arguments. Try: " + getHelpString());
+            }
+
+            if (!args[1].contains(":")) {
+                throw new InvalidRequestException("Invalid ip format. Try: " + getHelpString());
+            }
+
+            return new Request().withHeader(JumpCommand.ADDNODE.name())
+                    .withAttachment(args[1])
+                    .withReceiver(args[1]);
+        }
+
+        @Override
+        public Response execute(Request request) {
+            String result;
+
+            String[] address = request.getAttachment().split(":");
+            PhysicalNode pnode = new PhysicalNode(address[0], Integer.valueOf(address[1]));
+            LookupTable.getInstance().addNode(pnode);
+
+            result = "Node added";
+            return new Response(request).withStatus(Response.STATUS_SUCCESS).withMessage(result);
+        }
+
+        @Override
+        public String getParameterizedString() {
+            return JumpCommand.ADDNODE.name() + " %s:%s";
+        }
+
+        @Override
+        public String getHelpString() {
+            return String.format(getParameterizedString(), "<ip>", "<port>");
+        }
+    },
+
+    REMOVENODE{
+        @Override
+        public Request convertToRequest(String[] args) throws InvalidRequestException {
+            if (args.length != 2)  {
+                throw new InvalidRequestException("Wrong arguments. Try: " + getHelpString());
+            }
+
+            return new Request().withHeader(JumpCommand.REMOVENODE.name())
+                    .withAttachment(args[1])
+                    .withFollowup(args[1])
+                    .withReceiver(args[1]);
+        }
+
+        @Override
+        public Response execute(Request request) {
+            String result;
+
+            String[] address = request.getAttachment().split(":");
+            PhysicalNode pnode = new PhysicalNode();
+            pnode.setAddress(address[0]);
+            pnode.setPort(Integer.valueOf(address[1]));
+            LookupTable.getInstance().removeNode(pnode);
+
+            result = "Node removed";
+            return new Response(request).withStatus(Response.STATUS_SUCCESS).withMessage(result);
+        }
+
+        @Override
+        public String getParameterizedString() {
+            return JumpCommand.REMOVENODE.name() + " %s:%s";
+        }
+
+        @Override
+        public String getHelpString() {
+            return String.format(getParameterizedString(), "<ip>", "<port>");
+        }
+    },
+
+    MOVEBUCKET{
+        @Override
+        public Request convertToRequest(String[] args) throws InvalidRequestException {
+            if (args.length != 4)  {
+                throw new InvalidRequestException("Wrong arguments. Try: " + getHelpString());
+            }
+
+            String[] address1 = args[1].split(":");
+            String[] address2 = args[2].split(":");
+
+            if (address1.length != 2 || address2.length != 2) {
+                throw new InvalidRequestException("Invalid ip format. Try: " + getHelpString());
+            }
+
+            String attachment = args[1] + " " + args[2] + " " + args[3];
+            return new Request().withHeader(JumpCommand.MOVEBUCKET.name())
+                    .withAttachment(attachment);
+        }
+
+        @Override
+        public Response execute(Request request) {
+            String result;
+
+            String[] args = request.getAttachment().split(" ");
+
+            String[] address1 = args[0].split(":");
+            String[] address2 = args[1].split(":");
+            String[] buckets = args[2].split(",");
+
+            PhysicalNode from = new PhysicalNode(address1[0], Integer.valueOf(address1[1]));
+            PhysicalNode to = new PhysicalNode(address2[0], Integer.valueOf(address2[1]));
+            LookupTable.getInstance().moveBuckets(Arrays.stream(buckets).mapToInt(Integer::parseInt).toArray(), from , to);
+
+            result = "Buckets moved";
+            return new Response(request).withStatus(Response.STATUS_SUCCESS).withMessage(result);
+        }
+
+        @Override
+        public String getParameterizedString() {
+            return JumpCommand.MOVEBUCKET.name() + " %s:%s %s:%s %s";
+        }
+
+        @Override
+        public String getHelpString() {
+            return String.format(getParameterizedString(), "<from ip>", "<port>", "<to ip>", "<port>", "<bucket>");
+        }
+    },
+
+    LISTPHYSICALNODES {
+        @Override
+        public Request convertToRequest(String[] args) {
+            Request request = new Request().withHeader(JumpCommand.LISTPHYSICALNODES.name());
+            if (args.length == 2)
+                request.setReceiver(args[1]);
+
+            return request;
+        }
+
+        @Override
+        public Response execute(Request request) {
+            String result = LookupTable.getInstance().listPhysicalNodes();
+            SimpleLog.i(result);
+
+            return new Response(request).withStatus(Response.STATUS_SUCCESS).withMessage(result);
+        }
+
+
+        @Override
+        public String getParameterizedString() {
+            return JumpCommand.LISTPHYSICALNODES.name() + " %s";
+        }
+
+        @Override
+        public String getHelpString() {
+            return String.format(getParameterizedString(), "[ip:port]");
+        }
+    },
+
+    PRINTLOOKUPTABLE {
+        @Override
+        public Request convertToRequest(String[] args) {
+            Request request = new Request().withHeader(JumpCommand.PRINTLOOKUPTABLE.name());
+            if (args.length == 2)
+                request.setReceiver(args[1]);
+
+            return request;
+        }
+
+        @Override
+        public Response execute(Request request) {
+            String result = LookupTable.getInstance().toString();
+            SimpleLog.i(result);
+
+            return new Response(request).withStatus(Response.STATUS_SUCCESS).withMessage(result);
+        }
+
+        @Override
+        public String getParameterizedString() {
+            return JumpCommand.PRINTLOOKUPTABLE.name() + " %s";
+        }
+
+        @Override
+        public String getHelpString() {
+            return String.format(getParameterizedString(), "[ip:port]");
+        }
+    },
+
+    DELTA {
+        @Override
+        public Request convertToRequest(String[] args) {
+            return new Request().withHeader(JumpCommand.DELTA.name());
+        }
+
+        @Override
+        public Response execute(Request request) {
+            Object attachment = request.getLargeAttachment();
+
+            // SimpleLog.v("Attachment: ====================================\n" + attachment);
+            Response response = new Response(request).withStatus(Response.STATUS_SUCCESS);
+            try {
+                if (attachment instanceof List) {
+                    @SuppressWarnings("unchecked")
+                    List<Request> delta = (List<Request>) attachment;
+                    long epoch = LookupTable.getInstance().getEpoch();
+                    for (Request r : delta) {
+                        // SimpleLog.i("Apply delta: " + r);
+                        if (r.getTimestamp() >= epoch) {
+                            JumpCommand cmd = JumpCommand.valueOf(r.getHeader());
+                            response = cmd.execute(r);
+                            LookupTable.getInstance().commitEpoch(r.getTimestamp());
+                            epoch = r.getTimestamp();
+                        }
+                    }
+                } else if (attachment instanceof Request) {
+                    Request r = (Request) attachment;
+                    // SimpleLog.i("Apply delta: " + r);
+                    if (r.getTimestamp() >= LookupTable.getInstance().getEpoch()) {
+                        JumpCommand cmd = JumpCommand.valueOf(r.getHeader());
+                        response = cmd.execute(r);
+                        LookupTable.getInstance().commitEpoch(r.getTimestamp());
+                    }
+                } else {
+                    String result = LookupTable.getInstance().updateTable(request.getLargeAttachment());
+                    response.setMessage(result);
+                }
+            } catch (Exception e) {
+                response.withStatus(Response.STATUS_FAILED).withMessage(e.getMessage());
+            }
+
+            return response;
+        }
+
+        @Override
+        public String getParameterizedString() {
+            return JumpCommand.DELTA.name();
+        }
+
+        @Override
+        public String getHelpString() {
+            return getParameterizedString();
+        }
+    }
+}
@@ -10,6 +10,7 @@ import filemanagement.FileBucket;
 import filemanagement.LocalFileManager;
 import org.apache.commons.lang3.StringUtils;
 import ring.LookupTable;
+import ring.TokenSpace;
 import ring.VirtualNode;
 import util.Config;
 import util.MathX;
@@ -116,10 +117,17 @@ public enum RingCommand implements Command {
 
         @Override
         public Response execute(Request request) {
+            LookupTable table = LookupTable.getInstance();
             String[] file = request.getAttachment().split(" ");
-            int hash = MathX.positiveHash(file[0].hashCode()) % Config.getInstance().getNumberOfHashSlots();
             long filesize = file.length == 2 ? Long.valueOf(file[1]) : -1;
-            FileBucket fileBucket = LocalFileManager.getInstance().read(hash, filesize);
+            FileBucket fileBucket;
+            if (TokenSpace.isLong()) {
+                fileBucket = LocalFileManager.getInstance().readToken(MathX.keyToken(file[0]), filesize);
+            }
+            else {
+                int hash = MathX.keyHash(file[0]) % Config.getInstance().getNumberOfHashSlots();
+                fileBucket = LocalFileManager.getInstance().read(hash, filesize);
+            }
 
             Response response = new Response(request);
 
@@ -132,12 +140,12 @@ public enum RingCommand implements Command {
                         .withMessage(fileBucket.toString());
             }
 
-            if (request.getEpoch() < LookupTable.getInstance().getEpoch()) {
+            if (request.getEpoch() < table.getEpoch()) {
                 @SuppressWarnings("unchecked")
-                List<Request> delta = (List<Request>)LookupTable.getInstance().getDeltaSupplier().get();
+                List<Request> delta = (List<Request>)table.getDeltaSupplier().get();
                 delta.sort(Comparator.comparingLong(Request::getTimestamp));
                 if (delta.size() < 1 || request.getEpoch() < delta.get(0).getTimestamp()) {
-                    response.setAttachment(LookupTable.getInstance());
+                    response.setAttachment(table);
                 }
                 else {
                     List attachment = delta.stream()
@@ -181,9 +189,10 @@ public enum RingCommand implements Command {
 
         @Override
         public Response execute(Request request) {
+            LookupTable table = LookupTable.getInstance();
             boolean shouldReplicate = request.getEpoch() >= 0;
             DummyFile file = new DummyFile(request.getAttachment());
-            FileBucket fileBucket = LookupTable.getInstance().write(
+            FileBucket fileBucket = table.write(
                     file,
                     shouldReplicate);
 
@@ -197,12 +206,12 @@ public enum RingCommand implements Command {
                         .withMessage(fileBucket.toString());
             }
 
-            if (shouldReplicate && request.getEpoch() < LookupTable.getInstance().getEpoch()) {
+            if (shouldReplicate && request.getEpoch() < table.getEpoch()) {
                 @SuppressWarnings("unchecked")
-                List<Request> delta = (List<Request>)LookupTable.getInstance().getDeltaSupplier().get();
+                List<Request> delta = (List<Request>)table.getDeltaSupplier().get();
                 delta.sort(Comparator.comparingLong(Request::getTimestamp));
                 if (delta.size() < 1 || request.getEpoch() < delta.get(0).getTimestamp()) {
-                    response.setAttachment(LookupTable.getInstance());
+                    response.setAttachment(table);
                 }
                 else {
                     List attachment = delta.stream()
@@ -264,7 +273,7 @@ public enum RingCommand implements Command {
             }
             else {
                 String[] hashVal = args[1].split(",");
-                LookupTable.getInstance().addNode(pnode, Arrays.stream(hashVal).mapToInt(Integer::parseInt).toArray());
+                LookupTable.getInstance().addNode(pnode, Arrays.stream(hashVal).mapToLong(Long::parseLong).toArray());
             }
 
             result = "Node added";
@@ -329,7 +338,7 @@ public enum RingCommand implements Command {
                 throw new InvalidRequestException("Wrong arguments. Try: " + getHelpString());
             }
 
-            int[] deltaHash = LookupTable.getInstance().randomIncreaseRange(new PhysicalNode(args[1]));
+            long[] deltaHash = LookupTable.getInstance().randomIncreaseRange(new PhysicalNode(args[1]));
             return new Request().withHeader(RingCommand.INCREASELOAD.name())
                     .withAttachments(args[1], StringUtils.join(deltaHash, ','));
         }
@@ -349,7 +358,7 @@ public enum RingCommand implements Command {
             }
             else {
                 String[] deltaHash = args[1].split(",");
-                LookupTable.getInstance().increaseLoad(pnode, Arrays.stream(deltaHash).mapToInt(Integer::parseInt).toArray());
+                LookupTable.getInstance().increaseLoad(pnode, Arrays.stream(deltaHash).mapToLong(Long::parseLong).toArray());
             }
 
             result = "Load increased";
@@ -377,7 +386,7 @@ public enum RingCommand implements Command {
                 throw new InvalidRequestException("Wrong arguments. Try: " + getHelpString());
             }
 
-            int[] deltaHash = LookupTable.getInstance().randomDecreaseRange(new PhysicalNode(args[1]));
+            long[] deltaHash = LookupTable.getInstance().randomDecreaseRange(new PhysicalNode(args[1]));
             return new Request().withHeader(RingCommand.DECREASELOAD.name())
                     .withAttachments(args[1], StringUtils.join(deltaHash, ','));
         }
@@ -397,7 +406,7 @@ public enum RingCommand implements Command {
             }
             else if (args.length == 2){
                 String[] deltaHash = args[1].split(",");
-                LookupTable.getInstance().decreaseLoad(pnode, Arrays.stream(deltaHash).mapToInt(Integer::parseInt).toArray());
+                LookupTable.getInstance().decreaseLoad(pnode, Arrays.stream(deltaHash).mapToLong(Long::parseLong).toArray());
             }
 
             result = "Load decreased";
@@ -445,11 +454,11 @@ public enum RingCommand implements Command {
 
             String[] address1 = args[0].split(":");
             String[] address2 = args[1].split(":");
-            int hash = Integer.parseInt(args[2]);
+            long token = Long.parseLong(args[2]);
 
             PhysicalNode from = new PhysicalNode(address1[0], Integer.parseInt(address1[1]));
             PhysicalNode to = new PhysicalNode(address2[0], Integer.parseInt(address2[1]));
-            VirtualNode vnode = new VirtualNode(hash, from.getId());
+            VirtualNode vnode = new VirtualNode(token, from.getId());
             LookupTable.getInstance().moveVNode(vnode, from , to);
 
             result = "vnode moved";
@@ -543,12 +552,15 @@ public enum RingCommand implements Command {
                 if (attachment instanceof List) {
                     @SuppressWarnings("unchecked")
                     List<Request> delta = (List<Request>) attachment;
+                    // checked against the epoch the request started from, advanced as deltas are applied
+                    long epoch = LookupTable.getInstance().getEpoch();
                     for (Request r : delta) {
                         // SimpleLog.i("Apply delta: " + r);
-                        if (r.getTimestamp() >= LookupTable.getInstance().getEpoch()) {
+                        if (r.getTimestamp() >= epoch) {
                             RingCommand cmd = RingCommand.valueOf(r.getHeader());
                             response = cmd.execute(r);
-                            LookupTable.getInstance().setEpoch(r.getTimestamp());
+                            LookupTable.getInstance().commitEpoch(r.getTimestamp());
+                            epoch = r.getTimestamp();
                         }
                     }
                 } else if (attachment instanceof Request) {
@@ -557,7 +569,7 @@ public enum RingCommand implements Command {
                     if (r.getTimestamp() >= LookupTable.getInstance().getEpoch()) {
                         RingCommand cmd = RingCommand.valueOf(r.getHeader());
                         response = cmd.execute(r);
-                        LookupTable.getInstance().setEpoch(r.getTimestamp());
+                        LookupTable.getInstance().commitEpoch(r.getTimestamp());
                     }
                 } else {
                     String result = LookupTable.getInstance().updateTable(request.getLargeAttachment());
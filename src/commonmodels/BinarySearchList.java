@@ -1,8 +1,7 @@
 package commonmodels;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.*;
 
 public class BinarySearchList extends ArrayList<Indexable> implements Serializable {
 
@@ -35,6 +34,54 @@ public class BinarySearchList extends ArrayList<Indexable> implements Serializab
         }
     }
 
+    /**
+     * @param nodes nodes to be added, in any order
+     *
+     *          Sorts the new nodes and merges them into the list in a single pass, rather than
+     *          shifting the list once for each node. A new node is placed before a node with
+     *          the same hash, as add(findIndex(node).getIndex(), node) does.
+     *
+     *          Index of every node is refreshed.
+     *
+     *          Time Complexity O(n + m log m)
+     */
+    public void addNodes(Collection<? extends Indexable> nodes) {
+        List<Indexable> sorted = new ArrayList<>(nodes);
+        Collections.sort(sorted);
+
+        Indexable[] merged = new Indexable[size() + sorted.size()];
+        int i = 0, j = 0;
+        for (int k = 0; k < merged.length; k++) {
+            if (j < sorted.size() && (i >= size() || sorted.get(j).compareTo(super.get(i)) <= 0))
+                merged[k] = sorted.get(j++);
+            else
+                merged[k] = super.get(i++);
+
+            merged[k].setIndex(k);
+        }
+
+        clear();
+        addAll(Arrays.asList(merged));
+    }
+
+    /**
+     * @param nodes nodes to be removed, matched by hash
+     *
+     *          Removes the nodes in a single pass, rather than shifting the list once for each node.
+     *
+     *          Index of every remaining node is refreshed.
+     *
+     *          Time Complexity O(n + m)
+     */
+    public void removeNodes(Collection<? extends Indexable> nodes) {
+        Set<Indexable> removed = new HashSet<>(nodes);
+        removeIf(removed::contains);
+
+        for (int i = 0; i < size(); i++) {
+            super.get(i).setIndex(i);
+        }
+    }
+
     /**
      * @param node dummy node with hash
      * @return the index where the hash is hosted.
@@ -4,51 +4,67 @@ import ceph.CephDecentLoadChangeHandler;
 import ceph.CephLoadChangeHandler;
 import elastic.ElasticDecentLoadChangeHandler;
 import elastic.ElasticLoadChangeHandler;
+import jump.JumpDecentLoadChangeHandler;
+import jump.JumpLoadChangeHandler;
+import rendezvous.RendezvousDecentLoadChangeHandler;
+import rendezvous.RendezvousLoadChangeHandler;
 import ring.*;
 import util.Config;
 
 public class LoadChangeHandlerFactory {
 
-    public LoadChangeHandler getHandler(String mode, String scheme, String algo, Object table) {
+    public LoadChangeHandler getHandler(String mode, String scheme, String algo) {
         if (mode.equals(Config.MODE_CENTRIALIZED)) {
-            return getGlobalLoadChangeHandler(scheme, algo, table);
+            return getGlobalLoadChangeHandler(scheme, algo);
         }
         else {
-            return getDecentLoadChangeHandler(scheme, algo, table);
+            return getDecentLoadChangeHandler(scheme, algo);
         }
     }
 
-    private LoadChangeHandler getGlobalLoadChangeHandler(String scheme, String algo, Object table) {
+    private LoadChangeHandler getGlobalLoadChangeHandler(String scheme, String algo) {
         if (scheme.equals(Config.SCHEME_ELASTIC)) {
-            return new ElasticLoadChangeHandler((elastic.LookupTable) table);
+            return new ElasticLoadChangeHandler();
         }
         else if (scheme.equals(Config.SCHEME_CEPH)) {
-            return new CephLoadChangeHandler((ceph.ClusterMap) table);
+            return new CephLoadChangeHandler();
+        }
+        else if (scheme.equals(Config.SCHEME_RENDEZVOUS)) {
+            return new RendezvousLoadChangeHandler();
+        }
+        else if (scheme.equals(Config.SCHEME_JUMP)) {
+            return new JumpLoadChangeHandler();
         }
         else {
             if (algo.equals(Config.RING_LB_ALGO_VNODE))
-                return new RingVNodeLoadChangeHandler((ring.LookupTable) table);
+                return new RingVNodeLoadChangeHandler();
             else if (algo.equals(Config.RING_LB_ALGO_FORWARD))
-                return new RingForwardLoadChangeHandler((ring.LookupTable) table);
+                return new RingForwardLoadChangeHandler();
             else
-                return new RingLoadChangeHandler((ring.LookupTable) table);
+                return new RingLoadChangeHandler();
         }
     }
 
-    private LoadChangeHandler getDecentLoadChangeHandler(String scheme, String algo, Object table) {
+    private LoadChangeHandler getDecentLoadChangeHandler(String scheme, String algo) {
         if (scheme.equals(Config.SCHEME_ELASTIC)) {
-            return new ElasticDecentLoadChangeHandler((elastic.LookupTable) table);
+            return new ElasticDecentLoadChangeHandler();
         }
         else if (scheme.equals(Config.SCHEME_CEPH)) {
-            return new CephDecentLoadChangeHandler((ceph.ClusterMap) table);
+            return new CephDecentLoadChangeHandler();
+        }
+        else if (scheme.equals(Config.SCHEME_RENDEZVOUS)) {
+            return new RendezvousDecentLoadChangeHandler();
+        }
+        else if (scheme.equals(Config.SCHEME_JUMP)) {
+            return new JumpDecentLoadChangeHandler();
         }
         else {
             if (algo.equals(Config.RING_LB_ALGO_VNODE))
-                return new RingDecentVNodeLoadChangeHandler((ring.LookupTable) table);
+                return new RingDecentVNodeLoadChangeHandler();
             else if (algo.equals(Config.RING_LB_ALGO_FORWARD))
-                return new RingDecentForwardLoadChangeHandler((ring.LookupTable) table);
+                return new RingDecentForwardLoadChangeHandler();
             else
-                return new RingDecentLoadChangeHandler((ring.LookupTable) table);
+                return new RingDecentLoadChangeHandler();
         }
     }
 }
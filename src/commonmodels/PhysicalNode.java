@@ -18,7 +18,7 @@ public class PhysicalNode extends Transportable implements Clusterable, Serializ
 
     private List<Indexable> virtualNodes;
 
-    private float weight; // for ceph only
+    private float weight; // for ceph and rendezvous only
 
     public PhysicalNode() {
         virtualNodes = new ArrayList<>();
@@ -0,0 +1,52 @@
+package commonmodels;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Replicas of every slot of a table at one epoch.
+ * Keys are hashed to slots (hash slots, buckets or placement groups), all keys of
+ * a slot share the same replicas, so they are computed once per slot and epoch,
+ * and lookups come down to one array access.
+ *
+ * Slots are filled on first use. Two threads may both compute a missing slot,
+ * they come to the same replicas, whichever is stored last is kept.
+ */
+public final class PlacementCache {
+
+    private final long epoch;
+
+    private final Object[] placements;
+
+    private final Placement placement;
+
+    public PlacementCache(long epoch, int size, Placement placement) {
+        this.epoch = epoch;
+        this.placements = new Object[size];
+        this.placement = placement;
+    }
+
+    public boolean matches(long epoch, int size) {
+        return this.epoch == epoch && placements.length == size;
+    }
+
+    /**
+     * @param slot slot the key is hashed to
+     * @return replicas of the slot, shared between callers, not modifiable
+     */
+    @SuppressWarnings("unchecked")
+    public List<PhysicalNode> get(int slot) {
+        List<PhysicalNode> replicas = (List<PhysicalNode>) placements[slot];
+        if (replicas == null) {
+            // the wrapper only has final fields, so it is safely published without a lock
+            replicas = Collections.unmodifiableList(placement.place(slot));
+            placements[slot] = replicas;
+        }
+
+        return replicas;
+    }
+
+    public interface Placement {
+        List<PhysicalNode> place(int slot);
+    }
+}
@@ -0,0 +1,156 @@
+package commonmodels;
+
+import filemanagement.FileTransferManager;
+import util.SimpleLog;
+
+import java.util.*;
+
+/**
+ * Data to move after a change of a table that places slots by hashing alone, as
+ * rendezvous and jump hashing do. Such tables keep no record of the slots each node
+ * holds, so the replicas of every slot are taken before the change and compared with
+ * the ones after it. Each node that gains a slot gets its data from one that loses it,
+ * or has it copied from one that keeps it.
+ *
+ * Slots moving between the same two physical nodes are sent in one request.
+ */
+public final class PlacementChange {
+
+    private final int numberOfSlots;
+
+    // every node before the change, nodes leaving still serve their data
+    private final Map<String, PhysicalNode> physicalNodeMap;
+
+    private final String[][] before;
+
+    private PlacementChange(int numberOfSlots, Map<String, PhysicalNode> physicalNodeMap, String[][] before) {
+        this.numberOfSlots = numberOfSlots;
+        this.physicalNodeMap = physicalNodeMap;
+        this.before = before;
+    }
+
+    /**
+     * @param placement replicas of a slot, read before the table is changed
+     */
+    public static PlacementChange before(int numberOfSlots, Map<String, PhysicalNode> physicalNodeMap, PlacementCache.Placement placement) {
+        return new PlacementChange(numberOfSlots, new HashMap<>(physicalNodeMap), place(numberOfSlots, placement));
+    }
+
+    /**
+     * @param placement replicas of a slot, read after the table is changed
+     * @param transfer true to move the data away from the nodes losing a slot,
+     *                 false to copy it from a node keeping the slot, when nodes leave
+     * @param token transfer token shared by all the requests of the change
+     * @return number of slots gained by a node
+     */
+    public int request(Map<String, PhysicalNode> physicalNodeMap, PlacementCache.Placement placement, boolean transfer, String token) {
+        String[][] after = place(numberOfSlots, placement);
+
+        Map<String, Movement> movements = new LinkedHashMap<>();
+        int count = 0;
+        for (int slot = 0; slot < numberOfSlots; slot++) {
+            List<String> gaining = subtract(after[slot], before[slot]);
+            if (gaining.isEmpty()) continue;
+
+            List<String> losing = subtract(before[slot], after[slot]);
+            String keeper = firstKept(before[slot], after[slot]);
+            for (int i = 0; i < gaining.size(); i++) {
+                String from;
+                boolean move;
+                if (transfer && i < losing.size()) {
+                    from = losing.get(i);
+                    move = true;
+                }
+                else {
+                    // replicas added without any removed, or nodes leaving
+                    from = keeper != null ? keeper : (i < losing.size() ? losing.get(i) : null);
+                    move = false;
+                }
+                if (from == null) continue;
+
+                String to = gaining.get(i);
+                String key = (move ? "T " : "C ") + from + " " + to;
+                Movement movement = movements.get(key);
+                if (movement == null) {
+                    movement = new Movement(lookup(from, physicalNodeMap), lookup(to, physicalNodeMap), move);
+                    movements.put(key, movement);
+                }
+                movement.slots.add(slot);
+                count++;
+            }
+        }
+
+        FileTransferManager.getInstance().setTransferToken(token);
+        for (Movement movement : movements.values()) {
+            if (movement.transfer) {
+                SimpleLog.i("Request to transfer hash bucket " + movement.slots + " from " + movement.from.toString() + " to " + movement.to.toString());
+                FileTransferManager.getInstance().requestTransfer(movement.slots, movement.from, movement.to);
+            }
+            else {
+                SimpleLog.i("Copy hash bucket " + movement.slots + " from " + movement.from.toString() + " to " + movement.to.toString());
+                FileTransferManager.getInstance().requestCopy(movement.slots, movement.from, movement.to);
+            }
+        }
+
+        return count;
+    }
+
+    private PhysicalNode lookup(String id, Map<String, PhysicalNode> physicalNodeMap) {
+        PhysicalNode node = physicalNodeMap.get(id);
+        return node != null ? node : this.physicalNodeMap.get(id);
+    }
+
+    private static String[][] place(int numberOfSlots, PlacementCache.Placement placement) {
+        String[][] replicas = new String[numberOfSlots][];
+        for (int slot = 0; slot < numberOfSlots; slot++) {
+            List<PhysicalNode> pnodes = placement.place(slot);
+            replicas[slot] = new String[pnodes.size()];
+            for (int i = 0; i < pnodes.size(); i++)
+                replicas[slot][i] = pnodes.get(i).getId();
+        }
+
+        return replicas;
+    }
+
+    // ids in a and not in b, in the order of a
+    private static List<String> subtract(String[] a, String[] b) {
+        List<String> result = new ArrayList<>();
+        for (String id : a) {
+            if (!contains(b, id))
+                result.add(id);
+        }
+
+        return result;
+    }
+
+    private static String firstKept(String[] before, String[] after) {
+        for (String id : before) {
+            if (contains(after, id))
+                return id;
+        }
+
+        return null;
+    }
+
+    private static boolean contains(String[] ids, String id) {
+        for (String s : ids) {
+            if (s.equals(id)) return true;
+        }
+
+        return false;
+    }
+
+    private static class Movement {
+        private final PhysicalNode from;
+        private final PhysicalNode to;
+        private final boolean transfer;
+        private final List<Integer> slots;
+
+        Movement(PhysicalNode from, PhysicalNode to, boolean transfer) {
+            this.from = from;
+            this.to = to;
+            this.transfer = transfer;
+            this.slots = new ArrayList<>();
+        }
+    }
+}
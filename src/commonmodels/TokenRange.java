@@ -0,0 +1,90 @@
+package commonmodels;
+
+import java.io.Serializable;
+
+/**
+ * Range (start, end] of positions on the ring, wrapping around past the largest position.
+ * Positions are hash slots or 64-bit tokens, the range holds no more than its two ends,
+ * so ranges of the 64-bit token space are moved around without enumerating them.
+ *
+ * A range whose two ends are the same is empty.
+ */
+public class TokenRange implements Serializable {
+
+    private static final String SEPARATOR = ":";
+
+    private final static long serialVersionUID = 4217532296043162391L;
+
+    private final long start;
+
+    private final long end;
+
+    public TokenRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public boolean isEmpty() {
+        return start == end;
+    }
+
+    /**
+     * @return true if the range wraps around past the largest position
+     */
+    public boolean isWrapped() {
+        return start > end;
+    }
+
+    public boolean contains(long token) {
+        if (start < end)
+            return token > start && token <= end;
+        else if (start > end)
+            return token > start || token <= end;
+        else
+            return false;
+    }
+
+    /**
+     * @param range start:end, as returned by toString()
+     */
+    public static TokenRange parse(String range) {
+        String[] ends = range.split(SEPARATOR);
+        return new TokenRange(Long.parseLong(ends[0]), Long.parseLong(ends[1]));
+    }
+
+    /**
+     * @return true if the string is a range rather than a list of buckets
+     */
+    public static boolean isRange(String s) {
+        return s != null && s.contains(SEPARATOR);
+    }
+
+    @Override
+    public String toString() {
+        return start + SEPARATOR + end;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(start) * 31 + Long.hashCode(end);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof TokenRange) {
+            TokenRange other = (TokenRange) obj;
+            return start == other.start && end == other.end;
+        }
+        else {
+            return false;
+        }
+    }
+}
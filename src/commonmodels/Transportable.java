@@ -23,9 +23,11 @@ import statmanagement.StatInfo;
         @JsonSubTypes.Type(value = Cluster.class, name = "Cluster"),
         @JsonSubTypes.Type(value = elastic.LookupTable.class, name = "elastic.LookupTable"),
         @JsonSubTypes.Type(value = FileBucket.class, name = "FileBucket"),
+        @JsonSubTypes.Type(value = jump.LookupTable.class, name = "jump.LookupTable"),
         @JsonSubTypes.Type(value = LoadInfo.class, name = "LoadInfo"),
         @JsonSubTypes.Type(value = PhysicalNode.class, name = "PhysicalNode"),
         @JsonSubTypes.Type(value = PlacementGroup.class, name = "PlacementGroup"),
+        @JsonSubTypes.Type(value = rendezvous.LookupTable.class, name = "rendezvous.LookupTable"),
         @JsonSubTypes.Type(value = Request.class, name = "Request"),
         @JsonSubTypes.Type(value = Response.class, name = "Response"),
         @JsonSubTypes.Type(value = ring.LookupTable.class, name = "ring.LookupTable"),
@@ -2,6 +2,7 @@ package commonmodels.transport;
 
 import java.io.Serializable;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -22,11 +23,17 @@ public class Request extends Transportable implements Serializable
     private long epoch;
     private String token;
     private long timestamp;
+    // ms the sender waits for the response, 0 for none. The receiver counts it from when the
+    // request comes in, so the clocks of the two hosts do not have to agree
+    private long timeout;
 
     private Object largeAttachment;
 
     private transient float processTime = .0f;
 
+    // System.nanoTime() when this host took the request in, 0 if not known, never sent
+    private transient long received;
+
     private final static long serialVersionUID = -2162237185763801887L;
 
     /**
@@ -39,6 +46,23 @@ public class Request extends Transportable implements Serializable
         timestamp = System.currentTimeMillis();
     }
 
+    /**
+     * Shallow copy, the large attachment is shared
+     */
+    public Request(Request request) {
+        super();
+        this.header = request.header;
+        this.sender = request.sender;
+        this.receiver = request.receiver;
+        this.followup = request.followup;
+        this.attachment = request.attachment;
+        this.epoch = request.epoch;
+        this.token = request.token;
+        this.timestamp = request.timestamp;
+        this.timeout = request.timeout;
+        this.largeAttachment = request.largeAttachment;
+    }
+
     public String getHeader() {
         return header;
     }
@@ -143,6 +167,19 @@ public class Request extends Transportable implements Serializable
         return this;
     }
 
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    public Request withTimeout(long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
     public Request withAttachments(Object... attachments) {
         StringBuilder result = new StringBuilder();
         for (Object str : attachments) {
@@ -166,6 +203,23 @@ public class Request extends Transportable implements Serializable
         return this;
     }
 
+    public long getReceived() {
+        return received;
+    }
+
+    public void setReceived(long received) {
+        this.received = received;
+    }
+
+    /**
+     * @return true if the timeout has passed since the request came in,
+     *          false if it has none or it is not known when it came in
+     */
+    public boolean isExpired() {
+        return timeout > 0 && received != 0 &&
+                System.nanoTime() - received > TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
     public float getProcessTime() {
         return processTime;
     }
@@ -180,6 +234,7 @@ public class Request extends Transportable implements Serializable
                         .append("        \n").append("header", header)
                         .append("        \n").append("token", token)
                         .append("        \n").append("timestamp", timestamp)
+                        .append("        \n").append("timeout", timeout)
                         .append("        \n").append("sender", sender)
                         .append("        \n").append("receiver", receiver)
                         .append("        \n").append("followup", followup)
@@ -21,6 +21,9 @@ public class Response extends Transportable implements Serializable
     public final static short STATUS_FAILED = 0;
     public final static short STATUS_INVALID_REQUEST = 2;
 
+    public final static String MESSAGE_OVERLOADED = "Server overloaded";
+    public final static String MESSAGE_EXPIRED = "Request expired before it ran";
+
     /**
      * No args constructor for use in serialization
      *
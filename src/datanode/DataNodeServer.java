@@ -9,6 +9,8 @@ import datanode.strategies.CentralizedStrategy;
 import datanode.strategies.DistributedStrategy;
 import datanode.strategies.MembershipStrategy;
 import elastic.ElasticDataNode;
+import jump.JumpDataNode;
+import rendezvous.RendezvousDataNode;
 import ring.RingDataNode;
 import util.Config;
 
@@ -38,6 +40,12 @@ public class DataNodeServer {
             case Config.SCHEME_CEPH:
                 dataNode = new CephDataNode(ip, port);
                 break;
+            case Config.SCHEME_RENDEZVOUS:
+                dataNode = new RendezvousDataNode(ip, port);
+                break;
+            case Config.SCHEME_JUMP:
+                dataNode = new JumpDataNode(ip, port);
+                break;
             default:
                 throw new Exception("Invalid DHT type");
         }
@@ -9,15 +9,20 @@ import commonmodels.transport.InvalidRequestException;
 import commonmodels.transport.Request;
 import commonmodels.transport.Response;
 import socket.SocketClient;
+import util.Config;
 import util.SimpleLog;
 
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class MembershipStrategy implements LoadInfoReportHandler, MembershipCallBack {
 
+    // extra wait on top of the request deadline, so the expired callback gets to release first
+    private static final long BOOTSTRAP_GRACE_MS = 1000;
+
     protected DataNode dataNode;
 
     protected SocketClient socketClient;
@@ -63,13 +68,19 @@ public abstract class MembershipStrategy implements LoadInfoReportHandler, Membe
             }
         };
 
+        long timeout = Config.getInstance().getRequestTimeout();
         for (String seed : dataNode.getSeeds()) {
             if (!seed.equals(dataNode.getAddress()) && !seed.equals(dataNode.getLocalAddress())) {
                 Request request = new Request().withHeader(CommonCommand.FETCH.name())
                                                 .withFollowup(dataNode.getAddress());
+                // a late answer from the previous seed must not count for this one
+                semaphore.drainPermits();
                 socketClient.send(seed, request, callBack);
                 try {
-                    semaphore.acquire();
+                    if (timeout <= 0)
+                        semaphore.acquire();
+                    else if (!semaphore.tryAcquire(timeout + BOOTSTRAP_GRACE_MS, TimeUnit.MILLISECONDS))
+                        SimpleLog.i("Seed " + seed + " did not answer in time");
                 } catch (InterruptedException e) {
                     e.printStackTrace();
                 }
@@ -12,16 +12,13 @@ import java.util.*;
 
 public class ElasticLoadChangeHandler implements LoadChangeHandler {
 
-    private final LookupTable table;
-
     private float readOverhead;
 
     private float writeOverhead;
 
     private long interval;
 
-    public ElasticLoadChangeHandler(LookupTable table) {
-        this.table = table;
+    public ElasticLoadChangeHandler() {
         readOverhead = Config.getInstance().getReadOverhead();
         writeOverhead = Config.getInstance().getWriteOverhead();
         interval = Config.getInstance().getLoadInfoReportInterval() / 1000;
@@ -49,7 +46,7 @@ public class ElasticLoadChangeHandler implements LoadChangeHandler {
             if (solutions.size() < 1) {
                 requests.add(new Request()
                         .withHeader(ElasticCommand.EXPAND.name())
-                        .withAttachment(String.valueOf(table.getTable().length * 2)));
+                        .withAttachment(String.valueOf(LookupTable.getInstance().getTable().length * 2)));
             }
             else {
                 for (Solution solution : solutions) {
@@ -64,9 +64,6 @@ public class ElasticMembershipAlgorithm {
 
         table.setEpoch(System.currentTimeMillis());
         SimpleLog.i("Table initialized...");
-
-        if (table.getMembershipCallBack() != null)
-            table.getMembershipCallBack().onInitialized();
     }
 
     public void addPhysicalNode(LookupTable table, PhysicalNode node) {
@@ -12,9 +12,16 @@ import java.util.List;
 
 public class ElasticReadWriteAlgorithm {
     public List<PhysicalNode> lookup(LookupTable lookupTable, String filename) {
+        int hash = MathX.keyHash(filename) % lookupTable.getTable().length;
+        return lookupTable.getPlacementCache().get(hash);
+    }
+
+    /**
+     * @return replicas of the given bucket, uncached
+     */
+    public List<PhysicalNode> place(LookupTable lookupTable, int hash) {
         List<PhysicalNode> pnodes = new ArrayList<>();
 
-        int hash = MathX.positiveHash(filename.hashCode()) % lookupTable.getTable().length;
         BucketNode node = lookupTable.getTable()[hash];
 
         for (String pnodeId : node.getPhysicalNodes()) {
@@ -38,6 +45,6 @@ public class ElasticReadWriteAlgorithm {
 
     public FileBucket writeOnly(LookupTable table, DummyFile file) {
         return LocalFileManager.getInstance().write(file,
-                (String str) -> MathX.positiveHash(str.hashCode()) % table.getTable().length);
+                (String str) -> MathX.keyHash(str) % table.getTable().length);
     }
 }
@@ -7,8 +7,14 @@ import util.Config;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+/**
+ * The published table is never modified. Changes are applied to a private copy,
+ * which then replaces the instance, so a reader holding the instance it got from
+ * getInstance() sees one consistent table for the whole request.
+ */
 public class LookupTable extends Transportable implements Serializable {
 
     private long epoch;
@@ -29,6 +35,11 @@ public class LookupTable extends Transportable implements Serializable {
 
     private transient Supplier deltaSupplier;
 
+    private transient volatile PlacementCache placementCache;
+
+    // copy a change is being applied to, not published yet
+    private transient boolean draft;
+
     private static volatile LookupTable instance = null;
 
     private LookupTable() {
@@ -57,7 +68,11 @@ public class LookupTable extends Transportable implements Serializable {
     }
 
     public void initialize() {
-        membershipAlgorithm.initialize(this);
+        apply(table -> membershipAlgorithm.initialize(table), true, false);
+
+        // after publishing, the callback reads the new table back
+        if (membershipCallBack != null)
+            membershipCallBack.onInitialized();
     }
 
     public void createTable(int size) {
@@ -94,6 +109,13 @@ public class LookupTable extends Transportable implements Serializable {
         this.epoch = epoch;
     }
 
+    /**
+     * Publish the current table under the given epoch
+     */
+    public void commitEpoch(long epoch) {
+        apply(table -> table.setEpoch(epoch), false, false);
+    }
+
     public BucketNode[] getTable() {
         return table;
     }
@@ -141,28 +163,38 @@ public class LookupTable extends Transportable implements Serializable {
         this.deltaSupplier = deltaSupplier;
     }
 
+    /**
+     * @return replicas of each bucket at the current epoch
+     */
+    PlacementCache getPlacementCache() {
+        PlacementCache cache = placementCache;
+        if (cache == null || !cache.matches(epoch, table.length)) {
+            cache = new PlacementCache(epoch, table.length, hash -> readWriteAlgorithm.place(this, hash));
+            placementCache = cache;
+        }
+
+        return cache;
+    }
+
     public void update() {
-        epoch = System.currentTimeMillis();
+        // strictly increasing, so two updates within the same millisecond are told apart
+        epoch = Math.max(System.currentTimeMillis(), epoch + 1);
     }
 
     public void addNode(PhysicalNode node) {
-        membershipAlgorithm.addPhysicalNode(this, node);
-        update(); // commit the change, gossip to other nodes
+        commit(table -> membershipAlgorithm.addPhysicalNode(table, node)); // gossip to other nodes
     }
 
     public void addNode(PhysicalNode node, int[] buckets) {
-        membershipAlgorithm.addPhysicalNode(this, node, buckets);
-        update(); // commit the change, gossip to other nodes
+        commit(table -> membershipAlgorithm.addPhysicalNode(table, node, buckets)); // gossip to other nodes
     }
 
     public void removeNode(PhysicalNode node) {
-        membershipAlgorithm.removePhysicalNode(this, node);
-        update(); // commit the change, gossip to other nodes
+        commit(table -> membershipAlgorithm.removePhysicalNode(table, node)); // gossip to other nodes
     }
 
     public void moveBucket(BucketNode node, PhysicalNode from , PhysicalNode to) {
-        loadBalanceAlgorithm.moveBucket(this, node, from, to);
-        update(); // commit the change, gossip to other nodes
+        commit(table -> loadBalanceAlgorithm.moveBucket(table, node, from, to)); // gossip to other nodes
     }
 
     public void moveBuckets(int[] buckets, PhysicalNode from , PhysicalNode to) {
@@ -173,8 +205,101 @@ public class LookupTable extends Transportable implements Serializable {
     }
 
     public void moveBuckets(List<BucketNode> nodes, PhysicalNode from , PhysicalNode to) {
-        loadBalanceAlgorithm.moveBuckets(this, nodes, from, to);
-        update(); // commit the change, gossip to other nodes
+        commit(table -> loadBalanceAlgorithm.moveBuckets(table, nodes, from, to)); // gossip to other nodes
+    }
+
+    /**
+     * Apply a change to a copy of the current table and publish the copy under a new epoch
+     */
+    private void commit(Consumer<LookupTable> change) {
+        apply(change, true, true);
+    }
+
+    /**
+     * @param deep copy the nodes as well, if the change modifies them
+     */
+    private void apply(Consumer<LookupTable> change, boolean deep, boolean newEpoch) {
+        if (draft) {
+            // nested in a change that is being applied
+            change.accept(this);
+            if (newEpoch) update();
+            return;
+        }
+
+        synchronized (LookupTable.class) {
+            LookupTable next = getInstance().copy(deep);
+            change.accept(next);
+            if (newEpoch) next.update();
+            next.draft = false;
+            instance = next;
+        }
+    }
+
+    private void install(LookupTable remoteTable) {
+        apply(table -> {
+            table.setTable(remoteTable.getTable());
+            table.setEpoch(remoteTable.getEpoch());
+            table.setPhysicalNodeMap(remoteTable.getPhysicalNodeMap());
+        }, false, false);
+    }
+
+    private LookupTable copy(boolean deep) {
+        LookupTable copy;
+        if (deep) {
+            copy = deepCopy();
+        }
+        else {
+            // published tables are never modified, unchanged parts are shared
+            copy = new LookupTable();
+            copy.epoch = epoch;
+            copy.table = table;
+            copy.physicalNodeMap = physicalNodeMap;
+        }
+
+        copy.loadBalanceAlgorithm = loadBalanceAlgorithm;
+        copy.membershipAlgorithm = membershipAlgorithm;
+        copy.readWriteAlgorithm = readWriteAlgorithm;
+        copy.membershipCallBack = membershipCallBack;
+        copy.readWriteCallBack = readWriteCallBack;
+        copy.deltaSupplier = deltaSupplier;
+        copy.draft = true;
+        return copy;
+    }
+
+    // field by field, serializing the table costs tens of milliseconds per change at 100 buckets per node
+    private LookupTable deepCopy() {
+        LookupTable copy = new LookupTable();
+        copy.epoch = epoch;
+
+        // a bucket is shared by the table and the physical nodes holding it, so is its copy
+        Map<Indexable, Indexable> copies = new IdentityHashMap<>();
+        if (table != null) {
+            copy.table = new BucketNode[table.length];
+            for (int i = 0; i < table.length; i++) {
+                if (table[i] == null) continue;
+                copy.table[i] = (BucketNode) copyOf(table[i]);
+                copies.put(table[i], copy.table[i]);
+            }
+        }
+
+        for (Map.Entry<String, PhysicalNode> entry : physicalNodeMap.entrySet()) {
+            PhysicalNode pnode = entry.getValue();
+            PhysicalNode c = new PhysicalNode(pnode.getAddress(), pnode.getPort());
+            c.setStatus(pnode.getStatus());
+            c.setWeight(pnode.getWeight());
+            for (Indexable bucket : pnode.getVirtualNodes())
+                c.getVirtualNodes().add(copies.computeIfAbsent(bucket, LookupTable::copyOf));
+            copy.physicalNodeMap.put(entry.getKey(), c);
+        }
+
+        return copy;
+    }
+
+    private static Indexable copyOf(Indexable node) {
+        BucketNode bucket = (BucketNode) node;
+        BucketNode copy = new BucketNode(bucket.getHash());
+        copy.getPhysicalNodes().addAll(bucket.getPhysicalNodes());
+        return copy;
     }
 
     public void copyBucket(BucketNode node, PhysicalNode to) {
@@ -197,11 +322,11 @@ public class LookupTable extends Transportable implements Serializable {
     }
 
     public void expand(int size) {
-        loadBalanceAlgorithm.onTableExpand(this, size);
+        apply(table -> loadBalanceAlgorithm.onTableExpand(table, size), true, false);
     }
 
     public void shrink() {
-        loadBalanceAlgorithm.onTableShrink(this);
+        apply(table -> loadBalanceAlgorithm.onTableShrink(table), true, false);
     }
 
     public String listPhysicalNodes() {
@@ -225,10 +350,7 @@ public class LookupTable extends Transportable implements Serializable {
 
     public String createTable(Object o) {
         if (o instanceof LookupTable) {
-            LookupTable remoteTable = (LookupTable)o;
-            this.setTable(remoteTable.getTable());
-            this.setEpoch(remoteTable.getEpoch());
-            this.setPhysicalNodeMap(remoteTable.getPhysicalNodeMap());
+            install((LookupTable)o);
 
             return "Table updated.";
         }
@@ -241,15 +363,16 @@ public class LookupTable extends Transportable implements Serializable {
         if (o instanceof LookupTable) {
             LookupTable remoteTable = (LookupTable)o;
 
-            if (this.getTable() == null || remoteTable.getEpoch() > this.getEpoch()) {
-                this.setTable(remoteTable.getTable());
-                this.setEpoch(remoteTable.getEpoch());
-                this.setPhysicalNodeMap(remoteTable.getPhysicalNodeMap());
+            synchronized (LookupTable.class) {
+                LookupTable current = getInstance();
+                if (current.getTable() == null || remoteTable.getEpoch() > current.getEpoch()) {
+                    install(remoteTable);
 
-                return "Table updated.";
-            }
-            else {
-                return "Obsolete table. No need to update";
+                    return "Table updated.";
+                }
+                else {
+                    return "Obsolete table. No need to update";
+                }
             }
         }
         else {
@@ -6,6 +6,7 @@ import commonmodels.Daemon;
 import commonmodels.NotableLoadChangeCallback;
 import commonmodels.PhysicalNode;
 import commonmodels.ReadWriteCallBack;
+import commonmodels.TokenRange;
 import commonmodels.transport.InvalidRequestException;
 import commonmodels.transport.Request;
 import commonmodels.transport.Response;
@@ -20,6 +21,7 @@ import socket.SocketClient;
 import socket.SocketServer;
 import util.Config;
 import util.SimpleLog;
+import util.ThreadPools;
 
 import java.io.IOException;
 import java.net.DatagramSocket;
@@ -28,7 +30,6 @@ import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class DataNodeDaemon implements Daemon, ReadWriteCallBack {
 
@@ -42,7 +43,7 @@ public class DataNodeDaemon implements Daemon, ReadWriteCallBack {
 
     private int port;
 
-    private ExecutorService executor = Executors.newFixedThreadPool(2);
+    private ExecutorService executor = ThreadPools.newExecutor(2);
 
     public static void main(String[] args){
         if (args.length > 1)
@@ -157,6 +158,7 @@ public class DataNodeDaemon implements Daemon, ReadWriteCallBack {
         FileTransferManager.getInstance().subscribe(this);
         LoadInfoManager.with(dataNodeServer.getDataNode().getAddress());
         LoadInfoManager.getInstance().setLoadInfoReportHandler(dataNodeServer.getMembershipStrategy());
+        LoadInfoManager.getInstance().setQueueDepthProvider(socketServer::getQueueDepth);
 
         // node are only responsible for transferring files
         // that they are involved
@@ -165,6 +167,11 @@ public class DataNodeDaemon implements Daemon, ReadWriteCallBack {
         // thus avoiding unnecessary file transfer
         FileTransferManager.getInstance().setPolicy(FileTransferManager.FileTransferPolicy.SenderOrReceiver);
         FileTransferManager.getInstance().setMySelf(dataNodeServer.getDataNode().getAddress());
+        try {
+            FileTransferManager.getInstance().startReceiver(port);
+        } catch (IOException e) {
+            SimpleLog.e(e);
+        }
 
         if (Config.getInstance().getMode().equals(Config.MODE_DISTRIBUTED)) {
             AbstractLoadMonitor loadMonitor = new DecentralizedLoadMonitor(dataNodeServer.getDataNode().getLoadChangeHandler(), LoadInfoManager.getInstance());
@@ -236,6 +243,28 @@ public class DataNodeDaemon implements Daemon, ReadWriteCallBack {
         send(from.getAddress(), from.getPort(), request, this);
     }
 
+    @Override
+    public void onTransferring(TokenRange range, PhysicalNode from, PhysicalNode toNode) {
+        // send request to the "from" node, ask "from" to transfer the files in range
+        Request request = new Request()
+                .withHeader(CommonCommand.TRANSFER.name())
+                .withSender(from.getFullAddress())
+                .withReceiver(toNode.getFullAddress())
+                .withAttachment(range.toString());
+        send(from.getAddress(), from.getPort(), request, this);
+    }
+
+    @Override
+    public void onReplicating(TokenRange range, PhysicalNode from, PhysicalNode toNode) {
+        // send request to the "from" node, ask "from" to copy the files in range
+        Request request = new Request()
+                .withHeader(CommonCommand.COPY.name())
+                .withSender(from.getFullAddress())
+                .withReceiver(toNode.getFullAddress())
+                .withAttachment(range.toString());
+        send(from.getAddress(), from.getPort(), request, this);
+    }
+
     @Override
     public void onTransmitted(List<FileBucket> buckets, PhysicalNode from, PhysicalNode toNode) {
         // send request to the "toNode" node, ask "toNode" to receive the buckets
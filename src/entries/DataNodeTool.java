@@ -4,6 +4,8 @@ import ceph.CephDataNode;
 import commands.CephCommand;
 import commands.CommonCommand;
 import commands.ElasticCommand;
+import commands.JumpCommand;
+import commands.RendezvousCommand;
 import commands.RingCommand;
 import commonmodels.DataNode;
 import commonmodels.Terminal;
@@ -11,11 +13,13 @@ import commonmodels.transport.InvalidRequestException;
 import commonmodels.transport.Request;
 import commonmodels.transport.Response;
 import elastic.ElasticDataNode;
+import jump.JumpDataNode;
 import org.apache.commons.lang3.StringUtils;
 import req.gen.ControlRequestGenerator;
 import req.gen.RequestGenerator;
 import req.RequestService;
 import req.RequestThread;
+import rendezvous.RendezvousDataNode;
 import ring.RingDataNode;
 import socket.SocketClient;
 import util.Config;
@@ -118,6 +122,12 @@ public class DataNodeTool {
             case Config.SCHEME_CEPH:
                 dataNode = new CephDataNode();
                 break;
+            case Config.SCHEME_RENDEZVOUS:
+                dataNode = new RendezvousDataNode();
+                break;
+            case Config.SCHEME_JUMP:
+                dataNode = new JumpDataNode();
+                break;
             default:
                 throw new Exception("Invalid DHT type");
         }
@@ -216,6 +226,10 @@ public class DataNodeTool {
                 return getElasticHelp();
             case Config.SCHEME_CEPH:
                 return getCephHelp();
+            case Config.SCHEME_RENDEZVOUS:
+                return getRendezvousHelp();
+            case Config.SCHEME_JUMP:
+                return getJumpHelp();
             default:
                 return "Invalid scheme";
         }
@@ -249,6 +263,22 @@ public class DataNodeTool {
                         CephCommand.PRINTCLUSTERMAP.getHelpString() + "\n";
     }
 
+    private static String getRendezvousHelp() {
+        return RendezvousCommand.ADDNODE.getHelpString() + "\n" +
+                        RendezvousCommand.REMOVENODE.getHelpString() + "\n" +
+                        RendezvousCommand.CHANGEWEIGHT.getHelpString() + "\n" +
+                        RendezvousCommand.LISTPHYSICALNODES.getHelpString() + "\n" +
+                        RendezvousCommand.PRINTLOOKUPTABLE.getHelpString() + "\n";
+    }
+
+    private static String getJumpHelp() {
+        return JumpCommand.ADDNODE.getHelpString() + "\n" +
+                        JumpCommand.REMOVENODE.getHelpString() + "\n" +
+                        JumpCommand.MOVEBUCKET.getHelpString() + "\n" +
+                        JumpCommand.LISTPHYSICALNODES.getHelpString() + "\n" +
+                        JumpCommand.PRINTLOOKUPTABLE.getHelpString() + "\n";
+    }
+
     public class CommonTerminal implements Terminal {
 
         @Override
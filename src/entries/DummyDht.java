@@ -37,6 +37,9 @@ public class DummyDht {
         else if (driver.equals("-auto") || driver.equals("-a")) {
             AutoTester.main(subArgs);
         }
+        else if (driver.equals("-bench") || driver.equals("-b")) {
+            ExecutionModeBenchmark.main(subArgs);
+        }
     }
 
 }
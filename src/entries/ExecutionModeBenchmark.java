@@ -0,0 +1,266 @@
+package entries;
+
+import commonmodels.transport.Request;
+import commonmodels.transport.Response;
+import socket.SocketClient;
+import socket.SocketServer;
+import util.Config;
+import util.ThreadPools;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares platform and virtual thread execution of request handlers.
+ * A client drives a real socket server with a command mix that is mostly blocking:
+ * reads are cheap, writes are synced to disk, fetches pull a table-sized response
+ * from a peer server and propagations forward a write to the peer and wait for its
+ * replies. The server and its peer share the worker pool, as nodes of one jvm do.
+ *
+ * With local_dispatch on, requests skip the sockets but still go through the
+ * admission and worker pool of the server.
+ */
+public class ExecutionModeBenchmark {
+
+    // same size as the socket server worker pool
+    private static final int PLATFORM_THREADS = 16;
+
+    private static final int BASE_PORT = 17900;
+
+    private static final int PEERS_PER_PROPAGATION = 3;
+
+    private static final long PEER_TIMEOUT_MS = 5000;
+
+    // roughly a serialized table with a few hundred nodes
+    private static final int TABLE_SIZE = 256 * 1024;
+
+    private static final int WRITE_SIZE = 4 * 1024;
+
+    // keeps the requests clear of the headers the client batches
+    private static final String HEADER_PREFIX = "BENCHMARK_";
+
+    // served by the peer only
+    private static final String HEADER_TABLE = HEADER_PREFIX + "TABLE";
+
+    private enum Command {
+        READ(60), WRITE(20), FETCH(15), PROPAGATE(5);
+
+        private final int weight;
+
+        Command(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private final int numOfRequests;
+
+    private final int concurrency;
+
+    private final Command[] mix;
+
+    private final String table;
+
+    private final FileChannel channel;
+
+    private final AtomicLong writeOffset = new AtomicLong(0);
+
+    private SocketClient client;
+
+    private String peerAddress;
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Invalid Arguments. Try: dummydht.jar -b <numOfRequests> <concurrency>");
+            return;
+        }
+
+        try {
+            ExecutionModeBenchmark benchmark = new ExecutionModeBenchmark(Integer.valueOf(args[0]), Integer.valueOf(args[1]));
+            benchmark.run(Config.EXECUTION_MODE_PLATFORM, BASE_PORT);
+            if (ThreadPools.isVirtualThreadSupported())
+                benchmark.run(Config.EXECUTION_MODE_VIRTUAL, BASE_PORT + 2);
+            else
+                System.out.println("virtual threads are not supported by this jvm, skipped");
+            benchmark.close();
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        }
+
+        System.exit(0);
+    }
+
+    public ExecutionModeBenchmark(int numOfRequests, int concurrency) throws IOException {
+        this.numOfRequests = numOfRequests;
+        this.concurrency = concurrency;
+
+        Random random = new Random(100);
+        int total = Arrays.stream(Command.values()).mapToInt(c -> c.weight).sum();
+        this.mix = new Command[numOfRequests];
+        for (int i = 0; i < numOfRequests; i++) {
+            int r = random.nextInt(total);
+            for (Command command : Command.values()) {
+                r -= command.weight;
+                if (r < 0) {
+                    mix[i] = command;
+                    break;
+                }
+            }
+        }
+
+        char[] chars = new char[TABLE_SIZE];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = (char) ('a' + random.nextInt(26));
+        this.table = new String(chars);
+
+        Path file = Files.createTempFile("dummydht-bench", ".dat");
+        file.toFile().deleteOnExit();
+        this.channel = FileChannel.open(file, StandardOpenOption.WRITE);
+    }
+
+    public void run(String mode, int port) throws IOException, InterruptedException {
+        SocketServer.setWorkerPool(ThreadPools.newExecutor(mode, PLATFORM_THREADS));
+        start(port);
+        start(port + 1);
+        peerAddress = "127.0.0.1:" + (port + 1);
+        client = SocketClient.newInstance();
+
+        Semaphore outstanding = new Semaphore(concurrency);
+        CountDownLatch latch = new CountDownLatch(numOfRequests);
+        long[] latencies = new long[numOfRequests];
+        AtomicInteger failures = new AtomicInteger(0);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < numOfRequests; i++) {
+            final int index = i;
+            outstanding.acquireUninterruptibly();
+            long submitted = System.nanoTime();
+            client.send("127.0.0.1:" + port, new Request().withHeader(HEADER_PREFIX + mix[i].name()), new SocketClient.ServerCallBack() {
+                @Override
+                public void onResponse(Request request, Response response) {
+                    if (response.getStatus() != Response.STATUS_SUCCESS)
+                        failures.incrementAndGet();
+                    done();
+                }
+
+                @Override
+                public void onFailure(Request request, String error) {
+                    failures.incrementAndGet();
+                    done();
+                }
+
+                private void done() {
+                    latencies[index] = System.nanoTime() - submitted;
+                    outstanding.release();
+                    latch.countDown();
+                }
+            });
+        }
+
+        latch.await();
+        long elapsed = System.nanoTime() - start;
+        client.stop();
+
+        Arrays.sort(latencies);
+        System.out.printf("%-8s requests=%d concurrency=%d elapsed=%dms throughput=%.1f/s p50=%.2fms p99=%.2fms failures=%d%n",
+                mode, numOfRequests, concurrency,
+                TimeUnit.NANOSECONDS.toMillis(elapsed),
+                numOfRequests * 1e9 / elapsed,
+                latencies[numOfRequests / 2] / 1e6,
+                latencies[(int) (numOfRequests * 0.99)] / 1e6,
+                failures.get());
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void start(int port) throws IOException, InterruptedException {
+        CountDownLatch bound = new CountDownLatch(1);
+        SocketServer server = new SocketServer(port, new SocketServer.EventHandler() {
+            @Override
+            public Response onReceived(Request request) {
+                return handle(request);
+            }
+
+            @Override
+            public void onBound() {
+                bound.countDown();
+            }
+        });
+
+        Thread thread = new Thread(server, "benchmark-server-" + port);
+        thread.setDaemon(true);
+        thread.start();
+        bound.await();
+    }
+
+    private Response handle(Request request) {
+        Response response = new Response(request).withStatus(Response.STATUS_SUCCESS);
+        if (HEADER_TABLE.equals(request.getHeader()))
+            return response.withMessage(table);
+
+        try {
+            switch (Command.valueOf(request.getHeader().substring(HEADER_PREFIX.length()))) {
+                case WRITE:
+                    write();
+                    break;
+
+                case FETCH:
+                    call(new Request().withHeader(HEADER_TABLE)).get(PEER_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    break;
+
+                case PROPAGATE:
+                    Future<?>[] peers = new Future<?>[PEERS_PER_PROPAGATION];
+                    for (int i = 0; i < peers.length; i++)
+                        peers[i] = call(new Request().withHeader(HEADER_PREFIX + Command.WRITE.name()));
+                    for (Future<?> peer : peers)
+                        peer.get(PEER_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    break;
+
+                default:
+                    break;
+            }
+        } catch (IOException | ExecutionException | TimeoutException e) {
+            return response.withStatus(Response.STATUS_FAILED).withMessage(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return response.withStatus(Response.STATUS_FAILED).withMessage(e.getMessage());
+        }
+
+        return response;
+    }
+
+    private void write() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(WRITE_SIZE);
+        channel.write(buf, writeOffset.getAndAdd(WRITE_SIZE));
+        channel.force(false);
+    }
+
+    /**
+     * Outbound request to the peer, the handler blocks on the returned future
+     */
+    private Future<Response> call(Request request) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        client.send(peerAddress, request, new SocketClient.ServerCallBack() {
+            @Override
+            public void onResponse(Request request, Response response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(Request request, String error) {
+                future.completeExceptionally(new IOException(error));
+            }
+        });
+        return future;
+    }
+}
@@ -5,6 +5,7 @@ import commands.RingCommand;
 import commonmodels.Daemon;
 import commonmodels.NotableLoadChangeCallback;
 import commonmodels.PhysicalNode;
+import commonmodels.TokenRange;
 import commonmodels.transport.Request;
 import commonmodels.transport.Response;
 import datanode.DataNodeServer;
@@ -139,6 +140,16 @@ public class Proxy implements Daemon, NotableLoadChangeCallback {
         daemon.onReplicating(buckets, from, toNode);
     }
 
+    @Override
+    public void onTransferring(TokenRange range, PhysicalNode from, PhysicalNode toNode) {
+        daemon.onTransferring(range, from, toNode);
+    }
+
+    @Override
+    public void onReplicating(TokenRange range, PhysicalNode from, PhysicalNode toNode) {
+        daemon.onReplicating(range, from, toNode);
+    }
+
     @Override
     public void onTransmitted(List<FileBucket> buckets, PhysicalNode from, PhysicalNode toNode) {
         daemon.onTransmitted(buckets, from, toNode);
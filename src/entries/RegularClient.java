@@ -9,6 +9,8 @@ import commonmodels.transport.InvalidRequestException;
 import commonmodels.transport.Request;
 import commonmodels.transport.Response;
 import elastic.ElasticTerminal;
+import jump.JumpTerminal;
+import loadmanagement.InFlightTracker;
 import org.apache.commons.lang3.time.StopWatch;
 import req.gen.ClientRequestGenerator;
 import req.gen.RequestGenerator;
@@ -18,6 +20,8 @@ import req.StaticTree;
 import req.gen.SequentialRequestGenerator;
 import req.rand.RandomGenerator;
 import req.rand.UniformGenerator;
+import rendezvous.RendezvousTerminal;
+import ring.LookupTable;
 import ring.RingTerminal;
 import socket.SocketClient;
 import util.Config;
@@ -53,8 +57,8 @@ public class RegularClient {
     };
 
     private RequestThread.RequestGenerateThreadCallBack requestGenerateThreadCallBack = (request, client) -> {
-        PhysicalNode server = choseServer(request.getAttachment());
-        client.send(server.getFullAddress(), request, callBack);
+        PhysicalNode server = choseServer(request);
+        send(client, server, request);
     };
 
     public static void main(String[] args) {
@@ -124,6 +128,12 @@ public class RegularClient {
             case Config.SCHEME_CEPH:
                 terminal = new CephTerminal();
                 break;
+            case Config.SCHEME_RENDEZVOUS:
+                terminal = new RendezvousTerminal();
+                break;
+            case Config.SCHEME_JUMP:
+                terminal = new JumpTerminal();
+                break;
             default:
                 throw new Exception("Invalid DHT type");
         }
@@ -221,8 +231,8 @@ public class RegularClient {
                 if (request.getHeader().equals(RingCommand.READ.name()) ||
                         request.getHeader().equals(RingCommand.WRITE.name())) {
                     request.withEpoch(terminal.getEpoch());
-                    PhysicalNode server = choseServer(request.getAttachment());
-                    socketClient.send(server.getFullAddress(), request, callBack);
+                    PhysicalNode server = choseServer(request);
+                    send(socketClient, server, request);
                 }
                 else if (request.getReceiver() != null) {
                     socketClient.send(request.getReceiver(), request, callBack);
@@ -378,8 +388,28 @@ public class RegularClient {
         SimpleLog.v("**************************\nRequest:\n" + request.getLargeAttachment() + "\n" + response + "\n**************************\n");
     }
 
-    private PhysicalNode choseServer(String attachment) {
-        String[] filename = attachment.split(" ");
+    /**
+     * Send a read or write, counted as in flight to the server until it is answered
+     */
+    private void send(SocketClient client, PhysicalNode server, Request request) {
+        InFlightTracker.getInstance().begin(server.getId());
+        client.send(server.getFullAddress(), request, new SocketClient.ServerCallBack() {
+            @Override
+            public void onResponse(Request request, Response o) {
+                InFlightTracker.getInstance().end(server.getId());
+                callBack.onResponse(request, o);
+            }
+
+            @Override
+            public void onFailure(Request request, String error) {
+                InFlightTracker.getInstance().end(server.getId());
+                callBack.onFailure(request, error);
+            }
+        });
+    }
+
+    private PhysicalNode choseServer(Request original) {
+        String[] filename = original.getAttachment().split(" ");
         Request request = new Request()
                     .withHeader(RingCommand.LOOKUP.name())
                     .withAttachment(filename[0]);
@@ -387,6 +417,8 @@ public class RegularClient {
 
         @SuppressWarnings("unchecked")
         List<PhysicalNode> pnodes = (List<PhysicalNode>) response.getAttachment();
+        if (Config.getInstance().isBoundedLoadPlacement() && original.getHeader().equals(RingCommand.READ.name()))
+            return LookupTable.getInstance().chooseReplica(pnodes);
         return pnodes.get(MathX.nextInt(pnodes.size()));
     }
 }
@@ -4,6 +4,8 @@ import ceph.CephTerminal;
 import commonmodels.Terminal;
 import commonmodels.transport.Response;
 import elastic.ElasticTerminal;
+import jump.JumpTerminal;
+import rendezvous.RendezvousTerminal;
 import ring.RingTerminal;
 import util.Config;
 
@@ -25,6 +27,12 @@ public class SingleNodeClient {
             case Config.SCHEME_CEPH:
                 terminal = new CephTerminal();
                 break;
+            case Config.SCHEME_RENDEZVOUS:
+                terminal = new RendezvousTerminal();
+                break;
+            case Config.SCHEME_JUMP:
+                terminal = new JumpTerminal();
+                break;
             default:
                 System.out.println("Unknown type\n");
                 return;
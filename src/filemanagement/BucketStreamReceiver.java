@@ -0,0 +1,151 @@
+package filemanagement;
+
+import util.SimpleLog;
+import util.ThreadPools;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Accepts bucket streams sent by BucketStreamer and writes them to disk with
+ * FileChannel.transferFrom. Data is appended to a partial file, which is only renamed
+ * to the bucket file once complete, so an interrupted transfer leaves a partial file
+ * the next attempt resumes from. Partial files are named after the version and length
+ * of the file sent, so only a resend of the very same file resumes, anything else
+ * starts over.
+ */
+public class BucketStreamReceiver implements Runnable {
+
+    private static final int CONNECTION_THREADS = 4;
+
+    private final BucketStreamer streamer;
+
+    private final ServerSocketChannel serverChannel;
+
+    private final ExecutorService executor;
+
+    private volatile boolean keepRunning;
+
+    public BucketStreamReceiver(BucketStreamer streamer, int port) throws IOException {
+        this.streamer = streamer;
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(port));
+        this.executor = ThreadPools.newExecutor(CONNECTION_THREADS);
+        this.keepRunning = true;
+
+        if (!streamer.getDirectory().isDirectory() && !streamer.getDirectory().mkdirs())
+            throw new IOException("Unable to create bucket directory " + streamer.getDirectory());
+    }
+
+    @Override
+    public void run() {
+        while (keepRunning) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                executor.execute(() -> serve(channel));
+            }
+            catch (ClosedChannelException e) {
+                break;
+            }
+            catch (IOException e) {
+                SimpleLog.e(e);
+            }
+        }
+    }
+
+    public void stop() {
+        keepRunning = false;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            SimpleLog.e(e);
+        }
+        executor.shutdownNow();
+    }
+
+    private void serve(SocketChannel accepted) {
+        ByteBuffer header = ByteBuffer.allocateDirect(BucketStreamer.HEADER_SIZE);
+        String remote = describe(accepted);
+        try (SocketChannel channel = accepted) {
+            while (true) {
+                header.clear();
+                try {
+                    BucketStreamer.readFully(channel, header);
+                }
+                catch (EOFException e) {
+                    // sender is done with this connection
+                    return;
+                }
+
+                receiveFile(channel, header, header.getLong(), header.getLong(), header.getLong());
+            }
+        }
+        catch (IOException e) {
+            SimpleLog.i("Bucket stream from " + remote + " broke off: " + e.getMessage());
+        }
+    }
+
+    private void receiveFile(SocketChannel channel, ByteBuffer buffer, long bucket, long length, long version) throws IOException {
+        if (length < 0)
+            throw new IOException("Invalid length " + length + " of bucket " + bucket);
+
+        File partial = streamer.getPartialFile(bucket, version, length);
+        for (File stale : streamer.getStalePartialFiles(bucket, partial)) {
+            if (!stale.delete())
+                SimpleLog.i("Unable to delete " + stale);
+        }
+
+        try (FileChannel target = FileChannel.open(partial.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long position = target.size();
+            if (position > length) {
+                // cannot happen with the length in the name, unless the file was tampered with
+                target.truncate(0);
+                position = 0;
+            }
+
+            buffer.clear();
+            buffer.putLong(position).flip();
+            BucketStreamer.writeFully(channel, buffer);
+
+            while (position < length) {
+                long chunkEnd = Math.min(length, position + streamer.getChunkSize());
+                while (position < chunkEnd) {
+                    long transferred = target.transferFrom(channel, position, chunkEnd - position);
+                    // a blocking channel only comes up empty at end of stream
+                    if (transferred <= 0)
+                        throw new EOFException("Bucket " + bucket + " ended at " + position + " of " + length + " bytes");
+                    position += transferred;
+                }
+            }
+
+            target.force(false);
+        }
+
+        Files.move(partial.toPath(), streamer.getBucketFile(bucket).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        buffer.clear();
+        buffer.putLong(length).flip();
+        BucketStreamer.writeFully(channel, buffer);
+    }
+
+    private String describe(SocketChannel channel) {
+        try {
+            return String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+}
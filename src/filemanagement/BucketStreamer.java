@@ -0,0 +1,234 @@
+package filemanagement;
+
+import commonmodels.PhysicalNode;
+import util.Config;
+import util.SimpleLog;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams bucket files from the local disk to the transfer port of another node.
+ * File content goes from the page cache to the socket with FileChannel.transferTo
+ * one chunk at a time, it is never copied onto the java heap. Every bucket starts
+ * with a header, the receiver answers with the offset it already holds, so a transfer
+ * that broke off resumes where it stopped instead of starting over. The header carries
+ * the version of the file, its last modified time, a partial file of another version
+ * or length is dropped rather than resumed.
+ *
+ * A bucket file is named after the key of the bucket, or after its full token when
+ * keys are placed on 64-bit tokens.
+ *
+ * Every node keeps its files in a subdirectory of the bucket data dir named after its
+ * port, so nodes sharing a host and a data dir never touch each other's files.
+ *
+ * Wire format, all numbers big endian:
+ *   sender   -> receiver: long bucket, long length, long version
+ *   receiver -> sender  : long offset
+ *   sender   -> receiver: length - offset bytes of the bucket file
+ *   receiver -> sender  : long length once the file is complete on disk
+ */
+public class BucketStreamer {
+
+    static final String BUCKET_FILE_SUFFIX = ".bucket";
+
+    static final String PARTIAL_FILE_SUFFIX = ".part";
+
+    static final int HEADER_SIZE = Long.BYTES + Long.BYTES + Long.BYTES;
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final File directory;
+
+    private final long chunkSize;
+
+    private final int portOffset;
+
+    public BucketStreamer(File directory, long chunkSize, int portOffset) {
+        this.directory = directory;
+        this.chunkSize = chunkSize;
+        this.portOffset = portOffset;
+    }
+
+    /**
+     * @param port data node port, names the directory of the node
+     */
+    public static BucketStreamer fromConfig(int port) {
+        String directory = Config.getInstance().getBucketDataDir();
+        if (directory == null || directory.isEmpty())
+            return null;
+
+        return new BucketStreamer(
+                new File(directory, String.valueOf(port)),
+                Config.getInstance().getTransferChunkSize(),
+                Config.getInstance().getTransferPortOffset());
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public int getPortOffset() {
+        return portOffset;
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return what names the files of the bucket, its token when keys are placed on 64-bit tokens
+     */
+    static long idOf(FileBucket bucket) {
+        return Config.getInstance().isLongTokenSpace() ? bucket.getToken() : bucket.getKey();
+    }
+
+    public File getBucketFile(long bucket) {
+        return new File(directory, bucket + BUCKET_FILE_SUFFIX);
+    }
+
+    File getPartialFile(long bucket, long version, long length) {
+        return new File(directory, bucket + "." + version + "." + length + PARTIAL_FILE_SUFFIX);
+    }
+
+    /**
+     * Partial files of the bucket other than keep, they belong to another version and cannot be resumed
+     */
+    File[] getStalePartialFiles(long bucket, File keep) {
+        String prefix = bucket + ".";
+        File[] files = directory.listFiles((dir, name) ->
+                name.startsWith(prefix) && name.endsWith(PARTIAL_FILE_SUFFIX) && !name.equals(keep.getName()));
+        return files != null ? files : new File[0];
+    }
+
+    /**
+     * Send the files of the given buckets to toNode, buckets without a file on disk are skipped
+     *
+     * @return identities of the files sent, keyed by bucket, see delete, null if they could not
+     *          be delivered after retrying
+     */
+    public Map<Long, Object> send(List<FileBucket> buckets, PhysicalNode toNode) {
+        InetSocketAddress remote = new InetSocketAddress(toNode.getAddress(), toNode.getPort() + portOffset);
+        Map<Long, Object> sent = new HashMap<>();
+        int next = 0;
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS && next < buckets.size(); attempt++) {
+            try (SocketChannel channel = SocketChannel.open(remote)) {
+                ByteBuffer header = ByteBuffer.allocateDirect(HEADER_SIZE);
+                for (; next < buckets.size(); next++) {
+                    long bucket = idOf(buckets.get(next));
+                    File file = getBucketFile(bucket);
+                    if (file.isFile())
+                        sent.put(bucket, sendFile(channel, header, bucket, file));
+                }
+            }
+            catch (IOException e) {
+                // closing the channel may fail after the last bucket
+                String what = next < buckets.size() ? "bucket " + idOf(buckets.get(next)) : "buckets";
+                SimpleLog.i("Transfer of " + what + " to " + remote
+                        + " broke off (attempt " + attempt + "): " + e.getMessage());
+            }
+        }
+
+        return next >= buckets.size() ? sent : null;
+    }
+
+    /**
+     * Remove the files of buckets that have been moved to another node.
+     * A file replaced since it was sent, by one received in the meantime, is kept.
+     *
+     * @param sent identities of the files sent, as returned by send
+     */
+    public void delete(Map<Long, Object> sent) {
+        for (Map.Entry<Long, Object> entry : sent.entrySet()) {
+            File file = getBucketFile(entry.getKey());
+            if (!entry.getValue().equals(identityOf(file)))
+                SimpleLog.i(file + " has been replaced since it was sent, keep it");
+            else if (!file.delete())
+                SimpleLog.i("Unable to delete " + file);
+        }
+    }
+
+    /**
+     * @return what tells the file apart from one later moved to the same path, null if there is none
+     */
+    private static Object identityOf(File file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            Object key = attributes.fileKey();
+            return key != null ? key : attributes.lastModifiedTime();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return identity of the file sent
+     */
+    private Object sendFile(SocketChannel channel, ByteBuffer header, long bucket, File file) throws IOException {
+        try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Object identity = identityOf(file);
+            long length = source.size();
+            long version = file.lastModified();
+
+            header.clear();
+            header.putLong(bucket).putLong(length).putLong(version).flip();
+            writeFully(channel, header);
+
+            long position = readLong(channel, header);
+            if (position < 0 || position > length)
+                throw new IOException("Invalid resume offset " + position + " for bucket " + bucket);
+
+            while (position < length) {
+                long chunkEnd = Math.min(length, position + chunkSize);
+                while (position < chunkEnd) {
+                    long sent = source.transferTo(position, chunkEnd - position, channel);
+                    // nothing left to send, the file was truncated after its length was read
+                    if (sent == 0 && position >= source.size())
+                        throw new IOException("Bucket " + bucket + " truncated to " + source.size() + " of " + length + " bytes while sent");
+                    position += sent;
+                }
+            }
+
+            long acknowledged = readLong(channel, header);
+            if (acknowledged != length)
+                throw new IOException("Bucket " + bucket + " acknowledged " + acknowledged + " of " + length + " bytes");
+
+            if (identity == null)
+                throw new IOException("Bucket file " + file + " disappeared while it was sent");
+            return identity;
+        }
+    }
+
+    static void writeFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0)
+                throw new EOFException("Connection closed by peer");
+        }
+        buffer.flip();
+    }
+
+    static long readLong(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        buffer.limit(Long.BYTES);
+        readFully(channel, buffer);
+        return buffer.getLong();
+    }
+}
@@ -11,6 +11,9 @@ public class FileBucket extends Transportable implements Serializable, Cloneable
 
     private int key;
 
+    // position of the files on the ring, when keys are placed on 64-bit tokens
+    private long token;
+
     private long size;
 
     private long numberOfFiles;
@@ -94,6 +97,14 @@ public class FileBucket extends Transportable implements Serializable, Cloneable
         this.key = key;
     }
 
+    public long getToken() {
+        return token;
+    }
+
+    public void setToken(long token) {
+        this.token = token;
+    }
+
     public boolean isLocked() {
         return locked;
     }
@@ -172,12 +183,12 @@ public class FileBucket extends Transportable implements Serializable, Cloneable
 
     @Override
     public String toString() {
-        return new ToStringBuilder(this).append("key", key).append("sizeOfWrites", sizeOfWrites).append("sizeOfReads", sizeOfReads).append("locked", locked).append("numberOfReads", numberOfReads).append("numberOfWrites", numberOfWrites).toString();
+        return new ToStringBuilder(this).append("key", key).append("token", token).append("sizeOfWrites", sizeOfWrites).append("sizeOfReads", sizeOfReads).append("locked", locked).append("numberOfReads", numberOfReads).append("numberOfWrites", numberOfWrites).toString();
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder().append(locked).append(key).append(sizeOfWrites).append(sizeOfReads).append(numberOfReads).append(numberOfWrites).toHashCode();
+        return new HashCodeBuilder().append(locked).append(key).append(token).append(sizeOfWrites).append(sizeOfReads).append(numberOfReads).append(numberOfWrites).toHashCode();
     }
 
     @Override
@@ -189,7 +200,7 @@ public class FileBucket extends Transportable implements Serializable, Cloneable
             return false;
         }
         FileBucket rhs = ((FileBucket) other);
-        return new EqualsBuilder().append(locked, rhs.locked).append(key, rhs.key).append(sizeOfWrites, rhs.sizeOfWrites).append(sizeOfReads, rhs.sizeOfReads).append(numberOfReads, rhs.numberOfReads).append(numberOfWrites, rhs.numberOfWrites).isEquals();
+        return new EqualsBuilder().append(locked, rhs.locked).append(key, rhs.key).append(token, rhs.token).append(sizeOfWrites, rhs.sizeOfWrites).append(sizeOfReads, rhs.sizeOfReads).append(numberOfReads, rhs.numberOfReads).append(numberOfWrites, rhs.numberOfWrites).isEquals();
     }
 
     @Override
@@ -2,10 +2,14 @@ package filemanagement;
 
 import commonmodels.FileTransferRequestCallBack;
 import commonmodels.PhysicalNode;
+import commonmodels.TokenRange;
 import util.Config;
 import util.SimpleLog;
+import util.ThreadPools;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 public class FileTransferManager {
 
@@ -21,6 +25,15 @@ public class FileTransferManager {
 
     private String transferToken;
 
+    // null when migrations are only simulated, set once the receiver is started
+    private volatile BucketStreamer streamer;
+
+    private BucketStreamReceiver receiver;
+
+    private ExecutorService senders;
+
+    private static final int SENDER_THREADS = 2;
+
     private FileTransferManager() {
         localFileManager = LocalFileManager.getInstance();
         callBacks = new ArrayList<>();
@@ -41,9 +54,40 @@ public class FileTransferManager {
     }
 
     public static void deleteInstance() {
+        if (instance != null)
+            instance.stop();
         instance = null;
     }
 
+    /**
+     * Stream bucket files to and from other nodes, nothing to do if migrations are simulated
+     *
+     * @param port data node port, names the directory of the bucket files of this node,
+     *             files are received on this port plus the transfer port offset
+     */
+    public void startReceiver(int port) throws IOException {
+        if (receiver != null) return;
+
+        BucketStreamer streamer = BucketStreamer.fromConfig(port);
+        if (streamer == null) return;
+
+        senders = ThreadPools.newExecutor(SENDER_THREADS);
+        receiver = new BucketStreamReceiver(streamer, port + streamer.getPortOffset());
+        this.streamer = streamer;
+        Thread thread = new Thread(receiver, "bucket-stream-receiver");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        if (receiver != null) {
+            receiver.stop();
+            receiver = null;
+        }
+        if (senders != null)
+            senders.shutdownNow();
+    }
+
     public FileTransferPolicy getPolicy() {
         return policy;
     }
@@ -69,21 +113,41 @@ public class FileTransferManager {
     }
 
     public long transfer(List<Integer> buckets, PhysicalNode from, PhysicalNode toNode) {
+        return transferBuckets(toFileBuckets(buckets), from, toNode);
+    }
+
+    public long transfer(TokenRange range, PhysicalNode from, PhysicalNode toNode) {
+        return transferBuckets(localFileManager.getBuckets(range), from, toNode);
+    }
+
+    private long transferBuckets(List<FileBucket> candidates, PhysicalNode from, PhysicalNode toNode) {
         int numberOfFilesTransferred = 0;
         long sizeOfFilesTransferred = 0;
         List<FileBucket> fileBuckets = new ArrayList<>();
 
-        for (int bucket : buckets ){
-            FileBucket fileBucket = localFileManager.getLocalBuckets().get(bucket);
-            if (fileBucket == null) continue;
-
+        for (FileBucket fileBucket : candidates){
             fileBucket.setLocked(true);
             fileBuckets.add(fileBucket);
             numberOfFilesTransferred += fileBucket.getNumberOfFiles();
             sizeOfFilesTransferred += fileBucket.getSize();
         }
 
-        if (numberOfFilesTransferred > 0)  {
+        BucketStreamer streamer = this.streamer;
+        if (numberOfFilesTransferred > 0 && streamer != null)  {
+            senders.execute(() -> {
+                Map<Long, Object> sent = streamer.send(fileBuckets, toNode);
+                if (sent != null) {
+                    callTransmitted(fileBuckets, from, toNode);
+                    cleanBuckets(fileBuckets);
+                    streamer.delete(sent);
+                }
+                else {
+                    SimpleLog.i("Unable to transfer buckets to " + toNode.getFullAddress() + ", keep them here");
+                    unlockBucket(fileBuckets);
+                }
+            });
+        }
+        else if (numberOfFilesTransferred > 0)  {
             float transferTime = sizeOfFilesTransferred * 1.0f / Config.getInstance().getNetworkSpeed();
             new Timer().schedule(new TimerTask() {
                 @Override
@@ -98,21 +162,36 @@ public class FileTransferManager {
     }
 
     public long copy(List<Integer> buckets, PhysicalNode from, PhysicalNode toNode) {
+        return copyBuckets(toFileBuckets(buckets), from, toNode);
+    }
+
+    public long copy(TokenRange range, PhysicalNode from, PhysicalNode toNode) {
+        return copyBuckets(localFileManager.getBuckets(range), from, toNode);
+    }
+
+    private long copyBuckets(List<FileBucket> candidates, PhysicalNode from, PhysicalNode toNode) {
         int numberOfFilesReplicated = 0;
         long sizeOfFilesReplicated = 0;
         List<FileBucket> fileBuckets = new ArrayList<>();
 
-        for (int bucket : buckets ){
-            FileBucket fileBucket = localFileManager.getLocalBuckets().get(bucket);
-            if (fileBucket == null) continue;
-
+        for (FileBucket fileBucket : candidates){
             fileBucket.setLocked(true);
             fileBuckets.add(fileBucket);
             numberOfFilesReplicated += fileBucket.getNumberOfFiles();
             sizeOfFilesReplicated += fileBucket.getSize();
         }
 
-        if (numberOfFilesReplicated > 0) {
+        BucketStreamer streamer = this.streamer;
+        if (numberOfFilesReplicated > 0 && streamer != null) {
+            senders.execute(() -> {
+                if (streamer.send(fileBuckets, toNode) != null)
+                    callTransmitted(fileBuckets, from, toNode);
+                else
+                    SimpleLog.i("Unable to copy buckets to " + toNode.getFullAddress());
+                unlockBucket(fileBuckets);
+            });
+        }
+        else if (numberOfFilesReplicated > 0) {
             float replicateTime = sizeOfFilesReplicated * 1.0f / Config.getInstance().getNetworkSpeed();
             new Timer().schedule(new TimerTask() {
                 @Override
@@ -126,17 +205,24 @@ public class FileTransferManager {
         return sizeOfFilesReplicated;
     }
 
+    private List<FileBucket> toFileBuckets(List<Integer> buckets) {
+        List<FileBucket> fileBuckets = new ArrayList<>();
+
+        for (int bucket : buckets ){
+            FileBucket fileBucket = localFileManager.getLocalBuckets().get(bucket);
+            if (fileBucket != null)
+                fileBuckets.add(fileBucket);
+        }
+
+        return fileBuckets;
+    }
+
     public float received(List<FileBucket> buckets, PhysicalNode from, PhysicalNode toNode) {
         int numberOfFilesReceived = 0;
         long sizeOfFilesReceived = 0;
 
         for (FileBucket bucket : buckets ){
-            FileBucket fileBucket = localFileManager.getLocalBuckets().get(bucket.getKey());
-            if (fileBucket == null) {
-                fileBucket = new FileBucket(bucket.getKey());
-                localFileManager.getLocalBuckets().put(fileBucket.getKey(), fileBucket);
-            }
-
+            FileBucket fileBucket = localFileManager.getOrCreateBucket(bucket);
             fileBucket.setLocked(false);
             fileBucket.merge(bucket);
 
@@ -155,8 +241,11 @@ public class FileTransferManager {
         return totalTime;
     }
 
-    public void requestTransfer(int hi, int hf, PhysicalNode from, PhysicalNode toNode) {
-        callFileTransfer(rangeToList(hi, hf), from ,toNode);
+    public void requestTransfer(TokenRange range, PhysicalNode from, PhysicalNode toNode) {
+        if (Config.getInstance().isLongTokenSpace())
+            callRangeTransfer(range, from, toNode);
+        else
+            callFileTransfer(rangeToList(range), from ,toNode);
     }
 
     public void requestTransfer(List<Integer> buckets, PhysicalNode from, PhysicalNode toNode) {
@@ -169,8 +258,11 @@ public class FileTransferManager {
         callFileTransfer(buckets, from ,toNode);
     }
 
-    public void requestCopy(int hi, int hf, PhysicalNode from, PhysicalNode toNode) {
-        callFileReplicate(rangeToList(hi, hf), from ,toNode);
+    public void requestCopy(TokenRange range, PhysicalNode from, PhysicalNode toNode) {
+        if (Config.getInstance().isLongTokenSpace())
+            callRangeReplicate(range, from, toNode);
+        else
+            callFileReplicate(rangeToList(range), from ,toNode);
     }
 
     public void requestCopy(List<Integer> buckets, PhysicalNode from, PhysicalNode toNode) {
@@ -187,8 +279,13 @@ public class FileTransferManager {
         transferToken = token;
     }
 
-    private List<Integer> rangeToList(int hi, int hf) {
+    /**
+     * @return hash slots in the range, 64-bit token ranges are passed on as they are
+     */
+    private List<Integer> rangeToList(TokenRange range) {
         List<Integer> buckets = new ArrayList<>();
+        int hi = (int) range.getStart();
+        int hf = (int) range.getEnd();
 
         if (hf < hi) {
             for (int bucket = hi + 1; bucket <= Config.getInstance().getNumberOfHashSlots(); bucket++) {
@@ -229,6 +326,25 @@ public class FileTransferManager {
         }
     }
 
+    private void callRangeTransfer(TokenRange range, PhysicalNode from, PhysicalNode toNode) {
+        if (isCompliedWithPolicy(from, toNode) && callBacks != null) {
+            reportTransfer(from);
+            markReceivedRange(range, from, toNode);
+            for (FileTransferRequestCallBack callBack : callBacks) {
+                callBack.onTransferring(range, from, toNode);
+            }
+        }
+    }
+
+    private void callRangeReplicate(TokenRange range, PhysicalNode from, PhysicalNode toNode) {
+        if (isCompliedWithPolicy(from, toNode) && callBacks != null) {
+            markReceivedRange(range, from, toNode);
+            for (FileTransferRequestCallBack callBack : callBacks) {
+                callBack.onReplicating(range, from, toNode);
+            }
+        }
+    }
+
     private void callTransmitted(List<FileBucket> buckets, PhysicalNode from, PhysicalNode toNode) {
         if (callBacks != null)
             for (FileTransferRequestCallBack callBack : callBacks) {
@@ -238,13 +354,13 @@ public class FileTransferManager {
 
     private void cleanBuckets(List<FileBucket> buckets) {
         for (FileBucket bucket : buckets ){
-            localFileManager.getLocalBuckets().remove(bucket.getKey());
+            localFileManager.removeBucket(bucket);
         }
     }
 
     private void unlockBucket(List<FileBucket> buckets) {
         for (FileBucket bucket : buckets ){
-            FileBucket fileBucket = localFileManager.getLocalBuckets().get(bucket.getKey());
+            FileBucket fileBucket = localFileManager.getBucket(bucket);
             if (fileBucket == null) continue;
 
             fileBucket.setLocked(false);
@@ -273,6 +389,11 @@ public class FileTransferManager {
         }
     }
 
+    private void markReceivedRange(TokenRange range, PhysicalNode from, PhysicalNode to) {
+        if (mySelf.equals(to.getFullAddress()))
+            localFileManager.addGentile(range, from.getFullAddress());
+    }
+
     private void reportTransfer(PhysicalNode from) {
         if (mySelf.equals(from.getFullAddress()))
             BucketMigrateInfoManager.getInstance().record(localFileManager.getMigrateInfo(), transferToken);
@@ -1,5 +1,6 @@
 package filemanagement;
 
+import commonmodels.TokenRange;
 import loadmanagement.LoadInfo;
 import util.Config;
 import util.MathX;
@@ -8,8 +9,11 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 public class LocalFileManager {
 
@@ -17,6 +21,16 @@ public class LocalFileManager {
 
     private Map<Integer, Gentile> gentiles;
 
+    // buckets by 64-bit token, one per token written, used instead of localBuckets
+    // when the ring places keys on tokens, ranges of tokens are looked up without enumerating them
+    private NavigableMap<Long, FileBucket> tokenBuckets;
+
+    // gentiles of token ranges by the start of the range, a token is looked up with a floor lookup
+    private NavigableMap<Long, Gentile> tokenGentiles;
+
+    // width of the groups token buckets are reported in, hash_slots groups over the token space
+    private long tokenGroupWidth;
+
     private BucketMigrateInfo migrateInfo;
 
     private long numberOfMiss;
@@ -34,6 +48,9 @@ public class LocalFileManager {
     private LocalFileManager() {
         localBuckets = new ConcurrentHashMap<>();
         gentiles = new ConcurrentHashMap<>();
+        tokenBuckets = new ConcurrentSkipListMap<>();
+        tokenGentiles = new ConcurrentSkipListMap<>();
+        tokenGroupWidth = Long.divideUnsigned(-1L, Config.getInstance().getNumberOfHashSlots()) + 1;
         numberOfMiss = 0;
         readOverhead = Config.getInstance().getReadOverhead();
         writeOverhead = Config.getInstance().getWriteOverhead();
@@ -65,6 +82,53 @@ public class LocalFileManager {
         this.localBuckets = localBuckets;
     }
 
+    public NavigableMap<Long, FileBucket> getTokenBuckets() {
+        return tokenBuckets;
+    }
+
+    /**
+     * @return buckets of the tokens in the range
+     *
+     *          Time Complexity O(log n + number of buckets returned)
+     */
+    public List<FileBucket> getBuckets(TokenRange range) {
+        List<FileBucket> buckets = new ArrayList<>();
+
+        if (range.isWrapped()) {
+            buckets.addAll(tokenBuckets.tailMap(range.getStart(), false).values());
+            buckets.addAll(tokenBuckets.headMap(range.getEnd(), true).values());
+        }
+        else if (!range.isEmpty()) {
+            buckets.addAll(tokenBuckets.subMap(range.getStart(), false, range.getEnd(), true).values());
+        }
+
+        return buckets;
+    }
+
+    /**
+     * @return local bucket holding the same files as the given one, null if there is none
+     */
+    public FileBucket getBucket(FileBucket bucket) {
+        if (Config.getInstance().isLongTokenSpace())
+            return tokenBuckets.get(bucket.getToken());
+        else
+            return localBuckets.get(bucket.getKey());
+    }
+
+    public FileBucket getOrCreateBucket(FileBucket bucket) {
+        if (Config.getInstance().isLongTokenSpace())
+            return tokenBuckets.computeIfAbsent(bucket.getToken(), this::newTokenBucket);
+        else
+            return localBuckets.computeIfAbsent(bucket.getKey(), FileBucket::new);
+    }
+
+    public void removeBucket(FileBucket bucket) {
+        if (Config.getInstance().isLongTokenSpace())
+            tokenBuckets.remove(bucket.getToken());
+        else
+            localBuckets.remove(bucket.getKey());
+    }
+
     public void generateFileBuckets(int numberOfBuckets) {
         for (int i = 0; i < numberOfBuckets; i++) {
             localBuckets.put(i, new FileBucket(i, MathX.nextInt(1000, 10000), MathX.nextInt(Integer.MAX_VALUE)));
@@ -121,6 +185,42 @@ public class LocalFileManager {
         return fileBucket;
     }
 
+    public FileBucket readToken(long token, long filesize) {
+        FileBucket fileBucket = tokenBuckets.get(token);
+
+        if (fileBucket != null) {
+            return filesize < 0 ? fileBucket.read() : fileBucket.read(filesize);
+        }
+        else {
+            numberOfMiss++;
+            return null;
+        }
+    }
+
+    public FileBucket writeToken(long token, long fileSize) {
+        FileBucket fileBucket = tokenBuckets.computeIfAbsent(token, this::newTokenBucket);
+        fileBucket.write(fileSize);
+
+        return fileBucket;
+    }
+
+    public FileBucket writeToken(DummyFile file, ToLongFunction<String> func) {
+        long token = func.applyAsLong(file.getName());
+
+        if (file.getSize() < 0) {
+            file.setSize(MathX.nextInt(Integer.MAX_VALUE));
+        }
+
+        return writeToken(token, file.getSize());
+    }
+
+    private FileBucket newTokenBucket(long token) {
+        // no int key, folding the token into one would merge buckets, the token tells it apart
+        FileBucket fileBucket = new FileBucket(-1);
+        fileBucket.setToken(token);
+        return fileBucket;
+    }
+
     public FileBucket write(DummyFile file, Function<String, Integer> func) {
         int bucket = func.apply(file.getName());
 
@@ -142,16 +242,17 @@ public class LocalFileManager {
         FileBucket gentileBuckets = new FileBucket(-1);
         Map<String, Long> gentileBucketMap = new HashMap<>();
 
-        for (FileBucket bucket : localBuckets.values()) {
+        List<FileBucket> buckets = new ArrayList<>(localBuckets.values());
+        buckets.addAll(tokenBuckets.values());
+        for (FileBucket bucket : buckets) {
             // load info calculation
             if (bucket.isLocked()) loadInfo.setLoadBalancing(true);
             dummyBucket.merge(bucket);
-            loadInfo.getBucketInfoList().add((FileBucket) bucket.clone());
+            report(loadInfo.getBucketInfoList(), bucket);
 
             // migration info calculation
-            if (gentiles.containsKey(bucket.getKey())) {
-                int key = bucket.getKey();
-                Gentile gentile = gentiles.get(key);
+            Gentile gentile = getGentile(bucket);
+            if (gentile != null) {
                 long load = gentileBucketMap.getOrDefault(gentile.getNodeId(), 0L) +
                         bucket.getLoad(readOverhead, writeOverhead, interval);
                 gentileBucketMap.put(gentile.getNodeId(), load);
@@ -189,6 +290,35 @@ public class LocalFileManager {
         return loadInfo;
     }
 
+    /**
+     * Add a bucket to the load report. Buckets of 64-bit tokens, one per token written,
+     * are summed up by group of the token space, a group is reported at the smallest
+     * token written in it, so the report does not grow with the number of keys.
+     * Token buckets come in ascending order, the buckets of a group are next to each other.
+     */
+    private void report(List<FileBucket> reported, FileBucket bucket) {
+        FileBucket last = reported.isEmpty() ? null : reported.get(reported.size() - 1);
+        if (!Config.getInstance().isLongTokenSpace() || last == null ||
+                groupOf(last.getToken()) != groupOf(bucket.getToken())) {
+            reported.add((FileBucket) bucket.clone());
+            return;
+        }
+
+        last.setNumberOfFiles(last.getNumberOfFiles() + bucket.getNumberOfFiles());
+        last.setSize(last.getSize() + bucket.getSize());
+        last.setNumberOfReads(last.getNumberOfReads() + bucket.getNumberOfReads());
+        last.setSizeOfReads(last.getSizeOfReads() + bucket.getSizeOfReads());
+        last.setNumberOfWrites(last.getNumberOfWrites() + bucket.getNumberOfWrites());
+        last.setSizeOfWrites(last.getSizeOfWrites() + bucket.getSizeOfWrites());
+        last.setNumberOfLockConflicts(last.getNumberOfLockConflicts() + bucket.getNumberOfLockConflicts());
+        last.setLocked(last.isLocked() || bucket.isLocked());
+    }
+
+    private long groupOf(long token) {
+        // shifted so that signed order of tokens is unsigned order of groups
+        return Long.divideUnsigned(token - Long.MIN_VALUE, tokenGroupWidth);
+    }
+
     public BucketMigrateInfo getMigrateInfo() {
         return migrateInfo;
     }
@@ -198,9 +328,32 @@ public class LocalFileManager {
         gentiles.put(bucket, gentile);
     }
 
+    public void addGentile(TokenRange range, String nodeId) {
+        Gentile gentile = new Gentile(nodeId, range);
+        tokenGentiles.put(range.getStart(), gentile);
+    }
+
+    private Gentile getGentile(FileBucket bucket) {
+        if (!Config.getInstance().isLongTokenSpace())
+            return gentiles.get(bucket.getKey());
+
+        // the start of a range is excluded, a range wrapping around has the largest start
+        long token = bucket.getToken();
+        Map.Entry<Long, Gentile> entry = tokenGentiles.lowerEntry(token);
+        if (entry == null || !entry.getValue().contains(token))
+            entry = tokenGentiles.lastEntry();
+
+        return entry != null && entry.getValue().contains(token) ? entry.getValue() : null;
+    }
+
     public void cleanupGentiles() {
-        List<Integer> deadList = new ArrayList<>();
-        for (Map.Entry<Integer, Gentile> entry : gentiles.entrySet()) {
+        cleanupGentiles(gentiles);
+        cleanupGentiles(tokenGentiles);
+    }
+
+    private <K> void cleanupGentiles(Map<K, Gentile> gentiles) {
+        List<K> deadList = new ArrayList<>();
+        for (Map.Entry<K, Gentile> entry : gentiles.entrySet()) {
             Gentile gentile = entry.getValue();
             gentile.countDown();
             if (gentile.getCounter() < 1) {
@@ -208,7 +361,7 @@ public class LocalFileManager {
             }
         }
 
-        for (Integer key : deadList) {
+        for (K key : deadList) {
             gentiles.remove(key);
         }
     }
@@ -216,12 +369,22 @@ public class LocalFileManager {
     private static class Gentile {
         private String nodeId;
         private int counter;
+        private TokenRange range;
 
         public Gentile(String nodeId) {
             this.nodeId = nodeId;
             this.counter = 2;
         }
 
+        public Gentile(String nodeId, TokenRange range) {
+            this(nodeId);
+            this.range = range;
+        }
+
+        public boolean contains(long token) {
+            return range != null && range.contains(token);
+        }
+
         public void countDown() {
             this.counter--;
         }
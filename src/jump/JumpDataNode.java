@@ -0,0 +1,117 @@
+package jump;
+
+import commands.JumpCommand;
+import commonmodels.*;
+import commonmodels.transport.Request;
+import util.MathX;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class JumpDataNode extends DataNode {
+
+    public JumpDataNode() {
+    }
+
+    public JumpDataNode(String ip, int port) {
+        super(ip, port);
+    }
+
+    @Override
+    public void createTerminal() {
+        terminal = new JumpTerminal();
+    }
+
+    @Override
+    public Object getTable() {
+        return LookupTable.getInstance();
+    }
+
+    @Override
+    public long getEpoch() {
+        return LookupTable.getInstance().getEpoch();
+    }
+
+    @Override
+    public String createTable(Object o) {
+        return LookupTable.getInstance().createTable(o);
+    }
+
+    @Override
+    public String updateTable(Object o) {
+        return LookupTable.getInstance().updateTable(o);
+    }
+
+    @Override
+    public List<PhysicalNode> getPhysicalNodes() {
+        return new ArrayList<>(
+                LookupTable.getInstance().getPhysicalNodeMap().values()
+        );
+    }
+
+
+    @Override
+    public Request prepareListPhysicalNodesCommand() {
+        return new Request()
+                .withHeader(JumpCommand.LISTPHYSICALNODES.name());
+    }
+
+    @Override
+    public Request prepareAddNodeCommand() {
+        return prepareAddNodeCommand(ip, port);
+    }
+
+    @Override
+    public Request prepareAddNodeCommand(String nodeIp, int nodePort) {
+        return new Request()
+                .withHeader(JumpCommand.ADDNODE.name())
+                .withAttachments(nodeIp + ":" + nodePort);
+    }
+
+    @Override
+    public Request prepareRemoveNodeCommand(String nodeIp, int nodePort) {
+        return new Request()
+                .withHeader(JumpCommand.REMOVENODE.name())
+                .withAttachments(nodeIp + ":" + nodePort);
+    }
+
+    @Override
+    public Request prepareLoadBalancingCommand(String... addresses) {
+        int bucket = MathX.nextInt(LookupTable.getInstance().getBuckets().size());
+
+        return new Request().withHeader(JumpCommand.MOVEBUCKET.name())
+                .withAttachment(addresses[0] + " " + addresses[1] + " " + bucket);
+    }
+
+    @Override
+    public Request prepareIncreaseLoadCommand(String... addresses) {
+        int bucket = MathX.nextInt(LookupTable.getInstance().getBuckets().size());
+
+        return new Request().withHeader(JumpCommand.MOVEBUCKET.name())
+                .withAttachment(addresses[1] + " " + addresses[0] + " " + bucket);
+    }
+
+    @Override
+    public Request prepareDecreaseLoadCommand(String... addresses) {
+        int bucket = MathX.nextInt(LookupTable.getInstance().getBuckets().size());
+
+        return new Request().withHeader(JumpCommand.MOVEBUCKET.name())
+                .withAttachment(addresses[0] + " " + addresses[1] + " " + bucket);
+    }
+
+    @Override
+    public void setMembershipCallBack(MembershipCallBack callBack) {
+        LookupTable.getInstance().setMembershipCallBack(callBack);
+    }
+
+    @Override
+    public void setReadWriteCallBack(ReadWriteCallBack callBack) {
+        LookupTable.getInstance().setReadWriteCallBack(callBack);
+    }
+
+    @Override
+    public void initTableDeltaSupplier() {
+        LookupTable.getInstance().setDeltaSupplier(this::getTableDelta);
+    }
+
+}
\ No newline at end of file
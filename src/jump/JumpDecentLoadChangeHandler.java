@@ -0,0 +1,14 @@
+package jump;
+
+import loadmanagement.LoadInfo;
+
+import java.util.List;
+
+public class JumpDecentLoadChangeHandler extends JumpLoadChangeHandler {
+
+    @Override
+    public long computeTargetLoad(List<LoadInfo> loadInfoList, LoadInfo loadInfo, long lowerBound, long upperBound) {
+        if (loadInfoList == null || loadInfoList.size() < 1) return lowerBound;
+        else return loadInfo.getLoad() - (upperBound - loadInfoList.get(0).getLoad());
+    }
+}
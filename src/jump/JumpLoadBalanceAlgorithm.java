@@ -0,0 +1,51 @@
+package jump;
+
+import commonmodels.PhysicalNode;
+import commonmodels.PlacementChange;
+import util.Config;
+import util.SimpleLog;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+public class JumpLoadBalanceAlgorithm {
+
+    public void moveBuckets(LookupTable lookupTable, int[] buckets, PhysicalNode from, PhysicalNode to) {
+        SimpleLog.i("Moving buckets  from " + from.getId() + " to " + to.getId());
+
+        PhysicalNode fromNode = lookupTable.getPhysicalNodeMap().get(from.getId());
+        if (fromNode == null) {
+            SimpleLog.i(from.getId() + " does not exist.");
+            return;
+        }
+
+        PhysicalNode toNode = lookupTable.getPhysicalNodeMap().get(to.getId());
+        if (toNode == null) {
+            SimpleLog.i(to.getId() + " does not exist.");
+            return;
+        }
+
+        PlacementChange change = PlacementChange.before(
+                Config.getInstance().getNumberOfHashSlots(),
+                lookupTable.getPhysicalNodeMap(),
+                lookupTable::place);
+
+        for (int bucket : buckets) {
+            if (bucket < 0 || bucket >= lookupTable.getBuckets().size()) {
+                SimpleLog.i("Bucket [" + bucket + "] does not exist.");
+                continue;
+            }
+            if (!lookupTable.getBuckets().get(bucket).equals(fromNode.getId())) {
+                SimpleLog.i(from.getId() + " does not have bucket [" + bucket + "]");
+                continue;
+            }
+
+            lookupTable.getBuckets().set(bucket, toNode.getId());
+        }
+
+        String token = UUID.randomUUID().toString();
+        change.request(lookupTable.getPhysicalNodeMap(), lookupTable::place, true, token);
+
+        SimpleLog.i("Moving buckets " + Arrays.toString(buckets) + " from " + from.getId() + " to " + to.getId());
+    }
+}
@@ -0,0 +1,102 @@
+package jump;
+
+import commands.JumpCommand;
+import commonmodels.LoadChangeHandler;
+import commonmodels.PhysicalNode;
+import commonmodels.transport.Request;
+import filemanagement.FileBucket;
+import loadmanagement.LoadInfo;
+import org.apache.commons.lang3.StringUtils;
+import util.Config;
+
+import java.util.*;
+
+/**
+ * Hands buckets of a heavy node over to light nodes. The load of a bucket is the load
+ * of the hash slots jumping to it, the heaviest buckets that fit go first, each to the
+ * lightest node it does not overload.
+ */
+public class JumpLoadChangeHandler implements LoadChangeHandler {
+
+    private float readOverhead;
+
+    private float writeOverhead;
+
+    private long interval;
+
+    public JumpLoadChangeHandler() {
+        readOverhead = Config.getInstance().getReadOverhead();
+        writeOverhead = Config.getInstance().getWriteOverhead();
+        interval = Config.getInstance().getLoadInfoReportInterval() / 1000;
+    }
+
+    @Override
+    public List<Request> generateRequestBasedOnLoad(List<LoadInfo> globalLoad, LoadInfo loadInfo, long lowerBound, long upperBound) {
+        // buckets change hands with every commit, read the table published last
+        LookupTable table = LookupTable.getInstance();
+        if (table.getBuckets().isEmpty()) return null;
+
+        String nodeId = new PhysicalNode(loadInfo.getNodeId()).getId();
+        Map<Integer, Double> bucketLoads = new HashMap<>();
+        for (FileBucket fileBucket : loadInfo.getBucketInfoList()) {
+            int bucket = table.getBucket(fileBucket.getKey());
+            // replicas of slots whose bucket belongs to another node
+            if (!table.getBuckets().get(bucket).equals(nodeId)) continue;
+
+            bucketLoads.merge(bucket, getLoad(fileBucket), Double::sum);
+        }
+
+        List<LoadInfo> targets = new ArrayList<>();
+        for (LoadInfo info : globalLoad) {
+            if (info.getLoad() < lowerBound && !info.getNodeId().equals(loadInfo.getNodeId()))
+                targets.add(info);
+        }
+        if (bucketLoads.isEmpty() || targets.isEmpty()) return null;
+        targets.sort(Comparator.comparingLong(LoadInfo::getLoad));
+
+        List<Map.Entry<Integer, Double>> buckets = new ArrayList<>(bucketLoads.entrySet());
+        buckets.sort((o1, o2) -> -1 * Double.compare(o1.getValue(), o2.getValue()));
+
+        double toMove = loadInfo.getLoad() - computeTargetLoad(globalLoad, loadInfo, lowerBound, upperBound);
+        Map<String, List<Integer>> solutions = new LinkedHashMap<>();
+        Map<String, Double> loadToMove = new HashMap<>();
+        for (Map.Entry<Integer, Double> bucket : buckets) {
+            if (toMove <= 0) break;
+            double load = bucket.getValue();
+            if (load <= 0 || load > toMove) continue;
+
+            for (LoadInfo target : targets) {
+                double moved = loadToMove.getOrDefault(target.getNodeId(), 0.0);
+                if (target.getLoad() + moved + load < upperBound) {
+                    solutions.computeIfAbsent(target.getNodeId(), id -> new ArrayList<>()).add(bucket.getKey());
+                    loadToMove.put(target.getNodeId(), moved + load);
+                    toMove -= load;
+                    break;
+                }
+            }
+        }
+
+        List<Request> requests = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> solution : solutions.entrySet()) {
+            requests.add(new Request().withHeader(JumpCommand.MOVEBUCKET.name())
+                    .withReceiver(loadInfo.getNodeId())
+                    .withAttachment(loadInfo.getNodeId() + " " + solution.getKey() + " " + StringUtils.join(solution.getValue(), ',')));
+        }
+
+        return requests;
+    }
+
+    @Override
+    public void optimize(List<Request> requests) {
+        // stub
+    }
+
+    @Override
+    public long computeTargetLoad(List<LoadInfo> loadInfoList, LoadInfo loadInfo, long lowerBound, long upperBound) {
+        return lowerBound;
+    }
+
+    private double getLoad(FileBucket bucket) {
+        return bucket.getLoad(readOverhead, writeOverhead, interval);
+    }
+}
@@ -0,0 +1,124 @@
+package jump;
+
+import commonmodels.PhysicalNode;
+import commonmodels.PlacementChange;
+import util.Config;
+import util.SimpleLog;
+
+import java.util.*;
+
+public class JumpMembershipAlgorithm {
+
+    public void initialize(LookupTable table) {
+        SimpleLog.i("Initializing table...");
+
+        Config config = Config.getInstance();
+
+        String[] nodes = config.getNodes();
+        int startPort = config.getStartPort();
+        int portRange = config.getPortRange();
+        int numberOfActiveNodes = config.getInitNumberOfActiveNodes();
+        int bucketsPerNode = config.getJumpBucketsPerNode();
+
+        List<PhysicalNode> pnodes = new ArrayList<>();
+        int counter = 0;
+        outerloop:
+        for (int port = startPort; port < startPort + portRange; port++) {
+            for (String ip : nodes) {
+                PhysicalNode node = new PhysicalNode();
+                node.setAddress(ip);
+                node.setPort(port);
+                table.getPhysicalNodeMap().put(node.getId(), node);
+                pnodes.add(node);
+
+                if (++counter >= numberOfActiveNodes)
+                    break outerloop;
+            }
+        }
+
+        // interleaved, so the buckets following one another belong to different nodes
+        table.setBuckets(new ArrayList<>());
+        for (int i = 0; i < bucketsPerNode; i++) {
+            for (PhysicalNode node : pnodes) {
+                table.getBuckets().add(node.getId());
+            }
+        }
+
+        table.setEpoch(System.currentTimeMillis());
+        SimpleLog.i("Table initialized...");
+    }
+
+    public void addPhysicalNode(LookupTable table, PhysicalNode node) {
+        if (table.getPhysicalNodeMap().containsKey(node.getId())) {
+            SimpleLog.i(node.getId() + " already exists. Try a different ip:port");
+            return;
+        }
+
+        SimpleLog.i("Adding new physical node: " + node.toString() + "...");
+        PlacementChange change = PlacementChange.before(
+                Config.getInstance().getNumberOfHashSlots(),
+                table.getPhysicalNodeMap(),
+                table::place);
+
+        table.getPhysicalNodeMap().put(node.getId(), node);
+
+        // only the slots jumping to the new buckets move
+        int bucketsPerNode = Config.getInstance().getJumpBucketsPerNode();
+        for (int i = 0; i < bucketsPerNode; i++) {
+            table.getBuckets().add(node.getId());
+        }
+
+        String token = UUID.randomUUID().toString();
+        change.request(table.getPhysicalNodeMap(), table::place, true, token);
+
+        SimpleLog.i("Physical node added...");
+    }
+
+    public void removePhysicalNode(LookupTable table, PhysicalNode node) {
+        SimpleLog.i("Remove physical node: " + node.toString() + "...");
+
+        PhysicalNode pnode = table.getPhysicalNodeMap().get(node.getId());
+        if (pnode == null) {
+            SimpleLog.i(node.getId() + " does not exist.");
+            return;
+        }
+        else if (table.getPhysicalNodeMap().size() < 2) {
+            SimpleLog.i(node.getId() + " is the last node, it cannot be removed.");
+            return;
+        }
+
+        PlacementChange change = PlacementChange.before(
+                Config.getInstance().getNumberOfHashSlots(),
+                table.getPhysicalNodeMap(),
+                table::place);
+
+        table.getPhysicalNodeMap().remove(node.getId());
+
+        // buckets are not removed, which would move slots of every node,
+        // they are handed over to the nodes owning the fewest buckets
+        Map<String, Integer> counts = new HashMap<>();
+        for (String id : table.getPhysicalNodeMap().keySet()) {
+            counts.put(id, 0);
+        }
+        for (String id : table.getBuckets()) {
+            counts.computeIfPresent(id, (k, v) -> v + 1);
+        }
+
+        PriorityQueue<String> owners = new PriorityQueue<>(
+                Comparator.comparing((String id) -> counts.get(id)).thenComparing(id -> id));
+        owners.addAll(counts.keySet());
+        for (int i = 0; i < table.getBuckets().size(); i++) {
+            if (!table.getBuckets().get(i).equals(pnode.getId())) continue;
+
+            String owner = owners.poll();
+            table.getBuckets().set(i, owner);
+            counts.put(owner, counts.get(owner) + 1);
+            owners.add(owner);
+        }
+
+        String token = UUID.randomUUID().toString();
+        change.request(table.getPhysicalNodeMap(), table::place, false, token);
+
+        SimpleLog.i("Physical node removed...");
+    }
+}
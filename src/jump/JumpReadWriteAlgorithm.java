@@ -0,0 +1,57 @@
+package jump;
+
+import commonmodels.PhysicalNode;
+import filemanagement.DummyFile;
+import filemanagement.FileBucket;
+import filemanagement.LocalFileManager;
+import util.Config;
+import util.MathX;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class JumpReadWriteAlgorithm {
+
+    public List<PhysicalNode> lookup(LookupTable lookupTable, String filename) {
+        int hash = MathX.keyHash(filename) % Config.getInstance().getNumberOfHashSlots();
+        return place(lookupTable, hash);
+    }
+
+    /**
+     * @return owner of the bucket the hash slot jumps to, followed by the owners of the
+     *          next buckets, skipping the ones owned by a node already chosen.
+     *          Placing a slot takes O(log n) and nothing is cached.
+     */
+    public List<PhysicalNode> place(LookupTable lookupTable, int hash) {
+        int numberOfReplicas = Config.getInstance().getNumberOfReplicas();
+        List<String> buckets = lookupTable.getBuckets();
+        List<PhysicalNode> pnodes = new ArrayList<>(numberOfReplicas);
+        if (buckets.isEmpty()) return pnodes;
+
+        int bucket = lookupTable.getBucket(hash);
+        for (int i = 0; i < buckets.size() && pnodes.size() < numberOfReplicas; i++) {
+            PhysicalNode pnode = lookupTable.getPhysicalNodeMap().get(buckets.get(bucket));
+            if (!pnodes.contains(pnode))
+                pnodes.add(pnode);
+            if (++bucket == buckets.size()) bucket = 0;
+        }
+
+        return pnodes;
+    }
+
+    public FileBucket writeAndReplicate(LookupTable table, DummyFile file) {
+        FileBucket fileBucket = writeOnly(table, file);
+
+        if (fileBucket != null && !fileBucket.isLocked() && table.getReadWriteCallBack() != null) {
+            List<PhysicalNode> replicas = lookup(table, file.getName());
+            table.getReadWriteCallBack().onFileWritten(file.toAttachment(), replicas);
+        }
+
+        return fileBucket;
+    }
+
+    public FileBucket writeOnly(LookupTable table, DummyFile file) {
+        return LocalFileManager.getInstance().write(file,
+                (String str) -> MathX.keyHash(str) % Config.getInstance().getNumberOfHashSlots());
+    }
+}
@@ -0,0 +1,92 @@
+package jump;
+
+import commands.JumpCommand;
+import commonmodels.Terminal;
+import commonmodels.transport.InvalidRequestException;
+import commonmodels.transport.Request;
+import commonmodels.transport.Response;
+import util.URIHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class JumpTerminal implements Terminal {
+
+    private List<String> tableChangeCommand;
+
+    public JumpTerminal() {
+        tableChangeCommand = new ArrayList<>();
+        tableChangeCommand.add(JumpCommand.ADDNODE.name());
+        tableChangeCommand.add(JumpCommand.REMOVENODE.name());
+        tableChangeCommand.add(JumpCommand.MOVEBUCKET.name());
+    }
+
+    @Override
+    public void initialize() {
+        JumpCommand.INITIALIZE.execute(null);
+    }
+
+    @Override
+    public void destroy() {
+        JumpCommand.DESTROY.execute(null);
+    }
+
+    @Override
+    public void printInfo() {
+        System.out.println("\nAvailable commands:\n" +
+                JumpCommand.READ.getHelpString() + "\n" +
+                JumpCommand.WRITE.getHelpString() + "\n" +
+                JumpCommand.ADDNODE.getHelpString() + "\n" +
+                JumpCommand.REMOVENODE.getHelpString() + "\n" +
+                JumpCommand.MOVEBUCKET.getHelpString() + "\n" +
+                JumpCommand.LISTPHYSICALNODES.getHelpString() + "\n" +
+                JumpCommand.PRINTLOOKUPTABLE.getHelpString() + "\n");
+    }
+
+    @Override
+    public long getEpoch() {
+        return LookupTable.getInstance().getEpoch();
+    }
+
+    @Override
+    public Response process(String[] args) throws InvalidRequestException {
+        try {
+            JumpCommand cmd = JumpCommand.valueOf(args[0].toUpperCase());
+            URIHelper.verifyAddress(args);
+            Request request = cmd.convertToRequest(args);
+            return cmd.execute(request);
+        }
+        catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Command " + args[0] + " not found");
+        }
+    }
+
+    @Override
+    public Response process(Request request) {
+        JumpCommand cmd = JumpCommand.valueOf(request.getHeader());
+        return cmd.execute(request);
+    }
+
+    @Override
+    public Request translate(String[] args) throws InvalidRequestException {
+        try {
+            JumpCommand cmd = JumpCommand.valueOf(args[0].toUpperCase());
+            URIHelper.verifyAddress(args);
+            return cmd.convertToRequest(args);
+        }
+        catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Command " + args[0] + " not found");
+        }
+    }
+
+    @Override
+    public Request translate(String command) throws InvalidRequestException {
+        return translate(command.split(" "));
+    }
+
+    @Override
+    public boolean isRequestCauseTableUpdates(Request request) {
+        return tableChangeCommand.contains(request.getHeader());
+    }
+}
+
@@ -0,0 +1,67 @@
+package loadmanagement;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Requests this process has sent to each physical node and not had answered yet.
+ * Bounded-load placement reads the counts to tell which nodes are above their bound,
+ * so load is evened out as requests are sent, without waiting for load reports.
+ */
+public class InFlightTracker {
+
+    private final ConcurrentHashMap<String, AtomicInteger> counts;
+
+    private final AtomicInteger total;
+
+    private static volatile InFlightTracker instance = null;
+
+    private InFlightTracker() {
+        counts = new ConcurrentHashMap<>();
+        total = new AtomicInteger();
+    }
+
+    public static InFlightTracker getInstance() {
+        if (instance == null) {
+            synchronized(InFlightTracker.class) {
+                if (instance == null) {
+                    instance = new InFlightTracker();
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    public static void deleteInstance() {
+        instance = null;
+    }
+
+    /**
+     * @param nodeId physical node the request is sent to
+     */
+    public void begin(String nodeId) {
+        counts.computeIfAbsent(nodeId, id -> new AtomicInteger()).incrementAndGet();
+        total.incrementAndGet();
+    }
+
+    /**
+     * @param nodeId physical node that answered, or failed to
+     */
+    public void end(String nodeId) {
+        AtomicInteger count = counts.get(nodeId);
+        if (count == null) return;
+
+        count.decrementAndGet();
+        total.decrementAndGet();
+    }
+
+    public int get(String nodeId) {
+        AtomicInteger count = counts.get(nodeId);
+        return count == null ? 0 : count.get();
+    }
+
+    public int getTotal() {
+        return total.get();
+    }
+}
@@ -22,6 +22,7 @@ public class LoadInfo extends Transportable implements Serializable, Queueable
     private long numberOfMiss;
     private long numberOfLockConflicts;
     private long numberOfHits;
+    private int queueDepth;
     private final static long serialVersionUID = -607052110101864782L;
 
     private List<FileBucket> bucketInfoList = new ArrayList<>();
@@ -164,6 +165,19 @@ public class LoadInfo extends Transportable implements Serializable, Queueable
         return this;
     }
 
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public LoadInfo withQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+        return this;
+    }
+
     public List<FileBucket> getBucketInfoList() {
         return bucketInfoList;
     }
@@ -230,12 +244,12 @@ public class LoadInfo extends Transportable implements Serializable, Queueable
 
     @Override
     public String toString() {
-        return new ToStringBuilder(this).append("reportTime", reportTime).append("nodeId", nodeId).append("fileLoad", fileLoad).append("sizeOfFiles", sizeOfFiles).append("readLoad", readLoad).append("writeLoad", writeLoad).append("numberOfMiss", numberOfMiss).append("numberOfLockConflicts", numberOfLockConflicts).append("numberOfHits", numberOfHits).toString();
+        return new ToStringBuilder(this).append("reportTime", reportTime).append("nodeId", nodeId).append("fileLoad", fileLoad).append("sizeOfFiles", sizeOfFiles).append("readLoad", readLoad).append("writeLoad", writeLoad).append("numberOfMiss", numberOfMiss).append("numberOfLockConflicts", numberOfLockConflicts).append("numberOfHits", numberOfHits).append("queueDepth", queueDepth).toString();
     }
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder().append(reportTime).append(nodeId).append(numberOfMiss).append(sizeOfFiles).append(fileLoad).append(readLoad).append(numberOfHits).append(numberOfLockConflicts).append(writeLoad).toHashCode();
+        return new HashCodeBuilder().append(reportTime).append(nodeId).append(numberOfMiss).append(sizeOfFiles).append(fileLoad).append(readLoad).append(numberOfHits).append(numberOfLockConflicts).append(writeLoad).append(queueDepth).toHashCode();
     }
 
     @Override
@@ -247,7 +261,7 @@ public class LoadInfo extends Transportable implements Serializable, Queueable
             return false;
         }
         LoadInfo rhs = ((LoadInfo) other);
-        return new EqualsBuilder().append(reportTime, rhs.reportTime).append(nodeId, rhs.nodeId).append(numberOfMiss, rhs.numberOfMiss).append(sizeOfFiles, rhs.sizeOfFiles).append(fileLoad, rhs.fileLoad).append(readLoad, rhs.readLoad).append(numberOfHits, rhs.numberOfHits).append(numberOfLockConflicts, rhs.numberOfLockConflicts).append(writeLoad, rhs.writeLoad).isEquals();
+        return new EqualsBuilder().append(reportTime, rhs.reportTime).append(nodeId, rhs.nodeId).append(numberOfMiss, rhs.numberOfMiss).append(sizeOfFiles, rhs.sizeOfFiles).append(fileLoad, rhs.fileLoad).append(readLoad, rhs.readLoad).append(numberOfHits, rhs.numberOfHits).append(numberOfLockConflicts, rhs.numberOfLockConflicts).append(writeLoad, rhs.writeLoad).append(queueDepth, rhs.queueDepth).isEquals();
     }
 
 }
\ No newline at end of file
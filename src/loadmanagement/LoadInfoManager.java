@@ -3,12 +3,16 @@ package loadmanagement;
 import commonmodels.LoadInfoReportHandler;
 import filemanagement.LocalFileManager;
 
+import java.util.function.IntSupplier;
+
 public class LoadInfoManager {
 
     private LoadInfo loadInfo;
 
     private LoadInfoReporter reporter;
 
+    private IntSupplier queueDepthProvider;
+
     private static volatile LoadInfoManager instance = null;
 
     private static String nodeId;
@@ -46,7 +50,13 @@ public class LoadInfoManager {
         reporter.setHandler(handler);
     }
 
+    public void setQueueDepthProvider(IntSupplier queueDepthProvider) {
+        this.queueDepthProvider = queueDepthProvider;
+    }
+
     public LoadInfo getLoadInfo() {
+        if (queueDepthProvider != null)
+            loadInfo.setQueueDepth(queueDepthProvider.getAsInt());
         return LocalFileManager.getInstance().updateLoadInfo(loadInfo);
     }
 }
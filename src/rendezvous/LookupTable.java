@@ -0,0 +1,276 @@
+package rendezvous;
+
+import commonmodels.*;
+import commonmodels.transport.Request;
+import filemanagement.DummyFile;
+import filemanagement.FileBucket;
+import org.apache.commons.lang3.SerializationUtils;
+import util.Config;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Table of rendezvous (highest random weight) hashing. Only the physical nodes and
+ * their weights are kept, the replicas of a slot are computed from them, see RendezvousIndex.
+ *
+ * The published table is never modified. Changes are applied to a private copy,
+ * which then replaces the instance, so a reader holding the instance it got from
+ * getInstance() sees one consistent table for the whole request.
+ */
+public class LookupTable extends Transportable implements Serializable {
+
+    private long epoch;
+
+    private HashMap<String, PhysicalNode> physicalNodeMap;
+
+    private transient RendezvousLoadBalanceAlgorithm loadBalanceAlgorithm;
+
+    private transient RendezvousMembershipAlgorithm membershipAlgorithm;
+
+    private transient RendezvousReadWriteAlgorithm readWriteAlgorithm;
+
+    private transient MembershipCallBack membershipCallBack;
+
+    private transient ReadWriteCallBack readWriteCallBack;
+
+    private transient Supplier<List<Request>> deltaSupplier;
+
+    private transient volatile PlacementCache placementCache;
+
+    // copy a change is being applied to, not published yet
+    private transient boolean draft;
+
+    private static volatile LookupTable instance = null;
+
+    private final static long serialVersionUID = 3195846062718053740L;
+
+    private LookupTable() {
+        physicalNodeMap = new HashMap<>();
+        epoch = 0;
+
+        membershipAlgorithm = new RendezvousMembershipAlgorithm();
+        loadBalanceAlgorithm = new RendezvousLoadBalanceAlgorithm();
+        readWriteAlgorithm = new RendezvousReadWriteAlgorithm();
+    }
+
+    public static LookupTable getInstance() {
+        if (instance == null) {
+            synchronized(LookupTable.class) {
+                if (instance == null) {
+                    instance = new LookupTable();
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    public static void deleteInstance() {
+        instance = null;
+    }
+
+    public void initialize() {
+        apply(table -> membershipAlgorithm.initialize(table), true, false);
+
+        // after publishing, the callback reads the new table back
+        if (membershipCallBack != null)
+            membershipCallBack.onInitialized();
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    /**
+     * Publish the current table under the given epoch
+     */
+    public void commitEpoch(long epoch) {
+        apply(table -> table.setEpoch(epoch), false, false);
+    }
+
+    public HashMap<String, PhysicalNode> getPhysicalNodeMap() {
+        return physicalNodeMap;
+    }
+
+    public void setPhysicalNodeMap(HashMap<String, PhysicalNode> physicalNodeMap) {
+        this.physicalNodeMap = physicalNodeMap;
+    }
+
+    public MembershipCallBack getMembershipCallBack() {
+        return membershipCallBack;
+    }
+
+    public void setMembershipCallBack(MembershipCallBack membershipCallBack) {
+        this.membershipCallBack = membershipCallBack;
+    }
+
+    public ReadWriteCallBack getReadWriteCallBack() {
+        return readWriteCallBack;
+    }
+
+    public void setReadWriteCallBack(ReadWriteCallBack readWriteCallBack) {
+        this.readWriteCallBack = readWriteCallBack;
+    }
+
+    public Supplier<List<Request>> getDeltaSupplier() {
+        return deltaSupplier;
+    }
+
+    public void setDeltaSupplier(Supplier<List<Request>> deltaSupplier) {
+        this.deltaSupplier = deltaSupplier;
+    }
+
+    /**
+     * @return replicas of each hash slot at the current epoch
+     */
+    PlacementCache getPlacementCache() {
+        int numberOfHashSlots = Config.getInstance().getNumberOfHashSlots();
+        PlacementCache cache = placementCache;
+        if (cache == null || !cache.matches(epoch, numberOfHashSlots)) {
+            cache = new PlacementCache(epoch, numberOfHashSlots, readWriteAlgorithm.placement(this));
+            placementCache = cache;
+        }
+
+        return cache;
+    }
+
+    public void update() {
+        // strictly increasing, so two updates within the same millisecond are told apart
+        epoch = Math.max(System.currentTimeMillis(), epoch + 1);
+    }
+
+    public void addNode(PhysicalNode node) {
+        commit(table -> membershipAlgorithm.addPhysicalNode(table, node)); // gossip to other nodes
+    }
+
+    public void removeNode(PhysicalNode node) {
+        commit(table -> membershipAlgorithm.removePhysicalNode(table, node)); // gossip to other nodes
+    }
+
+    public void changeWeight(PhysicalNode node, float deltaWeight) {
+        commit(table -> loadBalanceAlgorithm.changeWeight(table, node, deltaWeight)); // gossip to other nodes
+    }
+
+    /**
+     * Apply a change to a copy of the current table and publish the copy under a new epoch
+     */
+    private void commit(Consumer<LookupTable> change) {
+        apply(change, true, true);
+    }
+
+    /**
+     * @param deep copy the nodes as well, if the change modifies them
+     */
+    private void apply(Consumer<LookupTable> change, boolean deep, boolean newEpoch) {
+        if (draft) {
+            // nested in a change that is being applied
+            change.accept(this);
+            if (newEpoch) update();
+            return;
+        }
+
+        synchronized (LookupTable.class) {
+            LookupTable next = getInstance().copy(deep);
+            change.accept(next);
+            if (newEpoch) next.update();
+            next.draft = false;
+            instance = next;
+        }
+    }
+
+    private void install(LookupTable remoteTable) {
+        apply(table -> {
+            table.setEpoch(remoteTable.getEpoch());
+            table.setPhysicalNodeMap(remoteTable.getPhysicalNodeMap());
+        }, false, false);
+    }
+
+    private LookupTable copy(boolean deep) {
+        LookupTable copy;
+        if (deep) {
+            copy = SerializationUtils.clone(this);
+        }
+        else {
+            // published tables are never modified, unchanged parts are shared
+            copy = new LookupTable();
+            copy.epoch = epoch;
+            copy.physicalNodeMap = physicalNodeMap;
+        }
+
+        copy.loadBalanceAlgorithm = loadBalanceAlgorithm;
+        copy.membershipAlgorithm = membershipAlgorithm;
+        copy.readWriteAlgorithm = readWriteAlgorithm;
+        copy.membershipCallBack = membershipCallBack;
+        copy.readWriteCallBack = readWriteCallBack;
+        copy.deltaSupplier = deltaSupplier;
+        copy.draft = true;
+        return copy;
+    }
+
+    public List<PhysicalNode> lookup(String filename) {
+        return readWriteAlgorithm.lookup(this, filename);
+    }
+
+    public FileBucket write(DummyFile file, boolean replicate) {
+        if (replicate)
+            return readWriteAlgorithm.writeAndReplicate(this, file);
+        else
+            return readWriteAlgorithm.writeOnly(this, file);
+    }
+
+    public String listPhysicalNodes() {
+        StringBuilder result = new StringBuilder();
+
+        for(Map.Entry<String, PhysicalNode> entry : physicalNodeMap.entrySet()) {
+            result.append(entry.getValue().toString())
+                    .append(", weight: ").append(entry.getValue().getWeight())
+                    .append('\n');
+        }
+
+        return result.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "Epoch: " + epoch + "\n" + listPhysicalNodes();
+    }
+
+    public String createTable(Object o) {
+        if (o instanceof LookupTable) {
+            install((LookupTable)o);
+
+            return "Table updated.";
+        }
+        else {
+            return "Invalid table type.";
+        }
+    }
+
+    public String updateTable(Object o) {
+        if (o instanceof LookupTable) {
+            LookupTable remoteTable = (LookupTable)o;
+
+            synchronized (LookupTable.class) {
+                LookupTable current = getInstance();
+                if (current.getPhysicalNodeMap().isEmpty() || remoteTable.getEpoch() > current.getEpoch()) {
+                    install(remoteTable);
+
+                    return "Table updated.";
+                }
+                else {
+                    return "Obsolete table. No need to update";
+                }
+            }
+        }
+        else {
+            return "Invalid table type.";
+        }
+    }
+}
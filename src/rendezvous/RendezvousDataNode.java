@@ -0,0 +1,118 @@
+package rendezvous;
+
+import commands.RendezvousCommand;
+import commonmodels.*;
+import commonmodels.transport.Request;
+import util.MathX;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RendezvousDataNode extends DataNode {
+
+    public RendezvousDataNode() {
+    }
+
+    public RendezvousDataNode(String ip, int port) {
+        super(ip, port);
+    }
+
+    @Override
+    public void createTerminal() {
+        terminal = new RendezvousTerminal();
+    }
+
+    @Override
+    public Object getTable() {
+        return LookupTable.getInstance();
+    }
+
+    @Override
+    public long getEpoch() {
+        return LookupTable.getInstance().getEpoch();
+    }
+
+    @Override
+    public String createTable(Object o) {
+        return LookupTable.getInstance().createTable(o);
+    }
+
+    @Override
+    public String updateTable(Object o) {
+        return LookupTable.getInstance().updateTable(o);
+    }
+
+    @Override
+    public List<PhysicalNode> getPhysicalNodes() {
+        return new ArrayList<>(
+                LookupTable.getInstance().getPhysicalNodeMap().values()
+        );
+    }
+
+
+    @Override
+    public Request prepareListPhysicalNodesCommand() {
+        return new Request()
+                .withHeader(RendezvousCommand.LISTPHYSICALNODES.name());
+    }
+
+    @Override
+    public Request prepareAddNodeCommand() {
+        return prepareAddNodeCommand(ip, port);
+    }
+
+    @Override
+    public Request prepareAddNodeCommand(String nodeIp, int nodePort) {
+        return new Request()
+                .withHeader(RendezvousCommand.ADDNODE.name())
+                .withAttachments(nodeIp + ":" + nodePort);
+    }
+
+    @Override
+    public Request prepareRemoveNodeCommand(String nodeIp, int nodePort) {
+        return new Request()
+                .withHeader(RendezvousCommand.REMOVENODE.name())
+                .withAttachments(nodeIp + ":" + nodePort);
+    }
+
+    @Override
+    public Request prepareLoadBalancingCommand(String... addresses) {
+        return new Request().withHeader(RendezvousCommand.CHANGEWEIGHT.name())
+                .withAttachment(addresses[0] + " " + (-1 * randomShareOfWeight(addresses[0])));
+    }
+
+    @Override
+    public Request prepareIncreaseLoadCommand(String... addresses) {
+        return new Request().withHeader(RendezvousCommand.CHANGEWEIGHT.name())
+                .withAttachment(addresses[0] + " " + randomShareOfWeight(addresses[0]));
+    }
+
+    @Override
+    public Request prepareDecreaseLoadCommand(String... addresses) {
+        return new Request().withHeader(RendezvousCommand.CHANGEWEIGHT.name())
+                .withAttachment(addresses[0] + " " + (-1 * randomShareOfWeight(addresses[0])));
+    }
+
+    @Override
+    public void setMembershipCallBack(MembershipCallBack callBack) {
+        LookupTable.getInstance().setMembershipCallBack(callBack);
+    }
+
+    @Override
+    public void setReadWriteCallBack(ReadWriteCallBack callBack) {
+        LookupTable.getInstance().setReadWriteCallBack(callBack);
+    }
+
+    @Override
+    public void initTableDeltaSupplier() {
+        LookupTable.getInstance().setDeltaSupplier(this::getTableDelta);
+    }
+
+    // up to half the current weight of the node
+    private float randomShareOfWeight(String address) {
+        PhysicalNode node = LookupTable.getInstance().getPhysicalNodeMap().get(new PhysicalNode(address).getId());
+        float weight = node == null ? RendezvousMembershipAlgorithm.DEFAULT_WEIGHT : node.getWeight();
+        return weight * MathX.nextInt(1, 50) / 100;
+    }
+
+}
\ No newline at end of file
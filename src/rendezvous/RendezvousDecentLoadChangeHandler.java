@@ -0,0 +1,14 @@
+package rendezvous;
+
+import loadmanagement.LoadInfo;
+
+import java.util.List;
+
+public class RendezvousDecentLoadChangeHandler extends RendezvousLoadChangeHandler {
+
+    @Override
+    public long computeTargetLoad(List<LoadInfo> loadInfoList, LoadInfo loadInfo, long lowerBound, long upperBound) {
+        if (loadInfoList == null || loadInfoList.size() < 1) return lowerBound;
+        else return loadInfo.getLoad() - (upperBound - loadInfoList.get(0).getLoad());
+    }
+}
@@ -0,0 +1,92 @@
+package rendezvous;
+
+import commonmodels.PhysicalNode;
+import util.Config;
+import util.MathX;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Read-only view of the table used to place slots.
+ * Every physical node scores every slot, the replicas of a slot are the nodes with the
+ * highest scores. The score of a node is weight / -ln(u), u being a uniform hash of the
+ * slot and the node in (0, 1), so each node wins a share of the slots proportional to
+ * its weight, and a change of one node only moves slots from or to that node.
+ *
+ * Hashes of the node ids are computed once, when the index is built.
+ */
+final class RendezvousIndex {
+
+    private final PhysicalNode[] nodes;
+
+    private final long[] seeds;
+
+    private final float[] weights;
+
+    private final int numberOfReplicas;
+
+    private RendezvousIndex(List<PhysicalNode> nodeList, int numberOfReplicas) {
+        // same order on every node, so ties are broken the same way
+        nodeList.sort(Comparator.comparing(PhysicalNode::getId));
+
+        this.nodes = nodeList.toArray(new PhysicalNode[0]);
+        this.seeds = new long[nodes.length];
+        this.weights = new float[nodes.length];
+        this.numberOfReplicas = numberOfReplicas;
+
+        for (int i = 0; i < nodes.length; i++) {
+            seeds[i] = MathX.mix64(MathX.keyToken(nodes[i].getId()));
+            weights[i] = nodes[i].getWeight();
+        }
+    }
+
+    static RendezvousIndex build(LookupTable lookupTable) {
+        return new RendezvousIndex(
+                new ArrayList<>(lookupTable.getPhysicalNodeMap().values()),
+                Config.getInstance().getNumberOfReplicas());
+    }
+
+    /**
+     * @return physical nodes with the highest scores for the slot, highest first,
+     *          all the nodes if there are fewer than the number of replicas
+     *
+     *          Time Complexity O(n * r)
+     */
+    List<PhysicalNode> place(int slot) {
+        int r = Math.min(numberOfReplicas, nodes.length);
+        int[] best = new int[r];
+        double[] scores = new double[r];
+        int count = 0;
+
+        long key = MathX.mix64(slot);
+        for (int i = 0; i < nodes.length; i++) {
+            double score = score(seeds[i], key, weights[i]);
+            if (count == r && score <= scores[r - 1]) continue;
+
+            int j = count < r ? count++ : r - 1;
+            while (j > 0 && scores[j - 1] < score) {
+                scores[j] = scores[j - 1];
+                best[j] = best[j - 1];
+                j--;
+            }
+            scores[j] = score;
+            best[j] = i;
+        }
+
+        List<PhysicalNode> pnodes = new ArrayList<>(r);
+        for (int i = 0; i < count; i++) {
+            pnodes.add(nodes[best[i]]);
+        }
+
+        return pnodes;
+    }
+
+    private static double score(long seed, long key, float weight) {
+        long hash = MathX.mix64(seed ^ key);
+        // top 53 bits, in (0, 1)
+        double u = ((hash >>> 11) + 0.5) * 0x1.0p-53;
+        return weight / -Math.log(u);
+    }
+}
@@ -0,0 +1,37 @@
+package rendezvous;
+
+import commonmodels.PhysicalNode;
+import commonmodels.PlacementChange;
+import util.Config;
+import util.SimpleLog;
+
+import java.util.UUID;
+
+public class RendezvousLoadBalanceAlgorithm {
+
+    // a node keeps a weight above zero, so it still wins the slots no other node scores higher on
+    public static final float MIN_WEIGHT = 0.01f;
+
+    public void changeWeight(LookupTable table, PhysicalNode node, float deltaWeight) {
+        PhysicalNode pnode = table.getPhysicalNodeMap().get(node.getId());
+        if (pnode == null) {
+            SimpleLog.i(node.getId() + " does not exist.");
+            return;
+        }
+
+        PlacementChange change = PlacementChange.before(
+                Config.getInstance().getNumberOfHashSlots(),
+                table.getPhysicalNodeMap(),
+                RendezvousIndex.build(table)::place);
+
+        float weight = Math.max(pnode.getWeight() + deltaWeight, MIN_WEIGHT);
+        SimpleLog.i("Changing weight of " + pnode.getId() + " from " + pnode.getWeight() + " to " + weight);
+        pnode.setWeight(weight);
+
+        // slots only move from or to the node whose weight changed
+        String token = UUID.randomUUID().toString();
+        int moved = change.request(table.getPhysicalNodeMap(), RendezvousIndex.build(table)::place, true, token);
+
+        SimpleLog.i("Weight changed, " + moved + " hash buckets moved");
+    }
+}
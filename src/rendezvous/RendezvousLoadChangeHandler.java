@@ -0,0 +1,48 @@
+package rendezvous;
+
+import commands.RendezvousCommand;
+import commonmodels.LoadChangeHandler;
+import commonmodels.PhysicalNode;
+import commonmodels.transport.Request;
+import loadmanagement.LoadInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lowers the weight of a heavy node. A node wins a share of the slots proportional to
+ * its weight, so the weight is scaled by the ratio of the target load to the current one.
+ * The slots it gives up go to whichever nodes score next on them.
+ */
+public class RendezvousLoadChangeHandler implements LoadChangeHandler {
+
+    @Override
+    public List<Request> generateRequestBasedOnLoad(List<LoadInfo> globalLoad, LoadInfo loadInfo, long lowerBound, long upperBound) {
+        long load = loadInfo.getLoad();
+        long target = computeTargetLoad(globalLoad, loadInfo, lowerBound, upperBound);
+        if (target <= 0 || target >= load) return null;
+
+        // weights change with every commit, read the table published last
+        PhysicalNode node = new PhysicalNode(loadInfo.getNodeId());
+        node = LookupTable.getInstance().getPhysicalNodeMap().get(node.getId());
+        if (node == null) return null;
+
+        float deltaWeight = node.getWeight() * ((float) target / load - 1);
+        List<Request> requests = new ArrayList<>();
+        requests.add(new Request().withHeader(RendezvousCommand.CHANGEWEIGHT.name())
+                .withReceiver(loadInfo.getNodeId())
+                .withAttachment(loadInfo.getNodeId() + " " + deltaWeight));
+
+        return requests;
+    }
+
+    @Override
+    public void optimize(List<Request> requests) {
+        // stub
+    }
+
+    @Override
+    public long computeTargetLoad(List<LoadInfo> loadInfoList, LoadInfo loadInfo, long lowerBound, long upperBound) {
+        return lowerBound;
+    }
+}
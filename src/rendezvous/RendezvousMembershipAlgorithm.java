@@ -0,0 +1,90 @@
+package rendezvous;
+
+import commonmodels.PhysicalNode;
+import commonmodels.PlacementChange;
+import util.Config;
+import util.SimpleLog;
+
+import java.util.UUID;
+
+public class RendezvousMembershipAlgorithm {
+
+    // weight of a node joining without one, the share of slots of a node is proportional to its weight
+    public static final float DEFAULT_WEIGHT = 1;
+
+    public void initialize(LookupTable table) {
+        SimpleLog.i("Initializing table...");
+
+        Config config = Config.getInstance();
+
+        String[] nodes = config.getNodes();
+        int startPort = config.getStartPort();
+        int portRange = config.getPortRange();
+        int numberOfActiveNodes = config.getInitNumberOfActiveNodes();
+
+        int counter = 0;
+        outerloop:
+        for (int port = startPort; port < startPort + portRange; port++) {
+            for (String ip : nodes) {
+                PhysicalNode node = new PhysicalNode();
+                node.setAddress(ip);
+                node.setPort(port);
+                node.setWeight(DEFAULT_WEIGHT);
+                table.getPhysicalNodeMap().put(node.getId(), node);
+
+                if (++counter >= numberOfActiveNodes)
+                    break outerloop;
+            }
+        }
+
+        // nothing else to generate, slots are placed by hashing them with the nodes
+        table.setEpoch(System.currentTimeMillis());
+        SimpleLog.i("Table initialized...");
+    }
+
+    public void addPhysicalNode(LookupTable table, PhysicalNode node) {
+        if (table.getPhysicalNodeMap().containsKey(node.getId())) {
+            SimpleLog.i(node.getId() + " already exists. Try a different ip:port");
+            return;
+        }
+
+        SimpleLog.i("Adding new physical node: " + node.toString() + "...");
+        PlacementChange change = PlacementChange.before(
+                Config.getInstance().getNumberOfHashSlots(),
+                table.getPhysicalNodeMap(),
+                RendezvousIndex.build(table)::place);
+
+        if (node.getWeight() <= 0)
+            node.setWeight(DEFAULT_WEIGHT);
+        table.getPhysicalNodeMap().put(node.getId(), node);
+
+        // the new node takes slots away from the nodes it outscores
+        String token = UUID.randomUUID().toString();
+        change.request(table.getPhysicalNodeMap(), RendezvousIndex.build(table)::place, true, token);
+
+        SimpleLog.i("Physical node added...");
+    }
+
+    public void removePhysicalNode(LookupTable table, PhysicalNode node) {
+        SimpleLog.i("Remove physical node: " + node.toString() + "...");
+
+        PhysicalNode pnode = table.getPhysicalNodeMap().get(node.getId());
+        if (pnode == null) {
+            SimpleLog.i(node.getId() + " does not exist.");
+            return;
+        }
+
+        PlacementChange change = PlacementChange.before(
+                Config.getInstance().getNumberOfHashSlots(),
+                table.getPhysicalNodeMap(),
+                RendezvousIndex.build(table)::place);
+
+        table.getPhysicalNodeMap().remove(node.getId());
+
+        // the next best node of each slot of the leaving node copies it from a remaining replica
+        String token = UUID.randomUUID().toString();
+        change.request(table.getPhysicalNodeMap(), RendezvousIndex.build(table)::place, false, token);
+
+        SimpleLog.i("Physical node removed...");
+    }
+}
@@ -0,0 +1,42 @@
+package rendezvous;
+
+import commonmodels.PhysicalNode;
+import commonmodels.PlacementCache;
+import filemanagement.DummyFile;
+import filemanagement.FileBucket;
+import filemanagement.LocalFileManager;
+import util.Config;
+import util.MathX;
+
+import java.util.List;
+
+public class RendezvousReadWriteAlgorithm {
+    public List<PhysicalNode> lookup(LookupTable lookupTable, String filename) {
+        int hash = MathX.keyHash(filename) % Config.getInstance().getNumberOfHashSlots();
+        return lookupTable.getPlacementCache().get(hash);
+    }
+
+    /**
+     * @return replicas of each hash slot in the table as it is now, uncached.
+     *          The index is built once here, not for every slot placed.
+     */
+    public PlacementCache.Placement placement(LookupTable lookupTable) {
+        return RendezvousIndex.build(lookupTable)::place;
+    }
+
+    public FileBucket writeAndReplicate(LookupTable table, DummyFile file) {
+        FileBucket fileBucket = writeOnly(table, file);
+
+        if (fileBucket != null && !fileBucket.isLocked() && table.getReadWriteCallBack() != null) {
+            List<PhysicalNode> replicas = lookup(table, file.getName());
+            table.getReadWriteCallBack().onFileWritten(file.toAttachment(), replicas);
+        }
+
+        return fileBucket;
+    }
+
+    public FileBucket writeOnly(LookupTable table, DummyFile file) {
+        return LocalFileManager.getInstance().write(file,
+                (String str) -> MathX.keyHash(str) % Config.getInstance().getNumberOfHashSlots());
+    }
+}
@@ -0,0 +1,92 @@
+package rendezvous;
+
+import commands.RendezvousCommand;
+import commonmodels.Terminal;
+import commonmodels.transport.InvalidRequestException;
+import commonmodels.transport.Request;
+import commonmodels.transport.Response;
+import util.URIHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class RendezvousTerminal implements Terminal {
+
+    private List<String> tableChangeCommand;
+
+    public RendezvousTerminal() {
+        tableChangeCommand = new ArrayList<>();
+        tableChangeCommand.add(RendezvousCommand.ADDNODE.name());
+        tableChangeCommand.add(RendezvousCommand.REMOVENODE.name());
+        tableChangeCommand.add(RendezvousCommand.CHANGEWEIGHT.name());
+    }
+
+    @Override
+    public void initialize() {
+        RendezvousCommand.INITIALIZE.execute(null);
+    }
+
+    @Override
+    public void destroy() {
+        RendezvousCommand.DESTROY.execute(null);
+    }
+
+    @Override
+    public void printInfo() {
+        System.out.println("\nAvailable commands:\n" +
+                RendezvousCommand.READ.getHelpString() + "\n" +
+                RendezvousCommand.WRITE.getHelpString() + "\n" +
+                RendezvousCommand.ADDNODE.getHelpString() + "\n" +
+                RendezvousCommand.REMOVENODE.getHelpString() + "\n" +
+                RendezvousCommand.CHANGEWEIGHT.getHelpString() + "\n" +
+                RendezvousCommand.LISTPHYSICALNODES.getHelpString() + "\n" +
+                RendezvousCommand.PRINTLOOKUPTABLE.getHelpString() + "\n");
+    }
+
+    @Override
+    public long getEpoch() {
+        return LookupTable.getInstance().getEpoch();
+    }
+
+    @Override
+    public Response process(String[] args) throws InvalidRequestException {
+        try {
+            RendezvousCommand cmd = RendezvousCommand.valueOf(args[0].toUpperCase());
+            URIHelper.verifyAddress(args);
+            Request request = cmd.convertToRequest(args);
+            return cmd.execute(request);
+        }
+        catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Command " + args[0] + " not found");
+        }
+    }
+
+    @Override
+    public Response process(Request request) {
+        RendezvousCommand cmd = RendezvousCommand.valueOf(request.getHeader());
+        return cmd.execute(request);
+    }
+
+    @Override
+    public Request translate(String[] args) throws InvalidRequestException {
+        try {
+            RendezvousCommand cmd = RendezvousCommand.valueOf(args[0].toUpperCase());
+            URIHelper.verifyAddress(args);
+            return cmd.convertToRequest(args);
+        }
+        catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Command " + args[0] + " not found");
+        }
+    }
+
+    @Override
+    public Request translate(String command) throws InvalidRequestException {
+        return translate(command.split(" "));
+    }
+
+    @Override
+    public boolean isRequestCauseTableUpdates(Request request) {
+        return tableChangeCommand.contains(request.getHeader());
+    }
+}
+
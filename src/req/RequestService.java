@@ -1,6 +1,8 @@
 package req;
 
 import req.gen.RequestGenerator;
+import socket.SocketClient;
+import util.ThreadPools;
 
 import java.util.concurrent.*;
 
@@ -28,16 +30,18 @@ public class RequestService {
     }
 
     public void start() {
-        ScheduledExecutorService pool = Executors.newScheduledThreadPool(numberOfThreads);
+        // one client for all threads, it keeps a pool of connections per node
+        SocketClient client = SocketClient.newInstance();
+        ExecutorService pool = ThreadPools.newExecutor(numberOfThreads);
         for (int i = 0; i < numberOfThreads; ++i) {
-            pool.schedule(new RequestThread(generator, latch, i, numOfRequests, interArrivalRate, callBack),
-                    0, TimeUnit.MILLISECONDS);
+            pool.execute(new RequestThread(generator, client, latch, i, numOfRequests, interArrivalRate, callBack));
         }
         try {
             latch.await();
         } catch (InterruptedException ignored) {}
         finally {
             pool.shutdownNow();
+            client.stop();
         }
     }
 }
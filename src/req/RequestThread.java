@@ -25,14 +25,14 @@ public class RequestThread implements Runnable {
 
     private int numOfRequests;
 
-    public RequestThread(RequestGenerator requestGenerator, CountDownLatch latch, int threadId, int numOfRequests, double interArrivalRate, RequestGenerateThreadCallBack callBack) {
+    public RequestThread(RequestGenerator requestGenerator, SocketClient socketClient, CountDownLatch latch, int threadId, int numOfRequests, double interArrivalRate, RequestGenerateThreadCallBack callBack) {
         this.requestGenerator = requestGenerator;
         this.callBack = callBack;
         this.latch = latch;
         this.threadId = threadId;
         this.numOfRequests = numOfRequests;
         this.possionGenerator = new ExpGenerator(interArrivalRate, 1, new UniformGenerator());
-        socketClient = SocketClient.newInstance();
+        this.socketClient = socketClient;
     }
 
     @Override
@@ -44,7 +44,6 @@ public class RequestThread implements Runnable {
                 generate();
                 numOfRequests--;
             } else {
-                socketClient.stop();
                 latch.countDown();
                 Thread.currentThread().interrupt();
                 break;
@@ -3,13 +3,22 @@ package ring;
 import commonmodels.*;
 import filemanagement.DummyFile;
 import filemanagement.FileBucket;
+import util.Config;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+/**
+ * The published table is never modified. Changes are applied to a private copy,
+ * which then replaces the instance, so a reader holding the instance it got from
+ * getInstance() sees one consistent table for the whole request.
+ */
 public class LookupTable extends Transportable implements Serializable {
 
     private long epoch;
@@ -32,6 +41,13 @@ public class LookupTable extends Transportable implements Serializable {
 
     private transient Supplier deltaSupplier;
 
+    private transient volatile RingIndex ringIndex;
+
+    private transient volatile PlacementCache placementCache;
+
+    // copy a change is being applied to, not published yet
+    private transient boolean draft;
+
     private static volatile LookupTable instance = null;
 
     private LookupTable() {
@@ -63,10 +79,7 @@ public class LookupTable extends Transportable implements Serializable {
 
     public String createTable(Object o) {
         if (o instanceof LookupTable) {
-            LookupTable remoteTable = (LookupTable)o;
-            this.setTable(remoteTable.getTable());
-            this.setEpoch(remoteTable.getEpoch());
-            this.setPhysicalNodeMap(remoteTable.getPhysicalNodeMap());
+            install((LookupTable)o);
 
             return "Table updated.";
         }
@@ -79,15 +92,16 @@ public class LookupTable extends Transportable implements Serializable {
         if (o instanceof LookupTable) {
             LookupTable remoteTable = (LookupTable)o;
 
-            if (this.table == null || remoteTable.getEpoch() > this.getEpoch()) {
-                this.setTable(remoteTable.getTable());
-                this.setEpoch(remoteTable.getEpoch());
-                this.setPhysicalNodeMap(remoteTable.getPhysicalNodeMap());
+            synchronized (LookupTable.class) {
+                LookupTable current = getInstance();
+                if (current.table == null || remoteTable.getEpoch() > current.getEpoch()) {
+                    install(remoteTable);
 
-                return "Table updated.";
-            }
-            else {
-                return "Obsolete table. No need to update";
+                    return "Table updated.";
+                }
+                else {
+                    return "Obsolete table. No need to update";
+                }
             }
         }
         else {
@@ -96,7 +110,11 @@ public class LookupTable extends Transportable implements Serializable {
     }
 
     public void initialize() {
-        membershipAlgorithm.initialize(this);
+        apply(table -> membershipAlgorithm.initialize(table), true, false);
+
+        // after publishing, the callback reads the new table back
+        if (membershipCallBack != null)
+            membershipCallBack.onInitialized();
     }
 
     public long getEpoch() {
@@ -107,6 +125,13 @@ public class LookupTable extends Transportable implements Serializable {
         this.epoch = epoch;
     }
 
+    /**
+     * Publish the current table under the given epoch
+     */
+    public void commitEpoch(long epoch) {
+        apply(table -> table.setEpoch(epoch), false, false);
+    }
+
     public BinarySearchList getTable() {
         return table;
     }
@@ -147,8 +172,128 @@ public class LookupTable extends Transportable implements Serializable {
         this.deltaSupplier = deltaSupplier;
     }
 
+    /**
+     * @return primitive index of the ring at the current epoch, built on first use after a change
+     */
+    RingIndex getRingIndex() {
+        RingIndex index = ringIndex;
+        if (index == null || !index.matches(this)) {
+            index = RingIndex.build(this);
+            ringIndex = index;
+        }
+
+        return index;
+    }
+
+    /**
+     * @return replicas of each hash slot at the current epoch
+     */
+    PlacementCache getPlacementCache() {
+        int size = Config.getInstance().getNumberOfHashSlots();
+        PlacementCache cache = placementCache;
+        if (cache == null || !cache.matches(epoch, size)) {
+            cache = new PlacementCache(epoch, size, hash -> readWriteAlgorithm.place(this, hash));
+            placementCache = cache;
+        }
+
+        return cache;
+    }
+
     public void update() {
-        epoch = System.currentTimeMillis();
+        // strictly increasing, so two updates within the same millisecond are told apart
+        epoch = Math.max(System.currentTimeMillis(), epoch + 1);
+    }
+
+    /**
+     * Apply a change to a copy of the current table and publish the copy under a new epoch
+     */
+    private void commit(Consumer<LookupTable> change) {
+        apply(change, true, true);
+    }
+
+    /**
+     * @param deep copy the nodes as well, if the change modifies them
+     */
+    private void apply(Consumer<LookupTable> change, boolean deep, boolean newEpoch) {
+        if (draft) {
+            // nested in a change that is being applied
+            change.accept(this);
+            if (newEpoch) update();
+            return;
+        }
+
+        synchronized (LookupTable.class) {
+            LookupTable next = getInstance().copy(deep);
+            change.accept(next);
+            if (newEpoch) next.update();
+            next.draft = false;
+            instance = next;
+        }
+    }
+
+    private void install(LookupTable remoteTable) {
+        apply(table -> {
+            table.setTable(remoteTable.getTable());
+            table.setEpoch(remoteTable.getEpoch());
+            table.setPhysicalNodeMap(remoteTable.getPhysicalNodeMap());
+        }, false, false);
+    }
+
+    private LookupTable copy(boolean deep) {
+        LookupTable copy;
+        if (deep) {
+            copy = deepCopy();
+        }
+        else {
+            // published tables are never modified, unchanged parts are shared
+            copy = new LookupTable();
+            copy.epoch = epoch;
+            copy.table = table;
+            copy.physicalNodeMap = physicalNodeMap;
+        }
+
+        copy.loadBalanceAlgorithm = loadBalanceAlgorithm;
+        copy.vNodeLoadBalanceAlgorithm = vNodeLoadBalanceAlgorithm;
+        copy.membershipAlgorithm = membershipAlgorithm;
+        copy.readWriteAlgorithm = readWriteAlgorithm;
+        copy.membershipCallBack = membershipCallBack;
+        copy.readWriteCallBack = readWriteCallBack;
+        copy.deltaSupplier = deltaSupplier;
+        copy.draft = true;
+        return copy;
+    }
+
+    // field by field, serializing the table costs tens of milliseconds per change at 100 vnodes per node
+    private LookupTable deepCopy() {
+        LookupTable copy = new LookupTable();
+        copy.epoch = epoch;
+
+        // a vnode is shared by the ring and its physical node, so is its copy
+        Map<Indexable, Indexable> copies = new IdentityHashMap<>();
+        for (Indexable vnode : table) {
+            Indexable c = copyOf(vnode);
+            copies.put(vnode, c);
+            copy.table.add(c);
+        }
+
+        for (Map.Entry<String, PhysicalNode> entry : physicalNodeMap.entrySet()) {
+            PhysicalNode pnode = entry.getValue();
+            PhysicalNode c = new PhysicalNode(pnode.getAddress(), pnode.getPort());
+            c.setStatus(pnode.getStatus());
+            c.setWeight(pnode.getWeight());
+            for (Indexable vnode : pnode.getVirtualNodes())
+                c.getVirtualNodes().add(copies.computeIfAbsent(vnode, LookupTable::copyOf));
+            copy.physicalNodeMap.put(entry.getKey(), c);
+        }
+
+        return copy;
+    }
+
+    private static Indexable copyOf(Indexable node) {
+        VirtualNode vnode = (VirtualNode) node;
+        VirtualNode copy = new VirtualNode(vnode.getToken(), vnode.getPhysicalNodeId());
+        copy.setIndex(vnode.getIndex());
+        return copy;
     }
 
     public void addNode(Indexable node) {
@@ -163,50 +308,56 @@ public class LookupTable extends Transportable implements Serializable {
         loadBalanceAlgorithm.nodeLeave(this, index);
     }
 
+    public void addNodes(Collection<? extends Indexable> nodes) {
+        table.addNodes(nodes); // merge all the nodes in one pass, not gossiping the change yet
+        loadBalanceAlgorithm.nodesJoin(this, nodes);
+    }
+
+    public void removeNodes(Collection<? extends Indexable> nodes) {
+        loadBalanceAlgorithm.nodesLeave(this, nodes); // ranges are worked out while the nodes are still in table
+        table.removeNodes(nodes); // only remove from table, not gossiping the change yet
+    }
+
     public void addNode(PhysicalNode node) {
-        membershipAlgorithm.addPhysicalNode(this, node);
-        update(); // commit the change, gossip to other nodes
+        commit(table -> membershipAlgorithm.addPhysicalNode(table, node)); // gossip to other nodes
     }
 
-    public void addNode(PhysicalNode node, int[] buckets) {
-        membershipAlgorithm.addPhysicalNode(this, node, buckets);
-        update(); // commit the change, gossip to other nodes
+    public void addNode(PhysicalNode node, long[] buckets) {
+        commit(table -> membershipAlgorithm.addPhysicalNode(table, node, buckets)); // gossip to other nodes
     }
 
     public void removeNode(PhysicalNode node) {
-        membershipAlgorithm.removePhysicalNode(this, node);
-        update(); // commit the change, gossip to other nodes
+        commit(table -> membershipAlgorithm.removePhysicalNode(table, node)); // gossip to other nodes
     }
 
     public void increaseLoad(PhysicalNode node) {
-        loadBalanceAlgorithm.increaseLoad(this, node);
-        update(); // commit the change, gossip to other nodes
+        commit(table -> loadBalanceAlgorithm.increaseLoad(table, node)); // gossip to other nodes
     }
 
-    public void increaseLoad(PhysicalNode node, int[] hashVal) {
-        loadBalanceAlgorithm.increaseLoad(this, node, hashVal);
-        update(); // commit the change, gossip to other nodes
+    public void increaseLoad(PhysicalNode node, long[] hashVal) {
+        commit(table -> loadBalanceAlgorithm.increaseLoad(table, node, hashVal)); // gossip to other nodes
     }
 
     public void decreaseLoad(PhysicalNode node) {
-        loadBalanceAlgorithm.decreaseLoad(this, node);
-        update(); // commit the change, gossip to other nodes
+        commit(table -> loadBalanceAlgorithm.decreaseLoad(table, node)); // gossip to other nodes
     }
 
-    public void decreaseLoad(PhysicalNode node, int[] hashVal) {
-        loadBalanceAlgorithm.decreaseLoad(this, node, hashVal);
-        update(); // commit the change, gossip to other nodes
+    public void decreaseLoad(PhysicalNode node, long[] hashVal) {
+        commit(table -> loadBalanceAlgorithm.decreaseLoad(table, node, hashVal)); // gossip to other nodes
     }
 
     public void moveVNode(VirtualNode node, PhysicalNode from , PhysicalNode to) {
-        vNodeLoadBalanceAlgorithm.moveVNode(this, node, from, to);
-        update(); // commit the change, gossip to other nodes
+        commit(table -> vNodeLoadBalanceAlgorithm.moveVNode(table, node, from, to)); // gossip to other nodes
     }
 
     public List<PhysicalNode> lookup(String filename) {
         return readWriteAlgorithm.lookup(this, filename);
     }
 
+    public PhysicalNode chooseReplica(List<PhysicalNode> replicas) {
+        return readWriteAlgorithm.chooseReplica(this, replicas);
+    }
+
     public FileBucket write(DummyFile file, boolean replicate) {
         if (replicate)
             return readWriteAlgorithm.writeAndReplicate(this, file);
@@ -224,15 +375,15 @@ public class LookupTable extends Transportable implements Serializable {
         return result.toString();
     }
 
-    public int[] getSpareBuckets() {
+    public long[] getSpareBuckets() {
         return membershipAlgorithm.generateSpareBuckets(this);
     }
 
-    public int[] randomIncreaseRange(PhysicalNode node) {
+    public long[] randomIncreaseRange(PhysicalNode node) {
         return loadBalanceAlgorithm.randomIncreaseRange(this, node);
     }
 
-    public int[] randomDecreaseRange(PhysicalNode node) {
+    public long[] randomDecreaseRange(PhysicalNode node) {
         return loadBalanceAlgorithm.randomDecreaseRange(this, node);
     }
 
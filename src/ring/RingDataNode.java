@@ -90,14 +90,14 @@ public class RingDataNode extends DataNode {
 
     @Override
     public Request prepareIncreaseLoadCommand(String... addresses) {
-        int[] deltaHash = LookupTable.getInstance().randomIncreaseRange(new PhysicalNode(addresses[0]));
+        long[] deltaHash = LookupTable.getInstance().randomIncreaseRange(new PhysicalNode(addresses[0]));
         return new Request().withHeader(RingCommand.INCREASELOAD.name())
                 .withAttachments(addresses[0], StringUtils.join(deltaHash, ','));
     }
 
     @Override
     public Request prepareDecreaseLoadCommand(String... addresses) {
-        int[] hash = LookupTable.getInstance().randomDecreaseRange(new PhysicalNode(addresses[0]));
+        long[] hash = LookupTable.getInstance().randomDecreaseRange(new PhysicalNode(addresses[0]));
         return new Request().withHeader(RingCommand.DECREASELOAD.name())
                 .withAttachments(addresses[0], StringUtils.join(hash, ','));
     }
@@ -13,14 +13,13 @@ public class RingDecentForwardLoadChangeHandler extends RingForwardLoadChangeHan
 
     private final int numOfReplicas;
 
-    public RingDecentForwardLoadChangeHandler(LookupTable table) {
-        super(table);
+    public RingDecentForwardLoadChangeHandler() {
         maxLookForward = Config.getInstance().getMaxLookForward();
         numOfReplicas = Config.getInstance().getNumberOfReplicas();
     }
 
     @Override
-    protected boolean isEligibleToBalance(Indexable curr, List<LoadInfo> loadInfoList) {
+    protected boolean isEligibleToBalance(LookupTable table, Indexable curr, List<LoadInfo> loadInfoList) {
         if (loadInfoList == null || loadInfoList.size() < 1) return false;
 
         PhysicalNode node = new PhysicalNode(loadInfoList.get(0).getNodeId());
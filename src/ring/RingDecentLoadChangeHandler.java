@@ -9,12 +9,8 @@ import util.Config;
 import java.util.List;
 
 public class RingDecentLoadChangeHandler extends RingLoadChangeHandler {
-    public RingDecentLoadChangeHandler(LookupTable table) {
-        super(table);
-    }
-
     @Override
-    protected boolean isEligibleToBalance(Indexable curr, List<LoadInfo> loadInfoList) {
+    protected boolean isEligibleToBalance(LookupTable table, Indexable curr, List<LoadInfo> loadInfoList) {
         if (loadInfoList == null || loadInfoList.size() < 1) return false;
 
         PhysicalNode node = new PhysicalNode(loadInfoList.get(0).getNodeId());
@@ -5,10 +5,6 @@ import loadmanagement.LoadInfo;
 import java.util.List;
 
 public class RingDecentVNodeLoadChangeHandler extends RingVNodeLoadChangeHandler{
-    public RingDecentVNodeLoadChangeHandler(LookupTable table) {
-        super(table);
-    }
-
     @Override
     public long computeTargetLoad(List<LoadInfo> loadInfoList, LoadInfo loadInfo, long lowerBound, long upperBound) {
         if (loadInfoList == null || loadInfoList.size() < 1) return lowerBound;
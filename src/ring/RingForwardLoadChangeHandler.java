@@ -16,14 +16,14 @@ public class RingForwardLoadChangeHandler extends RingLoadChangeHandler {
 
     private int numOfReplicas;
 
-    public RingForwardLoadChangeHandler(LookupTable table) {
-        super(table);
+    public RingForwardLoadChangeHandler() {
         maxLookForward = Config.getInstance().getMaxLookForward();
         numOfReplicas = Config.getInstance().getNumberOfReplicas();
     }
 
     @Override
     public List<Request> generateRequestBasedOnLoad(List<LoadInfo> globalLoad, LoadInfo loadInfo, long lowerBound, long upperBound) {
+        LookupTable table = LookupTable.getInstance();
         PhysicalNode node = new PhysicalNode(loadInfo.getNodeId());
         PhysicalNode pnode = table.getPhysicalNodeMap().get(node.getId());
         List<Solution> bestSolutions = null;
@@ -32,9 +32,9 @@ public class RingForwardLoadChangeHandler extends RingLoadChangeHandler {
         if (pnode == null || pnode.getVirtualNodes() == null) return null;
         for (int i = 0; i < pnode.getVirtualNodes().size(); i++) {
             Indexable vnode = pnode.getVirtualNodes().get(i);
-            if (!isEligibleToBalance(vnode, globalLoad)) continue;
+            if (!isEligibleToBalance(table, vnode, globalLoad)) continue;
 
-            List<Solution> solutions = evaluate(globalLoad, loadInfo, vnode, target, upperBound);
+            List<Solution> solutions = evaluate(table, globalLoad, loadInfo, vnode, target, upperBound);
 
             if (solutions == null) continue;
             if (bestSolutions == null || solutions.size() < bestSolutions.size())
@@ -51,8 +51,8 @@ public class RingForwardLoadChangeHandler extends RingLoadChangeHandler {
         return requests;
     }
 
-    private List<Solution> evaluate(List<LoadInfo> globalLoad, LoadInfo loadInfo, Indexable current, long target, long upperBound) {
-        List<Indexable> sequence = getLookForwardSequence(globalLoad, current, upperBound);
+    private List<Solution> evaluate(LookupTable table, List<LoadInfo> globalLoad, LoadInfo loadInfo, Indexable current, long target, long upperBound) {
+        List<Indexable> sequence = getLookForwardSequence(table, globalLoad, current, upperBound);
         if (sequence.size() == 0) return null;
         List<Solution> solutions = new ArrayList<>();
 
@@ -65,7 +65,7 @@ public class RingForwardLoadChangeHandler extends RingLoadChangeHandler {
         return solutions;
     }
 
-    private List<Indexable> getLookForwardSequence(List<LoadInfo> globalLoad, Indexable current, long upperBound) {
+    private List<Indexable> getLookForwardSequence(LookupTable table, List<LoadInfo> globalLoad, Indexable current, long upperBound) {
         Indexable iterator = current;
         List<Indexable> sequence = new ArrayList<>();
         sequence.add(current);
@@ -0,0 +1,118 @@
+package ring;
+
+import commonmodels.BinarySearchList;
+import commonmodels.Indexable;
+import commonmodels.PhysicalNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only view of the ring used by lookups.
+ * Tokens of the virtual nodes are kept sorted in a primitive array, next to the
+ * ordinal of the physical node each of them belongs to. Lookups run a binary search
+ * over the primitives, nothing is allocated and the virtual nodes, whose cached
+ * index is shared with the membership algorithms, are left untouched.
+ *
+ * An index is built for one epoch of the table, LookupTable builds a new one
+ * the first time the table is looked up after a change is committed.
+ */
+final class RingIndex {
+
+    private final BinarySearchList table;
+
+    private final Map<String, PhysicalNode> physicalNodeMap;
+
+    private final long epoch;
+
+    private final long[] tokens;
+
+    // ordinal into nodes, for each entry of tokens
+    private final int[] owners;
+
+    private final PhysicalNode[] nodes;
+
+    private RingIndex(BinarySearchList table, Map<String, PhysicalNode> physicalNodeMap, long epoch) {
+        this.table = table;
+        this.physicalNodeMap = physicalNodeMap;
+        this.epoch = epoch;
+        this.tokens = new long[table.size()];
+        this.owners = new int[table.size()];
+
+        Map<String, Integer> ordinals = new HashMap<>();
+        List<PhysicalNode> nodeList = new ArrayList<>();
+        int i = 0;
+        // iterate instead of get(), which caches the index on the shared nodes
+        for (Indexable node : table) {
+            String id = ((VirtualNode) node).getPhysicalNodeId();
+            Integer ordinal = ordinals.get(id);
+            if (ordinal == null) {
+                ordinal = nodeList.size();
+                ordinals.put(id, ordinal);
+                nodeList.add(physicalNodeMap.get(id));
+            }
+
+            tokens[i] = ((VirtualNode) node).getToken();
+            owners[i] = ordinal;
+            i++;
+        }
+        this.nodes = nodeList.toArray(new PhysicalNode[0]);
+    }
+
+    static RingIndex build(LookupTable lookupTable) {
+        return new RingIndex(lookupTable.getTable(), lookupTable.getPhysicalNodeMap(), lookupTable.getEpoch());
+    }
+
+    /**
+     * @return true if the index still reflects the given table
+     */
+    boolean matches(LookupTable lookupTable) {
+        return epoch == lookupTable.getEpoch()
+                && table == lookupTable.getTable()
+                && physicalNodeMap == lookupTable.getPhysicalNodeMap();
+    }
+
+    /**
+     * @param token position of the key, see TokenSpace
+     * @param numOfReplicas number of successive virtual nodes to return, starting at the host of the token
+     * @return physical nodes of the host and its successors, empty if the ring is empty
+     */
+    List<PhysicalNode> lookup(long token, int numOfReplicas) {
+        List<PhysicalNode> pnodes = new ArrayList<>(numOfReplicas);
+        if (tokens.length == 0) return pnodes;
+
+        int index = find(token);
+        for (int i = 0; i < numOfReplicas; i++) {
+            pnodes.add(nodes[owners[index]]);
+            if (++index == tokens.length) index = 0;
+        }
+
+        return pnodes;
+    }
+
+    /**
+     * @return position of the first virtual node whose token is not less than the given one,
+     *          wrapping around to the first node past the end of the ring.
+     *          Same host as BinarySearchList.findNode.
+     *
+     *          Time Complexity O(log n)
+     */
+    private int find(long token) {
+        int low = 0;
+        int high = tokens.length - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (tokens[mid] < token)
+                low = mid + 1;
+            else if (tokens[mid] > token)
+                high = mid - 1;
+            else
+                return mid;
+        }
+
+        return low == tokens.length ? 0 : low;
+    }
+}
@@ -1,13 +1,14 @@
 package ring;
 
+import commonmodels.BinarySearchList;
 import commonmodels.Indexable;
 import commonmodels.PhysicalNode;
+import commonmodels.TokenRange;
 import filemanagement.FileTransferManager;
 import util.Config;
-import util.MathX;
 import util.SimpleLog;
 
-import java.util.UUID;
+import java.util.*;
 
 public class RingLoadBalanceAlgorithm {
 
@@ -24,19 +25,19 @@ public class RingLoadBalanceAlgorithm {
         for (Indexable vnode : pnode.getVirtualNodes()) {
             Indexable successor = table.getTable().next(vnode);
             if (successor == null) {
-                SimpleLog.i("Virtual node [hash=" + vnode.getHash() + "] is no longer valid");
+                SimpleLog.i("Virtual node [hash=" + token(vnode) + "] is no longer valid");
                 continue;
             }
 
-            int bound = range(vnode.getHash(), successor.getHash());
-            int delta = MathX.nextInt(bound);
-            int hf = (vnode.getHash() + delta) % Config.getInstance().getNumberOfHashSlots();
+            long bound = TokenSpace.distance(token(vnode), token(successor));
+            long delta = TokenSpace.randomOffset(bound);
+            long hf = TokenSpace.add(token(vnode), delta);
             SimpleLog.i("Increasing load for virtual node of " + node.toString() + ", delta h=" + delta);
             increaseLoad(table, hf, vnode, token);
         }
     }
 
-    public void increaseLoad(LookupTable table, PhysicalNode node, int[] hashVal) {
+    public void increaseLoad(LookupTable table, PhysicalNode node, long[] hashVal) {
         SimpleLog.i("Increasing load for physical node " + node.toString());
 
         PhysicalNode pnode = table.getPhysicalNodeMap().get(node.getId());
@@ -65,20 +66,19 @@ public class RingLoadBalanceAlgorithm {
         for (Indexable vnode : pnode.getVirtualNodes()) {
             Indexable predecessor = table.getTable().pre(vnode);
             if (predecessor == null) {
-                SimpleLog.i("Virtual node [hash=" + vnode.getHash() + "] is no longer valid");
+                SimpleLog.i("Virtual node [hash=" + token(vnode) + "] is no longer valid");
                 continue;
             }
 
-            int bound = range(predecessor.getHash(), vnode.getHash());
-            int delta = MathX.nextInt(bound);
-            int hf = vnode.getHash() - delta;
-            if (hf < 0) hf = Config.getInstance().getNumberOfHashSlots() + hf;
+            long bound = TokenSpace.distance(token(predecessor), token(vnode));
+            long delta = TokenSpace.randomOffset(bound);
+            long hf = TokenSpace.subtract(token(vnode), delta);
             SimpleLog.i("Decreasing load for virtual node of " + node.toString() + ", delta h=" + delta);
             decreaseLoad(table, hf, vnode, token);
         }
     }
 
-    public void decreaseLoad(LookupTable table, PhysicalNode node, int[] hashVal) {
+    public void decreaseLoad(LookupTable table, PhysicalNode node, long[] hashVal) {
         SimpleLog.i("Decreasing load for physical node " + node.toString());
 
         PhysicalNode pnode = table.getPhysicalNodeMap().get(node.getId());
@@ -94,59 +94,56 @@ public class RingLoadBalanceAlgorithm {
         }
     }
 
-    public int[] randomIncreaseRange(LookupTable table, PhysicalNode node) {
+    public long[] randomIncreaseRange(LookupTable table, PhysicalNode node) {
         PhysicalNode pnode = table.getPhysicalNodeMap().get(node.getId());
-        int[] hashVals = new int[pnode.getVirtualNodes().size()];
+        long[] hashVals = new long[pnode.getVirtualNodes().size()];
 
         for (int i = 0; i < pnode.getVirtualNodes().size(); i++) {
             Indexable vnode = pnode.getVirtualNodes().get(i);
             Indexable successor = table.getTable().next(vnode);
             if (successor == null) {
-                SimpleLog.i("Virtual node [hash=" + vnode.getHash() + "] is no longer valid");
+                SimpleLog.i("Virtual node [hash=" + token(vnode) + "] is no longer valid");
                 continue;
             }
 
-            int bound = range(vnode.getHash(), successor.getHash());
-            int delta = MathX.nextInt(bound);
-            int hf = (vnode.getHash() + delta) % Config.getInstance().getNumberOfHashSlots();
-            hashVals[i] = hf;
+            long bound = TokenSpace.distance(token(vnode), token(successor));
+            long delta = TokenSpace.randomOffset(bound);
+            hashVals[i] = TokenSpace.add(token(vnode), delta);
         }
 
         return hashVals;
     }
 
-    public int[] randomDecreaseRange(LookupTable table, PhysicalNode node) {
+    public long[] randomDecreaseRange(LookupTable table, PhysicalNode node) {
         PhysicalNode pnode = table.getPhysicalNodeMap().get(node.getId());
-        int[] hashVals = new int[pnode.getVirtualNodes().size()];
+        long[] hashVals = new long[pnode.getVirtualNodes().size()];
 
         for (int i = 0; i < pnode.getVirtualNodes().size(); i++) {
             Indexable vnode = pnode.getVirtualNodes().get(i);
             Indexable predecessor = table.getTable().pre(vnode);
             if (predecessor == null) {
-                SimpleLog.i("Virtual node [hash=" + vnode.getHash() + "] is no longer valid");
+                SimpleLog.i("Virtual node [hash=" + token(vnode) + "] is no longer valid");
                 continue;
             }
 
-            int bound = range(predecessor.getHash(), vnode.getHash());
-            int delta = MathX.nextInt(bound);
-            int hf = vnode.getHash() - delta;
-            if (hf < 0) hf = Config.getInstance().getNumberOfHashSlots() + hf;
-            hashVals[i] = hf;
+            long bound = TokenSpace.distance(token(predecessor), token(vnode));
+            long delta = TokenSpace.randomOffset(bound);
+            hashVals[i] = TokenSpace.subtract(token(vnode), delta);
         }
 
         return hashVals;
     }
 
-    public void decreaseLoad(LookupTable table, int hf, Indexable node, String token) {
-        int hi = node.getHash();
+    public void decreaseLoad(LookupTable table, long hf, Indexable node, String token) {
+        long hi = token(node);
 
         Indexable predecessor = table.getTable().pre(node);
         if (predecessor == null) {
-            SimpleLog.i("Virtual node [hash=" + node.getHash() + "] is no longer valid");
+            SimpleLog.i("Virtual node [hash=" + token(node) + "] is no longer valid");
             return;
         }
-        if (!inRange(hf, predecessor.getHash(), hi)) {
-            SimpleLog.i("Invalid hash change, hf=" + hf + " not in range (" + predecessor.getHash() + ", " + hi + ")");
+        if (!inRange(hf, token(predecessor), hi)) {
+            SimpleLog.i("Invalid hash change, hf=" + hf + " not in range (" + token(predecessor) + ", " + hi + ")");
             return;
         }
 
@@ -154,21 +151,21 @@ public class RingLoadBalanceAlgorithm {
         requestTransfer(table, hf, hi, node, toNode, token);   // transfer(start, end, from, to). (start, end]
 
         // node.setHash(hf);
-        table.getTable().get(node.getIndex()).setHash(hf);
+        ((VirtualNode) table.getTable().get(node.getIndex())).setToken(hf);
         SimpleLog.i("Decreased load for virtual node " + hi + " to " + hf);
         SimpleLog.i("Updated node info: " + node.toString());
     }
 
-    public void increaseLoad(LookupTable table, int hf, Indexable node, String token) {
-        int hi = node.getHash();
+    public void increaseLoad(LookupTable table, long hf, Indexable node, String token) {
+        long hi = token(node);
 
         Indexable successor = table.getTable().next(node);
         if (successor == null) {
-            SimpleLog.i("Virtual node [hash=" + node.getHash() + "] is no longer valid");
+            SimpleLog.i("Virtual node [hash=" + token(node) + "] is no longer valid");
             return;
         }
-        if (!inRange(hf, hi, successor.getHash())) {
-            SimpleLog.i("Invalid hash change, hf=" + hf + " not in range (" + hi + ", " + successor.getHash() + ")");
+        if (!inRange(hf, hi, token(successor))) {
+            SimpleLog.i("Invalid hash change, hf=" + hf + " not in range (" + hi + ", " + token(successor) + ")");
             return;
         }
 
@@ -176,13 +173,13 @@ public class RingLoadBalanceAlgorithm {
         requestTransfer(table, hi, hf, fromNode, node, token); // requestTransfer(start, end, from, to). (start, end]
 
         // node.setHash(hf);
-        table.getTable().get(node.getIndex()).setHash(hf);
+        ((VirtualNode) table.getTable().get(node.getIndex())).setToken(hf);
         SimpleLog.i("Increased load for virtual node " + hi + " to " + hf);
         SimpleLog.i("Updated node info: " + node.toString());
     }
 
     public void nodeJoin(LookupTable table, Indexable node) {
-        SimpleLog.i("Adding virtual node [hash=" + node.getHash() + "] for " + ((VirtualNode)node).getPhysicalNodeId());
+        SimpleLog.i("Adding virtual node [hash=" + token(node) + "] for " + ((VirtualNode)node).getPhysicalNodeId());
 
         Indexable successor = table.getTable().next(node);
         Indexable startNode = table.getTable().get(node.getIndex() - Config.getInstance().getNumberOfReplicas());
@@ -190,8 +187,8 @@ public class RingLoadBalanceAlgorithm {
 
         String token = UUID.randomUUID().toString();
         for (int i = 0; i < Config.getInstance().getNumberOfReplicas(); i++) {
-            int hi = startNode.getHash();
-            int hf = endNode.getHash();
+            long hi = token(startNode);
+            long hf = token(endNode);
 
             requestTransfer(table, hi, hf, successor, node, token); // requestTransfer(start, end, from, to). (start, end]
 
@@ -200,11 +197,11 @@ public class RingLoadBalanceAlgorithm {
             successor = table.getTable().next(successor);
         }
 
-        SimpleLog.i("Virtual node [hash=" + node.getHash() + "] added");
+        SimpleLog.i("Virtual node [hash=" + token(node) + "] added");
     }
 
     public void nodeLeave(LookupTable table, Indexable node) {
-        SimpleLog.i("Removing virtual node [hash=" + node.getHash() + "] from " + ((VirtualNode)node).getPhysicalNodeId());
+        SimpleLog.i("Removing virtual node [hash=" + token(node) + "] from " + ((VirtualNode)node).getPhysicalNodeId());
 
         Indexable successor = table.getTable().get(node.getIndex());
         Indexable predecessor = table.getTable().pre(successor);
@@ -212,8 +209,8 @@ public class RingLoadBalanceAlgorithm {
         Indexable endNode = table.getTable().next(startNode);
 
         for (int i = 0; i < Config.getInstance().getNumberOfReplicas(); i++) {
-            int hi = startNode.getHash();
-            int hf = endNode.getHash();
+            long hi = token(startNode);
+            long hf = token(endNode);
 
             requestReplication(table, hi, hf, predecessor, successor); // requestTransfer(start, end, from, to). (start, end]
 
@@ -223,41 +220,173 @@ public class RingLoadBalanceAlgorithm {
             successor = table.getTable().next(successor);
         }
 
-        SimpleLog.i("Virtual node [hash=" + node.getHash() + "] removed");
+        SimpleLog.i("Virtual node [hash=" + token(node) + "] removed");
     }
 
-    protected boolean inRange(int bucket, int start, int end) {
-        if (start > end) {
-            return (bucket > start && bucket < Config.getInstance().getNumberOfHashSlots()) ||
-                    (bucket >= 0 && bucket <= end);
+    /**
+     * Transfers for a batch of virtual nodes that have just been merged into the table.
+     * Only ranges whose replicas include a new node are looked at, and adjacent ranges
+     * moving between the same two physical nodes are requested as one.
+     */
+    public void nodesJoin(LookupTable table, Collection<? extends Indexable> nodes) {
+        SimpleLog.i("Adding " + nodes.size() + " virtual nodes");
+
+        Set<Indexable> added = Collections.newSetFromMap(new IdentityHashMap<>());
+        added.addAll(nodes);
+        requestRangeChanges(table, added, true);
+
+        SimpleLog.i(nodes.size() + " virtual nodes added");
+    }
+
+    /**
+     * Copies for a batch of virtual nodes that are about to leave, worked out while they are still in the table.
+     */
+    public void nodesLeave(LookupTable table, Collection<? extends Indexable> nodes) {
+        SimpleLog.i("Removing " + nodes.size() + " virtual nodes");
+
+        Set<Indexable> removed = new HashSet<>(nodes);
+        requestRangeChanges(table, removed, false);
+
+        SimpleLog.i(nodes.size() + " virtual nodes removed");
+    }
+
+    /**
+     * @param changed nodes joining or leaving, all of them in the table
+     *
+     *          Range (t[j-1], t[j]] is kept by the nodes from j on. Its replicas change only if one of
+     *          the next numberOfReplicas nodes is a changed one. For each such range, replicas
+     *          with and without the changed nodes are compared, every node gaining the range gets it
+     *          from a node losing it on join, or from a node keeping it on leave.
+     */
+    private void requestRangeChanges(LookupTable table, Set<Indexable> changed, boolean join) {
+        BinarySearchList list = table.getTable();
+        int size = list.size();
+        int numOfReplicas = Config.getInstance().getNumberOfReplicas();
+        if (size == changed.size()) return; // no other node to take the ranges from or give them to
+
+        boolean[] affected = new boolean[size];
+        for (int k = 0; k < size; k++) {
+            if (!changed.contains(list.get(k))) continue;
+            for (int j = k - numOfReplicas + 1; j <= k; j++) {
+                affected[Math.floorMod(j, size)] = true;
+            }
         }
-        else {
-            return bucket > start && bucket <= end;
+
+        String token = UUID.randomUUID().toString();
+        Map<String, PendingRange> pending = new LinkedHashMap<>();
+        for (int j = 0; j < size; j++) {
+            if (!affected[j]) continue;
+
+            List<Indexable> with = replicasFrom(list, j, null, numOfReplicas);
+            List<Indexable> without = replicasFrom(list, j, changed, numOfReplicas);
+            List<Indexable> before = join ? without : with;
+            List<Indexable> after = join ? with : without;
+
+            List<Indexable> losing = difference(before, after);
+            List<Indexable> gaining = difference(after, before);
+            for (int i = 0; i < gaining.size(); i++) {
+                Indexable from;
+                if (join)
+                    from = i < losing.size() ? losing.get(i) : before.get(0);
+                else
+                    from = before.size() > losing.size() ? difference(before, losing).get(0) : losing.get(i % losing.size());
+
+                addRange(table, pending, token(list.get(j - 1)), token(list.get(j)), from, gaining.get(i), join, token);
+            }
+        }
+
+        for (PendingRange range : pending.values()) {
+            requestRange(table, range, join, token);
+        }
+    }
+
+    /**
+     * @return the first numOfReplicas nodes from index start on, skipping the excluded ones
+     */
+    private List<Indexable> replicasFrom(BinarySearchList list, int start, Set<Indexable> excluded, int numOfReplicas) {
+        List<Indexable> replicas = new ArrayList<>();
+        for (int i = 0; i < list.size() && replicas.size() < numOfReplicas; i++) {
+            Indexable node = list.get(start + i);
+            if (excluded == null || !excluded.contains(node))
+                replicas.add(node);
+        }
+
+        return replicas;
+    }
+
+    private List<Indexable> difference(List<Indexable> nodes, List<Indexable> others) {
+        List<Indexable> result = new ArrayList<>();
+        for (Indexable node : nodes) {
+            if (!others.contains(node))
+                result.add(node);
         }
+
+        return result;
     }
 
-    private int range(int start, int end) {
-        if (start > end) {
-            return end - start;
+    private void addRange(LookupTable table, Map<String, PendingRange> pending, long hi, long hf, Indexable fromNode, Indexable toNode, boolean join, String token) {
+        String from = ((VirtualNode) fromNode).getPhysicalNodeId();
+        String to = ((VirtualNode) toNode).getPhysicalNodeId();
+        if (from.equals(to)) return;
+
+        String key = from + "->" + to;
+        PendingRange range = pending.get(key);
+        if (range != null && range.hf == hi && hf != range.hi) {
+            range.hf = hf;
         }
         else {
-            int bound = Config.getInstance().getNumberOfHashSlots();
-            return bound - start + end;
+            if (range != null)
+                requestRange(table, range, join, token);
+            pending.put(key, new PendingRange(hi, hf, fromNode, toNode));
         }
     }
 
-    private void requestTransfer(LookupTable table, int hi, int hf, Indexable fromNode, Indexable toNode, String token) {
+    private void requestRange(LookupTable table, PendingRange range, boolean join, String token) {
+        if (join)
+            requestTransfer(table, range.hi, range.hf, range.fromNode, range.toNode, token);
+        else
+            requestReplication(table, range.hi, range.hf, range.fromNode, range.toNode);
+    }
+
+    protected boolean inRange(long bucket, long start, long end) {
+        return new TokenRange(start, end).contains(bucket);
+    }
+
+    protected static long token(Indexable node) {
+        return ((VirtualNode) node).getToken();
+    }
+
+    private void requestTransfer(LookupTable table, long hi, long hf, Indexable fromNode, Indexable toNode, String token) {
         SimpleLog.i("Request to transfer hash (" + hi + ", "+ hf + "] from " + fromNode.toString() + " to " + toNode.toString());
         String fromNodeId = ((VirtualNode)fromNode).getPhysicalNodeId();
         String toNodeId = ((VirtualNode)toNode).getPhysicalNodeId();
         FileTransferManager.getInstance().setTransferToken(token);
-        FileTransferManager.getInstance().requestTransfer(hi, hf, table.getPhysicalNodeMap().get(fromNodeId), table.getPhysicalNodeMap().get(toNodeId));
+        FileTransferManager.getInstance().requestTransfer(new TokenRange(hi, hf), table.getPhysicalNodeMap().get(fromNodeId), table.getPhysicalNodeMap().get(toNodeId));
     }
 
-    private void requestReplication(LookupTable table, int hi, int hf, Indexable fromNode, Indexable toNode) {
+    private void requestReplication(LookupTable table, long hi, long hf, Indexable fromNode, Indexable toNode) {
         SimpleLog.i("Copy hash (" + hi + ", "+ hf + "] from " + fromNode.toString() + " to " + toNode.toString());
         String fromNodeId = ((VirtualNode)fromNode).getPhysicalNodeId();
         String toNodeId = ((VirtualNode)toNode).getPhysicalNodeId();
-        FileTransferManager.getInstance().requestCopy(hi, hf, table.getPhysicalNodeMap().get(fromNodeId), table.getPhysicalNodeMap().get(toNodeId));
+        FileTransferManager.getInstance().requestCopy(new TokenRange(hi, hf), table.getPhysicalNodeMap().get(fromNodeId), table.getPhysicalNodeMap().get(toNodeId));
+    }
+
+    // range (hi, hf] moving between two physical nodes, extended while the next range moves between the same two
+    private static class PendingRange {
+
+        private final long hi;
+
+        private long hf;
+
+        private final Indexable fromNode;
+
+        private final Indexable toNode;
+
+        private PendingRange(long hi, long hf, Indexable fromNode, Indexable toNode) {
+            this.hi = hi;
+            this.hf = hf;
+            this.fromNode = fromNode;
+            this.toNode = toNode;
+        }
     }
 }
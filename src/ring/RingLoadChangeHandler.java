@@ -4,6 +4,7 @@ import commands.RingCommand;
 import commonmodels.Indexable;
 import commonmodels.LoadChangeHandler;
 import commonmodels.PhysicalNode;
+import commonmodels.TokenRange;
 import commonmodels.transport.Request;
 import filemanagement.FileBucket;
 import loadmanagement.LoadInfo;
@@ -17,16 +18,13 @@ import java.util.stream.Collectors;
 
 public class RingLoadChangeHandler implements LoadChangeHandler {
 
-    protected final LookupTable table;
-
     protected float readOverhead;
 
     protected float writeOverhead;
 
     protected long interval;
 
-    public RingLoadChangeHandler(LookupTable table) {
-        this.table = table;
+    public RingLoadChangeHandler() {
         readOverhead = Config.getInstance().getReadOverhead();
         writeOverhead = Config.getInstance().getWriteOverhead();
         interval = Config.getInstance().getLoadInfoReportInterval() / 1000;
@@ -34,6 +32,8 @@ public class RingLoadChangeHandler implements LoadChangeHandler {
 
     @Override
     public List<Request> generateRequestBasedOnLoad(List<LoadInfo> globalLoad, LoadInfo loadInfo, long lowerBound, long upperBound) {
+        // tables are replaced on every commit, read the one published last
+        LookupTable table = LookupTable.getInstance();
         PhysicalNode node = new PhysicalNode(loadInfo.getNodeId());
         PhysicalNode pnode = table.getPhysicalNodeMap().get(node.getId());
         Solution bestSolution = null;
@@ -43,7 +43,7 @@ public class RingLoadChangeHandler implements LoadChangeHandler {
         for (int i = 0; i < pnode.getVirtualNodes().size(); i++) {
             Indexable vnode = pnode.getVirtualNodes().get(i);
 
-            if (!isEligibleToBalance(vnode, globalLoad)) continue;
+            if (!isEligibleToBalance(table, vnode, globalLoad)) continue;
 
             Indexable predecessor = table.getTable().pre(vnode);
             Solution solution = evaluate(loadInfo, predecessor, vnode, target);
@@ -69,20 +69,19 @@ public class RingLoadChangeHandler implements LoadChangeHandler {
         return lowerBound;
     }
 
-    protected boolean isEligibleToBalance(Indexable curr, List<LoadInfo> loadInfoList) {
+    protected boolean isEligibleToBalance(LookupTable table, Indexable curr, List<LoadInfo> loadInfoList) {
         return true;
     }
 
     protected Request generateRequestBasedOnSolution(PhysicalNode pnode, Solution solution) {
-        List<Integer> hashList = new ArrayList<>();
+        List<Long> hashList = new ArrayList<>();
         for (Indexable vnode : pnode.getVirtualNodes()) {
-            if (vnode.getHash() == solution.getVnodeHash()) {
-                int hf = vnode.getHash() - solution.getDelta();
-                if (hf < 0) hf = Config.getInstance().getNumberOfHashSlots() + hf;
-                hashList.add(hf);
+            long token = ((VirtualNode) vnode).getToken();
+            if (token == solution.getVnodeHash()) {
+                hashList.add(solution.getToken());
             }
             else {
-                hashList.add(vnode.getHash());
+                hashList.add(token);
             }
         }
 
@@ -92,6 +91,9 @@ public class RingLoadChangeHandler implements LoadChangeHandler {
     }
 
     protected Solution evaluate(LoadInfo loadInfo, Indexable predecessor, Indexable current, long target) {
+        if (TokenSpace.isLong())
+            return evaluateTokens(loadInfo, predecessor, current, target);
+
         Solution solution = new Solution(loadInfo.getLoad(), current.getHash(), loadInfo.getNodeId());
         Map<Integer, FileBucket> map = loadInfo.getBucketInfoList().stream().collect(
                 Collectors.toMap(FileBucket::getKey, bucket -> bucket, FileBucket::merge));
@@ -109,6 +111,37 @@ public class RingLoadChangeHandler implements LoadChangeHandler {
 
             if (iterator < 0) iterator = Config.getInstance().getNumberOfHashSlots() - 1;
         }
+        solution.setToken(TokenSpace.subtract(current.getHash(), solution.getDelta()));
+
+        return solution;
+    }
+
+    /**
+     * Same as evaluate() when keys are placed on 64-bit tokens.
+     * Buckets of the range are shed starting from the current node, the node is then
+     * moved right before the last bucket shed, instead of by a number of hash slots.
+     */
+    private Solution evaluateTokens(LoadInfo loadInfo, Indexable predecessor, Indexable current, long target) {
+        long end = ((VirtualNode) current).getToken();
+        TokenRange range = new TokenRange(((VirtualNode) predecessor).getToken(), end);
+        Solution solution = new Solution(loadInfo.getLoad(), end, loadInfo.getNodeId());
+
+        List<FileBucket> buckets = loadInfo.getBucketInfoList().stream()
+                .filter(bucket -> range.contains(bucket.getToken()))
+                .sorted((b1, b2) -> Long.compareUnsigned(
+                        TokenSpace.distance(b1.getToken(), end),
+                        TokenSpace.distance(b2.getToken(), end)))
+                .collect(Collectors.toList());
+
+        for (FileBucket bucket : buckets) {
+            if (!solution.update(
+                    bucket.getKey(),
+                    bucket.getLoad(readOverhead, writeOverhead, interval),
+                    target))
+                break;
+
+            solution.setToken(bucket.getToken() - 1);
+        }
 
         return solution;
     }
@@ -127,14 +160,17 @@ public class RingLoadChangeHandler implements LoadChangeHandler {
         private List<Integer> buckets;
         private long resultLoad;
         private int delta;
-        private int vnodeHash;
+        private long vnodeHash;
+        // where the virtual node is moved to
+        private long token;
         private String nodeId;
 
-        public Solution(long initLoad, int vnodeHash, String nodeId) {
+        public Solution(long initLoad, long vnodeHash, String nodeId) {
             buckets = new ArrayList<>();
             resultLoad = initLoad;
             delta = 0;
             this.vnodeHash = vnodeHash;
+            this.token = vnodeHash;
             this.nodeId = nodeId;
         }
 
@@ -162,14 +198,22 @@ public class RingLoadChangeHandler implements LoadChangeHandler {
             this.delta = delta;
         }
 
-        public int getVnodeHash() {
+        public long getVnodeHash() {
             return vnodeHash;
         }
 
-        public void setVnodeHash(int vnodeHash) {
+        public void setVnodeHash(long vnodeHash) {
             this.vnodeHash = vnodeHash;
         }
 
+        public long getToken() {
+            return token;
+        }
+
+        public void setToken(long token) {
+            this.token = token;
+        }
+
         public String getNodeId() {
             return nodeId;
         }
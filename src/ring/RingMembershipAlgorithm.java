@@ -1,14 +1,11 @@
 package ring;
 
-import commonmodels.Indexable;
 import commonmodels.PhysicalNode;
 import util.Config;
-import util.MathX;
 import util.SimpleLog;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Queue;
 
 public class RingMembershipAlgorithm {
 
@@ -17,7 +14,6 @@ public class RingMembershipAlgorithm {
         
         Config config = Config.getInstance();
 
-        int numberOfHashSlots = config.getNumberOfHashSlots();
         String[] nodes = config.getNodes();
         int startPort = config.getStartPort();
         int portRange = config.getPortRange();
@@ -25,7 +21,7 @@ public class RingMembershipAlgorithm {
         int virtualPhysicalRatio = config.getVirtualPhysicalRatio();
 
         int totalNodes = numberOfActiveNodes * virtualPhysicalRatio;
-        Queue<Integer> hashPool = MathX.nonrepeatRandom(numberOfHashSlots, totalNodes);
+        long[] hashPool = TokenSpace.randomTokens(totalNodes, new ArrayList<>());
 
         int counter = 0;
         outerloop:
@@ -37,8 +33,7 @@ public class RingMembershipAlgorithm {
                 table.getPhysicalNodeMap().put(node.getId(), node);
 
                 for (int i = 0; i < virtualPhysicalRatio; i++) {
-                    Integer hash = hashPool.poll();
-                    assert hash != null;
+                    long hash = hashPool[counter];
 
                     VirtualNode vnode = new VirtualNode(hash, node.getId());
                     node.getVirtualNodes().add(vnode);
@@ -51,9 +46,6 @@ public class RingMembershipAlgorithm {
         }
         table.setEpoch(System.currentTimeMillis());
         SimpleLog.i("Table initialized...");
-
-        if (table.getMembershipCallBack() != null)
-            table.getMembershipCallBack().onInitialized();
     }
 
     public void addPhysicalNode(LookupTable table, PhysicalNode node) {
@@ -65,17 +57,19 @@ public class RingMembershipAlgorithm {
         SimpleLog.i("Adding new physical node: " + node.toString() + "...");
         table.getPhysicalNodeMap().put(node.getId(), node);
 
-        int[] hashPool = generateSpareBuckets(table);
-        for (int hash : hashPool) {
+        long[] hashPool = generateSpareBuckets(table);
+        List<VirtualNode> vnodes = new ArrayList<>();
+        for (long hash : hashPool) {
             VirtualNode vnode = new VirtualNode(hash, node.getId());
             node.getVirtualNodes().add(vnode);
-            table.addNode(vnode);
+            vnodes.add(vnode);
         }
+        table.addNodes(vnodes);
 
         SimpleLog.i("Physical node added...");
     }
 
-    public void addPhysicalNode(LookupTable table, PhysicalNode node, int[] buckets) {
+    public void addPhysicalNode(LookupTable table, PhysicalNode node, long[] buckets) {
         if (buckets == null || buckets.length == 0) {
             addPhysicalNode(table, node);
             return;
@@ -89,23 +83,24 @@ public class RingMembershipAlgorithm {
         SimpleLog.i("Adding new physical node: " + node.toString() + "...");
         table.getPhysicalNodeMap().put(node.getId(), node);
 
-        for (Integer hash : buckets) {
+        List<VirtualNode> vnodes = new ArrayList<>();
+        for (long hash : buckets) {
             VirtualNode vnode = new VirtualNode(hash, node.getId());
             node.getVirtualNodes().add(vnode);
-            table.addNode(vnode);
+            vnodes.add(vnode);
         }
+        table.addNodes(vnodes);
 
         SimpleLog.i("Physical node added...");
     }
 
-    public int[] generateSpareBuckets(LookupTable table) {
-        List<Integer> usedSlots = new ArrayList<>();
+    public long[] generateSpareBuckets(LookupTable table) {
+        List<Long> usedSlots = new ArrayList<>();
         for (int i = 0; i < table.getTable().size(); i++) {
-            usedSlots.add(table.getTable().get(i).getHash());
+            usedSlots.add(((VirtualNode) table.getTable().get(i)).getToken());
         }
-        Queue<Integer> hashPool = MathX.nonrepeatRandom(Config.getInstance().getNumberOfHashSlots(), Config.getInstance().getVirtualPhysicalRatio(), usedSlots);
 
-        return hashPool.stream().mapToInt(Integer::intValue).toArray();
+        return TokenSpace.randomTokens(Config.getInstance().getVirtualPhysicalRatio(), usedSlots);
     }
 
     public void removePhysicalNode(LookupTable table, PhysicalNode node) {
@@ -117,9 +112,7 @@ public class RingMembershipAlgorithm {
             return;
         }
 
-        for (Indexable vnode : pnode.getVirtualNodes()) {
-            table.removeNode(vnode);
-        }
+        table.removeNodes(pnode.getVirtualNodes());
 
         table.getPhysicalNodeMap().remove(node.getId());
 
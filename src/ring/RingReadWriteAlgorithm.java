@@ -5,27 +5,55 @@ import commonmodels.transport.Response;
 import filemanagement.DummyFile;
 import filemanagement.FileBucket;
 import filemanagement.LocalFileManager;
+import loadmanagement.InFlightTracker;
 import util.Config;
 import util.MathX;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class RingReadWriteAlgorithm {
     public List<PhysicalNode> lookup(LookupTable table, String filename) {
-        List<PhysicalNode> pnodes = new ArrayList<>();
+        if (TokenSpace.isLong()) {
+            // one placement per token is too many to cache
+            return table.getRingIndex().lookup(MathX.keyToken(filename), Config.getInstance().getNumberOfReplicas());
+        }
+
+        int hash = MathX.keyHash(filename) % Config.getInstance().getNumberOfHashSlots();
+        return table.getPlacementCache().get(hash);
+    }
 
-        int hash = MathX.positiveHash(filename.hashCode()) % Config.getInstance().getNumberOfHashSlots();
-        VirtualNode node = (VirtualNode)table.getTable().findNode(new VirtualNode(hash));
+    /**
+     * Consistent hashing with bounded loads, for reads. Each physical node takes up to (1 + epsilon) times
+     * the average number of requests in flight, a read landing on a replica at its bound spills to the
+     * next replica with room, the least loaded one if none has. Reads never leave the replicas of the key,
+     * where every write goes, so a spill can not miss. Loads are the requests this process is waiting on,
+     * see InFlightTracker, replicas are chosen by the process sending the requests.
+     *
+     * @param replicas physical nodes of the key, as returned by lookup
+     */
+    public PhysicalNode chooseReplica(LookupTable table, List<PhysicalNode> replicas) {
+        InFlightTracker tracker = InFlightTracker.getInstance();
+        int numOfNodes = Math.max(table.getPhysicalNodeMap().size(), 1);
+        // the request being placed counts towards the average, so every node has room when nothing is in flight
+        long capacity = (long) Math.ceil((1 + Config.getInstance().getBoundedLoadEpsilon()) * (tracker.getTotal() + 1) / numOfNodes);
 
-        int i = 0;
-        do {
-            PhysicalNode pnode = table.getPhysicalNodeMap().get(node.getPhysicalNodeId());
-            pnodes.add(pnode);
-            node = (VirtualNode)table.getTable().next(node);
-        } while (++i < Config.getInstance().getNumberOfReplicas());
+        PhysicalNode leastLoaded = replicas.get(0);
+        for (PhysicalNode replica : replicas) {
+            int load = tracker.get(replica.getId());
+            if (load < capacity)
+                return replica;
+            if (load < tracker.get(leastLoaded.getId()))
+                leastLoaded = replica;
+        }
 
-        return pnodes;
+        return leastLoaded;
+    }
+
+    /**
+     * @return replicas of the given hash slot, uncached
+     */
+    public List<PhysicalNode> place(LookupTable table, int hash) {
+        return table.getRingIndex().lookup(hash, Config.getInstance().getNumberOfReplicas());
     }
 
     public FileBucket writeAndReplicate(LookupTable table, DummyFile file) {
@@ -40,7 +68,10 @@ public class RingReadWriteAlgorithm {
     }
 
     public FileBucket writeOnly(LookupTable table, DummyFile file) {
+        if (TokenSpace.isLong())
+            return LocalFileManager.getInstance().writeToken(file, MathX::keyToken);
+
         return LocalFileManager.getInstance().write(file,
-                (String str) -> MathX.positiveHash(str.hashCode()) % Config.getInstance().getNumberOfHashSlots());
+                (String str) -> MathX.keyHash(str) % Config.getInstance().getNumberOfHashSlots());
     }
 }
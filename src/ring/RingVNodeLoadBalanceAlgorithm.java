@@ -2,6 +2,7 @@ package ring;
 
 import commonmodels.Indexable;
 import commonmodels.PhysicalNode;
+import commonmodels.TokenRange;
 import filemanagement.FileTransferManager;
 import util.SimpleLog;
 
@@ -10,7 +11,7 @@ import java.util.UUID;
 public class RingVNodeLoadBalanceAlgorithm extends RingLoadBalanceAlgorithm {
 
     public void moveVNode(LookupTable lookupTable, VirtualNode node, PhysicalNode from, PhysicalNode to) {
-        SimpleLog.i("Moving vnode [" + node.getHash() + "] from " + from.getId() + " to " + to.getId());
+        SimpleLog.i("Moving vnode [" + node.getToken() + "] from " + from.getId() + " to " + to.getId());
 
         node = (VirtualNode) lookupTable.getTable().findNode(node);
         PhysicalNode fromNode = lookupTable.getPhysicalNodeMap().get(from.getId());
@@ -19,7 +20,7 @@ public class RingVNodeLoadBalanceAlgorithm extends RingLoadBalanceAlgorithm {
             return;
         }
         else if (!fromNode.getVirtualNodes().contains(node)){
-            SimpleLog.i(from.getId() + " does not have vnode [" + node.getHash() + "]");
+            SimpleLog.i(from.getId() + " does not have vnode [" + node.getToken() + "]");
             return;
         }
 
@@ -29,7 +30,7 @@ public class RingVNodeLoadBalanceAlgorithm extends RingLoadBalanceAlgorithm {
             return;
         }
         else if (toNode.getVirtualNodes().contains(node)){
-            SimpleLog.i(to.getId() + " already have vnode [" + node.getHash() + "]");
+            SimpleLog.i(to.getId() + " already have vnode [" + node.getToken() + "]");
             return;
         }
 
@@ -40,17 +41,17 @@ public class RingVNodeLoadBalanceAlgorithm extends RingLoadBalanceAlgorithm {
         String token = UUID.randomUUID().toString();
 
         Indexable predecessor = lookupTable.getTable().pre(node);
-        requestTransfer(predecessor.getHash(), node.getHash(), from ,to, token);
+        requestTransfer(token(predecessor), node.getToken(), from ,to, token);
 
-        SimpleLog.i("Moving bucket [" + node.getHash() + "] from " + from.getId() + " to " + to.getId());
+        SimpleLog.i("Moving bucket [" + node.getToken() + "] from " + from.getId() + " to " + to.getId());
         SimpleLog.i("Updated bucket info: " + node.toString());
         SimpleLog.i("Updated " + fromNode.getId() + " info: " + fromNode.toString());
         SimpleLog.i("Updated " + toNode.getId() + " info: " + toNode.toString());
     }
 
-    private void requestTransfer(int hi, int hf, PhysicalNode fromNode, PhysicalNode toNode, String token) {
+    private void requestTransfer(long hi, long hf, PhysicalNode fromNode, PhysicalNode toNode, String token) {
         SimpleLog.i("Request to transfer hash (" + hi + ", "+ hf + "] from " + fromNode.toString() + " to " + toNode.toString());
         FileTransferManager.getInstance().setTransferToken(token);
-        FileTransferManager.getInstance().requestTransfer(hi, hf, fromNode, toNode);
+        FileTransferManager.getInstance().requestTransfer(new TokenRange(hi, hf), fromNode, toNode);
     }
 }
@@ -4,6 +4,7 @@ import commands.RingCommand;
 import commonmodels.Indexable;
 import commonmodels.LoadChangeHandler;
 import commonmodels.PhysicalNode;
+import commonmodels.TokenRange;
 import commonmodels.transport.Request;
 import filemanagement.FileBucket;
 import loadmanagement.LoadInfo;
@@ -15,16 +16,13 @@ import java.util.stream.Collectors;
 
 public class RingVNodeLoadChangeHandler implements LoadChangeHandler {
 
-    private final LookupTable table;
-
     private float readOverhead;
 
     private float writeOverhead;
 
     private long interval;
 
-    public RingVNodeLoadChangeHandler(LookupTable table) {
-        this.table = table;
+    public RingVNodeLoadChangeHandler() {
         readOverhead = Config.getInstance().getReadOverhead();
         writeOverhead = Config.getInstance().getWriteOverhead();
         interval = Config.getInstance().getLoadInfoReportInterval() / 1000;
@@ -32,6 +30,7 @@ public class RingVNodeLoadChangeHandler implements LoadChangeHandler {
 
     @Override
     public List<Request> generateRequestBasedOnLoad(List<LoadInfo> globalLoad, LoadInfo loadInfo, long lowerBound, long upperBound) {
+        LookupTable table = LookupTable.getInstance();
         PhysicalNode node = new PhysicalNode(loadInfo.getNodeId());
         PhysicalNode pnode = table.getPhysicalNodeMap().get(node.getId());
         if (pnode == null || pnode.getVirtualNodes() == null) return null;
@@ -40,7 +39,7 @@ public class RingVNodeLoadChangeHandler implements LoadChangeHandler {
         if (sortedTargets == null) return null;
 
         long target = computeTargetLoad(globalLoad, loadInfo, lowerBound, upperBound);
-        List<Solution> solutions = evaluate(sortedTargets, loadInfo, pnode.getVirtualNodes(), target, upperBound);
+        List<Solution> solutions = evaluate(table, sortedTargets, loadInfo, pnode.getVirtualNodes(), target, upperBound);
         List<Request> requests = new ArrayList<>();
         if (solutions != null) {
             for (Solution solution : solutions) {
@@ -63,22 +62,25 @@ public class RingVNodeLoadChangeHandler implements LoadChangeHandler {
         return lowerBound;
     }
 
-    private List<Solution> evaluate(List<LoadInfo> sortedTargets, LoadInfo loadInfo, List<Indexable> vnodes, long lowerBound, long upperBound) {
+    private List<Solution> evaluate(LookupTable table, List<LoadInfo> sortedTargets, LoadInfo loadInfo, List<Indexable> vnodes, long lowerBound, long upperBound) {
         if (vnodes.size() < 1) return null;
 
         long target = loadInfo.getLoad() - lowerBound;
         Map<String, Solution> solutions = new HashMap<>();
-        Map<Integer, FileBucket> map = loadInfo.getBucketInfoList().stream().collect(
+        // token buckets have no int key, merging them by key would fold them all into one
+        Map<Integer, FileBucket> map = TokenSpace.isLong() ? null : loadInfo.getBucketInfoList().stream().collect(
                 Collectors.toMap(FileBucket::getKey, bucket -> bucket, FileBucket::merge));
 
         for (Indexable vnode : vnodes) {
             if (target < 0) break;
             Indexable predecessor = table.getTable().pre(vnode);
-            double load = getLoad(map, vnode, predecessor);
+            double load = TokenSpace.isLong() ?
+                    getLoad(loadInfo.getBucketInfoList(), vnode, predecessor) :
+                    getLoad(map, vnode, predecessor);
             for (LoadInfo targetNode : sortedTargets) {
                 Solution solution = new Solution();
                 if (load + targetNode.getLoad() < upperBound) {
-                    solution.addVnode(vnode.getHash(), load);
+                    solution.addVnode(((VirtualNode) vnode).getToken(), load);
                     solution.setTargetNodeId(targetNode.getNodeId());
                     target -= load;
                     solutions.put(targetNode.getNodeId(), solution);
@@ -150,6 +152,17 @@ public class RingVNodeLoadChangeHandler implements LoadChangeHandler {
         return load;
     }
 
+    private double getLoad(List<FileBucket> buckets, Indexable current, Indexable predecessor) {
+        TokenRange range = new TokenRange(((VirtualNode) predecessor).getToken(), ((VirtualNode) current).getToken());
+        double load = 0;
+        for (FileBucket bucket : buckets) {
+            if (range.contains(bucket.getToken()))
+                load += bucket.getLoad(readOverhead, writeOverhead, interval);
+        }
+
+        return load;
+    }
+
     private boolean inRange(int bucket, int start, int end) {
         if (start > end) {
             return (bucket > start && bucket < Config.getInstance().getNumberOfHashSlots()) ||
@@ -161,7 +174,7 @@ public class RingVNodeLoadChangeHandler implements LoadChangeHandler {
     }
 
     private class Solution {
-        private List<Integer> vnodes;
+        private List<Long> vnodes;
         private double loadToMove;
         private String targetNodeId;
 
@@ -169,16 +182,16 @@ public class RingVNodeLoadChangeHandler implements LoadChangeHandler {
             vnodes = new ArrayList<>();
         }
 
-        public void addVnode(int vnode, double load) {
+        public void addVnode(long vnode, double load) {
             vnodes.add(vnode);
             loadToMove += load;
         }
 
-        public List<Integer> getVnodes() {
+        public List<Long> getVnodes() {
             return vnodes;
         }
 
-        public void setVnodes(List<Integer> vnodes) {
+        public void setVnodes(List<Long> vnodes) {
             this.vnodes = vnodes;
         }
 
@@ -0,0 +1,92 @@
+package ring;
+
+import util.Config;
+import util.MathX;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Positions of virtual nodes and keys on the ring.
+ * By default a position is one of the hash slots, [0, hash_slots).
+ * With ring_token_space=long it is a 64-bit token, any long, and the ring wraps
+ * around from Long.MAX_VALUE to Long.MIN_VALUE. Ranges can then be split anywhere,
+ * not only at slot boundaries.
+ *
+ * Either way positions are kept in ascending order, only the arithmetic differs.
+ */
+public final class TokenSpace {
+
+    private TokenSpace() {
+    }
+
+    public static boolean isLong() {
+        return Config.getInstance().isLongTokenSpace();
+    }
+
+    /**
+     * @return position of a key
+     */
+    public static long tokenOf(String key) {
+        if (isLong())
+            return MathX.keyToken(key);
+        else
+            return MathX.keyHash(key) % Config.getInstance().getNumberOfHashSlots();
+    }
+
+    /**
+     * @return number of positions in (start, end], unsigned for 64-bit tokens
+     */
+    public static long distance(long start, long end) {
+        if (isLong())
+            return end - start;
+        else
+            return Math.floorMod(end - start, (long) Config.getInstance().getNumberOfHashSlots());
+    }
+
+    public static long add(long token, long delta) {
+        if (isLong())
+            return token + delta;
+        else
+            return Math.floorMod(token + delta, (long) Config.getInstance().getNumberOfHashSlots());
+    }
+
+    public static long subtract(long token, long delta) {
+        if (isLong())
+            return token - delta;
+        else
+            return Math.floorMod(token - delta, (long) Config.getInstance().getNumberOfHashSlots());
+    }
+
+    /**
+     * @param bound number of positions, as returned by distance()
+     * @return random offset in [0, bound), 0 if bound is 0
+     */
+    public static long randomOffset(long bound) {
+        if (bound == 0)
+            return 0;
+        else if (isLong())
+            return MathX.nextUnsignedLong(bound);
+        else
+            return MathX.nextInt((int) bound);
+    }
+
+    /**
+     * @return distinct random positions, none of them used
+     */
+    public static long[] randomTokens(int size, Collection<Long> used) {
+        if (isLong()) {
+            return MathX.nonrepeatRandomLong(size, used).stream().mapToLong(Long::longValue).toArray();
+        }
+        else {
+            List<Integer> usedSlots = new ArrayList<>();
+            for (long token : used)
+                usedSlots.add((int) token);
+
+            Queue<Integer> hashPool = MathX.nonrepeatRandom(Config.getInstance().getNumberOfHashSlots(), size, usedSlots);
+            return hashPool.stream().mapToLong(Integer::longValue).toArray();
+        }
+    }
+}
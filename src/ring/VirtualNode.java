@@ -3,9 +3,14 @@ package ring;
 import commonmodels.Indexable;
 import commonmodels.Transportable;
 
+/**
+ * The token is the position of the node on the ring, a hash slot or a 64-bit token, see TokenSpace.
+ * A hash slot is also the hash of the node. A 64-bit token is folded into the hash,
+ * which then only tells nodes apart, the ring is ordered by tokens.
+ */
 public class VirtualNode extends Transportable implements Indexable {
 
-    private int hash;
+    private long token;
 
     private int index;
 
@@ -17,7 +22,7 @@ public class VirtualNode extends Transportable implements Indexable {
 
     public VirtualNode(int hash) {
         this();
-        this.hash = hash;
+        this.token = hash;
     }
 
     public VirtualNode(int hash, String physicalNodeId) {
@@ -25,12 +30,26 @@ public class VirtualNode extends Transportable implements Indexable {
         this.physicalNodeId = physicalNodeId;
     }
 
+    public VirtualNode(long token, String physicalNodeId) {
+        this();
+        this.token = token;
+        this.physicalNodeId = physicalNodeId;
+    }
+
     public int getHash() {
-        return hash;
+        return Long.hashCode(token);
     }
 
     public void setHash(int hash) {
-        this.hash = hash;
+        this.token = hash;
+    }
+
+    public long getToken() {
+        return token;
+    }
+
+    public void setToken(long token) {
+        this.token = token;
     }
 
     public String getPhysicalNodeId() {
@@ -51,7 +70,7 @@ public class VirtualNode extends Transportable implements Indexable {
 
     @Override
     public String getDisplayId() {
-        return String.valueOf(getHash());
+        return String.valueOf(token);
     }
 
     public String getNodeId() {
@@ -60,13 +79,16 @@ public class VirtualNode extends Transportable implements Indexable {
 
     @Override
     public int compareTo(Indexable o) {
-        return Integer.compare(this.hash, o.getHash());
+        if (o instanceof VirtualNode)
+            return Long.compare(this.token, ((VirtualNode) o).token);
+        else
+            return Long.compare(this.token, o.getHash());
     }
 
     @Override
     public String toString() {
         return "VirtualNode{" +
-                "hash=" + hash +
+                "hash=" + token +
                 ", index=" + index +
                 ", physicalNodeId='" + physicalNodeId + '\'' +
                 '}';
@@ -74,13 +96,13 @@ public class VirtualNode extends Transportable implements Indexable {
 
     @Override
     public int hashCode() {
-        return hash;
+        return getHash();
     }
 
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof VirtualNode)
-            return this.hashCode() == obj.hashCode();
+            return this.token == ((VirtualNode) obj).token;
         else
             return false;
     }
@@ -0,0 +1,56 @@
+package socket;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds the requests a server has accepted but not answered yet,
+ * both queued for a worker and being processed.
+ */
+final class Admission {
+
+    private final int limit;
+
+    private final AtomicInteger depth;
+
+    /**
+     * @param limit max requests admitted at once, non-positive for no limit
+     */
+    Admission(int limit) {
+        this.limit = limit;
+        this.depth = new AtomicInteger(0);
+    }
+
+    boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * @param permits requests admitted together, all of them or none
+     */
+    boolean tryAcquire(int permits) {
+        if (limit <= 0) {
+            depth.addAndGet(permits);
+            return true;
+        }
+
+        while (true) {
+            int current = depth.get();
+            if (current + permits > limit)
+                return false;
+            if (depth.compareAndSet(current, current + permits))
+                return true;
+        }
+    }
+
+    void release() {
+        release(1);
+    }
+
+    void release(int permits) {
+        depth.addAndGet(-permits);
+    }
+
+    int getDepth() {
+        return depth.get();
+    }
+}
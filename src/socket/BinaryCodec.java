@@ -0,0 +1,963 @@
+package socket;
+
+import ceph.Cluster;
+import ceph.ClusterMap;
+import ceph.PlacementGroup;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import commonmodels.BinarySearchList;
+import commonmodels.Clusterable;
+import commonmodels.Indexable;
+import commonmodels.PhysicalNode;
+import commonmodels.Transportable;
+import commonmodels.TransportableString;
+import commonmodels.transport.Request;
+import commonmodels.transport.Response;
+import elastic.BucketNode;
+import filemanagement.FileBucket;
+import loadmanagement.LoadInfo;
+import ring.VirtualNode;
+import statmanagement.StatInfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact tagged binary encoding for the messages exchanged between proxy, data nodes and clients.
+ * Every value is prefixed with a one byte type tag; integers use zig-zag varints.
+ * Values of types unknown to this codec are embedded as JSON so nothing is lost on the wire.
+ * Lookup tables are embedded as a snapshot that is encoded and compressed once per epoch.
+ */
+public class BinaryCodec implements MessageCodec {
+
+    public final static String NAME = "binary";
+
+    private final static byte TYPE_NULL = 0;
+    private final static byte TYPE_STRING = 1;
+    private final static byte TYPE_INT = 2;
+    private final static byte TYPE_LONG = 3;
+    private final static byte TYPE_BOOLEAN = 4;
+    private final static byte TYPE_LIST = 5;
+    private final static byte TYPE_BINARY_SEARCH_LIST = 6;
+    private final static byte TYPE_REQUEST = 7;
+    private final static byte TYPE_RESPONSE = 8;
+    private final static byte TYPE_LOAD_INFO = 9;
+    private final static byte TYPE_FILE_BUCKET = 10;
+    private final static byte TYPE_STAT_INFO = 11;
+    private final static byte TYPE_RING_TABLE = 12;
+    private final static byte TYPE_ELASTIC_TABLE = 13;
+    private final static byte TYPE_CLUSTER_MAP = 14;
+    private final static byte TYPE_PHYSICAL_NODE = 15;
+    private final static byte TYPE_VIRTUAL_NODE = 16;
+    private final static byte TYPE_BUCKET_NODE = 17;
+    private final static byte TYPE_PLACEMENT_GROUP = 18;
+    private final static byte TYPE_CLUSTER = 19;
+    private final static byte TYPE_TRANSPORTABLE_STRING = 20;
+    private final static byte TYPE_JSON = 21;
+    private final static byte TYPE_SNAPSHOT = 22;
+    private final static byte TYPE_RENDEZVOUS_TABLE = 23;
+    private final static byte TYPE_JUMP_TABLE = 24;
+
+    private final ObjectMapper objectMapper;
+
+    private final Constructor<ring.LookupTable> ringTableConstructor;
+
+    private final Constructor<elastic.LookupTable> elasticTableConstructor;
+
+    private final Constructor<ClusterMap> clusterMapConstructor;
+
+    private final Constructor<rendezvous.LookupTable> rendezvousTableConstructor;
+
+    private final Constructor<jump.LookupTable> jumpTableConstructor;
+
+    // null when tables are encoded inline every time
+    private final FrameCompressor compressor;
+
+    private final TableSnapshotCache snapshots;
+
+    public BinaryCodec(ObjectMapper objectMapper) {
+        this(objectMapper, null);
+    }
+
+    public BinaryCodec(ObjectMapper objectMapper, FrameCompressor compressor) {
+        this.objectMapper = objectMapper;
+        this.compressor = compressor;
+        this.snapshots = compressor == null ? null : new TableSnapshotCache();
+        this.ringTableConstructor = accessibleConstructor(ring.LookupTable.class);
+        this.elasticTableConstructor = accessibleConstructor(elastic.LookupTable.class);
+        this.clusterMapConstructor = accessibleConstructor(ClusterMap.class);
+        this.rendezvousTableConstructor = accessibleConstructor(rendezvous.LookupTable.class);
+        this.jumpTableConstructor = accessibleConstructor(jump.LookupTable.class);
+    }
+
+    @Override
+    public byte getId() {
+        return CODEC_BINARY;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Transportable message) throws IOException {
+        Output out = new Output();
+        writeValue(out, message);
+        return out.toByteArray();
+    }
+
+    @Override
+    public Transportable decode(ByteBuffer buf) throws IOException {
+        Object o = readValue(new Input(buf));
+        if (o != null && !(o instanceof Transportable))
+            throw new IOException("Binary frame does not contain a transportable object: " + o.getClass().getName());
+        return (Transportable) o;
+    }
+
+    @Override
+    public void encode(Transportable message, OutputStream out) throws IOException {
+        Output output = new Output(out);
+        try {
+            writeValue(output, message);
+            output.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public Transportable decode(InputStream in, int length) throws IOException {
+        Object o = readValue(new Input(in, length));
+        if (o != null && !(o instanceof Transportable))
+            throw new IOException("Binary frame does not contain a transportable object: " + o.getClass().getName());
+        return (Transportable) o;
+    }
+
+    private void writeValue(Output out, Object o) throws IOException {
+        if (o == null) {
+            out.writeByte(TYPE_NULL);
+        }
+        else if (o instanceof String) {
+            out.writeByte(TYPE_STRING);
+            out.writeString((String) o);
+        }
+        else if (o instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            out.writeVarLong((Integer) o);
+        }
+        else if (o instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeVarLong((Long) o);
+        }
+        else if (o instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) o);
+        }
+        else if (o instanceof BinarySearchList) {
+            // go through get() so vnode indexes are refreshed the same way as with json
+            BinarySearchList list = (BinarySearchList) o;
+            out.writeByte(TYPE_BINARY_SEARCH_LIST);
+            out.writeLength(list.size());
+            for (int i = 0; i < list.size(); i++)
+                writeValue(out, list.get(i));
+        }
+        else if (o instanceof List) {
+            out.writeByte(TYPE_LIST);
+            writeList(out, (List<?>) o);
+        }
+        else if (o instanceof Request) {
+            out.writeByte(TYPE_REQUEST);
+            writeRequest(out, (Request) o);
+        }
+        else if (o instanceof Response) {
+            out.writeByte(TYPE_RESPONSE);
+            writeResponse(out, (Response) o);
+        }
+        else if (o instanceof LoadInfo) {
+            out.writeByte(TYPE_LOAD_INFO);
+            writeLoadInfo(out, (LoadInfo) o);
+        }
+        else if (o instanceof FileBucket) {
+            out.writeByte(TYPE_FILE_BUCKET);
+            writeFileBucket(out, (FileBucket) o);
+        }
+        else if (o instanceof StatInfo) {
+            out.writeByte(TYPE_STAT_INFO);
+            writeStatInfo(out, (StatInfo) o);
+        }
+        else if (TableSnapshotCache.isCacheable(o)) {
+            if (snapshots == null) {
+                writeTable(out, o);
+            }
+            else {
+                out.writeByte(TYPE_SNAPSHOT);
+                out.writeRaw(snapshots.get(o, this::encodeSnapshot));
+            }
+        }
+        else if (o instanceof PhysicalNode) {
+            out.writeByte(TYPE_PHYSICAL_NODE);
+            writePhysicalNode(out, (PhysicalNode) o);
+        }
+        else if (o instanceof VirtualNode) {
+            VirtualNode node = (VirtualNode) o;
+            out.writeByte(TYPE_VIRTUAL_NODE);
+            out.writeVarLong(node.getToken());
+            out.writeVarLong(node.getIndex());
+            out.writeString(node.getPhysicalNodeId());
+        }
+        else if (o instanceof BucketNode) {
+            BucketNode node = (BucketNode) o;
+            out.writeByte(TYPE_BUCKET_NODE);
+            out.writeVarLong(node.getHash());
+            writeStrings(out, node.getPhysicalNodes());
+        }
+        else if (o instanceof PlacementGroup) {
+            PlacementGroup group = (PlacementGroup) o;
+            out.writeByte(TYPE_PLACEMENT_GROUP);
+            out.writeString(group.getId());
+            out.writeVarLong(group.getIndex());
+            out.writeVarLong(group.getHash());
+        }
+        else if (o instanceof Cluster) {
+            Cluster cluster = (Cluster) o;
+            out.writeByte(TYPE_CLUSTER);
+            out.writeString(cluster.getId());
+            out.writeFloat(cluster.getWeight());
+            out.writeString(cluster.getStatus());
+            Clusterable[] subClusters = cluster.getSubClusters();
+            out.writeLength(subClusters == null ? -1 : subClusters.length);
+            if (subClusters != null) {
+                for (Clusterable subCluster : subClusters)
+                    writeValue(out, subCluster);
+            }
+        }
+        else if (o instanceof TransportableString) {
+            out.writeByte(TYPE_TRANSPORTABLE_STRING);
+            out.writeString(((TransportableString) o).getValue());
+        }
+        else {
+            out.writeByte(TYPE_JSON);
+            out.writeBytes(objectMapper.writerFor(Object.class).writeValueAsBytes(o));
+        }
+    }
+
+    private Object readValue(Input in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return in.readString();
+            case TYPE_INT:
+                return (int) in.readVarLong();
+            case TYPE_LONG:
+                return in.readVarLong();
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TYPE_BINARY_SEARCH_LIST: {
+                int size = in.readLength();
+                if (size < 0) return null;
+                BinarySearchList list = new BinarySearchList();
+                list.ensureCapacity(size);
+                for (int i = 0; i < size; i++)
+                    list.add((Indexable) readValue(in));
+                return list;
+            }
+            case TYPE_LIST:
+                return readList(in);
+            case TYPE_REQUEST:
+                return readRequest(in);
+            case TYPE_RESPONSE:
+                return readResponse(in);
+            case TYPE_LOAD_INFO:
+                return readLoadInfo(in);
+            case TYPE_FILE_BUCKET:
+                return readFileBucket(in);
+            case TYPE_STAT_INFO:
+                return readStatInfo(in);
+            case TYPE_RING_TABLE:
+                return readRingTable(in);
+            case TYPE_ELASTIC_TABLE:
+                return readElasticTable(in);
+            case TYPE_CLUSTER_MAP:
+                return readClusterMap(in);
+            case TYPE_RENDEZVOUS_TABLE:
+                return readRendezvousTable(in);
+            case TYPE_JUMP_TABLE:
+                return readJumpTable(in);
+            case TYPE_PHYSICAL_NODE:
+                return readPhysicalNode(in);
+            case TYPE_VIRTUAL_NODE: {
+                VirtualNode node = new VirtualNode();
+                node.setToken(in.readVarLong());
+                node.setIndex((int) in.readVarLong());
+                node.setPhysicalNodeId(in.readString());
+                return node;
+            }
+            case TYPE_BUCKET_NODE: {
+                BucketNode node = new BucketNode((int) in.readVarLong());
+                node.setPhysicalNodes(readStrings(in));
+                return node;
+            }
+            case TYPE_PLACEMENT_GROUP: {
+                PlacementGroup group = new PlacementGroup();
+                group.setId(in.readString());
+                group.setIndex((int) in.readVarLong());
+                group.setHash((int) in.readVarLong());
+                return group;
+            }
+            case TYPE_CLUSTER: {
+                Cluster cluster = new Cluster();
+                cluster.setId(in.readString());
+                cluster.setWeight(in.readFloat());
+                cluster.setStatus(in.readString());
+                int size = in.readLength();
+                if (size >= 0) {
+                    Clusterable[] subClusters = new Clusterable[size];
+                    for (int i = 0; i < size; i++)
+                        subClusters[i] = (Clusterable) readValue(in);
+                    cluster.setSubClusters(subClusters);
+                }
+                return cluster;
+            }
+            case TYPE_TRANSPORTABLE_STRING:
+                return new TransportableString(in.readString());
+            case TYPE_JSON:
+                return objectMapper.readValue(new ByteBufferBackedInputStream(in.slice(in.readLength())), Object.class);
+            case TYPE_SNAPSHOT:
+                return readSnapshot(in);
+            default:
+                throw new IOException("Unknown type tag in binary frame: " + type);
+        }
+    }
+
+    private void writeTable(Output out, Object table) throws IOException {
+        if (table instanceof ring.LookupTable) {
+            out.writeByte(TYPE_RING_TABLE);
+            writeRingTable(out, (ring.LookupTable) table);
+        }
+        else if (table instanceof elastic.LookupTable) {
+            out.writeByte(TYPE_ELASTIC_TABLE);
+            writeElasticTable(out, (elastic.LookupTable) table);
+        }
+        else if (table instanceof rendezvous.LookupTable) {
+            out.writeByte(TYPE_RENDEZVOUS_TABLE);
+            writeRendezvousTable(out, (rendezvous.LookupTable) table);
+        }
+        else if (table instanceof jump.LookupTable) {
+            out.writeByte(TYPE_JUMP_TABLE);
+            writeJumpTable(out, (jump.LookupTable) table);
+        }
+        else {
+            out.writeByte(TYPE_CLUSTER_MAP);
+            writeClusterMap(out, (ClusterMap) table);
+        }
+    }
+
+    // original length, -1 if stored as is, followed by the table value
+    private byte[] encodeSnapshot(Object table) throws IOException {
+        Output value = new Output();
+        writeTable(value, table);
+        byte[] bytes = value.toByteArray();
+
+        Output snapshot = new Output();
+        if (compressor.shouldCompress(bytes.length)) {
+            ByteBuffer compressed = compressor.compress(bytes, 0);
+            snapshot.writeLength(bytes.length);
+            snapshot.writeLength(compressed.remaining());
+            snapshot.writeRaw(compressed.array(), compressed.arrayOffset() + compressed.position(), compressed.remaining());
+        }
+        else {
+            snapshot.writeLength(-1);
+            snapshot.writeBytes(bytes);
+        }
+        return snapshot.toByteArray();
+    }
+
+    private Object readSnapshot(Input in) throws IOException {
+        int originalLength = in.readLength();
+        ByteBuffer body = in.slice(in.readLength());
+        if (originalLength < 0)
+            return readValue(new Input(body));
+        if (compressor == null)
+            throw new IOException("Compressed snapshot in binary frame, but no compressor to inflate it");
+
+        return readValue(new Input(ByteBuffer.wrap(compressor.decompress(body, originalLength))));
+    }
+
+    private void writeList(Output out, List<?> list) throws IOException {
+        out.writeLength(list.size());
+        for (Object o : list)
+            writeValue(out, o);
+    }
+
+    private List<Object> readList(Input in) throws IOException {
+        int size = in.readLength();
+        if (size < 0) return null;
+        List<Object> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            list.add(readValue(in));
+        return list;
+    }
+
+    private void writeStrings(Output out, List<String> list) {
+        out.writeLength(list == null ? -1 : list.size());
+        if (list == null) return;
+        for (String s : list)
+            out.writeString(s);
+    }
+
+    private List<String> readStrings(Input in) throws IOException {
+        int size = in.readLength();
+        if (size < 0) return null;
+        List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            list.add(in.readString());
+        return list;
+    }
+
+    private void writeRequest(Output out, Request request) throws IOException {
+        out.writeString(request.getHeader());
+        out.writeString(request.getSender());
+        out.writeString(request.getReceiver());
+        out.writeString(request.getFollowup());
+        out.writeString(request.getAttachment());
+        out.writeVarLong(request.getEpoch());
+        out.writeString(request.getToken());
+        out.writeVarLong(request.getTimestamp());
+        out.writeVarLong(request.getTimeout());
+        writeValue(out, request.getLargeAttachment());
+    }
+
+    private Request readRequest(Input in) throws IOException {
+        Request request = new Request();
+        request.setHeader(in.readString());
+        request.setSender(in.readString());
+        request.setReceiver(in.readString());
+        request.setFollowup(in.readString());
+        request.setAttachment(in.readString());
+        request.setEpoch(in.readVarLong());
+        request.setToken(in.readString());
+        request.setTimestamp(in.readVarLong());
+        request.setTimeout(in.readVarLong());
+        request.setLargeAttachment(readValue(in));
+        return request;
+    }
+
+    private void writeResponse(Output out, Response response) throws IOException {
+        out.writeString(response.getHeader());
+        out.writeVarLong(response.getStatus());
+        out.writeString(response.getMessage());
+        out.writeString(response.getToken());
+        out.writeVarLong(response.getTimestamp());
+        writeValue(out, response.getAttachment());
+    }
+
+    private Response readResponse(Input in) throws IOException {
+        Response response = new Response();
+        response.setHeader(in.readString());
+        response.setStatus((short) in.readVarLong());
+        response.setMessage(in.readString());
+        response.setToken(in.readString());
+        response.setTimestamp(in.readVarLong());
+        response.setAttachment(readValue(in));
+        return response;
+    }
+
+    private void writeLoadInfo(Output out, LoadInfo info) throws IOException {
+        out.writeVarLong(info.getReportTime());
+        out.writeString(info.getNodeId());
+        out.writeVarLong(info.getFileLoad());
+        out.writeVarLong(info.getSizeOfFiles());
+        out.writeVarLong(info.getReadLoad());
+        out.writeVarLong(info.getWriteLoad());
+        out.writeVarLong(info.getNumberOfMiss());
+        out.writeVarLong(info.getNumberOfLockConflicts());
+        out.writeVarLong(info.getNumberOfHits());
+        out.writeVarLong(info.getQueueDepth());
+        out.writeBoolean(info.isConsolidated());
+        out.writeBoolean(info.isLoadBalancing());
+        List<FileBucket> buckets = info.getBucketInfoList();
+        out.writeLength(buckets == null ? -1 : buckets.size());
+        if (buckets != null) {
+            for (FileBucket bucket : buckets)
+                writeFileBucket(out, bucket);
+        }
+    }
+
+    private LoadInfo readLoadInfo(Input in) throws IOException {
+        LoadInfo info = new LoadInfo();
+        info.setReportTime(in.readVarLong());
+        info.setNodeId(in.readString());
+        info.setFileLoad(in.readVarLong());
+        info.setSizeOfFiles(in.readVarLong());
+        info.setReadLoad(in.readVarLong());
+        info.setWriteLoad(in.readVarLong());
+        info.setNumberOfMiss(in.readVarLong());
+        info.setNumberOfLockConflicts(in.readVarLong());
+        info.setNumberOfHits(in.readVarLong());
+        info.setQueueDepth((int) in.readVarLong());
+        info.setConsolidated(in.readBoolean());
+        info.setLoadBalancing(in.readBoolean());
+        int size = in.readLength();
+        if (size < 0) {
+            info.setBucketInfoList(null);
+        }
+        else {
+            List<FileBucket> buckets = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+                buckets.add(readFileBucket(in));
+            info.setBucketInfoList(buckets);
+        }
+        return info;
+    }
+
+    private void writeFileBucket(Output out, FileBucket bucket) {
+        out.writeVarLong(bucket.getKey());
+        out.writeVarLong(bucket.getToken());
+        out.writeVarLong(bucket.getSize());
+        out.writeVarLong(bucket.getNumberOfFiles());
+        out.writeVarLong(bucket.getSizeOfReads());
+        out.writeVarLong(bucket.getSizeOfWrites());
+        out.writeVarLong(bucket.getNumberOfReads());
+        out.writeVarLong(bucket.getNumberOfWrites());
+        out.writeVarLong(bucket.getNumberOfLockConflicts());
+        out.writeBoolean(bucket.isLocked());
+    }
+
+    private FileBucket readFileBucket(Input in) throws IOException {
+        FileBucket bucket = new FileBucket((int) in.readVarLong());
+        bucket.setToken(in.readVarLong());
+        bucket.setSize(in.readVarLong());
+        bucket.setNumberOfFiles(in.readVarLong());
+        bucket.setSizeOfReads(in.readVarLong());
+        bucket.setSizeOfWrites(in.readVarLong());
+        bucket.setNumberOfReads(in.readVarLong());
+        bucket.setNumberOfWrites(in.readVarLong());
+        bucket.setNumberOfLockConflicts(in.readVarLong());
+        bucket.setLocked(in.readBoolean());
+        return bucket;
+    }
+
+    private void writeStatInfo(Output out, StatInfo info) {
+        out.writeVarLong(info.getStartTime());
+        out.writeVarLong(info.getEndTime());
+        out.writeString(info.getHeader());
+        out.writeString(info.getToken());
+        out.writeVarLong(info.getElapsed());
+        out.writeString(info.getType());
+        out.writeVarLong(info.getSize());
+    }
+
+    private StatInfo readStatInfo(Input in) throws IOException {
+        StatInfo info = new StatInfo();
+        info.setStartTime(in.readVarLong());
+        info.setEndTime(in.readVarLong());
+        info.setHeader(in.readString());
+        info.setToken(in.readString());
+        info.setElapsed(in.readVarLong());
+        info.setType(in.readString());
+        info.setSize(in.readVarLong());
+        return info;
+    }
+
+    private void writePhysicalNode(Output out, PhysicalNode node) throws IOException {
+        out.writeString(node.getAddress());
+        out.writeVarLong(node.getPort());
+        out.writeString(node.getStatus());
+        out.writeFloat(node.getWeight());
+        List<Indexable> virtualNodes = node.getVirtualNodes();
+        out.writeLength(virtualNodes == null ? -1 : virtualNodes.size());
+        if (virtualNodes != null) {
+            for (Indexable virtualNode : virtualNodes)
+                writeValue(out, virtualNode);
+        }
+    }
+
+    private PhysicalNode readPhysicalNode(Input in) throws IOException {
+        PhysicalNode node = new PhysicalNode();
+        node.setAddress(in.readString());
+        node.setPort((int) in.readVarLong());
+        node.setStatus(in.readString());
+        node.setWeight(in.readFloat());
+        int size = in.readLength();
+        if (size < 0) {
+            node.setVirtualNodes(null);
+        }
+        else {
+            List<Indexable> virtualNodes = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+                virtualNodes.add((Indexable) readValue(in));
+            node.setVirtualNodes(virtualNodes);
+        }
+        return node;
+    }
+
+    private void writePhysicalNodeMap(Output out, Map<String, PhysicalNode> map) throws IOException {
+        out.writeLength(map == null ? -1 : map.size());
+        if (map == null) return;
+        for (Map.Entry<String, PhysicalNode> entry : map.entrySet()) {
+            out.writeString(entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private HashMap<String, PhysicalNode> readPhysicalNodeMap(Input in) throws IOException {
+        int size = in.readLength();
+        if (size < 0) return null;
+        HashMap<String, PhysicalNode> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String key = in.readString();
+            map.put(key, (PhysicalNode) readValue(in));
+        }
+        return map;
+    }
+
+    private void writeRingTable(Output out, ring.LookupTable table) throws IOException {
+        out.writeVarLong(table.getEpoch());
+        writeValue(out, table.getTable());
+        writePhysicalNodeMap(out, table.getPhysicalNodeMap());
+    }
+
+    private ring.LookupTable readRingTable(Input in) throws IOException {
+        ring.LookupTable table = newInstance(ringTableConstructor);
+        table.setEpoch(in.readVarLong());
+        table.setTable((BinarySearchList) readValue(in));
+        table.setPhysicalNodeMap(readPhysicalNodeMap(in));
+        return table;
+    }
+
+    private void writeElasticTable(Output out, elastic.LookupTable table) throws IOException {
+        out.writeVarLong(table.getEpoch());
+        BucketNode[] buckets = table.getTable();
+        out.writeLength(buckets == null ? -1 : buckets.length);
+        if (buckets != null) {
+            for (BucketNode bucket : buckets)
+                writeValue(out, bucket);
+        }
+        writePhysicalNodeMap(out, table.getPhysicalNodeMap());
+    }
+
+    private elastic.LookupTable readElasticTable(Input in) throws IOException {
+        elastic.LookupTable table = newInstance(elasticTableConstructor);
+        table.setEpoch(in.readVarLong());
+        int size = in.readLength();
+        if (size >= 0) {
+            BucketNode[] buckets = new BucketNode[size];
+            for (int i = 0; i < size; i++)
+                buckets[i] = (BucketNode) readValue(in);
+            table.setTable(buckets);
+        }
+        table.setPhysicalNodeMap(readPhysicalNodeMap(in));
+        return table;
+    }
+
+    private void writeClusterMap(Output out, ClusterMap map) throws IOException {
+        out.writeVarLong(map.getEpoch());
+        writeValue(out, map.getRoot());
+        writePhysicalNodeMap(out, map.getPhysicalNodeMap());
+    }
+
+    private ClusterMap readClusterMap(Input in) throws IOException {
+        ClusterMap map = newInstance(clusterMapConstructor);
+        map.setEpoch(in.readVarLong());
+        map.setRoot((Clusterable) readValue(in));
+        map.setPhysicalNodeMap(readPhysicalNodeMap(in));
+        return map;
+    }
+
+    private void writeRendezvousTable(Output out, rendezvous.LookupTable table) throws IOException {
+        out.writeVarLong(table.getEpoch());
+        writePhysicalNodeMap(out, table.getPhysicalNodeMap());
+    }
+
+    private rendezvous.LookupTable readRendezvousTable(Input in) throws IOException {
+        rendezvous.LookupTable table = newInstance(rendezvousTableConstructor);
+        table.setEpoch(in.readVarLong());
+        table.setPhysicalNodeMap(readPhysicalNodeMap(in));
+        return table;
+    }
+
+    private void writeJumpTable(Output out, jump.LookupTable table) throws IOException {
+        out.writeVarLong(table.getEpoch());
+        writeStrings(out, table.getBuckets());
+        writePhysicalNodeMap(out, table.getPhysicalNodeMap());
+    }
+
+    private jump.LookupTable readJumpTable(Input in) throws IOException {
+        jump.LookupTable table = newInstance(jumpTableConstructor);
+        table.setEpoch(in.readVarLong());
+        List<String> buckets = readStrings(in);
+        table.setBuckets(buckets == null ? null : new ArrayList<>(buckets));
+        table.setPhysicalNodeMap(readPhysicalNodeMap(in));
+        return table;
+    }
+
+    // tables are singletons, remote copies are created the same way jackson does
+    private static <T> Constructor<T> accessibleConstructor(Class<T> clazz) {
+        try {
+            Constructor<T> constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static <T> T newInstance(Constructor<T> constructor) throws IOException {
+        try {
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static class Output {
+
+        // bytes are handed to the sink in pieces of this size
+        private static final int SINK_BUF_SIZE = 8 * 1024;
+
+        // null when the whole value is kept in buf
+        private final OutputStream sink;
+
+        private byte[] buf;
+
+        private int count = 0;
+
+        Output() {
+            this.sink = null;
+            this.buf = new byte[256];
+        }
+
+        Output(OutputStream sink) {
+            this.sink = sink;
+            this.buf = new byte[SINK_BUF_SIZE];
+        }
+
+        private void ensureCapacity(int n) {
+            if (count + n <= buf.length) return;
+
+            if (sink != null) {
+                flush();
+                if (n <= buf.length) return;
+            }
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + n));
+        }
+
+        void flush() {
+            try {
+                sink.write(buf, 0, count);
+                count = 0;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            buf[count++] = (byte) b;
+        }
+
+        void writeBoolean(boolean b) {
+            writeByte(b ? 1 : 0);
+        }
+
+        void writeRawVarLong(long v) {
+            ensureCapacity(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[count++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[count++] = (byte) v;
+        }
+
+        void writeVarLong(long v) {
+            writeRawVarLong((v << 1) ^ (v >> 63));
+        }
+
+        // lengths are shifted by one so that -1 can encode null
+        void writeLength(int length) {
+            writeRawVarLong(length + 1);
+        }
+
+        void writeFloat(float f) {
+            int bits = Float.floatToIntBits(f);
+            ensureCapacity(Integer.BYTES);
+            buf[count++] = (byte) (bits >>> 24);
+            buf[count++] = (byte) (bits >>> 16);
+            buf[count++] = (byte) (bits >>> 8);
+            buf[count++] = (byte) bits;
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeLength(bytes.length);
+            writeRaw(bytes);
+        }
+
+        void writeRaw(byte[] bytes) {
+            writeRaw(bytes, 0, bytes.length);
+        }
+
+        void writeRaw(byte[] bytes, int offset, int length) {
+            if (sink != null && length > buf.length) {
+                // large values such as table snapshots go to the sink without being copied
+                flush();
+                try {
+                    sink.write(bytes, offset, length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, buf, count, length);
+            count += length;
+        }
+
+        void writeString(String s) {
+            if (s == null) {
+                writeLength(-1);
+                return;
+            }
+            writeBytes(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+    }
+
+    private static class Input {
+
+        // bytes are read from the source in pieces of at least this size
+        private static final int SOURCE_BUF_SIZE = 8 * 1024;
+
+        // null when buf holds the whole value
+        private final InputStream source;
+
+        private ByteBuffer buf;
+
+        // bytes of the source not read into buf yet
+        private long unread;
+
+        Input(ByteBuffer buf) {
+            this.source = null;
+            this.buf = buf.duplicate();
+            this.unread = 0;
+        }
+
+        Input(InputStream source, int length) {
+            this.source = source;
+            this.buf = ByteBuffer.allocate(0);
+            this.unread = length;
+        }
+
+        private void require(int n) throws IOException {
+            // checked against the length of the value before anything is allocated for it
+            if (n < 0 || n > buf.remaining() + unread)
+                throw new IOException("Truncated binary frame");
+            if (n > buf.remaining())
+                fill(n);
+        }
+
+        // make at least n bytes available in buf
+        private void fill(int n) throws IOException {
+            int size = (int) Math.min(Math.max(n, SOURCE_BUF_SIZE), buf.remaining() + unread);
+            if (buf.capacity() < size) {
+                ByteBuffer larger = ByteBuffer.allocate(size);
+                larger.put(buf);
+                buf = larger;
+            }
+            else {
+                buf.compact();
+            }
+
+            while (buf.position() < size) {
+                int count = source.read(buf.array(), buf.position(), size - buf.position());
+                if (count < 0)
+                    throw new IOException("Truncated binary frame");
+                buf.position(buf.position() + count);
+                unread -= count;
+            }
+            buf.flip();
+        }
+
+        byte readByte() throws IOException {
+            require(1);
+            return buf.get();
+        }
+
+        boolean readBoolean() throws IOException {
+            return readByte() != 0;
+        }
+
+        long readRawVarLong() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return result;
+            }
+            throw new IOException("Malformed varint in binary frame");
+        }
+
+        long readVarLong() throws IOException {
+            long v = readRawVarLong();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        int readLength() throws IOException {
+            return (int) readRawVarLong() - 1;
+        }
+
+        float readFloat() throws IOException {
+            require(Integer.BYTES);
+            return Float.intBitsToFloat(buf.getInt());
+        }
+
+        ByteBuffer slice(int n) throws IOException {
+            require(n);
+            if (source != null) {
+                // buf is refilled in place, the slice has to outlive it
+                byte[] bytes = new byte[n];
+                buf.get(bytes);
+                return ByteBuffer.wrap(bytes);
+            }
+
+            ByteBuffer slice = buf.slice();
+            slice.limit(n);
+            buf.position(buf.position() + n);
+            return slice;
+        }
+
+        String readString() throws IOException {
+            int length = readLength();
+            if (length < 0) return null;
+            require(length);
+
+            String s;
+            if (buf.hasArray()) {
+                s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+                buf.position(buf.position() + length);
+            }
+            else {
+                byte[] bytes = new byte[length];
+                buf.get(bytes);
+                s = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return s;
+        }
+    }
+}
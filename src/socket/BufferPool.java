@@ -0,0 +1,96 @@
+package socket;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared pool of direct buffers bucketed by power-of-two size classes.
+ * Buffers larger than the biggest class are allocated on the heap and never pooled.
+ */
+public class BufferPool {
+
+    private static final int MIN_CLASS_SHIFT = 12; // 4 KB
+
+    private static final int MAX_CLASS_SHIFT = 22; // 4 MB
+
+    // bytes retained per size class once buffers are given back
+    private static final int RETAINED_BYTES_PER_CLASS = 8 * 1024 * 1024;
+
+    private final List<Queue<ByteBuffer>> pools;
+
+    private final AtomicInteger[] pooled;
+
+    private static volatile BufferPool instance = null;
+
+    private BufferPool() {
+        int classes = MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1;
+        pools = new ArrayList<>(classes);
+        pooled = new AtomicInteger[classes];
+        for (int i = 0; i < classes; i++) {
+            pools.add(new ConcurrentLinkedQueue<>());
+            pooled[i] = new AtomicInteger(0);
+        }
+    }
+
+    public static BufferPool getInstance() {
+        if (instance == null) {
+            synchronized(BufferPool.class) {
+                if (instance == null) {
+                    instance = new BufferPool();
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    public static void deleteInstance() {
+        instance = null;
+    }
+
+    /**
+     * Get a cleared buffer that can hold at least size bytes
+     */
+    public ByteBuffer acquire(int size) {
+        int index = classIndexOf(size);
+        if (index < 0)
+            return ByteBuffer.allocate(size);
+
+        ByteBuffer buffer = pools.get(index).poll();
+        if (buffer == null)
+            return ByteBuffer.allocateDirect(1 << (index + MIN_CLASS_SHIFT));
+
+        pooled[index].decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Hand a buffer back, the caller must not touch it afterwards
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) return;
+
+        int capacity = buffer.capacity();
+        int index = classIndexOf(capacity);
+        if (index < 0 || (1 << (index + MIN_CLASS_SHIFT)) != capacity) return;
+
+        if (pooled[index].incrementAndGet() > (RETAINED_BYTES_PER_CLASS >> (index + MIN_CLASS_SHIFT)) + 1) {
+            pooled[index].decrementAndGet();
+            return;
+        }
+
+        buffer.clear();
+        pools.get(index).offer(buffer);
+    }
+
+    private static int classIndexOf(int size) {
+        if (size > 1 << MAX_CLASS_SHIFT) return -1;
+        if (size <= 1 << MIN_CLASS_SHIFT) return 0;
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_CLASS_SHIFT;
+    }
+}
@@ -0,0 +1,133 @@
+package socket;
+
+import commonmodels.Transportable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Enumeration;
+import java.util.function.LongConsumer;
+import java.util.zip.Inflater;
+
+/**
+ * Collects the chunks of a message written by FrameStream.
+ * Chunks are kept as they were received and nothing is decoded before the last one is
+ * in, so the receiver holds the whole message at its size on the wire. The declared
+ * length of the message is checked against the largest message accepted, and so is
+ * every chunk as it comes in, so a peer can not make the reader allocate more than it
+ * actually sends. FrameReader bounds what a connection holds this way.
+ *
+ * Once the last chunk is in, the codec decodes the message straight from the chunks,
+ * inflating them as it goes, so the inflated message is never held as a whole,
+ * each chunk is dropped as soon as it is read.
+ */
+final class ChunkAssembler {
+
+    private final FrameCompressor compressor;
+
+    private final int maxMessageSize;
+
+    private final ArrayDeque<byte[]> chunks;
+
+    // told the bytes received once they are let go of
+    private final LongConsumer onDiscard;
+
+    private boolean discarded;
+
+    private byte header;
+
+    // length of the encoded message, -1 until the first chunk is in
+    private int length;
+
+    // bytes received, compressed or not
+    private long size;
+
+    ChunkAssembler(FrameCompressor compressor, LongConsumer onDiscard) {
+        this.compressor = compressor;
+        this.maxMessageSize = compressor.getMaxMessageSize();
+        this.chunks = new ArrayDeque<>();
+        this.onDiscard = onDiscard;
+        this.discarded = false;
+        this.length = -1;
+        this.size = 0;
+    }
+
+    void append(ByteBuffer chunk) throws IOException {
+        if (length < 0) {
+            if (chunk.remaining() < 1 + Integer.BYTES)
+                throw new IOException("Corrupted frame, first chunk too short");
+
+            header = chunk.get();
+            length = chunk.getInt();
+            if (length < 0 || length > maxMessageSize)
+                throw new IOException("Corrupted frame, message length " + length + " out of range");
+        }
+
+        int n = chunk.remaining();
+        long limit = isCompressed() ? FrameCompressor.maxDeflatedLength(length) : length;
+        if (size + n > limit)
+            throw new IOException("Corrupted frame, chunk beyond message length");
+        size += n;
+
+        byte[] bytes = new byte[n];
+        chunk.get(bytes);
+        chunks.add(bytes);
+    }
+
+    /**
+     * Decode the message, once the last chunk has been appended
+     */
+    Transportable decode(MessageCodec codec) throws IOException {
+        if (length < 0 || (!isCompressed() && size != length))
+            throw new IOException("Corrupted frame, message ended at " + size + " bytes");
+
+        InputStream in = new SequenceInputStream(new Enumeration<InputStream>() {
+            @Override
+            public boolean hasMoreElements() {
+                return !chunks.isEmpty();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                return new ByteArrayInputStream(chunks.poll());
+            }
+        });
+        if (!isCompressed())
+            return codec.decode(in, length);
+
+        Inflater inflater = compressor.borrowInflater();
+        try {
+            return codec.decode(compressor.inflating(in, inflater, length), length);
+        } finally {
+            compressor.release(inflater);
+        }
+    }
+
+    /**
+     * @return header byte of the message, codec id and compression flag
+     */
+    byte getHeader() {
+        return header;
+    }
+
+    /**
+     * @return number of bytes received for the message
+     */
+    long size() {
+        return size;
+    }
+
+    void discard() {
+        if (discarded) return;
+        discarded = true;
+        chunks.clear();
+        onDiscard.accept(size);
+    }
+
+    private boolean isCompressed() {
+        return (header & JsonProtocolManager.FLAG_COMPRESSED) != 0;
+    }
+}
@@ -0,0 +1,171 @@
+package socket;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Stream a message is encoded into, cut into the chunks FrameStream writes.
+ * Bytes are kept as is until they no longer fit in one chunk. From then on, they are
+ * deflated (or copied) into chunks as the codec writes them, so the message is never
+ * held uncompressed as a whole. The chunks themselves are all produced before the first
+ * one is written: until FrameStream hands them over, the whole message sits on the heap
+ * at its size on the wire.
+ *
+ * The first chunk starts with the header byte and the length of the encoded message,
+ * the length is only known once the codec is done, which is why nothing is sent before.
+ */
+final class ChunkedOutput extends OutputStream {
+
+    private final byte codecId;
+
+    // null if the message is not to be compressed
+    private final FrameCompressor compressor;
+
+    private final int chunkSize;
+
+    private final int maxMessageSize;
+
+    // bytes written before the message turned out larger than a chunk
+    private final byte[] head;
+
+    private int headCount;
+
+    private long length;
+
+    private List<ByteBuffer> chunks;
+
+    private Deflater deflater;
+
+    ChunkedOutput(byte codecId, FrameCompressor compressor, int chunkSize, int maxMessageSize) {
+        this.codecId = codecId;
+        this.compressor = compressor;
+        this.chunkSize = chunkSize;
+        this.maxMessageSize = maxMessageSize;
+        this.head = new byte[chunkSize];
+        this.headCount = 0;
+        this.length = 0;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        length += len;
+        if (length > maxMessageSize)
+            throw new IOException("Message larger than the max message size of " + maxMessageSize + " bytes");
+
+        if (chunks == null) {
+            if (headCount + len <= head.length) {
+                System.arraycopy(b, off, head, headCount, len);
+                headCount += len;
+                return;
+            }
+            start(headCount + len);
+        }
+
+        append(b, off, len);
+    }
+
+    /**
+     * @return true if the message is larger than a chunk
+     */
+    boolean isChunked() {
+        return chunks != null;
+    }
+
+    /**
+     * @return bytes of a message that fits in one chunk, in the first getHeadLength() bytes
+     */
+    byte[] getHead() {
+        return head;
+    }
+
+    int getHeadLength() {
+        return headCount;
+    }
+
+    /**
+     * Flush what the deflater holds and fill in the length of the message
+     *
+     * @return chunks of a message larger than a chunk, ready to be written
+     */
+    List<ByteBuffer> finish() {
+        if (deflater != null) {
+            deflater.finish();
+            while (!deflater.finished())
+                deflate();
+            discard();
+        }
+
+        chunks.get(0).putInt(1, (int) length);
+        for (ByteBuffer chunk : chunks)
+            chunk.flip();
+        return chunks;
+    }
+
+    /**
+     * Release the deflater if the message will not be finished
+     */
+    void discard() {
+        if (deflater != null) {
+            compressor.release(deflater);
+            deflater = null;
+        }
+    }
+
+    private void start(int known) {
+        // compressed if the part known so far is worth it, the message is at least that long
+        boolean compress = compressor != null && compressor.shouldCompress(known);
+
+        chunks = new ArrayList<>();
+        ByteBuffer first = ByteBuffer.allocate(chunkSize);
+        first.put(compress ? (byte) (codecId | JsonProtocolManager.FLAG_COMPRESSED) : codecId);
+        // length of the message, filled in by finish
+        first.putInt(0);
+        chunks.add(first);
+
+        if (compress)
+            deflater = compressor.borrowDeflater();
+        append(head, 0, headCount);
+    }
+
+    private void append(byte[] b, int off, int len) {
+        if (deflater != null) {
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput())
+                deflate();
+            return;
+        }
+
+        while (len > 0) {
+            ByteBuffer chunk = current();
+            int n = Math.min(len, chunk.remaining());
+            chunk.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void deflate() {
+        ByteBuffer chunk = current();
+        int n = deflater.deflate(chunk.array(), chunk.position(), chunk.remaining());
+        chunk.position(chunk.position() + n);
+    }
+
+    // chunk with room left, a new one once the last is full
+    private ByteBuffer current() {
+        ByteBuffer chunk = chunks.get(chunks.size() - 1);
+        if (!chunk.hasRemaining()) {
+            chunk = ByteBuffer.allocate(chunkSize);
+            chunks.add(chunk);
+        }
+        return chunk;
+    }
+}
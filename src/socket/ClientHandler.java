@@ -1,11 +1,19 @@
 package socket;
 
-import commonmodels.transport.Request;
-
 public interface ClientHandler extends Attachable{
 
-    void put(Request data);
+    void put(PendingRequest pending);
 
     boolean isConnected();
 
+    /**
+     * Connected or still connecting, either way it takes requests
+     */
+    boolean isOpen();
+
+    /**
+     * Requests taken but not answered yet
+     */
+    int getOutstanding();
+
 }
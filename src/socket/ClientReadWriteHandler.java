@@ -1,59 +1,95 @@
 package socket;
 
 import commonmodels.Transportable;
-import commonmodels.transport.Request;
 import commonmodels.transport.Response;
 import statmanagement.StatInfoManager;
-import util.ObjectConverter;
+import util.Config;
 import util.SimpleLog;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
 
 public class ClientReadWriteHandler implements Runnable, ClientHandler {
     private final SocketChannel socketChannel;
-    private final SocketClient.ServerCallBack callBack;
-    private final Queue<Request> dataPool;
-
-    private static final int READ_BUF_SIZE = 32 * 1024;
+    private final Queue<PendingRequest> dataPool;
+    private final CallBack callBack;
+    // requests written but not answered yet, keyed by correlation id
+    private final Map<Integer, PendingRequest> inFlight;
+    private final int pipelineDepth;
+    private final boolean reconnectOnTimeout;
+    private final FrameReader reader;
+    // asked from the timer thread, carried out on the selector thread
+    private volatile boolean resetRequested;
 
     private SelectionKey selectionKey;
-    private ByteBuffer[] _readBuf;
+    private FrameStream _writeStream;
     private ByteBuffer[] _writeBuf;
-    private ByteArrayOutputStream bos = new ByteArrayOutputStream();
-    private Request currentData = null;
-    private int size;
+    private int nextCorrelationId;
 
-    public ClientReadWriteHandler(SelectionKey selectionKey, Queue<Request> dataPool, SocketClient.ServerCallBack callBack) {
+    public ClientReadWriteHandler(SelectionKey selectionKey, Queue<PendingRequest> dataPool, CallBack callBack) {
         this.selectionKey = selectionKey;
         this.socketChannel = (SocketChannel)selectionKey.channel();
         this.callBack = callBack;
-        this.dataPool = new LinkedList<>();
+        this.dataPool = new LinkedBlockingQueue<>();
         while(!dataPool.isEmpty())
             this.dataPool.add(dataPool.poll());
+        this.inFlight = new ConcurrentHashMap<>();
+        this.pipelineDepth = Math.max(1, Config.getInstance().getPipelineDepth());
+        this.reconnectOnTimeout = Config.getInstance().isReconnectOnTimeout();
+        this.reader = new FrameReader();
+        this.resetRequested = false;
+        this.nextCorrelationId = 0;
     }
 
     @Override
-    public void put(Request data) {
-        dataPool.add(data);
-        if (currentData == null)
-            switchMode(SelectionKey.OP_WRITE);
+    public void put(PendingRequest pending) {
+        dataPool.add(pending);
+        synchronized (this) {
+            switchMode(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Called from the timer thread once a request has timed out
+     */
+    void expire(PendingRequest pending) {
+        // still queued requests are skipped when polled
+        if (!pending.sent) return;
+
+        // without correlation ids a late response would be taken for the next request's
+        if (pipelineDepth == 1 || reconnectOnTimeout) {
+            resetRequested = true;
+        }
+        else if (!inFlight.remove(pending.correlationId, pending)) {
+            return;
+        }
+
+        // wake the selector up so the freed slot is used or the reset is carried out
+        synchronized (this) {
+            switchMode(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
     }
 
     @Override
     public void run() {
         try {
             if (!this.selectionKey.isValid() || !this.socketChannel.isOpen()) return;
+            if (resetRequested) {
+                reset();
+                return;
+            }
             if (this.selectionKey.isReadable()) {
                 read();
             }
-            else if (this.selectionKey.isWritable()) {
+            if (this.selectionKey.isValid() && this.selectionKey.isWritable()) {
                 write();
             }
         }
@@ -62,110 +98,194 @@ public class ClientReadWriteHandler implements Runnable, ClientHandler {
         }
     }
 
-    private void process() {
-        byte[] byteArray = bos.toByteArray();
-        int respSize = byteArray.length;
+    private void process(PendingRequest pending, ByteBuffer frame) {
+        int respSize = frame.remaining();
         if (respSize == 0) return;
+        // already failed for its deadline
+        if (!pending.complete()) return;
 
-        Transportable o = JsonProtocolManager.getInstance().readGzip(byteArray);
+        process(pending, JsonProtocolManager.getInstance().readGzip(frame), respSize);
+    }
+
+    private void process(PendingRequest pending, ChunkAssembler message) {
+        if (!pending.complete()) {
+            message.discard();
+            return;
+        }
+
+        process(pending, JsonProtocolManager.getInstance().read(message), (int) message.size());
+    }
+
+    private void process(PendingRequest pending, Transportable o, int respSize) {
         if (o instanceof Response) {
             Response resp = (Response) o;
-            StatInfoManager.getInstance().statResponse(currentData, resp, respSize);
-            callBack.onResponse(currentData, resp);
+            StatInfoManager.getInstance().statResponse(pending.request, resp, respSize);
+            pending.callBack.onResponse(pending.request, resp);
         }
         else {
             // SimpleLog.i("[" + socketChannel.getRemoteAddress() + "] Client: process bytes " + respSize + ", object is " + o);
-            StatInfoManager.getInstance().statRoundTripFailure(currentData);
-            callBack.onFailure(currentData, String.valueOf(o));
+            StatInfoManager.getInstance().statRoundTripFailure(pending.request);
+            pending.callBack.onFailure(pending.request, String.valueOf(o));
         }
     }
 
-    private synchronized void read() throws IOException {
-        if (this.socketChannel.read(_readBuf) == -1){
-            this.selectionKey.cancel();
-            this.socketChannel.close();
+    private void read() throws IOException {
+        if (reader.read(socketChannel) == -1) {
             SimpleLog.i("client read -1. closing channel");
+            close("Connection closed by remote");
             return;
         }
 
-        int numBytes;
-        _readBuf[1].flip();
+        // SimpleLog.v("[" + socketChannel.getRemoteAddress() + "] Client: read bytes");
 
-        if (size == Integer.MIN_VALUE) {
-            _readBuf[0].flip();
-            size = _readBuf[0].getInt();
+        if (!reader.drain(this::onFrame, this::onMessage)) {
+            close("Corrupted response frame");
+            return;
         }
-        numBytes = _readBuf[1].remaining();
 
-        // SimpleLog.v("[" + socketChannel.getRemoteAddress() + "] Client: read bytes " + numBytes);
+        // responses free up room in the pipeline
+        if (canSend()) {
+            synchronized (this) {
+                switchMode(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+    }
 
-        if (size < 0) {
-            reset();
+    private void onFrame(int correlationId, ByteBuffer frame) {
+        PendingRequest pending = inFlight.remove(correlationId);
+        if (pending == null) {
+            // response to a request that timed out
+            SimpleLog.v("Client: no request waiting for correlation id " + correlationId);
             return;
         }
-        if (numBytes >= size) {
-            // object fully arrived
-            bos.write(ObjectConverter.getBytes(_readBuf[1], size));
-            size = 0;
-        }
-        else {
-            // object partially arrived, need to read again
-            bos.write(ObjectConverter.getBytes(_readBuf[1], numBytes));
-            size -= numBytes;
-        }
 
-        if (size <= 0 && size != Integer.MIN_VALUE) {
-            process();
-            reset();
-            switchMode(SelectionKey.OP_WRITE);
-        }
-        else {
-            _readBuf[1].clear();
+        process(pending, frame);
+    }
+
+    private void onMessage(int correlationId, ChunkAssembler message) {
+        PendingRequest pending = inFlight.remove(correlationId);
+        if (pending == null) {
+            SimpleLog.v("Client: no request waiting for correlation id " + correlationId);
+            message.discard();
+            return;
         }
+
+        process(pending, message);
     }
 
-    private void serveData() {
-        currentData = dataPool.poll();
-        if (currentData == null) return;
+    private boolean serveData() {
+        if (inFlight.size() >= pipelineDepth) return false;
 
-        this._writeBuf = new ByteBuffer[2];
-        this._writeBuf[1] = JsonProtocolManager.getInstance().writeGzip(currentData);
-        this._writeBuf[0] = ByteBuffer.allocate(Integer.BYTES);
-        this._writeBuf[0].putInt(_writeBuf[1].remaining());
-        this._writeBuf[0].flip();
-        // SimpleLog.v("Client write buffer: position " + _writeBuf[1].position() + ", remaining " + _writeBuf[1].remaining());
-        this._readBuf = new ByteBuffer[2];
-        this._readBuf[1] = ByteBuffer.allocate(READ_BUF_SIZE);
-        this._readBuf[0] = ByteBuffer.allocate(Integer.BYTES);
+        PendingRequest pending;
+        int correlationId;
+        while (true) {
+            pending = dataPool.poll();
+            if (pending == null) return false;
+            if (pending.isCompleted()) continue;
+
+            correlationId = FrameHeader.NO_CORRELATION;
+            if (pipelineDepth > 1) {
+                if (nextCorrelationId == FrameHeader.NO_CORRELATION)
+                    nextCorrelationId++;
+                correlationId = nextCorrelationId++;
+            }
+            pending.correlationId = correlationId;
+            pending.owner = this;
+            inFlight.put(correlationId, pending);
+            pending.sent = true;
+
+            // the deadline may have passed before the timer could see the request as sent
+            if (!pending.isCompleted()) break;
+            inFlight.remove(correlationId, pending);
+        }
 
-        this.size = Integer.MIN_VALUE;
+        JsonProtocolManager protocol = JsonProtocolManager.getInstance();
+        this._writeStream = protocol.writeFrames(pending.outbound, protocol.getDefaultCodec(), correlationId);
+        this._writeBuf = _writeStream.next();
+        // SimpleLog.v("Client write buffer: position " + _writeBuf[1].position() + ", remaining " + _writeBuf[1].remaining());
+        return true;
     }
 
     private void write() throws IOException {
-        if (currentData == null)
-            serveData();
-        if (currentData == null) return;
+        while (true) {
+            if (_writeBuf == null && !serveData()) {
+                synchronized (this) {
+                    if (!canSend()) {
+                        // already on the selector thread, no need to wake it up
+                        this.selectionKey.interestOps(SelectionKey.OP_READ);
+                        return;
+                    }
+                }
+                continue;
+            }
+
+            this.socketChannel.write(_writeBuf);
+            if (_writeBuf[0].hasRemaining() || _writeBuf[1].hasRemaining())
+                return; // socket buffer is full, wait for the next write event
+            _writeBuf = _writeStream.hasNext() ? _writeStream.next() : null;
+        }
+    }
+
+    private boolean canSend() {
+        return !dataPool.isEmpty() && inFlight.size() < pipelineDepth;
+    }
 
-        this.socketChannel.write(_writeBuf);
+    private void close(String reason) throws IOException {
+        this.selectionKey.cancel();
+        this.socketChannel.close();
+        this.reader.close();
+        if (_writeStream != null)
+            _writeStream.discard();
+        this._writeStream = null;
+        this._writeBuf = null;
 
-        if (!_writeBuf[0].hasRemaining() && !_writeBuf[1].hasRemaining()) {
-            switchMode(SelectionKey.OP_READ);
+        for (PendingRequest pending : inFlight.values())
+            fail(pending, reason);
+        inFlight.clear();
+
+        PendingRequest pending;
+        while ((pending = dataPool.poll()) != null)
+            fail(pending, reason);
+    }
+
+    /**
+     * Drop the connection, requests that have not been written yet are handed back for a new one
+     */
+    private void reset() throws IOException {
+        Queue<PendingRequest> unsent = new LinkedList<>();
+        PendingRequest pending;
+        while ((pending = dataPool.poll()) != null) {
+            if (!pending.isCompleted())
+                unsent.add(pending);
         }
+
+        close("Connection reset after a request timed out");
+        if (callBack != null && !unsent.isEmpty())
+            callBack.onReset(unsent);
+    }
+
+    private void fail(PendingRequest pending, String reason) {
+        if (!pending.complete()) return;
+        StatInfoManager.getInstance().statRoundTripFailure(pending.request);
+        pending.callBack.onFailure(pending.request, reason);
     }
 
     private void switchMode(int mode) {
-        this.selectionKey.selector().wakeup();
+        if (!this.selectionKey.isValid()) return;
+        // change interest before waking the selector up, or it may block again on stale interest
         this.selectionKey.interestOps(mode);
+        this.selectionKey.selector().wakeup();
     }
 
-    private void reset() {
-        size = Integer.MIN_VALUE;
-        _readBuf[0].clear();
-        _readBuf[1].clear();
-        _writeBuf[0].clear();
-        _writeBuf[1].clear();
-        bos.reset();
-        currentData = null;
+    @Override
+    public boolean isOpen() {
+        return isConnected();
+    }
+
+    @Override
+    public int getOutstanding() {
+        // queue with a constant time size, this is asked on every send
+        return inFlight.size() + dataPool.size();
     }
 
     @Override
@@ -175,7 +295,11 @@ public class ClientReadWriteHandler implements Runnable, ClientHandler {
 
     @Override
     public void attach(Selector selector) throws IOException {
-        this.selectionKey = this.socketChannel.register(selector, SelectionKey.OP_WRITE);
+        this.selectionKey = this.socketChannel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
         this.selectionKey.attach(this);
     }
-}
\ No newline at end of file
+
+    public interface CallBack {
+        void onReset(Queue<PendingRequest> unsent);
+    }
+}
@@ -1,14 +1,14 @@
 package socket;
 
-import commonmodels.transport.Request;
+import statmanagement.StatInfoManager;
 import util.SimpleLog;
 
 import java.io.IOException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
-import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 public class Connector implements Runnable, ClientHandler {
 
@@ -18,13 +18,13 @@ public class Connector implements Runnable, ClientHandler {
 
     private SelectionKey selectionKey;
 
-    private Queue<Request> dataPool;
+    private Queue<PendingRequest> dataPool;
 
-    public Connector(SocketChannel socketChannel, Request data, CallBack callBack) {
+    public Connector(SocketChannel socketChannel, PendingRequest pending, CallBack callBack) {
         this.socketChannel = socketChannel;
         this.callBack = callBack;
-        this.dataPool = new LinkedList<>();
-        this.dataPool.add(data);
+        this.dataPool = new LinkedBlockingQueue<>();
+        this.dataPool.add(pending);
     }
 
     @Override
@@ -41,14 +41,39 @@ public class Connector implements Runnable, ClientHandler {
         catch (IOException ex) {
             SimpleLog.v("[" + address + "] Client: connection error");
             selectionKey.cancel();
+            closeQuietly();
             ex.printStackTrace();
             SimpleLog.e(ex);
+
+            PendingRequest pending;
+            while ((pending = dataPool.poll()) != null) {
+                if (pending.complete()) {
+                    StatInfoManager.getInstance().statRoundTripFailure(pending.request);
+                    pending.callBack.onFailure(pending.request, "Remote " + address + " throws " + ex.getMessage());
+                }
+            }
         }
     }
 
     @Override
-    public void put(Request data) {
-        dataPool.add(data);
+    public void put(PendingRequest pending) {
+        dataPool.add(pending);
+    }
+
+    private void closeQuietly() {
+        try {
+            socketChannel.close();
+        } catch (IOException ignored) {}
+    }
+
+    @Override
+    public boolean isOpen() {
+        return socketChannel != null && socketChannel.isOpen();
+    }
+
+    @Override
+    public int getOutstanding() {
+        return dataPool.size();
     }
 
     @Override
@@ -60,9 +85,12 @@ public class Connector implements Runnable, ClientHandler {
     public void attach(Selector selector) throws IOException {
         selectionKey = socketChannel.register(selector, SelectionKey.OP_CONNECT);
         selectionKey.attach(this);
+        // a connect that completed right away never signals OP_CONNECT
+        if (socketChannel.isConnected())
+            run();
     }
 
     public interface CallBack {
-        void onConnected(SelectionKey selectionKey, Queue<Request> dataPool);
+        void onConnected(SelectionKey selectionKey, Queue<PendingRequest> dataPool);
     }
 }
\ No newline at end of file
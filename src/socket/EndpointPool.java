@@ -0,0 +1,50 @@
+package socket;
+
+/**
+ * Connections kept to one remote endpoint.
+ * Requests go to the connection with the fewest outstanding requests, a new connection
+ * is only opened once every open one is busy. Callers synchronize on the pool.
+ */
+final class EndpointPool {
+
+    private final ClientHandler[] handlers;
+
+    EndpointPool(int size) {
+        this.handlers = new ClientHandler[Math.max(1, size)];
+    }
+
+    /**
+     * @return slot the next request should go to, its handler is null or closed if a connection has to be opened
+     */
+    int select() {
+        int leastLoaded = -1;
+        int leastOutstanding = Integer.MAX_VALUE;
+        int free = -1;
+
+        for (int i = 0; i < handlers.length; i++) {
+            ClientHandler handler = handlers[i];
+            if (handler == null || !handler.isOpen()) {
+                if (free < 0) free = i;
+                continue;
+            }
+
+            int outstanding = handler.getOutstanding();
+            if (outstanding < leastOutstanding) {
+                leastOutstanding = outstanding;
+                leastLoaded = i;
+            }
+        }
+
+        if (leastLoaded < 0 || (leastOutstanding > 0 && free >= 0))
+            return free;
+        return leastLoaded;
+    }
+
+    ClientHandler get(int slot) {
+        return handlers[slot];
+    }
+
+    void set(int slot, ClientHandler handler) {
+        handlers[slot] = handler;
+    }
+}
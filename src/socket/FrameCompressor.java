@@ -0,0 +1,258 @@
+package socket;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression policy for message frames.
+ * Payloads below the threshold are sent as is, larger ones are deflated, optionally
+ * primed with a preset dictionary.
+ *
+ * Each Deflater/Inflater holds a native zlib stream until end() is called. They are
+ * borrowed from a bounded pool and handed back after use, rather than kept per thread,
+ * since handlers may run on a new virtual thread per request. Compression is cpu bound,
+ * so the pool holds a couple per core, the ones handed back beyond that are ended.
+ *
+ * Lengths read from the wire are checked against the largest message accepted before
+ * anything is allocated for them, and output grows with what is actually inflated.
+ */
+public class FrameCompressor {
+
+    // most frequent tokens go last, deflate finds close matches cheaper
+    private final static byte[] DICTIONARY = (
+            "Table updated.Obsolete table. No need to updateInvalid table type." +
+            "ring.LookupTableelastic.LookupTableceph.ClusterMapceph.Clusterceph.PlacementGroup" +
+            "{\"type\":\"loadmanagement.LoadInfo\",\"consolidated\":false,\"loadBalancing\":false,\"reportTime\":" +
+            ",\"nodeId\":\"P127.0.0.1:\",\"fileLoad\":,\"sizeOfFiles\":,\"readLoad\":,\"writeLoad\":" +
+            ",\"numberOfMiss\":,\"numberOfLockConflicts\":0,\"numberOfHits\":,\"bucketInfoList\":" +
+            "{\"type\":\"filemanagement.FileBucket\",\"key\":,\"size\":,\"numberOfFiles\":,\"sizeOfReads\":" +
+            ",\"sizeOfWrites\":,\"numberOfReads\":,\"numberOfWrites\":,\"locked\":false}" +
+            "STATUSFETCHTRANSFERCOPYRECEIVEDUPDATEDELTALOADHANDSHAKEPROPAGATEADDNODEREMOVENODEUPDATELOAD" +
+            "{\"type\":\"commonmodels.PhysicalNode\",\"address\":\"127.0.0.1\",\"port\":,\"status\":\"active\"" +
+            ",\"virtualNodes\":[\"java.util.ArrayList\",[],\"weight\":0.0}" +
+            "[\"ring.VirtualNode\",{\"hash\":,\"index\":,\"physicalNodeId\":\"P127.0.0.1:\"}]" +
+            "{\"type\":\"commonmodels.transport.Response\",\"header\":\"\",\"status\":1,\"message\":\"" +
+            "\",\"token\":\"\",\"timestamp\":,\"attachment\":null}" +
+            "{\"type\":\"commonmodels.transport.Request\",\"header\":\"\",\"sender\":\"127.0.0.1:" +
+            "\",\"receiver\":\"127.0.0.1:\",\"followup\":null,\"attachment\":\"\",\"epoch\":" +
+            ",\"token\":\"\",\"timestamp\":,\"largeAttachment\":nullREADWRITE127.0.0.1:"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private final int threshold;
+
+    private final boolean useDictionary;
+
+    private final BlockingQueue<Deflater> deflaters;
+
+    private final BlockingQueue<Inflater> inflaters;
+
+    private final int maxMessageSize;
+
+    private final static int INFLATE_BUF_SIZE = 8 * 1024;
+
+    public FrameCompressor(int threshold, boolean useDictionary, int maxMessageSize) {
+        this.threshold = threshold;
+        this.useDictionary = useDictionary;
+        this.maxMessageSize = maxMessageSize;
+
+        int poolSize = Runtime.getRuntime().availableProcessors() * 2;
+        this.deflaters = new ArrayBlockingQueue<>(poolSize);
+        this.inflaters = new ArrayBlockingQueue<>(poolSize);
+    }
+
+    public boolean shouldCompress(int length) {
+        return threshold >= 0 && length >= threshold;
+    }
+
+    public int getMaxMessageSize() {
+        return maxMessageSize;
+    }
+
+    /**
+     * @return largest number of bytes deflate may turn length bytes into, for input it cannot compress
+     */
+    public static long maxDeflatedLength(long length) {
+        // stored blocks of up to 16k cost 5 bytes each, plus the zlib header and checksum
+        return length + (length >> 10) + 64;
+    }
+
+    public ByteBuffer compress(byte[] bytes, int headerLength) {
+        return compress(bytes, bytes.length, headerLength);
+    }
+
+    /**
+     * Deflate the first length bytes into a new buffer, leaving headerLength bytes free at the front
+     *
+     * @return buffer holding the header space followed by the compressed bytes
+     */
+    public ByteBuffer compress(byte[] bytes, int length, int headerLength) {
+        Deflater deflater = borrowDeflater();
+        deflater.setInput(bytes, 0, length);
+        deflater.finish();
+        try {
+            byte[] out = new byte[headerLength + length / 2 + 64];
+            int count = headerLength;
+            while (!deflater.finished()) {
+                if (count == out.length)
+                    out = Arrays.copyOf(out, out.length << 1);
+                count += deflater.deflate(out, count, out.length - count);
+            }
+
+            return ByteBuffer.wrap(out, 0, count);
+        } finally {
+            release(deflater);
+        }
+    }
+
+    /**
+     * Deflater for a message compressed a piece at a time, the caller has to hand it back with release
+     */
+    public Deflater borrowDeflater() {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null)
+            deflater = new Deflater();
+        if (useDictionary)
+            deflater.setDictionary(DICTIONARY);
+        return deflater;
+    }
+
+    /**
+     * Inflater for a message inflated a piece at a time, the caller has to hand it back with release
+     */
+    public Inflater borrowInflater() {
+        Inflater inflater = inflaters.poll();
+        return inflater != null ? inflater : new Inflater();
+    }
+
+    public void release(Deflater deflater) {
+        deflater.reset();
+        if (!deflaters.offer(deflater))
+            deflater.end();
+    }
+
+    public void release(Inflater inflater) {
+        inflater.reset();
+        if (!inflaters.offer(inflater))
+            inflater.end();
+    }
+
+    /**
+     * Stream inflating a message read a piece at a time
+     *
+     * @param inflater borrowed by the caller, who hands it back once the stream is read
+     * @param length original length of the message, the stream fails rather than inflate beyond it
+     */
+    public InputStream inflating(InputStream in, Inflater inflater, int length) {
+        return new InflatingInputStream(in, inflater, length);
+    }
+
+    public byte[] decompress(ByteBuffer buf, int originalLength) throws IOException {
+        if (buf.hasArray())
+            return decompress(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining(), originalLength);
+
+        // inflater only takes arrays before java 11
+        byte[] bytes = new byte[buf.remaining()];
+        buf.duplicate().get(bytes);
+        return decompress(bytes, 0, bytes.length, originalLength);
+    }
+
+    public byte[] decompress(byte[] bytes, int offset, int length, int originalLength) throws IOException {
+        if (originalLength < 0 || originalLength > maxMessageSize)
+            throw new IOException("Corrupted frame, original length " + originalLength + " out of range");
+
+        Inflater inflater = borrowInflater();
+        inflater.setInput(bytes, offset, length);
+
+        // the original length is only trusted once that much has been inflated
+        byte[] out = new byte[(int) Math.min(originalLength, Math.max(4L * length, 1024))];
+        int count = 0;
+        try {
+            while (count < originalLength && !inflater.finished()) {
+                if (count == out.length)
+                    out = Arrays.copyOf(out, (int) Math.min(originalLength, 2L * out.length));
+                int n = inflater.inflate(out, count, out.length - count);
+                if (n == 0) {
+                    if (inflater.needsDictionary())
+                        inflater.setDictionary(DICTIONARY);
+                    else if (inflater.needsInput())
+                        break;
+                }
+                count += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            release(inflater);
+        }
+
+        if (count != originalLength)
+            throw new IOException("Corrupted frame, expected " + originalLength + " bytes but inflated " + count);
+        return out;
+    }
+
+    private static class InflatingInputStream extends InputStream {
+
+        private final InputStream in;
+
+        private final Inflater inflater;
+
+        private final int length;
+
+        private final byte[] input = new byte[INFLATE_BUF_SIZE];
+
+        private long count = 0;
+
+        InflatingInputStream(InputStream in, Inflater inflater, int length) {
+            this.in = in;
+            this.inflater = inflater;
+            this.length = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+
+            try {
+                while (true) {
+                    int n = inflater.inflate(b, off, len);
+                    if (n > 0) {
+                        count += n;
+                        if (count > length)
+                            throw new IOException("Corrupted frame, message inflates beyond its original length");
+                        return n;
+                    }
+
+                    if (inflater.finished()) {
+                        return -1;
+                    }
+                    else if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY);
+                    }
+                    else if (inflater.needsInput()) {
+                        int r = in.read(input);
+                        if (r < 0)
+                            throw new EOFException("Corrupted frame, compressed message ends early");
+                        inflater.setInput(input, 0, r);
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package socket;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Length prefix of a frame on the stream sockets.
+ * When the correlated flag is set, the length is followed by the id the peer
+ * uses to match a response to its request, so frames can be pipelined.
+ * When the more flag is set, the frame is a chunk of a larger message and
+ * further chunks with the same id follow, the last one without the flag.
+ */
+final class FrameHeader {
+
+    static final int FLAG_CORRELATED = 0x40000000;
+
+    static final int FLAG_MORE = 0x20000000;
+
+    static final int LENGTH_MASK = 0x1FFFFFFF;
+
+    static final int NO_CORRELATION = -1;
+
+    private FrameHeader() {
+    }
+
+    static ByteBuffer of(int length, int correlationId) {
+        return of(length, correlationId, false);
+    }
+
+    static ByteBuffer of(int length, int correlationId, boolean more) {
+        if (more)
+            length |= FLAG_MORE;
+
+        ByteBuffer header;
+        if (correlationId == NO_CORRELATION) {
+            header = ByteBuffer.allocate(Integer.BYTES);
+            header.putInt(length);
+        }
+        else {
+            header = ByteBuffer.allocate(Integer.BYTES * 2);
+            header.putInt(length | FLAG_CORRELATED);
+            header.putInt(correlationId);
+        }
+        header.flip();
+        return header;
+    }
+
+    static int sizeOf(int prefix) {
+        return (prefix & FLAG_CORRELATED) == 0 ? Integer.BYTES : Integer.BYTES * 2;
+    }
+
+    static int lengthOf(int prefix) {
+        return prefix & LENGTH_MASK;
+    }
+
+    static boolean hasMore(int prefix) {
+        return (prefix & FLAG_MORE) != 0;
+    }
+}
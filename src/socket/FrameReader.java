@@ -0,0 +1,205 @@
+package socket;
+
+import util.Config;
+import util.SimpleLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accumulates bytes of a stream socket in a pooled buffer and cuts them into frames.
+ * The buffer is only borrowed while there are unconsumed bytes.
+ * Chunks of a streamed message are collected as they come in and handed over as
+ * one message once the last chunk is read. A connection may only have so many of them
+ * partly read, and hold so many bytes in them until they are decoded, see isOverBudget.
+ * Frames longer than the largest message accepted are taken as a corrupted stream,
+ * before the buffer is grown for them.
+ */
+class FrameReader {
+
+    private static final int INITIAL_BUF_SIZE = 4 * 1024;
+
+    private ByteBuffer buffer;
+
+    // streamed messages not complete yet, keyed by correlation id
+    private Map<Integer, ChunkAssembler> assemblers;
+
+    private final int maxStreams;
+
+    private final long maxStreamBytes;
+
+    // bytes held by the streamed messages not complete yet
+    private long partialBytes;
+
+    // bytes held by the streamed messages read and not decoded yet, complete ones are decoded on workers
+    private final AtomicLong streamBytes;
+
+    FrameReader() {
+        this.maxStreams = Config.getInstance().getMaxStreamsPerConnection();
+        long maxStreamBytes = Config.getInstance().getMaxStreamBytesPerConnection();
+        // a single message of the largest size accepted always fits
+        this.maxStreamBytes = maxStreamBytes < 0 ?
+                Long.MAX_VALUE :
+                Math.max(maxStreamBytes, JsonProtocolManager.getInstance().getMaxFrameLength());
+        this.partialBytes = 0;
+        this.streamBytes = new AtomicLong();
+    }
+
+    int read(SocketChannel socketChannel) throws IOException {
+        if (buffer == null)
+            buffer = BufferPool.getInstance().acquire(INITIAL_BUF_SIZE);
+
+        return socketChannel.read(buffer);
+    }
+
+    /**
+     * Hand every complete frame to the frame consumer, the payload is only valid during the call,
+     * and every complete chunked message to the message consumer
+     *
+     * @return false if the stream is corrupted
+     */
+    boolean drain(FrameConsumer frames, MessageConsumer messages) {
+        if (buffer == null) return true;
+
+        long maxFrameLength = JsonProtocolManager.getInstance().getMaxFrameLength();
+        int received = buffer.position();
+        int position = 0;
+        while (received - position >= Integer.BYTES) {
+            int prefix = buffer.getInt(position);
+            if (prefix < 0) return false;
+
+            if (FrameHeader.lengthOf(prefix) > maxFrameLength) {
+                SimpleLog.i("Frame of " + FrameHeader.lengthOf(prefix) + " bytes beyond the max message size");
+                return false;
+            }
+
+            int headerSize = FrameHeader.sizeOf(prefix);
+            int frameLength = headerSize + FrameHeader.lengthOf(prefix);
+            if (received - position < frameLength) break;
+
+            int correlationId = headerSize == Integer.BYTES ?
+                    FrameHeader.NO_CORRELATION :
+                    buffer.getInt(position + Integer.BYTES);
+            ByteBuffer payload = buffer.duplicate();
+            payload.position(position + headerSize);
+            payload.limit(position + frameLength);
+            position += frameLength;
+
+            boolean more = FrameHeader.hasMore(prefix);
+            if (!more && (assemblers == null || !assemblers.containsKey(correlationId)))
+                frames.onFrame(correlationId, payload.slice());
+            else if (!assemble(correlationId, payload.slice(), more, messages))
+                return false;
+        }
+
+        if (position == received) {
+            release();
+            return true;
+        }
+
+        if (position > 0) {
+            buffer.flip();
+            buffer.position(position);
+            buffer.compact();
+        }
+
+        // make sure the pending frame fits in one contiguous buffer
+        if (buffer.position() >= Integer.BYTES) {
+            int prefix = buffer.getInt(0);
+            int frameLength = FrameHeader.sizeOf(prefix) + FrameHeader.lengthOf(prefix);
+            if (buffer.capacity() < frameLength)
+                grow(frameLength);
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the streamed messages read from the connection and not decoded yet
+     *          hold more bytes than allowed, reading should wait until they are decoded
+     */
+    boolean isOverBudget() {
+        return streamBytes.get() > maxStreamBytes;
+    }
+
+    void release() {
+        BufferPool.getInstance().release(buffer);
+        buffer = null;
+    }
+
+    /**
+     * Release the buffer and drop messages that are only partly read
+     */
+    void close() {
+        release();
+        if (assemblers != null) {
+            for (ChunkAssembler assembler : assemblers.values())
+                assembler.discard();
+            assemblers = null;
+            partialBytes = 0;
+        }
+    }
+
+    private boolean assemble(int correlationId, ByteBuffer chunk, boolean more, MessageConsumer consumer) {
+        if (assemblers == null)
+            assemblers = new HashMap<>();
+
+        ChunkAssembler assembler = assemblers.get(correlationId);
+        if (assembler == null) {
+            if (maxStreams >= 0 && assemblers.size() >= maxStreams) {
+                SimpleLog.i("More than " + maxStreams + " messages partly received at once");
+                return false;
+            }
+            assembler = new ChunkAssembler(JsonProtocolManager.getInstance().getCompressor(), this::released);
+            assemblers.put(correlationId, assembler);
+        }
+
+        int n = chunk.remaining();
+        try {
+            assembler.append(chunk);
+        } catch (IOException e) {
+            SimpleLog.i("Corrupted chunk of message " + correlationId + ": " + e.getMessage());
+            return false;
+        }
+        partialBytes += n;
+        streamBytes.addAndGet(n);
+        // waiting for more of them to complete would not free anything
+        if (partialBytes > maxStreamBytes) {
+            SimpleLog.i("Messages partly received hold more than " + maxStreamBytes + " bytes");
+            return false;
+        }
+        if (more) return true;
+
+        assemblers.remove(correlationId);
+        partialBytes -= assembler.size();
+        consumer.onMessage(correlationId, assembler);
+        return true;
+    }
+
+    // chunks of a message let go of, on whatever thread decoded it
+    private void released(long bytes) {
+        streamBytes.addAndGet(-bytes);
+    }
+
+    private void grow(int capacity) {
+        ByteBuffer larger = BufferPool.getInstance().acquire(capacity);
+        buffer.flip();
+        larger.put(buffer);
+        BufferPool.getInstance().release(buffer);
+        buffer = larger;
+    }
+
+    interface FrameConsumer {
+        void onFrame(int correlationId, ByteBuffer payload);
+    }
+
+    interface MessageConsumer {
+        /**
+         * @param message every chunk of the message, decoded with JsonProtocolManager.read
+         */
+        void onMessage(int correlationId, ChunkAssembler message);
+    }
+}
@@ -0,0 +1,75 @@
+package socket;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Frames a message is written as.
+ * Small messages go out as a single frame. Larger ones are encoded into chunks of
+ * bounded size by ChunkedOutput, each written as its own frame, so the connection can
+ * carry other frames in between. Every chunk is encoded before the first is written,
+ * a chunk is dropped as soon as it is handed over, so what the message holds shrinks
+ * as it goes out.
+ *
+ * A chunked message starts with the header byte and the length of the encoded
+ * message, followed by its (optionally deflated) bytes spread over the chunks.
+ */
+final class FrameStream {
+
+    private final int correlationId;
+
+    // single frame messages
+    private ByteBuffer payload;
+
+    // chunked messages
+    private final List<ByteBuffer> chunks;
+    private int index;
+
+    private boolean finished;
+
+    static FrameStream of(ByteBuffer payload, int correlationId) {
+        return new FrameStream(payload, null, correlationId);
+    }
+
+    static FrameStream chunked(List<ByteBuffer> chunks, int correlationId) {
+        return new FrameStream(null, chunks, correlationId);
+    }
+
+    private FrameStream(ByteBuffer payload, List<ByteBuffer> chunks, int correlationId) {
+        this.payload = payload;
+        this.chunks = chunks;
+        this.correlationId = correlationId;
+        this.index = 0;
+        this.finished = false;
+    }
+
+    boolean hasNext() {
+        return !finished;
+    }
+
+    /**
+     * @return header and payload of the next frame
+     */
+    ByteBuffer[] next() {
+        if (chunks == null) {
+            finished = true;
+            ByteBuffer frame = payload;
+            payload = null;
+            return new ByteBuffer[] { FrameHeader.of(frame.remaining(), correlationId), frame };
+        }
+
+        ByteBuffer chunk = chunks.set(index++, null);
+        finished = index == chunks.size();
+        return new ByteBuffer[] { FrameHeader.of(chunk.remaining(), correlationId, !finished), chunk };
+    }
+
+    /**
+     * Drop the frames that will not be written anymore
+     */
+    void discard() {
+        payload = null;
+        if (chunks != null)
+            chunks.clear();
+        finished = true;
+    }
+}
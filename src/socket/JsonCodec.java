@@ -0,0 +1,54 @@
+package socket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import commonmodels.Transportable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+public class JsonCodec implements MessageCodec {
+
+    public final static String NAME = "json";
+
+    private final ObjectMapper objectMapper;
+
+    public JsonCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public byte getId() {
+        return CODEC_JSON;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Transportable message) throws IOException {
+        return objectMapper.writeValueAsBytes(message);
+    }
+
+    @Override
+    public Transportable decode(ByteBuffer buf) throws IOException {
+        if (buf.hasArray())
+            return objectMapper.readValue(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining(), Transportable.class);
+        else
+            return objectMapper.readValue(new ByteBufferBackedInputStream(buf.duplicate()), Transportable.class);
+    }
+
+    @Override
+    public void encode(Transportable message, OutputStream out) throws IOException {
+        objectMapper.writeValue(out, message);
+    }
+
+    @Override
+    public Transportable decode(InputStream in, int length) throws IOException {
+        return objectMapper.readValue(in, Transportable.class);
+    }
+}
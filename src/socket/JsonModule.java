@@ -4,6 +4,7 @@ import ceph.Cluster;
 import ceph.ClusterMap;
 import ceph.PlacementGroup;
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import commonmodels.*;
@@ -45,6 +46,7 @@ abstract class RequestMixin {
             @JsonProperty("epoch") long epoch,
             @JsonProperty("token") String token,
             @JsonProperty("timestamp") long timestamp,
+            @JsonProperty("timeout") long timeout,
             @JsonProperty("largeAttachment") Object largeAttachment
     ) { }
     @JsonProperty("header") abstract String getHeader();
@@ -55,6 +57,7 @@ abstract class RequestMixin {
     @JsonProperty("epoch") abstract long getEpoch();
     @JsonProperty("token") abstract String getToken();
     @JsonProperty("timestamp") abstract long getTimestamp();
+    @JsonProperty("timeout") abstract long getTimeout();
     @JsonProperty("largeAttachment") abstract Object getLargeAttachment();
 }
 
@@ -101,11 +104,14 @@ abstract class BucketNodeMixin {
 abstract class VirtualNodeMixin {
     @JsonCreator
     VirtualNodeMixin(
-            @JsonProperty("hash") int hash,
+            @JsonProperty("token") long token,
             @JsonProperty("index") int index,
             @JsonProperty("physicalNodeId") String physicalNodeId
     ) { }
+    @JsonProperty("token") abstract long getToken();
+    // derived from the token, written for readers only
     @JsonProperty("hash") abstract int getHash();
+    @JsonIgnore abstract void setHash(int hash);
     @JsonProperty("index") abstract int getIndex();
     @JsonProperty("physicalNodeId") abstract String getPhysicalNodeId();
 }
@@ -147,6 +153,7 @@ abstract class LoadInfoMixin {
     @JsonProperty("numberOfMiss") abstract long getNumberOfMiss();
     @JsonProperty("numberOfLockConflicts") abstract long getNumberOfLockConflicts();
     @JsonProperty("numberOfHits") abstract long getNumberOfHits();
+    @JsonProperty("queueDepth") abstract int getQueueDepth();
     @JsonProperty("bucketInfoList") abstract List<FileBucket> getBucketInfoList();
 }
 
@@ -154,6 +161,7 @@ abstract class FileBucketMixin {
     @JsonCreator
     FileBucketMixin(
             @JsonProperty("key") int key,
+            @JsonProperty("token") long token,
             @JsonProperty("size") long size,
             @JsonProperty("numberOfFiles") long numberOfFiles,
             @JsonProperty("sizeOfReads") long sizeOfReads,
@@ -164,6 +172,7 @@ abstract class FileBucketMixin {
             @JsonProperty("locked") boolean locked
     ) { }
     @JsonProperty("key") abstract int getKey();
+    @JsonProperty("token") abstract long getToken();
     @JsonProperty("size") abstract long getSize();
     @JsonProperty("numberOfFiles") abstract long getNumberOfFiles();
     @JsonProperty("sizeOfReads") abstract long getSizeOfReads();
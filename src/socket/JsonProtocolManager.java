@@ -4,19 +4,43 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import commonmodels.Transportable;
+import commonmodels.transport.Request;
+import commonmodels.transport.Response;
+import util.Config;
+import util.SimpleLog;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 public class JsonProtocolManager {
 
     private final ObjectMapper objectMapper;
 
+    private final MessageCodec[] codecs;
+
+    private final MessageCodec defaultCodec;
+
+    private final FrameCompressor compressor;
+
+    private final int streamChunkSize;
+
+    private final int maxMessageSize;
+
+    // frames written before codecs were introduced start with the gzip magic number
+    private final static byte LEGACY_GZIP_MAGIC = (byte) 0x1f;
+
+    final static byte FLAG_COMPRESSED = 0x40;
+
+    final static byte CODEC_ID_MASK = 0x1f;
+
+    // room for the header byte and original length in the first chunk
+    private final static int MIN_STREAM_CHUNK_SIZE = 64;
+
     private static JsonProtocolManager instance;
 
     private JsonProtocolManager() {
@@ -30,6 +54,18 @@ public class JsonProtocolManager {
                         getDefaultVisibilityChecker().
                         withFieldVisibility(JsonAutoDetect.Visibility.ANY).
                         withGetterVisibility(JsonAutoDetect.Visibility.NONE));
+
+        maxMessageSize = (int) Math.min(Integer.MAX_VALUE, Config.getInstance().getMaxMessageSize());
+        compressor = new FrameCompressor(
+                Config.getInstance().getCompressionThreshold(),
+                Config.getInstance().isCompressionDictionaryEnabled(),
+                maxMessageSize);
+        codecs = new MessageCodec[Byte.MAX_VALUE + 1];
+        registerCodec(new JsonCodec(objectMapper));
+        registerCodec(new BinaryCodec(objectMapper, compressor));
+        defaultCodec = getCodec(Config.getInstance().getWireCodec());
+        int chunkSize = (int) Config.getInstance().getStreamChunkSize();
+        streamChunkSize = chunkSize <= 0 ? -1 : Math.max(MIN_STREAM_CHUNK_SIZE, chunkSize);
     }
 
     public static JsonProtocolManager getInstance() {
@@ -48,19 +84,52 @@ public class JsonProtocolManager {
         instance = null;
     }
 
+    private void registerCodec(MessageCodec codec) {
+        codecs[codec.getId()] = codec;
+    }
+
+    public MessageCodec getCodec(String name) {
+        for (MessageCodec codec : codecs) {
+            if (codec != null && codec.getName().equals(name))
+                return codec;
+        }
+
+        SimpleLog.i("Unknown wire codec " + name + ", fall back to " + JsonCodec.NAME);
+        return codecs[MessageCodec.CODEC_JSON];
+    }
+
+    public MessageCodec getDefaultCodec() {
+        return defaultCodec;
+    }
+
+    public MessageCodec codecOf(ByteBuffer frame) {
+        if (!frame.hasRemaining()) return codecs[MessageCodec.CODEC_JSON];
+
+        return codecOf(frame.get(frame.position()));
+    }
+
+    MessageCodec codecOf(byte header) {
+        if (header == LEGACY_GZIP_MAGIC || codecs[header & CODEC_ID_MASK] == null)
+            return codecs[MessageCodec.CODEC_JSON];
+        else
+            return codecs[header & CODEC_ID_MASK];
+    }
+
     public byte[] write(Transportable message) throws IOException {
-        return objectMapper.writeValueAsBytes(message);
+        return defaultCodec.encode(message);
     }
 
     public Transportable read(byte[] buf) throws IOException {
-        return objectMapper.readValue(buf, Transportable.class);
+        return defaultCodec.decode(ByteBuffer.wrap(buf));
     }
 
     public ByteBuffer writeGzip(Transportable message) {
+        return writeGzip(message, defaultCodec);
+    }
+
+    public ByteBuffer writeGzip(Transportable message, MessageCodec codec) {
         try {
-            byte[] bytes = write(message);
-            byte[] compressedBytes = compress(bytes);
-            return ByteBuffer.wrap(compressedBytes);
+            return pack(codec.encode(message), codec.getId(), !carriesSnapshot(message, codec));
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -68,10 +137,91 @@ public class JsonProtocolManager {
         return ByteBuffer.allocate(0);
     }
 
+    /**
+     * Encode a message into the frames it is written as, large messages are streamed in chunks
+     */
+    FrameStream writeFrames(Transportable message, MessageCodec codec, int correlationId) {
+        boolean compress = !carriesSnapshot(message, codec);
+        try {
+            if (streamChunkSize < 0)
+                return FrameStream.of(pack(codec.encode(message), codec.getId(), compress), correlationId);
+
+            ChunkedOutput out = new ChunkedOutput(codec.getId(), compress ? compressor : null, streamChunkSize, maxMessageSize);
+            try {
+                codec.encode(message, out);
+            } catch (IOException | RuntimeException e) {
+                out.discard();
+                throw e;
+            }
+
+            if (!out.isChunked())
+                return FrameStream.of(pack(out.getHead(), out.getHeadLength(), codec.getId(), compress), correlationId);
+            return FrameStream.chunked(out.finish(), correlationId);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return FrameStream.of(ByteBuffer.allocate(0), correlationId);
+        }
+    }
+
+    /**
+     * Decode a message streamed in chunks
+     */
+    Transportable read(ChunkAssembler message) {
+        try {
+            MessageCodec codec = codecOf(message.getHeader());
+            if (codec.getId() != (message.getHeader() & CODEC_ID_MASK))
+                throw new IOException("Unknown wire codec id " + (message.getHeader() & CODEC_ID_MASK));
+
+            return message.decode(codec);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            message.discard();
+        }
+
+        return null;
+    }
+
+    /**
+     * @return longest frame accepted from a peer, a message of the max message size that deflate could not shrink
+     */
+    long getMaxFrameLength() {
+        return 1 + Integer.BYTES + FrameCompressor.maxDeflatedLength(maxMessageSize);
+    }
+
+    FrameCompressor getCompressor() {
+        return compressor;
+    }
+
     public Transportable readGzip(byte[] bytes) {
+        return readGzip(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Decode a frame in place, the buffer position and limit are left untouched
+     */
+    public Transportable readGzip(ByteBuffer frame) {
+        if (!frame.hasRemaining()) return null;
+
         try {
-            byte[] decompressedBytes = decompress(bytes);
-            return read(decompressedBytes);
+            byte header = frame.get(frame.position());
+            if (header == LEGACY_GZIP_MAGIC) {
+                byte[] decompressedBytes = decompressGzip(frame);
+                return codecs[MessageCodec.CODEC_JSON].decode(ByteBuffer.wrap(decompressedBytes));
+            }
+
+            MessageCodec codec = codecOf(frame);
+            if (codec.getId() != (header & CODEC_ID_MASK))
+                throw new IOException("Unknown wire codec id " + (header & CODEC_ID_MASK));
+
+            ByteBuffer body = frame.duplicate();
+            body.position(frame.position() + 1);
+            if ((header & FLAG_COMPRESSED) == 0)
+                return codec.decode(body.slice());
+
+            int originalLength = body.getInt();
+            byte[] decompressedBytes = compressor.decompress(body, originalLength);
+            return codec.decode(ByteBuffer.wrap(decompressedBytes));
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -81,9 +231,7 @@ public class JsonProtocolManager {
 
     public long sizeOf(Transportable message) {
         try {
-            byte[] bytes = write(message);
-            byte[] compressedBytes = compress(bytes);
-            return compressedBytes.length;
+            return pack(write(message), defaultCodec.getId(), !carriesSnapshot(message, defaultCodec)).remaining();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -91,22 +239,47 @@ public class JsonProtocolManager {
         return 0;
     }
 
-    private byte[] compress(byte[] bytes) throws IOException  {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        GZIPOutputStream gzip = new GZIPOutputStream(out);
-        gzip.write(bytes);
-        gzip.close();
-        return out.toByteArray();
+    // header byte carries the codec id and the compression flag,
+    // compressed bodies are preceded by their original length
+    private ByteBuffer pack(byte[] bytes, byte codecId, boolean compress) {
+        return pack(bytes, bytes.length, codecId, compress);
+    }
+
+    private ByteBuffer pack(byte[] bytes, int length, byte codecId, boolean compress) {
+        if (!compress || !compressor.shouldCompress(length)) {
+            ByteBuffer buffer = ByteBuffer.allocate(length + 1);
+            buffer.put(codecId).put(bytes, 0, length).flip();
+            return buffer;
+        }
+
+        ByteBuffer buffer = compressor.compress(bytes, length, 1 + Integer.BYTES);
+        buffer.put(0, (byte) (codecId | FLAG_COMPRESSED));
+        buffer.putInt(1, length);
+        return buffer;
+    }
+
+    // binary frames embed tables already compressed, deflating them again gains nothing
+    private boolean carriesSnapshot(Transportable message, MessageCodec codec) {
+        if (codec.getId() != MessageCodec.CODEC_BINARY) return false;
+
+        if (message instanceof Response)
+            return TableSnapshotCache.isCacheable(((Response) message).getAttachment());
+        else if (message instanceof Request)
+            return TableSnapshotCache.isCacheable(((Request) message).getLargeAttachment());
+        else
+            return false;
     }
 
-    private byte[] decompress(byte[] bytes) throws IOException {
+    private byte[] decompressGzip(ByteBuffer frame) throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
-        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+        InputStream in = new ByteBufferBackedInputStream(frame.duplicate());
         GZIPInputStream gunzip = new GZIPInputStream(in);
         byte[] buffer = new byte[256];
         int n;
         while ((n = gunzip.read(buffer)) >= 0) {
             out.write(buffer, 0, n);
+            if (out.size() > maxMessageSize)
+                throw new IOException("Corrupted frame, message inflates beyond the max message size");
         }
         gunzip.close();
         return out.toByteArray();
@@ -0,0 +1,31 @@
+package socket;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tells whether an address belongs to this host
+ */
+final class LocalAddresses {
+
+    private static final Map<InetAddress, Boolean> localAddresses = new ConcurrentHashMap<>();
+
+    private LocalAddresses() {
+    }
+
+    static boolean isLocal(InetAddress address) {
+        if (address == null) return false;
+        if (address.isLoopbackAddress() || address.isAnyLocalAddress()) return true;
+
+        return localAddresses.computeIfAbsent(address, a -> {
+            try {
+                return NetworkInterface.getByInetAddress(a) != null;
+            } catch (SocketException e) {
+                return false;
+            }
+        });
+    }
+}
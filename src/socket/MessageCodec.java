@@ -0,0 +1,35 @@
+package socket;
+
+import commonmodels.Transportable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+public interface MessageCodec {
+
+    byte CODEC_JSON = 1;
+
+    byte CODEC_BINARY = 2;
+
+    byte getId();
+
+    String getName();
+
+    byte[] encode(Transportable message) throws IOException;
+
+    Transportable decode(ByteBuffer buf) throws IOException;
+
+    /**
+     * Encode a message a piece at a time, for messages streamed in chunks
+     */
+    void encode(Transportable message, OutputStream out) throws IOException;
+
+    /**
+     * Decode a message read a piece at a time
+     *
+     * @param length number of bytes the message is encoded in, at most that many are read
+     */
+    Transportable decode(InputStream in, int length) throws IOException;
+}
@@ -0,0 +1,60 @@
+package socket;
+
+import commonmodels.transport.Request;
+import util.HashedWheelTimer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class PendingRequest {
+
+    // the one of the caller, handed back to the callback
+    final Request request;
+
+    // the one written to the server, a copy of request when the client fills in the timeout
+    final Request outbound;
+
+    final SocketClient.ServerCallBack callBack;
+
+    // set on the selector thread once the request is handed to the socket
+    volatile int correlationId;
+
+    volatile boolean sent;
+
+    volatile ClientReadWriteHandler owner;
+
+    private volatile HashedWheelTimer.Timeout timeout;
+
+    private final AtomicBoolean completed;
+
+    PendingRequest(Request request, SocketClient.ServerCallBack callBack) {
+        this(request, request, callBack);
+    }
+
+    PendingRequest(Request request, Request outbound, SocketClient.ServerCallBack callBack) {
+        this.request = request;
+        this.outbound = outbound;
+        this.callBack = callBack;
+        this.completed = new AtomicBoolean(false);
+    }
+
+    void setTimeout(HashedWheelTimer.Timeout timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Claim the right to invoke the callback, only the first caller gets it
+     */
+    boolean complete() {
+        if (!completed.compareAndSet(false, true))
+            return false;
+
+        HashedWheelTimer.Timeout t = timeout;
+        if (t != null)
+            t.cancel();
+        return true;
+    }
+
+    boolean isCompleted() {
+        return completed.get();
+    }
+}
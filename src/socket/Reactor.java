@@ -0,0 +1,85 @@
+package socket;
+
+import util.SimpleLog;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Selector loop serving the read/write events of the connections handed over by the acceptor
+ */
+public class Reactor implements Runnable {
+
+    private final Selector selector;
+
+    private final AtomicBoolean keepRunning = new AtomicBoolean(true);
+
+    private final Queue<Attachable> attachments;
+
+    // number of channels registered with the selector, only written by the reactor thread
+    private volatile int registered;
+
+    public Reactor() throws IOException {
+        this.selector = Selector.open();
+        this.attachments = new ConcurrentLinkedQueue<>();
+        this.registered = 0;
+    }
+
+    public void register(Attachable attachable) {
+        attachments.add(attachable);
+        selector.wakeup();
+    }
+
+    public int getLoad() {
+        return registered + attachments.size();
+    }
+
+    public void stop() {
+        keepRunning.set(false);
+        try {
+            selector.close();
+        } catch (IOException e) {
+            SimpleLog.e(e);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (keepRunning.get()) {
+                registerAttachments();
+                selector.select();
+                registered = selector.keys().size();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+
+                while (it.hasNext()) {
+                    SelectionKey sk = it.next();
+                    it.remove();
+                    Runnable r = (Runnable) sk.attachment();
+                    if (r != null) {
+                        r.run();
+                    }
+                }
+            }
+        }
+        catch (ClosedSelectorException ignored) {
+            // stopped
+        }
+        catch (IOException ex) {
+            SimpleLog.e(ex);
+        }
+    }
+
+    private void registerAttachments() throws IOException {
+        Attachable attachable;
+        while ((attachable = attachments.poll()) != null) {
+            attachable.attach(selector);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package socket;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects requests to the same endpoint into batches.
+ * A batch is handed over once it holds maxRequests requests or lingerMicros
+ * have passed since its first request, whichever comes first.
+ */
+final class RequestBatcher {
+
+    private final int maxRequests;
+
+    private final long lingerMicros;
+
+    private final Sink sink;
+
+    private final Map<String, Batch> openBatches;
+
+    private final ScheduledExecutorService scheduler;
+
+    RequestBatcher(int maxRequests, long lingerMicros, Sink sink) {
+        this.maxRequests = maxRequests;
+        this.lingerMicros = lingerMicros;
+        this.sink = sink;
+        this.openBatches = new HashMap<>();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "request-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void add(InetSocketAddress remote, String key, PendingRequest pending) {
+        Batch full = null;
+        synchronized (this) {
+            Batch batch = openBatches.get(key);
+            if (batch == null) {
+                Batch opened = new Batch(remote, key);
+                openBatches.put(key, opened);
+                scheduler.schedule(() -> flush(opened), lingerMicros, TimeUnit.MICROSECONDS);
+                batch = opened;
+            }
+
+            batch.requests.add(pending);
+            if (batch.requests.size() >= maxRequests) {
+                openBatches.remove(key);
+                full = batch;
+            }
+        }
+
+        if (full != null)
+            sink.onBatch(full.remote, full.key, full.requests);
+    }
+
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void flush(Batch batch) {
+        synchronized (this) {
+            // already handed over when it filled up
+            if (openBatches.get(batch.key) != batch) return;
+            openBatches.remove(batch.key);
+        }
+
+        sink.onBatch(batch.remote, batch.key, batch.requests);
+    }
+
+    private static class Batch {
+
+        private final InetSocketAddress remote;
+
+        private final String key;
+
+        private final List<PendingRequest> requests;
+
+        private Batch(InetSocketAddress remote, String key) {
+            this.remote = remote;
+            this.key = key;
+            this.requests = new ArrayList<>();
+        }
+    }
+
+    interface Sink {
+        void onBatch(InetSocketAddress remote, String key, List<PendingRequest> requests);
+    }
+}
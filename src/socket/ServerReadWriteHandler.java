@@ -1,45 +1,51 @@
 package socket;
 
+import commands.CommonCommand;
 import commonmodels.Transportable;
 import commonmodels.transport.Request;
 import commonmodels.transport.Response;
 import statmanagement.StatInfoManager;
-import util.ObjectConverter;
+import util.Config;
 import util.SimpleLog;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 public class ServerReadWriteHandler implements Runnable, Attachable {
     private final SocketChannel socketChannel;
     private SelectionKey selectionKey;
 
-    private static final int READ_BUF_SIZE = 32 * 1024;
-    private static final int WRITE_BUF_SIZE = 32 * 1024;
-    private ByteBuffer[] _readBuf;
+    private final FrameReader reader;
+    // responses in the order they are done, not the order requests came in
+    private final Queue<FrameStream> writeQueue;
+    private FrameStream _writeStream;
     private ByteBuffer[] _writeBuf;
-    private ByteArrayOutputStream bos = new ByteArrayOutputStream();
     private SocketServer.EventHandler eventHandler;
-    private boolean processScheduled;
-    private int size;
 
-    public ServerReadWriteHandler(SocketChannel socketChannel, SocketServer.EventHandler eventHandler) {
+    private final Admission admission;
+    private final int maxPending;
+    // requests read from this channel whose response is not fully written yet
+    private int pending;
+    private boolean readPaused;
+
+    public ServerReadWriteHandler(SocketChannel socketChannel, SocketServer.EventHandler eventHandler, Admission admission) {
         this.socketChannel = socketChannel;
         this.eventHandler = eventHandler;
-        this.processScheduled = false;
-
-        this._writeBuf = new ByteBuffer[2];
-        this._writeBuf[1] = ByteBuffer.allocate(WRITE_BUF_SIZE);
-        this._writeBuf[0] = ByteBuffer.allocate(Integer.BYTES);
-        this._readBuf = new ByteBuffer[2];
-        this._readBuf[1] = ByteBuffer.allocate(READ_BUF_SIZE);
-        this._readBuf[0] = ByteBuffer.allocate(Integer.BYTES);
-        this.size = Integer.MIN_VALUE;
+        this.reader = new FrameReader();
+        this.writeQueue = new LinkedList<>();
+        this.admission = admission;
+        this.maxPending = Config.getInstance().getServerMaxPendingPerConnection();
+        this.pending = 0;
+        this.readPaused = false;
     }
 
     @Override
@@ -49,7 +55,7 @@ public class ServerReadWriteHandler implements Runnable, Attachable {
             if (this.selectionKey.isReadable()) {
                 read();
             }
-            else if (this.selectionKey.isWritable()) {
+            if (this.selectionKey.isValid() && this.selectionKey.isWritable()) {
                 write();
             }
         }
@@ -58,105 +64,249 @@ public class ServerReadWriteHandler implements Runnable, Attachable {
         }
     }
 
-    private synchronized void process() {
-        byte[] byteArray = bos.toByteArray();
-        if (byteArray.length == 0) {
-            reset();
+    private void read() throws IOException {
+        if (reader.read(socketChannel) == -1) {
+            close();
             return;
         }
 
-        Transportable o = JsonProtocolManager.getInstance().readGzip(byteArray);
-        if (o instanceof Request) {
-            try {
-                Request req = (Request) o;
+        // SimpleLog.v("[" + socketChannel.getRemoteAddress() + "] Server: read bytes");
 
-                long stamp = StatInfoManager.getInstance().getStamp();
-                StatInfoManager.getInstance().statRequest(req, stamp, byteArray.length);
-                InetSocketAddress inetSocketAddress = (InetSocketAddress) socketChannel.getRemoteAddress();
-                req.setSender(inetSocketAddress.getHostName() + ":" + inetSocketAddress.getPort());
-                Response response = eventHandler.onReceived(req);
-                StatInfoManager.getInstance().statExecution(req, stamp);
-                _writeBuf[1] = JsonProtocolManager.getInstance().writeGzip(response);
-                _writeBuf[0].putInt(_writeBuf[1].remaining());
-                _writeBuf[0].flip();
-
-                switchMode(SelectionKey.OP_WRITE);
-            } catch (IOException e) {
-                reset();
-                e.printStackTrace();
-            }
+        if (!reader.drain(this::onFrame, this::onMessage)) {
+            SimpleLog.i("[" + socketChannel.getRemoteAddress() + "] Server: corrupted frame, closing channel");
+            close();
+            return;
+        }
+
+        pauseReadIfFull();
+    }
+
+    private void onFrame(int correlationId, ByteBuffer frame) {
+        int frameSize = frame.remaining();
+        if (frameSize == 0) return;
+
+        // reply in whatever codec the peer speaks on this connection, only the header byte is read here
+        MessageCodec codec = JsonProtocolManager.getInstance().codecOf(frame);
+        if (!admit(() -> JsonProtocolManager.getInstance().readGzip(frame), codec, correlationId)) return;
+
+        // the frame is only valid during this call, decoding and inflating are left to the worker
+        ByteBuffer payload = BufferPool.getInstance().acquire(frameSize);
+        payload.put(frame.duplicate());
+        payload.flip();
+
+        // released by the decoder, on the worker or when the request is answered as overloaded
+        dispatch(() -> read(payload), codec, correlationId, frameSize);
+    }
+
+    private void onMessage(int correlationId, ChunkAssembler message) {
+        MessageCodec codec = JsonProtocolManager.getInstance().codecOf(message.getHeader());
+        if (!admit(() -> JsonProtocolManager.getInstance().read(message), codec, correlationId)) return;
+
+        // the chunks are already copied, the message is decoded from them on the worker
+        dispatch(() -> JsonProtocolManager.getInstance().read(message), codec, correlationId, (int) message.size());
+    }
+
+    private boolean admit(Supplier<Transportable> decoder, MessageCodec codec, int correlationId) {
+        synchronized (this) {
+            pending++;
         }
-        else {
-            reset();
+
+        if (!admission.tryAcquire()) {
+            // answer right away instead of letting the worker queue grow
+            respondOverloaded(decoder, codec, correlationId);
+            return false;
         }
+        return true;
     }
 
-    private synchronized void read() throws IOException {
-        if (this.socketChannel.read(_readBuf) == -1){
-            this.selectionKey.cancel();
-            this.socketChannel.close();
-            return;
+    /**
+     * Hand the request to a worker, or answer it as overloaded if the worker pool rejects it.
+     * The decoder runs exactly once either way.
+     */
+    private void dispatch(Supplier<Transportable> decoder, MessageCodec codec, int correlationId, int frameSize) {
+        long received = System.nanoTime();
+        try {
+            SocketServer.getWorkerPool().execute(() -> process(decoder, codec, correlationId, frameSize, received));
+        } catch (RejectedExecutionException e) {
+            admission.release();
+            respondOverloaded(decoder, codec, correlationId);
         }
+    }
+
+    private static Transportable read(ByteBuffer payload) {
+        try {
+            return JsonProtocolManager.getInstance().readGzip(payload);
+        } finally {
+            BufferPool.getInstance().release(payload);
+        }
+    }
+
+    /**
+     * @param received System.nanoTime() when the frame was read
+     */
+    private void process(Supplier<Transportable> decoder, MessageCodec codec, int correlationId, int frameSize, long received) {
+        // admitted as one request before it was decoded
+        int permits = 1;
+        try {
+            Transportable o = decoder.get();
+            if (!(o instanceof Request)) {
+                settle();
+                return;
+            }
+
+            Request req = (Request) o;
+            req.setReceived(received);
+            if (req.isExpired()) {
+                // the sender has given up on it while it was queued
+                settle();
+                return;
+            }
 
-        int numBytes;
-        _readBuf[1].flip();
+            // a batch takes a slot for every request it carries
+            int extra = CommonCommand.weightOf(req) - 1;
+            if (extra > 0) {
+                if (!admission.tryAcquire(extra)) {
+                    respond(SocketServer.overloaded(req), codec, correlationId);
+                    return;
+                }
+                permits += extra;
+            }
+
+            long stamp = StatInfoManager.getInstance().getStamp();
+            StatInfoManager.getInstance().statRequest(req, stamp, frameSize);
+            SocketAddress remote = socketChannel.getRemoteAddress();
+            if (remote instanceof InetSocketAddress) {
+                InetSocketAddress inetSocketAddress = (InetSocketAddress) remote;
+                req.setSender(inetSocketAddress.getHostName() + ":" + inetSocketAddress.getPort());
+            }
+            else {
+                // unix domain peers run on this host and have no port
+                req.setSender(SocketServer.getLocalSender());
+            }
+            Response response;
+            try {
+                response = eventHandler.onReceived(req);
+            } catch (RuntimeException e) {
+                SimpleLog.e(e);
+                response = new Response(req)
+                        .withStatus(Response.STATUS_FAILED)
+                        .withMessage("Server throws " + e.getMessage());
+            }
+            StatInfoManager.getInstance().statExecution(req, stamp);
 
-        if (size == Integer.MIN_VALUE) {
-            _readBuf[0].flip();
-            size = _readBuf[0].getInt();
+            respond(response, codec, correlationId);
+        } catch (IOException | RuntimeException e) {
+            // nothing is sent back, the request only stops counting against the channel
+            SimpleLog.e(e);
+            settle();
+        } finally {
+            admission.release(permits);
         }
-        numBytes = _readBuf[1].remaining();
+    }
 
-         // SimpleLog.v("[" + socketChannel.getRemoteAddress() + "] Server: read bytes " + numBytes + ", total size: " + size);
+    /**
+     * The request is decoded only for its header and token, so the rejection reads
+     * the same as one of a request dispatched locally
+     */
+    private void respondOverloaded(Supplier<Transportable> decoder, MessageCodec codec, int correlationId) {
+        Transportable o = decoder.get();
+        respond(SocketServer.overloaded(o instanceof Request ? (Request) o : null), codec, correlationId);
+    }
+
+    private void respond(Response response, MessageCodec codec, int correlationId) {
+        enqueue(JsonProtocolManager.getInstance().writeFrames(response, codec, correlationId));
+    }
 
-        if (size < 0) {
-            reset();
+    private synchronized void enqueue(FrameStream frames) {
+        if (!selectionKey.isValid()) {
+            frames.discard();
             return;
         }
-        if (numBytes >= size) {
-            // object fully arrived
-            bos.write(ObjectConverter.getBytes(_readBuf[1], size));
-            size = 0;
-        }
-        else {
-            // object partially arrived, need to read again
-            bos.write(ObjectConverter.getBytes(_readBuf[1], numBytes));
-            size -= numBytes;
-        }
+        writeQueue.add(frames);
+        switchMode(interestOps());
+    }
 
-        if (size <= 0 && size != Integer.MIN_VALUE) {
-            if (!processScheduled) {
-                processScheduled = true;
-                SocketServer.getWorkerPool().execute(this::process);
-            }
+    /**
+     * A request of this channel is done with, resume reading if it was paused
+     */
+    private synchronized void settle() {
+        pending--;
+        if (readPaused && !isFull()) {
+            readPaused = false;
+            switchMode(interestOps());
         }
-        else {
-            _readBuf[1].clear();
+    }
+
+    /**
+     * @return true if the channel has as many requests unanswered as allowed,
+     *          or its streamed requests not decoded yet hold too many bytes
+     */
+    private boolean isFull() {
+        return (maxPending > 0 && pending >= maxPending) || reader.isOverBudget();
+    }
+
+    private synchronized void pauseReadIfFull() {
+        if (isFull() && !readPaused && selectionKey.isValid()) {
+            readPaused = true;
+            // still on the selector thread
+            selectionKey.interestOps(interestOps());
         }
     }
 
-    private void write() throws IOException {
-        this.socketChannel.write(_writeBuf);
+    private int interestOps() {
+        int ops = readPaused ? 0 : SelectionKey.OP_READ;
+        if (_writeBuf != null || !writeQueue.isEmpty())
+            ops |= SelectionKey.OP_WRITE;
+        return ops;
+    }
+
+    private synchronized void write() throws IOException {
+        while (true) {
+            if (_writeBuf == null) {
+                _writeStream = writeQueue.poll();
+                if (_writeStream == null) {
+                    // already on the selector thread, no need to wake it up
+                    this.selectionKey.interestOps(interestOps());
+                    return;
+                }
+                _writeBuf = _writeStream.next();
+            }
 
-        if (!_writeBuf[0].hasRemaining() && !_writeBuf[1].hasRemaining()) {
-            reset();
-            switchMode(SelectionKey.OP_READ);
+            this.socketChannel.write(_writeBuf);
+            if (_writeBuf[0].hasRemaining() || _writeBuf[1].hasRemaining())
+                return; // socket buffer is full, wait for the next write event
+            _writeBuf = null;
+            if (_writeStream.hasNext()) {
+                // let responses that are ready go ahead of the rest of a large one
+                writeQueue.add(_writeStream);
+                _writeStream = null;
+                continue;
+            }
+            _writeStream = null;
+            pending--;
+            if (readPaused && !isFull())
+                readPaused = false;
         }
     }
 
-    private void reset() {
-        size = Integer.MIN_VALUE;
-        processScheduled = false;
-        _readBuf[0].clear();
-        _readBuf[1].clear();
-        _writeBuf[0].clear();
-        _writeBuf[1].clear();
-        bos.reset();
+    private synchronized void close() throws IOException {
+        this.selectionKey.cancel();
+        this.socketChannel.close();
+        this.reader.close();
+        for (FrameStream frames : writeQueue)
+            frames.discard();
+        this.writeQueue.clear();
+        if (_writeStream != null)
+            _writeStream.discard();
+        this._writeStream = null;
+        this._writeBuf = null;
     }
 
     private void switchMode(int mode) {
-        this.selectionKey.selector().wakeup();
+        if (!this.selectionKey.isValid()) return;
+        // change interest before waking the selector up, or it may block again on stale interest
         this.selectionKey.interestOps(mode);
+        this.selectionKey.selector().wakeup();
     }
 
     @Override
@@ -164,4 +314,4 @@ public class ServerReadWriteHandler implements Runnable, Attachable {
         selectionKey = socketChannel.register(selector, SelectionKey.OP_READ);
         selectionKey.attach(this);
     }
-}
\ No newline at end of file
+}
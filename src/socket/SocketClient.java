@@ -4,6 +4,8 @@ import commands.CommonCommand;
 import commonmodels.transport.Request;
 import commonmodels.transport.Response;
 import statmanagement.StatInfoManager;
+import util.Config;
+import util.HashedWheelTimer;
 import util.SimpleLog;
 
 import java.io.IOException;
@@ -12,9 +14,12 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SocketClient implements Runnable{
@@ -25,11 +30,21 @@ public class SocketClient implements Runnable{
 
     private final AtomicBoolean keepRunning = new AtomicBoolean(true);
 
-    private final Map<String, ClientHandler> handlerCache;
+    private final Map<String, EndpointPool> handlerCache;
+
+    private final int connectionsPerEndpoint;
+
+    private final long requestTimeout;
+
+    // null when batching is turned off
+    private final RequestBatcher batcher;
+
+    private final boolean localDispatch;
 
     private ExecutorService executor = Executors.newSingleThreadExecutor();
 
-    private final Queue<Attachable> attachments = new LinkedList<Attachable>() {
+    // filled by any thread sending requests, drained by the selector thread
+    private final Queue<Attachable> attachments = new ConcurrentLinkedQueue<Attachable>() {
         @Override
         public boolean add(Attachable attachable) {
             boolean result = super.add(attachable);
@@ -39,7 +54,14 @@ public class SocketClient implements Runnable{
     };
 
     private SocketClient() {
-        handlerCache = new HashMap<>();
+        handlerCache = new ConcurrentHashMap<>();
+        connectionsPerEndpoint = Config.getInstance().getConnectionsPerEndpoint();
+        requestTimeout = Config.getInstance().getRequestTimeout();
+        localDispatch = Config.getInstance().isLocalDispatchEnabled();
+        int batchSize = Config.getInstance().getBatchMaxRequests();
+        batcher = batchSize > 1
+                ? new RequestBatcher(batchSize, Config.getInstance().getBatchLingerMicros(), this::sendBatch)
+                : null;
 
         try {
             selector = Selector.open();
@@ -76,8 +98,15 @@ public class SocketClient implements Runnable{
     }
 
     public void stop() {
+        keepRunning.set(false);
+        selector.wakeup();
         executor.shutdownNow();
-        deleteInstance();
+        if (batcher != null)
+            batcher.stop();
+        synchronized(SocketClient.class) {
+            if (instance == this)
+                deleteInstance();
+        }
     }
 
     public void send(int port, Request data, ServerCallBack callBack) {
@@ -95,32 +124,125 @@ public class SocketClient implements Runnable{
     }
 
     public void send(InetSocketAddress inetSocketAddress, Request data, ServerCallBack callBack) {
+        String key = inetSocketAddress.getHostName() + ":" + inetSocketAddress.getPort();
+        // the caller's request is left as it is, the default timeout goes on a copy
+        Request outbound = data.getTimeout() <= 0 && requestTimeout > 0
+                ? new Request(data).withTimeout(requestTimeout)
+                : data;
+        PendingRequest pending = new PendingRequest(data, outbound, callBack);
+        scheduleDeadline(key, pending);
+
+        // servers of this jvm are handed the request directly
+        SocketServer local = localDispatch ? SocketServer.getLocal(inetSocketAddress) : null;
+        if (local != null)
+            local.serveLocal(pending);
+        else if (batcher != null && CommonCommand.isBatchable(data))
+            batcher.add(inetSocketAddress, key, pending);
+        else
+            dispatch(inetSocketAddress, key, pending);
+    }
+
+    /**
+     * Send requests to one endpoint inside a single BATCH request
+     */
+    private void sendBatch(InetSocketAddress remote, String key, List<PendingRequest> batch) {
+        // some may have failed for their deadline while waiting
+        batch.removeIf(PendingRequest::isCompleted);
+        if (batch.isEmpty()) return;
+        if (batch.size() == 1) {
+            dispatch(remote, key, batch.get(0));
+            return;
+        }
+
+        List<Request> requests = new ArrayList<>(batch.size());
+        long timeout = 0;
+        for (PendingRequest pending : batch) {
+            requests.add(pending.outbound);
+            timeout = Math.max(timeout, pending.outbound.getTimeout());
+        }
+
+        Request envelope = new Request()
+                .withHeader(CommonCommand.BATCH.name())
+                .withTimeout(timeout)
+                .withLargeAttachment(requests);
+        PendingRequest pending = new PendingRequest(envelope, new BatchCallBack(batch));
+        scheduleDeadline(key, pending);
+        dispatch(remote, key, pending);
+    }
+
+    private void dispatch(InetSocketAddress remote, String key, PendingRequest pending) {
         try {
-            registerRequest(inetSocketAddress, data, callBack);
+            registerRequest(remote, key, pending);
         } catch (IOException e) {
-            StatInfoManager.getInstance().statRoundTripFailure(data);
-            callBack.onFailure(data, "Remote " + inetSocketAddress.getHostName() + ":" + inetSocketAddress.getPort() + " throws "  + e.getMessage());
+            if (pending.complete()) {
+                StatInfoManager.getInstance().statRoundTripFailure(pending.request);
+                pending.callBack.onFailure(pending.request, "Remote " + key + " throws " + e.getMessage());
+            }
         }
     }
 
-    private void registerRequest(InetSocketAddress remote, Request data, ServerCallBack callBack) throws IOException {
-        String key = remote.getHostName() + ":" + remote.getPort();
-        ClientHandler handler = handlerCache.get(key);
-        if (handler == null || !handler.isConnected()) {
-            SocketChannel socketChannel = SocketChannel.open();
-            socketChannel.configureBlocking(false);
-            socketChannel.connect(remote);
-            ClientHandler connector = new Connector(socketChannel, data,
-                    (selectionKey, dataPool) -> {
-                        ClientHandler ch = new ClientReadWriteHandler(selectionKey, dataPool, callBack);
-                        handlerCache.put(key, ch);
-                        attachments.add(ch);
-                    });
-            handlerCache.put(key, connector);
-            attachments.add(connector);
+    /**
+     * Fail the request once its timeout passes
+     */
+    private void scheduleDeadline(String key, PendingRequest pending) {
+        long timeout = pending.outbound.getTimeout();
+        if (timeout <= 0) return;
+
+        pending.setTimeout(HashedWheelTimer.getInstance().newTimeout(
+                () -> onExpired(key, pending), timeout));
+    }
+
+    /**
+     * Runs on the timer thread, the callback is left to the worker pool
+     */
+    private void onExpired(String key, PendingRequest pending) {
+        if (!pending.complete()) return;
+
+        ClientReadWriteHandler owner = pending.owner;
+        if (owner != null)
+            owner.expire(pending);
+
+        Runnable failure = () -> {
+            StatInfoManager.getInstance().statRoundTripFailure(pending.request);
+            pending.callBack.onFailure(pending.request, "Request to " + key + " timed out");
+        };
+        try {
+            SocketServer.getWorkerPool().execute(failure);
+        } catch (RejectedExecutionException e) {
+            failure.run();
         }
-        else {
-            handler.put(data);
+    }
+
+    private void registerRequest(InetSocketAddress remote, String key, PendingRequest pending) throws IOException {
+        EndpointPool pool = handlerCache.computeIfAbsent(key, k -> new EndpointPool(connectionsPerEndpoint));
+        synchronized (pool) {
+            int slot = pool.select();
+            ClientHandler handler = pool.get(slot);
+            if (handler == null || !handler.isOpen()) {
+                // co-located daemons are reached through their unix domain socket
+                SocketChannel socketChannel = UnixDomainSockets.openClient(remote);
+                if (socketChannel == null) {
+                    socketChannel = SocketChannel.open();
+                    socketChannel.configureBlocking(false);
+                    socketChannel.connect(remote);
+                }
+                ClientHandler connector = new Connector(socketChannel, pending,
+                        (selectionKey, dataPool) -> {
+                            ClientHandler ch;
+                            // requests are put under the pool lock, none can slip into the connector's queue meanwhile
+                            synchronized (pool) {
+                                ch = new ClientReadWriteHandler(selectionKey, dataPool,
+                                        unsent -> unsent.forEach(p -> dispatch(remote, key, p)));
+                                pool.set(slot, ch);
+                            }
+                            attachments.add(ch);
+                        });
+                pool.set(slot, connector);
+                attachments.add(connector);
+            }
+            else {
+                handler.put(pending);
+            }
         }
     }
 
@@ -158,6 +280,56 @@ public class SocketClient implements Runnable{
         }
     }
 
+    /**
+     * Hands the responses of a batch back to the callbacks of the requests it carried
+     */
+    private static class BatchCallBack implements ServerCallBack {
+
+        private final List<PendingRequest> batch;
+
+        private BatchCallBack(List<PendingRequest> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void onResponse(Request request, Response response) {
+            Object attachment = response.getAttachment();
+            if (response.getStatus() != Response.STATUS_SUCCESS
+                    || !(attachment instanceof List)
+                    || ((List<?>) attachment).size() != batch.size()) {
+                onFailure(request, "Batch failed: " + response.getMessage());
+                return;
+            }
+
+            List<?> responses = (List<?>) attachment;
+            for (int i = 0; i < batch.size(); i++) {
+                PendingRequest pending = batch.get(i);
+                if (!pending.complete()) continue;
+
+                Object o = responses.get(i);
+                if (!(o instanceof Response)) {
+                    // on the selector thread, a bad element must not take the event loop down
+                    StatInfoManager.getInstance().statRoundTripFailure(pending.request);
+                    pending.callBack.onFailure(pending.request, "Batch failed: no response for the request");
+                    continue;
+                }
+
+                StatInfoManager.getInstance().statRoundTrip(pending.request);
+                pending.callBack.onResponse(pending.request, (Response) o);
+            }
+        }
+
+        @Override
+        public void onFailure(Request request, String error) {
+            for (PendingRequest pending : batch) {
+                if (!pending.complete()) continue;
+
+                StatInfoManager.getInstance().statRoundTripFailure(pending.request);
+                pending.callBack.onFailure(pending.request, error);
+            }
+        }
+    }
+
     public interface ServerCallBack {
         void onResponse(Request request, Response response);
         void onFailure(Request request, String error);
@@ -1,27 +1,40 @@
 package socket;
 
+import commands.CommonCommand;
 import commonmodels.transport.Request;
 import commonmodels.transport.Response;
+import statmanagement.StatInfoManager;
+import util.Config;
 import util.SimpleLog;
+import util.ThreadPools;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-public class SocketServer implements Runnable{
+public final class SocketServer implements Runnable{
 
     private final Selector selector;
 
     private final ServerSocketChannel serverSocketChannel;
 
+    // null when co-located clients have to use tcp
+    private final ServerSocketChannel unixServerChannel;
+
+    private final int port;
+
     private final AtomicBoolean keepRunning = new AtomicBoolean(true);
 
     private EventHandler eventHandler;
@@ -32,8 +45,21 @@ public class SocketServer implements Runnable{
 
     private static final int WORKER_POOL_SIZE = 16;
 
+    // io loops the accepted connections are spread over, empty when this selector serves them itself
+    private final Reactor[] reactors;
+
+    private final boolean leastLoadedAssignment;
+
+    private int nextReactor;
+
+    private final Admission admission;
+
+    // servers of this jvm by port, requests to them can skip the socket
+    private static final Map<Integer, SocketServer> localServers = new ConcurrentHashMap<>();
+
     public SocketServer(int port, EventHandler eventHandler) throws IOException {
         this.eventHandler = eventHandler;
+        this.port = port;
         this.selector = Selector.open();
         this.attachments = new LinkedList<Attachable>() {
             @Override
@@ -47,13 +73,129 @@ public class SocketServer implements Runnable{
         serverSocketChannel.socket().setReuseAddress(true);
         serverSocketChannel.socket().bind(new InetSocketAddress(port));
         serverSocketChannel.configureBlocking(false);
+        unixServerChannel = UnixDomainSockets.openServer(port);
+        int ioThreads = Config.getInstance().getServerIOThreads();
+        if (ioThreads <= 0)
+            ioThreads = Runtime.getRuntime().availableProcessors();
+        this.reactors = new Reactor[ioThreads > 1 ? ioThreads : 0];
+        for (int i = 0; i < reactors.length; i++)
+            reactors[i] = new Reactor();
+        this.leastLoadedAssignment = Config.IO_ASSIGNMENT_LEAST_LOADED.equals(Config.getInstance().getServerIOAssignment());
+        this.nextReactor = 0;
+        this.admission = new Admission(Config.getInstance().getServerMaxPendingRequests());
         registerShutdownHook();
-        attachments.add(new Acceptor(serverSocketChannel,
-                socketChannel -> attachments.add(new ServerReadWriteHandler(socketChannel, eventHandler))));
+        attachments.add(new Acceptor(serverSocketChannel, this::onAccepted));
+        if (unixServerChannel != null)
+            attachments.add(new Acceptor(unixServerChannel, this::onAccepted));
+        localServers.put(port, this);
+    }
+
+    /**
+     * @return the server of this jvm listening on the remote address, null if there is none
+     */
+    static SocketServer getLocal(InetSocketAddress remote) {
+        SocketServer server = localServers.get(remote.getPort());
+        if (server == null || !LocalAddresses.isLocal(remote.getAddress()))
+            return null;
+        return server;
+    }
+
+    /**
+     * Sender of requests from a peer on this host that has no port of its own
+     */
+    static String getLocalSender() {
+        return InetAddress.getLoopbackAddress().getHostName() + ":0";
+    }
+
+    /**
+     * Serve a request of a client in this jvm without encoding it, it goes through
+     * the same admission, worker pool and stats as one read from a socket
+     */
+    void serveLocal(PendingRequest pending) {
+        // handlers may modify the request, the caller keeps its own
+        Request req = new Request(pending.request);
+        req.setReceived(System.nanoTime());
+        // a batch takes a slot for every request it carries
+        int permits = CommonCommand.weightOf(req);
+        if (!admission.tryAcquire(permits)) {
+            respondLocal(pending, overloaded(req));
+            return;
+        }
+
+        try {
+            getWorkerPool().execute(() -> {
+                try {
+                    processLocal(pending, req);
+                } finally {
+                    admission.release(permits);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            admission.release(permits);
+            respondLocal(pending, overloaded(req));
+        }
+    }
+
+    private void processLocal(PendingRequest pending, Request req) {
+        // the caller has given up on it while it was queued
+        if (pending.isCompleted())
+            return;
+
+        Response response;
+        try {
+            long stamp = StatInfoManager.getInstance().getStamp();
+            StatInfoManager.getInstance().statRequest(req, stamp, 0);
+            req.setSender(getLocalSender());
+            response = eventHandler.onReceived(req);
+            StatInfoManager.getInstance().statExecution(req, stamp);
+        } catch (RuntimeException e) {
+            SimpleLog.e(e);
+            failLocal(pending, "Local server throws " + e.getMessage());
+            return;
+        }
+
+        respondLocal(pending, response);
+    }
+
+    /**
+     * @return rejection of a request the server has no room for, over a socket or locally
+     */
+    static Response overloaded(Request req) {
+        return new Response(req)
+                .withStatus(Response.STATUS_FAILED)
+                .withMessage(Response.MESSAGE_OVERLOADED);
+    }
+
+    private void respondLocal(PendingRequest pending, Response response) {
+        if (!pending.complete()) return;
+
+        StatInfoManager.getInstance().statResponse(pending.request, response, 0);
+        pending.callBack.onResponse(pending.request, response);
+    }
+
+    private void failLocal(PendingRequest pending, String reason) {
+        if (!pending.complete()) return;
+
+        StatInfoManager.getInstance().statRoundTripFailure(pending.request);
+        pending.callBack.onFailure(pending.request, reason);
+    }
+
+    private void onAccepted(SocketChannel socketChannel) {
+        ServerReadWriteHandler handler = new ServerReadWriteHandler(socketChannel, eventHandler, admission);
+        if (reactors.length == 0)
+            attachments.add(handler);
+        else
+            selectReactor().register(handler);
     }
 
     @Override
     public void run() {
+        for (int i = 0; i < reactors.length; i++) {
+            Thread thread = new Thread(reactors[i], "socket-reactor-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
         if (eventHandler != null)
             eventHandler.onBound();
 
@@ -82,11 +224,18 @@ public class SocketServer implements Runnable{
         this.eventHandler = eventHandler;
     }
 
+    /**
+     * Requests accepted but not answered yet, both waiting for a worker and being processed
+     */
+    public int getQueueDepth() {
+        return admission.getDepth();
+    }
+
     public static ExecutorService getWorkerPool() {
         if (workerPool == null) {
             synchronized(SocketServer.class) {
                 if (workerPool == null) {
-                    workerPool = Executors.newFixedThreadPool(WORKER_POOL_SIZE);
+                    workerPool = ThreadPools.newExecutor(WORKER_POOL_SIZE);
                 }
             }
         }
@@ -94,6 +243,36 @@ public class SocketServer implements Runnable{
         return workerPool;
     }
 
+    /**
+     * Run request handlers on the given executor from now on,
+     * the previous pool is shut down once it has run the tasks it already has
+     */
+    public static void setWorkerPool(ExecutorService pool) {
+        ExecutorService previous;
+        synchronized(SocketServer.class) {
+            previous = workerPool;
+            workerPool = pool;
+        }
+
+        if (previous != null)
+            previous.shutdown();
+    }
+
+    private Reactor selectReactor() {
+        if (!leastLoadedAssignment) {
+            Reactor reactor = reactors[nextReactor];
+            nextReactor = (nextReactor + 1) % reactors.length;
+            return reactor;
+        }
+
+        Reactor leastLoaded = reactors[0];
+        for (Reactor reactor : reactors) {
+            if (reactor.getLoad() < leastLoaded.getLoad())
+                leastLoaded = reactor;
+        }
+        return leastLoaded;
+    }
+
     private void registerAttachments() throws IOException {
         if (attachments.isEmpty()) return;
 
@@ -111,6 +290,13 @@ public class SocketServer implements Runnable{
                     selector.close();
                     serverSocketChannel.close();
                 }
+                localServers.remove(port, this);
+                if (unixServerChannel != null && unixServerChannel.isOpen()) {
+                    unixServerChannel.close();
+                    UnixDomainSockets.delete(port);
+                }
+                for (Reactor reactor : reactors)
+                    reactor.stop();
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -0,0 +1,84 @@
+package socket;
+
+import ceph.ClusterMap;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encoded bytes of the lookup tables, kept until the table moves on to another epoch.
+ * FETCH replies and replies to peers with a stale epoch all carry the same table,
+ * so it is encoded and compressed once per epoch instead of once per reply.
+ * Concurrent replies for a new epoch wait for a single encoding.
+ */
+final class TableSnapshotCache {
+
+    private final Map<Class<?>, Snapshot> snapshots;
+
+    TableSnapshotCache() {
+        this.snapshots = new ConcurrentHashMap<>();
+    }
+
+    static boolean isCacheable(Object o) {
+        return o instanceof ring.LookupTable || o instanceof elastic.LookupTable || o instanceof ClusterMap
+                || o instanceof rendezvous.LookupTable || o instanceof jump.LookupTable;
+    }
+
+    /**
+     * @return encoded bytes of the table at its current epoch, shared between callers, do not modify
+     */
+    byte[] get(Object table, Encoder encoder) throws IOException {
+        long epoch = epochOf(table);
+        Snapshot snapshot = snapshots.get(table.getClass());
+        if (snapshot != null && snapshot.matches(table, epoch))
+            return snapshot.bytes;
+
+        synchronized (this) {
+            snapshot = snapshots.get(table.getClass());
+            if (snapshot != null && snapshot.matches(table, epoch))
+                return snapshot.bytes;
+
+            snapshot = new Snapshot(table, epoch, encoder.encode(table));
+            snapshots.put(table.getClass(), snapshot);
+            return snapshot.bytes;
+        }
+    }
+
+    private static long epochOf(Object table) {
+        if (table instanceof ring.LookupTable)
+            return ((ring.LookupTable) table).getEpoch();
+        else if (table instanceof elastic.LookupTable)
+            return ((elastic.LookupTable) table).getEpoch();
+        else if (table instanceof rendezvous.LookupTable)
+            return ((rendezvous.LookupTable) table).getEpoch();
+        else if (table instanceof jump.LookupTable)
+            return ((jump.LookupTable) table).getEpoch();
+        else
+            return ((ClusterMap) table).getEpoch();
+    }
+
+    private static class Snapshot {
+
+        private final Object table;
+
+        private final long epoch;
+
+        private final byte[] bytes;
+
+        private Snapshot(Object table, long epoch, byte[] bytes) {
+            this.table = table;
+            this.epoch = epoch;
+            this.bytes = bytes;
+        }
+
+        private boolean matches(Object table, long epoch) {
+            // remote copies of a table may share the epoch of the local one
+            return this.table == table && this.epoch == epoch;
+        }
+    }
+
+    interface Encoder {
+        byte[] encode(Object table) throws IOException;
+    }
+}
@@ -1,8 +1,5 @@
 package socket;
 
-import util.ObjectConverter;
-
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
@@ -79,8 +76,6 @@ public class UDPServer implements Runnable {
 
         private final SelectionKey _selectionKey;
 
-        private ByteArrayOutputStream bos = new ByteArrayOutputStream();
-
         private static final int READ_BUF_SIZE = 128 * 1024;
 
         private ByteBuffer _readBuf = ByteBuffer.allocate(READ_BUF_SIZE);
@@ -108,11 +103,9 @@ public class UDPServer implements Runnable {
 
             if (sender != null) {
                 _readBuf.flip();
-                bos.write(ObjectConverter.getBytes(_readBuf));
-                Object o = JsonProtocolManager.getInstance().readGzip(bos.toByteArray());
+                Object o = JsonProtocolManager.getInstance().readGzip(_readBuf);
                 process(o);
                 _readBuf.clear();
-                bos.reset();
             }
         }
 
@@ -0,0 +1,153 @@
+package socket;
+
+import util.Config;
+import util.SimpleLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.Channel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Unix domain socket channels for daemons running on the same host.
+ * Every server also listens on a socket file named after its tcp port, clients
+ * connecting to a local address use that file when it exists, so co-located
+ * daemons skip the tcp stack. Unix domain channels are looked up reflectively,
+ * on jvms without them everything stays on tcp.
+ */
+public class UnixDomainSockets {
+
+    private static final String SOCKET_FILE_PREFIX = "dummydht-";
+
+    private static final String SOCKET_FILE_SUFFIX = ".sock";
+
+    private static volatile Method addressFactory = null;
+
+    private static volatile ProtocolFamily unixFamily = null;
+
+    private static volatile boolean resolved = false;
+
+    public static boolean isSupported() {
+        return resolve();
+    }
+
+    public static boolean isEnabled() {
+        return !getDirectory().isEmpty() && isSupported();
+    }
+
+    /**
+     * Listen on the socket file of the given tcp port
+     *
+     * @return null if unix domain sockets are turned off or not supported
+     */
+    public static ServerSocketChannel openServer(int port) {
+        if (!isEnabled()) return null;
+
+        File file = fileOf(port);
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            SimpleLog.i("Unable to create " + directory + ", unix domain sockets are not used");
+            return null;
+        }
+
+        ServerSocketChannel channel = null;
+        try {
+            // left over by a daemon that did not shut down cleanly
+            if (file.exists() && !file.delete())
+                throw new IOException("Unable to remove stale socket file " + file);
+
+            channel = (ServerSocketChannel) ServerSocketChannel.class
+                    .getMethod("open", ProtocolFamily.class)
+                    .invoke(null, unixFamily);
+            channel.bind(addressOf(file));
+            channel.configureBlocking(false);
+            file.deleteOnExit();
+            return channel;
+        } catch (IOException | ReflectiveOperationException e) {
+            SimpleLog.i("Unable to listen on " + file + ", unix domain sockets are not used: " + e);
+            closeQuietly(channel);
+            return null;
+        }
+    }
+
+    /**
+     * Connect to a daemon on this host through its socket file
+     *
+     * @return a connected, non-blocking channel, or null if the remote has to be reached over tcp
+     */
+    public static SocketChannel openClient(InetSocketAddress remote) {
+        if (!isEnabled() || !LocalAddresses.isLocal(remote.getAddress())) return null;
+
+        File file = fileOf(remote.getPort());
+        if (!file.exists()) return null;
+
+        SocketChannel channel = null;
+        try {
+            channel = (SocketChannel) SocketChannel.class
+                    .getMethod("open", ProtocolFamily.class)
+                    .invoke(null, unixFamily);
+            // local connects complete or fail right away, a stale file falls back to tcp
+            channel.connect(addressOf(file));
+            channel.configureBlocking(false);
+            return channel;
+        } catch (IOException | ReflectiveOperationException e) {
+            SimpleLog.v("Unable to connect to " + file + ", use tcp instead: " + e);
+            closeQuietly(channel);
+            return null;
+        }
+    }
+
+    /**
+     * Remove the socket file of a server that is shutting down
+     */
+    public static void delete(int port) {
+        File file = fileOf(port);
+        if (file.exists() && !file.delete())
+            SimpleLog.i("Unable to delete " + file);
+    }
+
+    private static File fileOf(int port) {
+        return new File(getDirectory(), SOCKET_FILE_PREFIX + port + SOCKET_FILE_SUFFIX);
+    }
+
+    private static String getDirectory() {
+        return Config.getInstance().getUnixSocketDir();
+    }
+
+    private static SocketAddress addressOf(File file) throws ReflectiveOperationException {
+        return (SocketAddress) addressFactory.invoke(null, file.getPath());
+    }
+
+    private static void closeQuietly(Channel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+    }
+
+    private static boolean resolve() {
+        if (!resolved) {
+            synchronized (UnixDomainSockets.class) {
+                if (!resolved) {
+                    try {
+                        // java 16+
+                        addressFactory = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+                        unixFamily = StandardProtocolFamily.valueOf("UNIX");
+                    } catch (ReflectiveOperationException | IllegalArgumentException e) {
+                        addressFactory = null;
+                        unixFamily = null;
+                    }
+                    resolved = true;
+                }
+            }
+        }
+
+        return addressFactory != null;
+    }
+}
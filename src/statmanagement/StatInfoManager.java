@@ -39,13 +39,17 @@ public class StatInfoManager {
                 .withType(StatInfo.TYPE_RESPONSE)
                 .withSize(respSize)
                 .calcElapsed(response.getTimestamp());
+
+        reporter.report(responseStat);
+        statRoundTrip(request);
+    }
+
+    public void statRoundTrip(Request request) {
         StatInfo roundTripStat = new StatInfo()
                 .withHeader(request.getHeader())
                 .withToken(request.getToken())
                 .withType(StatInfo.TYPE_ROUND_TRIP)
                 .calcElapsed(request.getTimestamp());
-
-        reporter.report(responseStat);
         reporter.report(roundTripStat);
     }
 
@@ -53,6 +53,34 @@ public class Config {
     public final static String PROPERTY_DELAY_TO_STOP_ALL = "delay_to_stop_all";
     private final static String PROPERTY_RING_LB_ALGORITHM = "ring_lb_algorithm";
     private final static String PROPERTY_MAX_LOOK_FORWARD = "max_look_forward";
+    private final static String PROPERTY_WIRE_CODEC = "wire_codec";
+    private final static String PROPERTY_COMPRESSION_THRESHOLD = "compression_threshold";
+    private final static String PROPERTY_COMPRESSION_DICTIONARY = "compression_dictionary";
+    private final static String PROPERTY_PIPELINE_DEPTH = "pipeline_depth";
+    private final static String PROPERTY_SERVER_IO_THREADS = "server_io_threads";
+    private final static String PROPERTY_SERVER_IO_ASSIGNMENT = "server_io_assignment";
+    private final static String PROPERTY_EXECUTION_MODE = "execution_mode";
+    private final static String PROPERTY_SERVER_MAX_PENDING_REQUESTS = "server_max_pending_requests";
+    private final static String PROPERTY_SERVER_MAX_PENDING_PER_CONNECTION = "server_max_pending_per_connection";
+    private final static String PROPERTY_REQUEST_TIMEOUT = "request_timeout";
+    private final static String PROPERTY_RECONNECT_ON_TIMEOUT = "reconnect_on_timeout";
+    private final static String PROPERTY_CONNECTIONS_PER_ENDPOINT = "connections_per_endpoint";
+    private final static String PROPERTY_BATCH_MAX_REQUESTS = "batch_max_requests";
+    private final static String PROPERTY_BATCH_LINGER_MICROS = "batch_linger_micros";
+    private final static String PROPERTY_BUCKET_DATA_DIR = "bucket_data_dir";
+    private final static String PROPERTY_TRANSFER_CHUNK_SIZE = "transfer_chunk_size";
+    private final static String PROPERTY_TRANSFER_PORT_OFFSET = "transfer_port_offset";
+    private final static String PROPERTY_STREAM_CHUNK_SIZE = "stream_chunk_size";
+    private final static String PROPERTY_MAX_MESSAGE_SIZE = "max_message_size";
+    private final static String PROPERTY_MAX_STREAMS_PER_CONNECTION = "max_streams_per_connection";
+    private final static String PROPERTY_MAX_STREAM_BYTES_PER_CONNECTION = "max_stream_bytes_per_connection";
+    private final static String PROPERTY_UNIX_SOCKET_DIR = "unix_socket_dir";
+    private final static String PROPERTY_LOCAL_DISPATCH = "local_dispatch";
+    private final static String PROPERTY_KEY_HASHER = "key_hasher";
+    private final static String PROPERTY_RING_TOKEN_SPACE = "ring_token_space";
+    private final static String PROPERTY_RING_PLACEMENT = "ring_placement";
+    private final static String PROPERTY_BOUNDED_LOAD_EPSILON = "bounded_load_epsilon";
+    private final static String PROPERTY_JUMP_BUCKETS_PER_NODE = "jump_buckets_per_node";
 
     public final static String STATUS_ACTIVE = "active";
     public final static String STATUS_INACTIVE = "inactive";
@@ -65,6 +93,8 @@ public class Config {
     public final static String SCHEME_RING = "ring";
     public final static String SCHEME_ELASTIC = "elastic";
     public final static String SCHEME_CEPH = "ceph";
+    public final static String SCHEME_RENDEZVOUS = "rendezvous";
+    public final static String SCHEME_JUMP = "jump";
     public final static int RATIO_KEY_READ = 0;
     public final static int RATIO_KEY_WRITE = 1;
     public final static int RATIO_KEY_ADD = 0;
@@ -78,6 +108,17 @@ public class Config {
     public final static String RING_LB_ALGO_NORMAL = "normal";
     public final static String RING_LB_ALGO_VNODE = "vnode";
     public final static String RING_LB_ALGO_FORWARD = "forward";
+    public final static String IO_ASSIGNMENT_ROUND_ROBIN = "round_robin";
+    public final static String IO_ASSIGNMENT_LEAST_LOADED = "least_loaded";
+    public final static String EXECUTION_MODE_PLATFORM = "platform";
+    public final static String EXECUTION_MODE_VIRTUAL = "virtual";
+    public final static String KEY_HASHER_JAVA = "java";
+    public final static String KEY_HASHER_MURMUR3 = "murmur3";
+    public final static String KEY_HASHER_XXHASH64 = "xxhash64";
+    public final static String TOKEN_SPACE_SLOTS = "slots";
+    public final static String TOKEN_SPACE_LONG = "long";
+    public final static String PLACEMENT_HASH = "hash";
+    public final static String PLACEMENT_BOUNDED_LOAD = "bounded_load";
 
     private static volatile Config instance = null;
 
@@ -93,6 +134,10 @@ public class Config {
 
     private String scheme;
 
+    private boolean longTokenSpace;
+
+    private boolean boundedLoadPlacement;
+
     private float initialWeight;
 
     private long networkSpeed;
@@ -110,6 +155,8 @@ public class Config {
         numberOfPlacementGroups = Integer.valueOf(rb.getString(PROPERTY_NUMBER_OF_PLACEMENT_GROUPS));
         defaultNumberOfHashSlots = numberOfHashSlots;
         scheme = rb.getString(PROPERTY_SCHEME);
+        longTokenSpace = scheme.equals(SCHEME_RING) && rb.getString(PROPERTY_RING_TOKEN_SPACE).trim().equals(TOKEN_SPACE_LONG);
+        boundedLoadPlacement = scheme.equals(SCHEME_RING) && rb.getString(PROPERTY_RING_PLACEMENT).trim().equals(PLACEMENT_BOUNDED_LOAD);
         initialWeight = Float.valueOf(rb.getString(PROPERTY_INITIAL_WEIGHT));
         networkSpeed = Utils.parseLong(rb.getString(PROPERTY_NETWORK_SPEED));
         standalone = false;
@@ -349,4 +396,130 @@ public class Config {
     public int getMaxLookForward() {
         return Integer.valueOf(rb.getString(PROPERTY_MAX_LOOK_FORWARD));
     }
+
+    public String getWireCodec() {
+        return rb.getString(PROPERTY_WIRE_CODEC);
+    }
+
+    public int getCompressionThreshold() {
+        return Integer.valueOf(rb.getString(PROPERTY_COMPRESSION_THRESHOLD));
+    }
+
+    public boolean isCompressionDictionaryEnabled() {
+        return Boolean.valueOf(rb.getString(PROPERTY_COMPRESSION_DICTIONARY));
+    }
+
+    public int getPipelineDepth() {
+        return Integer.valueOf(rb.getString(PROPERTY_PIPELINE_DEPTH));
+    }
+
+    public int getServerIOThreads() {
+        return Integer.valueOf(rb.getString(PROPERTY_SERVER_IO_THREADS));
+    }
+
+    public String getServerIOAssignment() {
+        return rb.getString(PROPERTY_SERVER_IO_ASSIGNMENT);
+    }
+
+    public String getExecutionMode() {
+        return rb.getString(PROPERTY_EXECUTION_MODE);
+    }
+
+    public int getServerMaxPendingRequests() {
+        return Integer.valueOf(rb.getString(PROPERTY_SERVER_MAX_PENDING_REQUESTS));
+    }
+
+    public int getServerMaxPendingPerConnection() {
+        return Integer.valueOf(rb.getString(PROPERTY_SERVER_MAX_PENDING_PER_CONNECTION));
+    }
+
+    public long getRequestTimeout() {
+        return Long.valueOf(rb.getString(PROPERTY_REQUEST_TIMEOUT));
+    }
+
+    public boolean isReconnectOnTimeout() {
+        return Boolean.valueOf(rb.getString(PROPERTY_RECONNECT_ON_TIMEOUT));
+    }
+
+    public int getConnectionsPerEndpoint() {
+        return Integer.valueOf(rb.getString(PROPERTY_CONNECTIONS_PER_ENDPOINT));
+    }
+
+    public int getBatchMaxRequests() {
+        return Integer.valueOf(rb.getString(PROPERTY_BATCH_MAX_REQUESTS));
+    }
+
+    public long getBatchLingerMicros() {
+        return Long.valueOf(rb.getString(PROPERTY_BATCH_LINGER_MICROS));
+    }
+
+    public String getBucketDataDir() {
+        return rb.getString(PROPERTY_BUCKET_DATA_DIR).trim();
+    }
+
+    public long getTransferChunkSize() {
+        return Utils.parseLong(rb.getString(PROPERTY_TRANSFER_CHUNK_SIZE));
+    }
+
+    public int getTransferPortOffset() {
+        return Integer.valueOf(rb.getString(PROPERTY_TRANSFER_PORT_OFFSET));
+    }
+
+    public long getStreamChunkSize() {
+        return Utils.parseLong(rb.getString(PROPERTY_STREAM_CHUNK_SIZE));
+    }
+
+    public long getMaxMessageSize() {
+        return Utils.parseLong(rb.getString(PROPERTY_MAX_MESSAGE_SIZE));
+    }
+
+    public int getMaxStreamsPerConnection() {
+        return Integer.valueOf(rb.getString(PROPERTY_MAX_STREAMS_PER_CONNECTION));
+    }
+
+    public long getMaxStreamBytesPerConnection() {
+        return Utils.parseLong(rb.getString(PROPERTY_MAX_STREAM_BYTES_PER_CONNECTION));
+    }
+
+    public String getUnixSocketDir() {
+        return rb.getString(PROPERTY_UNIX_SOCKET_DIR).trim();
+    }
+
+    public boolean isLocalDispatchEnabled() {
+        return Boolean.valueOf(rb.getString(PROPERTY_LOCAL_DISPATCH));
+    }
+
+    public String getKeyHasher() {
+        return rb.getString(PROPERTY_KEY_HASHER).trim();
+    }
+
+    public String getRingTokenSpace() {
+        return rb.getString(PROPERTY_RING_TOKEN_SPACE).trim();
+    }
+
+    /**
+     * @return true if the ring places virtual nodes and keys on 64-bit tokens instead of hash slots
+     */
+    public boolean isLongTokenSpace() {
+        return longTokenSpace;
+    }
+
+    public String getRingPlacement() {
+        return rb.getString(PROPERTY_RING_PLACEMENT).trim();
+    }
+
+    /**
+     * @return true if reads spill over from replicas that are above their bound, see RingReadWriteAlgorithm
+     */
+    public boolean isBoundedLoadPlacement() {
+        return boundedLoadPlacement;
+    }
+
+    public double getBoundedLoadEpsilon() {
+        return Double.valueOf(rb.getString(PROPERTY_BOUNDED_LOAD_EPSILON));
+    }
+
+    public int getJumpBucketsPerNode() {
+        return Integer.valueOf(rb.getString(PROPERTY_JUMP_BUCKETS_PER_NODE).trim());
+    }
 }
@@ -0,0 +1,239 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coarse timer for large numbers of short lived timeouts, most of which get cancelled.
+ * Timeouts are hashed into a ring of buckets by their expiry tick, a single daemon thread
+ * advances one bucket per tick, so scheduling and cancelling are O(1) and precision is one tick.
+ * A cancelled timeout is unlinked from its bucket at once, it does not hold on to its task.
+ * Tasks run on the timer thread and must not block.
+ */
+public class HashedWheelTimer implements Runnable {
+
+    private static final long DEFAULT_TICK_MS = 10;
+
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final long tickNanos;
+
+    private final Bucket[] wheel;
+
+    private final int mask;
+
+    // handed over by other threads, moved onto the wheel by the timer thread
+    private final Queue<Timeout> pendingTimeouts;
+
+    private final long startTime;
+
+    private long tick;
+
+    private static volatile HashedWheelTimer instance = null;
+
+    private HashedWheelTimer(long tickMs, int wheelSize) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1) << 1);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++)
+            wheel[i] = new Bucket();
+        this.mask = size - 1;
+        this.pendingTimeouts = new ConcurrentLinkedQueue<>();
+        this.startTime = System.nanoTime();
+        this.tick = 0;
+    }
+
+    public static HashedWheelTimer getInstance() {
+        if (instance == null) {
+            synchronized(HashedWheelTimer.class) {
+                if (instance == null) {
+                    instance = newInstance(DEFAULT_TICK_MS, DEFAULT_WHEEL_SIZE);
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    public static HashedWheelTimer newInstance(long tickMs, int wheelSize) {
+        HashedWheelTimer timer = new HashedWheelTimer(tickMs, wheelSize);
+        timer.start();
+        return timer;
+    }
+
+    private void start() {
+        Thread worker = new Thread(this, "hashed-wheel-timer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Run task once delayMs has passed, unless the returned timeout is cancelled first
+     */
+    public Timeout newTimeout(Runnable task, long delayMs) {
+        long deadline = System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs));
+        Timeout timeout = new Timeout(task, deadline);
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            long deadline = tickNanos * (tick + 1);
+            long sleepNanos;
+            while ((sleepNanos = deadline - (System.nanoTime() - startTime)) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            transferPendingTimeouts();
+            for (Timeout timeout : wheel[(int) (tick & mask)].expire())
+                timeout.expire();
+            tick++;
+        }
+    }
+
+    private void transferPendingTimeouts() {
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.isCancelled()) continue;
+
+            // never schedule into a bucket that has already been passed
+            long expiryTick = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+            Bucket bucket = wheel[(int) (expiryTick & mask)];
+            bucket.add(timeout);
+
+            // cancelled before it had a bucket to be removed from
+            if (timeout.isCancelled())
+                bucket.remove(timeout);
+        }
+    }
+
+    /**
+     * Doubly linked list of the timeouts expiring on the same slot of the wheel,
+     * so a cancelled timeout is unlinked right away instead of when its slot comes round
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+
+        private Timeout tail;
+
+        synchronized void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null)
+                head = timeout;
+            else
+                tail.next = timeout;
+            tail = timeout;
+        }
+
+        synchronized void remove(Timeout timeout) {
+            if (timeout.bucket != this) return;
+
+            if (timeout.prev == null)
+                head = timeout.next;
+            else
+                timeout.prev.next = timeout.next;
+            if (timeout.next == null)
+                tail = timeout.prev;
+            else
+                timeout.next.prev = timeout.prev;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        /**
+         * Unlink the timeouts due this round, they are run by the caller outside the lock
+         */
+        synchronized List<Timeout> expire() {
+            List<Timeout> expired = new ArrayList<>();
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    expired.add(timeout);
+                }
+                else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+
+            return expired;
+        }
+    }
+
+    public static class Timeout {
+
+        private static final int STATE_PENDING = 0;
+
+        private static final int STATE_CANCELLED = 1;
+
+        private static final int STATE_EXPIRED = 2;
+
+        private final Runnable task;
+
+        private final long deadline;
+
+        private final AtomicInteger state;
+
+        // only touched by the timer thread
+        private long remainingRounds;
+
+        // bucket it is linked into, null while pending or once unlinked
+        private volatile Bucket bucket;
+
+        // guarded by the bucket
+        private Timeout prev;
+
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+            this.state = new AtomicInteger(STATE_PENDING);
+        }
+
+        /**
+         * @return false if the task already ran or the timeout was cancelled before
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(STATE_PENDING, STATE_CANCELLED))
+                return false;
+
+            Bucket b = bucket;
+            if (b != null)
+                b.remove(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(STATE_PENDING, STATE_EXPIRED)) return;
+
+            try {
+                task.run();
+            }
+            catch (RuntimeException e) {
+                SimpleLog.e(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package util;
+
+/**
+ * String.hashCode, how keys were always placed.
+ * Only has 32 bits, the 64-bit hash spreads them with the murmur3 finalizer.
+ */
+public class JavaKeyHasher implements KeyHasher {
+
+    @Override
+    public int hash(String key) {
+        return key.hashCode();
+    }
+
+    @Override
+    public long hash64(String key) {
+        return MathX.mix64(key.hashCode());
+    }
+}
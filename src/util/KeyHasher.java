@@ -0,0 +1,29 @@
+package util;
+
+/**
+ * Hash function placing keys on nodes.
+ * Every node has to use the same one, otherwise they disagree on where a key lives.
+ */
+public interface KeyHasher {
+
+    int hash(String key);
+
+    long hash64(String key);
+
+    /**
+     * @param name see Config.KEY_HASHER_*
+     */
+    static KeyHasher forName(String name) {
+        switch (name) {
+            case Config.KEY_HASHER_MURMUR3:
+                return new Murmur3KeyHasher();
+            case Config.KEY_HASHER_XXHASH64:
+                return new XxHash64KeyHasher();
+            case Config.KEY_HASHER_JAVA:
+                return new JavaKeyHasher();
+            default:
+                SimpleLog.i("Unknown key hasher " + name + ", fall back to " + Config.KEY_HASHER_JAVA);
+                return new JavaKeyHasher();
+        }
+    }
+}
@@ -8,6 +8,8 @@ public class MathX {
 
     private static Random random = new Random(100);
 
+    private static volatile KeyHasher keyHasher = null;
+
     public static Queue<Integer> nonrepeatRandom(int bound, int size, List<Integer> exclude) {
         Set<Integer> s = new HashSet<>(exclude);
         Queue<Integer> result = new LinkedList<>();
@@ -30,6 +32,30 @@ public class MathX {
         return nonrepeatRandom(bound, size, new ArrayList<>());
     }
 
+    /**
+     * @return distinct random 64-bit tokens, none of them in exclude
+     */
+    public static Queue<Long> nonrepeatRandomLong(int size, Collection<Long> exclude) {
+        Set<Long> s = new HashSet<>(exclude);
+        Queue<Long> result = new LinkedList<>();
+
+        while (result.size() < size) {
+            long num = random.nextLong();
+            if (s.add(num))
+                result.add(num);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param bound unsigned, not 0
+     * @return random value in [0, bound), unsigned
+     */
+    public static long nextUnsignedLong(long bound) {
+        return Long.remainderUnsigned(random.nextLong(), bound);
+    }
+
     public static int nextInt(int bound) {
         return (int)(random.nextDouble() * (bound));
     }
@@ -55,6 +81,61 @@ public class MathX {
         return hash & 0x7fffffff;
     }
 
+    public static KeyHasher getKeyHasher() {
+        if (keyHasher == null) {
+            synchronized (MathX.class) {
+                if (keyHasher == null) {
+                    keyHasher = KeyHasher.forName(Config.getInstance().getKeyHasher());
+                }
+            }
+        }
+
+        return keyHasher;
+    }
+
+    /**
+     * @return non-negative hash of a key, with the configured key hasher
+     */
+    public static int keyHash(String key) {
+        return positiveHash(getKeyHasher().hash(key));
+    }
+
+    /**
+     * @return 64-bit token of a key, with the configured key hasher
+     */
+    public static long keyToken(String key) {
+        return getKeyHasher().hash64(key);
+    }
+
+    /**
+     * Finalizer of murmur3, spreads the bits of a value over all 64 bits
+     */
+    public static long mix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * Jump consistent hash, Lamping and Veach.
+     * When the number of buckets grows from n to n + 1, only keys moving to the new bucket change buckets.
+     *
+     * @return bucket of the key, in [0, numberOfBuckets)
+     */
+    public static int jumpHash(long key, int numberOfBuckets) {
+        long b = -1, j = 0;
+        while (j < numberOfBuckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+
+        return (int) b;
+    }
+
     private static long add(long val, long add) {
         return (val + add) & MAX_VALUE;
     }
@@ -81,10 +162,17 @@ public class MathX {
     }
 
     public static double rushHash(String s1,int r,String cid){
+        return rushHash(getKeyHasher().hash(s1), r, getKeyHasher().hash(cid));
+    }
+
+    /**
+     * Same as rushHash(String, int, String), with the strings already hashed
+     */
+    public static double rushHash(int s1Hash, int r, int cidHash){
 
-        long a = s1.hashCode();
+        long a = s1Hash;
         long b = r & MAX_VALUE;
-        long c = cid.hashCode();
+        long c = cidHash;
 
         a = subtract(a, b); a = subtract(a, c); a = xor(a, c >> 13);
         b = subtract(b, c); b = subtract(b, a); b = xor(b, leftShift(a, 8));
@@ -0,0 +1,76 @@
+package util;
+
+/**
+ * First half of MurmurHash3 x64 128-bit with seed 0
+ */
+public class Murmur3KeyHasher extends Utf8KeyHasher {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    @Override
+    protected long hash64(byte[] bytes, int length) {
+        long h1 = 0;
+        long h2 = 0;
+        int i = 0;
+
+        for (; i <= length - 16; i += 16) {
+            long k1 = getLong(bytes, i);
+            long k2 = getLong(bytes, i + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        int remaining = length - i;
+        if (remaining > 0) {
+            long k1 = 0;
+            long k2 = 0;
+            for (int j = remaining - 1; j >= 8; j--)
+                k2 = (k2 << 8) | (bytes[i + j] & 0xFFL);
+            for (int j = Math.min(remaining, 8) - 1; j >= 0; j--)
+                k1 = (k1 << 8) | (bytes[i + j] & 0xFFL);
+
+            if (remaining > 8)
+                h2 ^= mixK2(k2);
+            h1 ^= mixK1(k1);
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        return h1;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
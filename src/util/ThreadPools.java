@@ -0,0 +1,72 @@
+package util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors according to the configured execution mode.
+ * In virtual mode every task gets its own virtual thread, so tasks blocking on
+ * sockets or files do not hold up a platform thread. Virtual threads are looked up
+ * reflectively, older jvms fall back to a fixed platform pool.
+ */
+public class ThreadPools {
+
+    private static volatile Method virtualExecutorFactory = null;
+
+    private static volatile boolean resolved = false;
+
+    public static ExecutorService newExecutor(int platformThreads) {
+        return newExecutor(Config.getInstance().getExecutionMode(), platformThreads);
+    }
+
+    /**
+     * @param mode execution mode, see Config.EXECUTION_MODE_*
+     * @param platformThreads size of the pool when running on platform threads
+     */
+    public static ExecutorService newExecutor(String mode, int platformThreads) {
+        if (Config.EXECUTION_MODE_VIRTUAL.equals(mode)) {
+            ExecutorService executor = newVirtualThreadExecutor();
+            if (executor != null)
+                return executor;
+
+            SimpleLog.i("Virtual threads are not supported by this jvm, fall back to platform threads");
+        }
+
+        return Executors.newFixedThreadPool(platformThreads);
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        return resolveVirtualExecutorFactory() != null;
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        Method factory = resolveVirtualExecutorFactory();
+        if (factory == null)
+            return null;
+
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            SimpleLog.e(e);
+            return null;
+        }
+    }
+
+    private static Method resolveVirtualExecutorFactory() {
+        if (!resolved) {
+            synchronized (ThreadPools.class) {
+                if (!resolved) {
+                    try {
+                        virtualExecutorFactory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                    } catch (NoSuchMethodException ignored) {
+                        virtualExecutorFactory = null;
+                    }
+                    resolved = true;
+                }
+            }
+        }
+
+        return virtualExecutorFactory;
+    }
+}
@@ -0,0 +1,86 @@
+package util;
+
+/**
+ * Hashes the UTF-8 bytes of keys.
+ * Keys are encoded into a buffer kept per thread, so hashing does not allocate
+ * once the buffer has grown to the longest key seen.
+ */
+public abstract class Utf8KeyHasher implements KeyHasher {
+
+    private static final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[256]);
+
+    @Override
+    public int hash(String key) {
+        long h = hash64(key);
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public long hash64(String key) {
+        byte[] buffer = buffers.get();
+        // at most 3 bytes per char, a surrogate pair takes 4 bytes for 2 chars
+        if (buffer.length < key.length() * 3) {
+            buffer = new byte[key.length() * 3];
+            buffers.set(buffer);
+        }
+
+        return hash64(buffer, encode(key, buffer));
+    }
+
+    protected abstract long hash64(byte[] bytes, int length);
+
+    /**
+     * @return number of bytes written, same bytes as String.getBytes(UTF_8)
+     */
+    private static int encode(String key, byte[] buffer) {
+        int n = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < 0x80) {
+                buffer[n++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                buffer[n++] = (byte) (0xC0 | (c >> 6));
+                buffer[n++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < key.length() && Character.isLowSurrogate(key.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, key.charAt(++i));
+                    buffer[n++] = (byte) (0xF0 | (codePoint >> 18));
+                    buffer[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buffer[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buffer[n++] = (byte) (0x80 | (codePoint & 0x3F));
+                }
+                else {
+                    // unpaired surrogate
+                    buffer[n++] = '?';
+                }
+            }
+            else {
+                buffer[n++] = (byte) (0xE0 | (c >> 12));
+                buffer[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[n++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        return n;
+    }
+
+    protected static long getLong(byte[] bytes, int i) {
+        return (bytes[i] & 0xFFL)
+                | (bytes[i + 1] & 0xFFL) << 8
+                | (bytes[i + 2] & 0xFFL) << 16
+                | (bytes[i + 3] & 0xFFL) << 24
+                | (bytes[i + 4] & 0xFFL) << 32
+                | (bytes[i + 5] & 0xFFL) << 40
+                | (bytes[i + 6] & 0xFFL) << 48
+                | (bytes[i + 7] & 0xFFL) << 56;
+    }
+
+    protected static long getInt(byte[] bytes, int i) {
+        return (bytes[i] & 0xFFL)
+                | (bytes[i + 1] & 0xFFL) << 8
+                | (bytes[i + 2] & 0xFFL) << 16
+                | (bytes[i + 3] & 0xFFL) << 24;
+    }
+}
@@ -0,0 +1,78 @@
+package util;
+
+/**
+ * xxHash64 with seed 0
+ */
+public class XxHash64KeyHasher extends Utf8KeyHasher {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    @Override
+    protected long hash64(byte[] bytes, int length) {
+        int i = 0;
+        long h;
+
+        if (length >= 32) {
+            long v1 = PRIME1 + PRIME2;
+            long v2 = PRIME2;
+            long v3 = 0;
+            long v4 = -PRIME1;
+
+            for (; i <= length - 32; i += 32) {
+                v1 = round(v1, getLong(bytes, i));
+                v2 = round(v2, getLong(bytes, i + 8));
+                v3 = round(v3, getLong(bytes, i + 16));
+                v4 = round(v4, getLong(bytes, i + 24));
+            }
+
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(h, v1);
+            h = merge(h, v2);
+            h = merge(h, v3);
+            h = merge(h, v4);
+        }
+        else {
+            h = PRIME5;
+        }
+
+        h += length;
+
+        for (; i <= length - 8; i += 8) {
+            h ^= round(0, getLong(bytes, i));
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+        }
+
+        if (i <= length - 4) {
+            h ^= getInt(bytes, i) * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+            i += 4;
+        }
+
+        for (; i < length; i++) {
+            h ^= (bytes[i] & 0xFFL) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+        }
+
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long merge(long h, long v) {
+        h ^= round(0, v);
+        return h * PRIME1 + PRIME4;
+    }
+}